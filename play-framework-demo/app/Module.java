@@ -0,0 +1,19 @@
+import actors.TaskExecutor;
+import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.Multibinder;
+
+/**
+ * Guice模块（Play启动时自动加载根包下的Module）
+ * 任务执行器通过多重绑定注册，注册的执行器覆盖同类型的内置执行器，例如：
+ * <pre>
+ * Multibinder.newSetBinder(binder(), TaskExecutor.class).addBinding().to(MyExecutor.class);
+ * </pre>
+ */
+public class Module extends AbstractModule {
+
+    @Override
+    protected void configure() {
+        // 即使没有自定义执行器也声明集合绑定，ActorSystemManager注入的集合可以为空
+        Multibinder.newSetBinder(binder(), TaskExecutor.class);
+    }
+}
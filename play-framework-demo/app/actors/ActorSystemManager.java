@@ -2,9 +2,15 @@ package actors;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import akka.cluster.Cluster;
+import akka.cluster.sharding.ClusterSharding;
+import akka.cluster.sharding.ClusterShardingSettings;
+import utils.MetricsRegistry;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * Actor系统管理器
@@ -19,33 +25,55 @@ public class ActorSystemManager {
     private final ActorRef taskManagerActor;
     private final ActorRef webSocketManagerActor;
     private final ActorRef clusterListenerActor;
+    private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+    private final TaskSystemSettings.WebSocketSettings webSocketSettings;
+    private final TaskSystemSettings.FairShareSettings fairShareSettings;
+    private final TaskExecutors executors;
 
+    /**
+     * @param taskExecutors 通过Guice多重绑定注册的任务执行器，覆盖同类型的内置执行器（见 Module）
+     */
     @Inject
-    public ActorSystemManager(ActorSystem actorSystem) {
+    public ActorSystemManager(ActorSystem actorSystem, Set<TaskExecutor> taskExecutors) {
         // 使用Play Framework注入的ActorSystem
         this.actorSystem = actorSystem;
+        this.executors = TaskExecutors.withBuiltIns(taskExecutors);
+
+        TaskSystemSettings taskSystemSettings = TaskSystemSettings.fromConfig(actorSystem.settings().config());
+        this.webSocketSettings = taskSystemSettings.getWebSocket();
+        this.fairShareSettings = taskSystemSettings.getFairShare();
 
         // 创建TaskProcessorActor
         this.taskProcessorActor = actorSystem.actorOf(
-                TaskProcessorActor.props(),
+                TaskProcessorActor.props(taskSystemSettings.getProcessor()),
                 "taskProcessorActor"
         );
 
-        // 创建ScheduledTaskActor
+        // 创建TaskManagerActor（按任务类型划分Worker池，见 task-system.pools）
+        // 开启集群分片时由本地入口把任务路由到所属分片的管理器
+        if (taskSystemSettings.getSharding().isEnabled()) {
+            this.taskManagerActor = actorSystem.actorOf(
+                    TaskManagerRouter.props(
+                            startTaskManagerSharding(actorSystem, taskSystemSettings, metricsRegistry, executors),
+                            taskSystemSettings.getSharding().getNumberOfShards()),
+                    "taskManagerActor"
+            );
+        } else {
+            this.taskManagerActor = actorSystem.actorOf(
+                    TaskManagerActor.props(taskSystemSettings, metricsRegistry, executors),
+                    "taskManagerActor"
+            );
+        }
+
+        // 创建ScheduledTaskActor（延迟/周期任务到期后提交给任务管理器）
         this.scheduledTaskActor = actorSystem.actorOf(
-                ScheduledTaskActor.props(),
+                ScheduledTaskActor.props(taskManagerActor, taskSystemSettings.getScheduler()),
                 "scheduledTaskActor"
         );
 
-        // 创建TaskManagerActor（带有5个Worker）
-        this.taskManagerActor = actorSystem.actorOf(
-                TaskManagerActor.props(5),
-                "taskManagerActor"
-        );
-
         // 创建WebSocketManagerActor
         this.webSocketManagerActor = actorSystem.actorOf(
-                WebSocketManagerActor.props(),
+                WebSocketManagerActor.props(taskSystemSettings.getWebSocket()),
                 "webSocketManagerActor"
         );
 
@@ -63,6 +91,36 @@ public class ActorSystemManager {
         System.out.println("ClusterListenerActor: " + clusterListenerActor.path());
     }
 
+    /**
+     * 启动任务管理器分片区域
+     * 带有指定角色的节点承载分片，其他节点只启动代理；成员加入或离开时由分片协调者自动重新分配分片
+     */
+    private static ActorRef startTaskManagerSharding(ActorSystem actorSystem, TaskSystemSettings settings,
+                                                     MetricsRegistry metricsRegistry, TaskExecutors executors) {
+        TaskSystemSettings.ShardingSettings sharding = settings.getSharding();
+        ClusterSharding clusterSharding = ClusterSharding.get(actorSystem);
+        TaskShardExtractor extractor = new TaskShardExtractor(sharding.getNumberOfShards());
+
+        if (!Cluster.get(actorSystem).selfRoles().contains(sharding.getRole())) {
+            return clusterSharding.startProxy(
+                    TaskManagerActor.SHARD_TYPE_NAME,
+                    Optional.of(sharding.getRole()),
+                    extractor
+            );
+        }
+
+        ClusterShardingSettings shardingSettings = ClusterShardingSettings.create(actorSystem)
+                .withRole(sharding.getRole());
+        return clusterSharding.start(
+                TaskManagerActor.SHARD_TYPE_NAME,
+                TaskManagerActor.shardedProps(settings, metricsRegistry, executors),
+                shardingSettings,
+                extractor,
+                clusterSharding.defaultShardAllocationStrategy(shardingSettings),
+                TaskManagerActor.HandOff.INSTANCE
+        );
+    }
+
     /**
      * 获取ActorSystem
      */
@@ -104,4 +162,32 @@ public class ActorSystemManager {
     public ActorRef getClusterListenerActor() {
         return clusterListenerActor;
     }
+
+    /**
+     * 获取本节点的运行指标注册表（无需经过Actor即可读取）
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * 获取WebSocket连接配置（分片数、出站缓冲）
+     */
+    public TaskSystemSettings.WebSocketSettings getWebSocketSettings() {
+        return webSocketSettings;
+    }
+
+    /**
+     * 获取租户公平调度配置（含校验租户token的密钥）
+     */
+    public TaskSystemSettings.FairShareSettings getFairShareSettings() {
+        return fairShareSettings;
+    }
+
+    /**
+     * 获取已注册的任务执行器（内置执行器加上通过多重绑定注册的执行器）
+     */
+    public TaskExecutors getTaskExecutors() {
+        return executors;
+    }
 }
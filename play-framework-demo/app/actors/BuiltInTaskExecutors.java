@@ -0,0 +1,149 @@
+package actors;
+
+import models.Task;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内置的演示执行器，以随机耗时模拟各类任务
+ * 数据处理、文件操作、报表生成和默认任务为阻塞型（占用阻塞调度器线程）；
+ * API调用和通知模拟等待远端响应，为异步型，等待期间不占用任何执行线程；
+ * 二者支持批量执行，一批任务只等待一次远端延迟（模拟批量接口）
+ */
+final class BuiltInTaskExecutors {
+
+    // 异步执行器模拟远端延迟用的定时器（守护线程，只负责完成结果）
+    private static final ScheduledExecutorService LATENCY_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "task-executor-latency-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private BuiltInTaskExecutors() {
+    }
+
+    static List<TaskExecutor> all() {
+        return Arrays.asList(
+                new Blocking("DATA_PROCESSING", 1000, 2000, "Data processed: "),
+                new Blocking("FILE_OPERATION", 1500, 1500, "File operation completed: "),
+                new Async("API_CALL", 500, 1000, "API call successful: "),
+                new Async("NOTIFICATION", 300, 500, "Notification sent: "),
+                new Blocking("REPORT_GENERATION", 2000, 3000, "Report generated: "),
+                new DefaultExecutor()
+        );
+    }
+
+    private static long latency(long minMillis, int jitterMillis) {
+        return minMillis + ThreadLocalRandom.current().nextInt(jitterMillis);
+    }
+
+    /**
+     * 阻塞型：在执行线程上休眠
+     */
+    private static final class Blocking implements TaskExecutor {
+        private final String taskType;
+        private final long minMillis;
+        private final int jitterMillis;
+        private final String resultPrefix;
+
+        Blocking(String taskType, long minMillis, int jitterMillis, String resultPrefix) {
+            this.taskType = taskType;
+            this.minMillis = minMillis;
+            this.jitterMillis = jitterMillis;
+            this.resultPrefix = resultPrefix;
+        }
+
+        @Override
+        public String taskType() {
+            return taskType;
+        }
+
+        @Override
+        public String execute(Task task) throws InterruptedException {
+            Thread.sleep(latency(minMillis, jitterMillis));
+            return resultPrefix + task.getTaskData();
+        }
+    }
+
+    /**
+     * 异步型：由定时器在模拟的延迟后完成结果，结果被取消时同时取消定时；支持批量执行
+     */
+    private static final class Async implements TaskExecutor {
+        private final String taskType;
+        private final long minMillis;
+        private final int jitterMillis;
+        private final String resultPrefix;
+
+        Async(String taskType, long minMillis, int jitterMillis, String resultPrefix) {
+            this.taskType = taskType;
+            this.minMillis = minMillis;
+            this.jitterMillis = jitterMillis;
+            this.resultPrefix = resultPrefix;
+        }
+
+        @Override
+        public String taskType() {
+            return taskType;
+        }
+
+        @Override
+        public Mode mode() {
+            return Mode.ASYNC;
+        }
+
+        @Override
+        public CompletionStage<String> executeAsync(Task task) {
+            CompletableFuture<String> result = new CompletableFuture<>();
+            ScheduledFuture<?> timer = LATENCY_TIMER.schedule(
+                    () -> result.complete(resultPrefix + task.getTaskData()),
+                    latency(minMillis, jitterMillis), TimeUnit.MILLISECONDS);
+            result.whenComplete((value, error) -> timer.cancel(false));
+            return result;
+        }
+
+        @Override
+        public boolean supportsBatching() {
+            return true;
+        }
+
+        @Override
+        public CompletionStage<Map<String, String>> executeBatchAsync(List<Task> tasks) {
+            CompletableFuture<Map<String, String>> result = new CompletableFuture<>();
+            ScheduledFuture<?> timer = LATENCY_TIMER.schedule(() -> {
+                Map<String, String> results = new HashMap<>();
+                for (Task task : tasks) {
+                    results.put(task.getTaskId(), resultPrefix + task.getTaskData());
+                }
+                result.complete(results);
+            }, latency(minMillis, jitterMillis), TimeUnit.MILLISECONDS);
+            result.whenComplete((value, error) -> timer.cancel(false));
+            return result;
+        }
+    }
+
+    /**
+     * 未注册类型的任务
+     */
+    private static final class DefaultExecutor implements TaskExecutor {
+        @Override
+        public String taskType() {
+            return TaskSystemSettings.DEFAULT_POOL;
+        }
+
+        @Override
+        public String execute(Task task) throws InterruptedException {
+            Thread.sleep(1000);
+            return "Task processed: " + task.getTaskName();
+        }
+    }
+}
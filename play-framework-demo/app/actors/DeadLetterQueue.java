@@ -0,0 +1,69 @@
+package actors;
+
+import models.Task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 死信队列：重试耗尽或被重试预算拒绝的任务，保留完整的输入数据以便重放
+ * 按进入顺序保存，超过容量时丢弃最早的任务。
+ * 非线程安全，由TaskManagerActor独占访问
+ */
+class DeadLetterQueue {
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Task> entries = new LinkedHashMap<>();
+    private long droppedCount = 0;
+
+    DeadLetterQueue(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    void add(Task task) {
+        entries.remove(task.getTaskId());
+        entries.put(task.getTaskId(), task);
+        if (entries.size() > maxEntries) {
+            Iterator<String> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            droppedCount++;
+        }
+    }
+
+    Task get(String taskId) {
+        return entries.get(taskId);
+    }
+
+    Task remove(String taskId) {
+        return entries.remove(taskId);
+    }
+
+    /**
+     * 按进入顺序返回指定类型（为null时不限类型）的任务
+     */
+    List<Task> list(String taskType) {
+        List<Task> result = new ArrayList<>();
+        for (Task task : entries.values()) {
+            if (taskType == null || taskType.equals(task.getTaskType())) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    Collection<Task> values() {
+        return entries.values();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getDroppedCount() {
+        return droppedCount;
+    }
+}
@@ -0,0 +1,228 @@
+package actors;
+
+import models.Task;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * 按租户公平调度的待处理队列
+ * 租户之间采用差额轮询（Deficit Round Robin）：有任务排队的租户依次轮转，每轮可出队的任务数等于其权重，
+ * 某个租户提交再多任务也只能占用与权重成比例的执行机会；租户内部按优先级出队，同优先级先进先出。
+ * 老化：任务每排队 agingMillis 相当于提升一级优先级，低优先级任务不会被源源不断的高优先级任务无限期压后。
+ * 已取消的任务惰性删除（出队时跳过）。
+ * 暂停派发的任务类型（熔断中）的任务出队时被搁置，仍计入队列大小，恢复该类型后按原来的次序重新参与出队。
+ * 非线程安全，由TaskManagerActor独占访问
+ */
+class FairTaskQueue {
+
+    /**
+     * 匿名提交的任务归入该租户
+     */
+    static final String DEFAULT_TENANT = "default";
+
+    private static final class Entry {
+        final Task task;
+        // 越小越先出队：入队时间减去优先级折算的时长
+        final long rank;
+        final long seq;
+        final long enqueuedAt;
+
+        Entry(Task task, long rank, long seq, long enqueuedAt) {
+            this.task = task;
+            this.rank = rank;
+            this.seq = seq;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator.<Entry>comparingLong(e -> e.rank)
+            .thenComparingLong(e -> e.seq);
+
+    /**
+     * 单个租户的队列
+     */
+    private static final class TenantQueue {
+        final String tenant;
+        final int weight;
+        final PriorityQueue<Entry> entries = new PriorityQueue<>(ORDER);
+        // 本轮剩余可出队的任务数
+        int deficit;
+
+        TenantQueue(String tenant, int weight) {
+            this.tenant = tenant;
+            this.weight = weight;
+        }
+    }
+
+    private final long agingMillis;
+    private final Map<String, Integer> weights;
+
+    // 有任务排队的租户，队首为当前轮到的租户
+    private final Map<String, TenantQueue> tenants = new HashMap<>();
+    private final Deque<TenantQueue> rotation = new ArrayDeque<>();
+
+    // 暂停派发的任务类型 -> 被搁置的任务
+    private final Map<String, List<Entry>> held = new HashMap<>();
+
+    private long nextSeq;
+    private int entries;
+    // 已取消但仍留在队列中的任务数
+    private int cancelled;
+    // 最近一次出队的任务的入队时间
+    private long lastEnqueuedAt;
+
+    /**
+     * @param agingMillis 提升一级优先级所需的排队时间，小于等于0时严格按优先级出队
+     * @param weights     租户权重，未列出的租户权重为1
+     */
+    FairTaskQueue(long agingMillis, Map<String, Integer> weights) {
+        this.agingMillis = agingMillis;
+        this.weights = weights;
+    }
+
+    /**
+     * 任务所属的类型（暂停派发的单位），未指定类型的任务归入默认池
+     */
+    static String typeOf(Task task) {
+        return task.getTaskType() != null ? task.getTaskType() : TaskSystemSettings.DEFAULT_POOL;
+    }
+
+    void offer(Task task, long nowMillis) {
+        tenantQueue(task).entries.add(new Entry(task, rank(task, nowMillis), nextSeq++, nowMillis));
+        entries++;
+    }
+
+    /**
+     * 按差额轮询出队，跳过已取消的任务，队列为空时返回null
+     */
+    Task poll() {
+        return poll(null);
+    }
+
+    /**
+     * 按差额轮询出队，paused 判定为暂停派发的任务按类型搁置（仍计入队列大小），
+     * 直到 resume 该类型；没有可出队的任务时返回null
+     */
+    Task poll(Predicate<Task> paused) {
+        while (!rotation.isEmpty()) {
+            TenantQueue queue = rotation.peekFirst();
+            Entry entry = pollLive(queue, paused);
+            if (entry == null) {
+                rotation.pollFirst();
+                tenants.remove(queue.tenant);
+                continue;
+            }
+            if (queue.deficit == 0) {
+                queue.deficit = queue.weight;
+            }
+            queue.deficit--;
+            if (queue.entries.isEmpty()) {
+                rotation.pollFirst();
+                tenants.remove(queue.tenant);
+            } else if (queue.deficit == 0) {
+                // 本轮份额用完，轮到下一个租户
+                rotation.addLast(rotation.pollFirst());
+            }
+            lastEnqueuedAt = entry.enqueuedAt;
+            return entry.task;
+        }
+        return null;
+    }
+
+    /**
+     * 恢复派发某一类型：搁置的任务回到各自租户的队列，保持原来的优先级和入队时间，返回恢复的任务数
+     */
+    int resume(String taskType) {
+        List<Entry> resumed = held.remove(taskType);
+        if (resumed == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Entry entry : resumed) {
+            if (entry.task.getStatus() == Task.TaskStatus.CANCELLED) {
+                entries--;
+                cancelled--;
+                continue;
+            }
+            tenantQueue(entry.task).entries.add(entry);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 被搁置（暂停派发）的任务数
+     */
+    int heldSize() {
+        int count = 0;
+        for (List<Entry> list : held.values()) {
+            count += list.size();
+        }
+        return count;
+    }
+
+    /**
+     * 最近一次poll返回的任务的入队时间
+     */
+    long lastEnqueuedAt() {
+        return lastEnqueuedAt;
+    }
+
+    /**
+     * 标记一个排队中的任务已取消（调用方已把任务状态改为CANCELLED）
+     */
+    void markCancelled() {
+        cancelled++;
+    }
+
+    int size() {
+        return entries - cancelled;
+    }
+
+    /**
+     * 有任务排队的租户数
+     */
+    int tenantCount() {
+        return tenants.size();
+    }
+
+    private TenantQueue tenantQueue(Task task) {
+        String tenant = task.getTenant() != null ? task.getTenant() : DEFAULT_TENANT;
+        TenantQueue queue = tenants.get(tenant);
+        if (queue == null) {
+            queue = new TenantQueue(tenant, Math.max(1, weights.getOrDefault(tenant, 1)));
+            tenants.put(tenant, queue);
+            rotation.addLast(queue);
+        }
+        return queue;
+    }
+
+    private Entry pollLive(TenantQueue queue, Predicate<Task> paused) {
+        Entry entry;
+        while ((entry = queue.entries.poll()) != null) {
+            if (entry.task.getStatus() == Task.TaskStatus.CANCELLED) {
+                entries--;
+                cancelled--;
+            } else if (paused != null && paused.test(entry.task)) {
+                held.computeIfAbsent(typeOf(entry.task), t -> new ArrayList<>()).add(entry);
+            } else {
+                entries--;
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private long rank(Task task, long nowMillis) {
+        int level = task.getPriority() != null ? task.getPriority().ordinal() : Task.TaskPriority.NORMAL.ordinal();
+        return agingMillis > 0 ? nowMillis - level * agingMillis : -level;
+    }
+}
@@ -0,0 +1,118 @@
+package actors;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单个WebSocket连接的有界出站缓冲
+ * 客户端还没确认上一帧时，后续消息在这里排队，容量按帧数计算，溢出时按策略处理：
+ * DROP_OLDEST 丢弃最早的一帧；CONFLATE 同一主题只保留最新的一帧（原位置替换），
+ * 仍然溢出时丢弃最早的一帧；DISCONNECT 不再排队，由调用方断开连接。
+ * 非线程安全，由所属的 WebSocketActor 独占使用
+ */
+class OutboundBuffer {
+
+    /**
+     * 入队结果
+     */
+    enum Offer {
+        // 已排队
+        QUEUED,
+        // 替换了同一主题的旧帧
+        CONFLATED,
+        // 已排队，但为此丢弃了最早的一帧
+        DROPPED_OLDEST,
+        // 缓冲已满且策略为断开，消息未排队
+        OVERFLOW
+    }
+
+    /**
+     * 队列中的一帧，合并时原位替换消息
+     */
+    private static final class Entry {
+        private Object message;
+        private final String topic;
+
+        private Entry(Object message, String topic) {
+            this.message = message;
+            this.topic = topic;
+        }
+    }
+
+    private final int capacity;
+    private final TaskSystemSettings.WebSocketSettings.OverflowStrategy strategy;
+
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    // 主题 -> 队列中该主题的帧（只在 CONFLATE 策略下维护）
+    private final Map<String, Entry> latestByTopic = new HashMap<>();
+
+    OutboundBuffer(int capacity, TaskSystemSettings.WebSocketSettings.OverflowStrategy strategy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.strategy = strategy;
+    }
+
+    /**
+     * @param topic 消息的主题（只用于合并），没有主题时为null
+     */
+    Offer offer(Object message, String topic) {
+        boolean conflating = strategy == TaskSystemSettings.WebSocketSettings.OverflowStrategy.CONFLATE;
+        if (conflating && topic != null) {
+            Entry existing = latestByTopic.get(topic);
+            if (existing != null) {
+                existing.message = message;
+                return Offer.CONFLATED;
+            }
+        }
+
+        Offer result = Offer.QUEUED;
+        if (queue.size() >= capacity) {
+            if (strategy == TaskSystemSettings.WebSocketSettings.OverflowStrategy.DISCONNECT) {
+                return Offer.OVERFLOW;
+            }
+            forget(queue.pollFirst());
+            result = Offer.DROPPED_OLDEST;
+        }
+
+        Entry entry = new Entry(message, topic);
+        queue.addLast(entry);
+        if (conflating && topic != null) {
+            latestByTopic.put(topic, entry);
+        }
+        return result;
+    }
+
+    /**
+     * 取出最早的一帧，缓冲为空时返回null
+     */
+    Object poll() {
+        Entry entry = queue.pollFirst();
+        if (entry == null) {
+            return null;
+        }
+        forget(entry);
+        return entry.message;
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    void clear() {
+        queue.clear();
+        latestByTopic.clear();
+    }
+
+    private void forget(Entry entry) {
+        if (entry != null && entry.topic != null) {
+            latestByTopic.remove(entry.topic, entry);
+        }
+    }
+}
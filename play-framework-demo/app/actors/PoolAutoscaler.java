@@ -0,0 +1,121 @@
+package actors;
+
+/**
+ * Worker池伸缩决策器
+ * 根据到达率/实测吞吐、每种任务类型实测的执行时间（EWMA）和待处理队列深度计算目标Worker数：
+ *   目标 = 负载 × 平均执行时间（Little定律） + 队列深度 × 平均执行时间 / 目标清空时间
+ * 扩容需连续 scaleUpAfter 个周期超出当前规模，缩容需连续 scaleDownAfter 个周期低于当前规模
+ * 且每次只减少一个Worker，以此形成迟滞，避免池规模来回抖动
+ */
+class PoolAutoscaler {
+
+    private final TaskSystemSettings.PoolSettings pool;
+    private final TaskSystemSettings.AutoscalingSettings settings;
+
+    // 本周期内的到达数和完成数
+    private int arrivals = 0;
+    private int completions = 0;
+
+    // 指数加权移动平均
+    private double serviceMillis = -1;
+    private double arrivalRate = 0;
+    private double throughput = 0;
+
+    private int upStreak = 0;
+    private int downStreak = 0;
+
+    PoolAutoscaler(TaskSystemSettings.PoolSettings pool, TaskSystemSettings.AutoscalingSettings settings) {
+        this.pool = pool;
+        this.settings = settings;
+    }
+
+    void recordArrival() {
+        arrivals++;
+    }
+
+    void recordArrivals(int count) {
+        arrivals += count;
+    }
+
+    /**
+     * 记录一次完成及其执行耗时
+     */
+    void recordCompletion(long executionMillis) {
+        completions++;
+        if (executionMillis < 0) {
+            return;
+        }
+        serviceMillis = serviceMillis < 0
+                ? executionMillis
+                : ewma(serviceMillis, executionMillis);
+    }
+
+    /**
+     * 每个伸缩周期调用一次，返回建议的Worker数（等于当前值表示不调整）
+     */
+    int evaluate(int currentWorkers, int queueDepth, long intervalMillis) {
+        double seconds = Math.max(intervalMillis, 1) / 1000.0;
+        arrivalRate = ewma(arrivalRate, arrivals / seconds);
+        throughput = ewma(throughput, completions / seconds);
+        arrivals = 0;
+        completions = 0;
+
+        int desired = desiredWorkers(queueDepth);
+
+        if (desired > currentWorkers) {
+            downStreak = 0;
+            if (++upStreak >= settings.getScaleUpAfter()) {
+                upStreak = 0;
+                return desired;
+            }
+        } else if (desired < currentWorkers && queueDepth == 0) {
+            upStreak = 0;
+            if (++downStreak >= settings.getScaleDownAfter()) {
+                downStreak = 0;
+                return currentWorkers - 1;
+            }
+        } else {
+            upStreak = 0;
+            downStreak = 0;
+        }
+        return currentWorkers;
+    }
+
+    private int desiredWorkers(int queueDepth) {
+        if (serviceMillis < 0) {
+            // 尚无执行时间样本：有积压时先扩到上限的一半，否则保持下限
+            return queueDepth > 0
+                    ? clamp((pool.getMinWorkers() + pool.getMaxWorkers() + 1) / 2)
+                    : pool.getMinWorkers();
+        }
+
+        double serviceSeconds = serviceMillis / 1000.0;
+        double drainSeconds = Math.max(settings.getTargetDrainTime().toMillis(), 1) / 1000.0;
+        // 重试也会占用Worker，因此取到达率与实测吞吐中的较大值作为负载
+        double load = Math.max(arrivalRate, throughput);
+        double concurrency = load * serviceSeconds
+                + queueDepth * serviceSeconds / drainSeconds;
+        return clamp((int) Math.ceil(concurrency / Math.max(pool.getCredits(), 1)));
+    }
+
+    private int clamp(int workers) {
+        return Math.max(pool.getMinWorkers(), Math.min(pool.getMaxWorkers(), workers));
+    }
+
+    private double ewma(double previous, double sample) {
+        double alpha = settings.getEwmaAlpha();
+        return alpha * sample + (1 - alpha) * previous;
+    }
+
+    double getServiceMillis() {
+        return Math.max(serviceMillis, 0);
+    }
+
+    double getArrivalRate() {
+        return arrivalRate;
+    }
+
+    double getThroughput() {
+        return throughput;
+    }
+}
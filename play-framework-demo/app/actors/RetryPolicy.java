@@ -0,0 +1,71 @@
+package actors;
+
+/**
+ * 单一任务类型池的失败重试策略
+ * 第n次重试的退避时间为 min(maxBackoff, initialBackoff × multiplier^(n-1))，
+ * 再在 [d × (1 - jitter), d] 内随机取值，避免同时失败的任务在同一时刻一起重试。
+ * 同时维护该池的重试预算：每个首次执行的任务存入 ratio 个令牌，另按 minPerSecond 匀速补充，
+ * 每次重试消耗一个令牌，令牌不足时不再重试，使下游故障期间重试量不超过正常流量的固定比例
+ */
+class RetryPolicy {
+
+    private final TaskSystemSettings.RetrySettings settings;
+
+    private double tokens;
+    private long lastRefillMillis;
+
+    RetryPolicy(TaskSystemSettings.RetrySettings settings, long nowMillis) {
+        this.settings = settings;
+        this.tokens = Math.min(settings.getBudgetMaxTokens(), settings.getBudgetMinPerSecond());
+        this.lastRefillMillis = nowMillis;
+    }
+
+    /**
+     * 第 retryCount 次重试（从1开始）前的退避时间
+     *
+     * @param random [0, 1) 之间的随机数
+     */
+    long backoffMillis(int retryCount, double random) {
+        double backoff = settings.getInitialBackoff().toMillis()
+                * Math.pow(settings.getMultiplier(), Math.max(0, retryCount - 1));
+        backoff = Math.min(backoff, settings.getMaxBackoff().toMillis());
+        return Math.round(backoff * (1 - settings.getJitter() * random));
+    }
+
+    /**
+     * 首次执行的任务为预算存入令牌
+     */
+    void recordFirstAttempt() {
+        tokens = Math.min(settings.getBudgetMaxTokens(), tokens + settings.getBudgetRatio());
+    }
+
+    /**
+     * 尝试为一次重试消耗一个令牌，预算不足时返回false
+     */
+    boolean tryAcquireRetry(long nowMillis) {
+        refill(nowMillis);
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    double availableTokens(long nowMillis) {
+        refill(nowMillis);
+        return tokens;
+    }
+
+    TaskSystemSettings.RetrySettings getSettings() {
+        return settings;
+    }
+
+    private void refill(long nowMillis) {
+        long elapsed = nowMillis - lastRefillMillis;
+        if (elapsed > 0) {
+            tokens = Math.min(settings.getBudgetMaxTokens(),
+                    tokens + elapsed / 1000.0 * settings.getBudgetMinPerSecond());
+            lastRefillMillis = nowMillis;
+        }
+    }
+}
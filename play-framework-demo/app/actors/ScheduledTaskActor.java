@@ -1,33 +1,68 @@
 package actors;
 
 import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
 import akka.actor.Cancellable;
 import akka.actor.Props;
+import akka.actor.Status;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import models.Task;
 import scala.concurrent.duration.Duration;
+import utils.CronExpression;
+import utils.HashedTimingWheel;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 定时任务Actor
- * 展示如何使用Actor实现定时任务调度
+ * 展示如何使用Actor实现定时任务调度，同时负责延迟任务和cron周期任务：
+ * 所有待执行任务放在同一个哈希时间轮中，只用一个周期消息推进时间轮，
+ * 到期任务提交给任务管理器，不为单个任务创建Cancellable，也不阻塞调度线程
  */
 public class ScheduledTaskActor extends AbstractActor {
 
     private final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private final ActorRef taskManager;
+    private final TaskSystemSettings.SchedulerSettings settings;
+    private final HashedTimingWheel<ScheduleEntry> wheel;
+    private final Map<String, HashedTimingWheel.Timeout<ScheduleEntry>> schedules = new HashMap<>();
+
     private Cancellable scheduledTask;
+    private Cancellable wheelTick;
     private int executionCount = 0;
 
+    public ScheduledTaskActor(ActorRef taskManager, TaskSystemSettings.SchedulerSettings settings) {
+        this.taskManager = taskManager;
+        this.settings = settings;
+        this.wheel = new HashedTimingWheel<>(settings.getTick().toMillis(), settings.getWheelSize(),
+                System.currentTimeMillis());
+    }
+
     /**
-     * 创建Actor的Props
+     * 创建Actor的Props（不关联任务管理器，到期的定时任务只记录日志）
      */
     public static Props props() {
-        return Props.create(ScheduledTaskActor.class);
+        return props(null, TaskSystemSettings.SchedulerSettings.defaults());
+    }
+
+    /**
+     * 创建Actor的Props，到期的定时任务提交给 taskManager
+     */
+    public static Props props(ActorRef taskManager, TaskSystemSettings.SchedulerSettings settings) {
+        return Props.create(ScheduledTaskActor.class, taskManager, settings);
     }
 
     /**
@@ -49,6 +84,16 @@ public class ScheduledTaskActor extends AbstractActor {
                 getSelf()                                   // 发送者
         );
 
+        // 时间轮推进：所有延迟/周期任务共用这一个周期消息
+        wheelTick = getContext().getSystem().scheduler().scheduleWithFixedDelay(
+                settings.getTick(),
+                settings.getTick(),
+                getSelf(),
+                WheelTick.INSTANCE,
+                getContext().getDispatcher(),
+                getSelf()
+        );
+
         log.info("Scheduled task initialized: first run in 5 seconds, then every 10 seconds");
     }
 
@@ -61,6 +106,12 @@ public class ScheduledTaskActor extends AbstractActor {
             scheduledTask.cancel();
             log.info("Scheduled task cancelled");
         }
+        if (wheelTick != null) {
+            wheelTick.cancel();
+        }
+        if (!schedules.isEmpty()) {
+            log.warning("ScheduledTaskActor stopped with {} pending schedules", schedules.size());
+        }
         log.info("ScheduledTaskActor {} stopped, executed {} times", getSelf().path(), executionCount);
         super.postStop();
     }
@@ -72,6 +123,11 @@ public class ScheduledTaskActor extends AbstractActor {
     public Receive createReceive() {
         return receiveBuilder()
                 .match(TaskMessage.ScheduledTick.class, this::handleScheduledTick)
+                .match(TaskMessage.ScheduleTask.class, this::handleScheduleTask)
+                .match(TaskMessage.CancelSchedule.class, this::handleCancelSchedule)
+                .match(WheelTick.class, t -> handleWheelTick())
+                .match(TaskMessage.TaskStatusResponse.class, this::handleSubmitReply)
+                .match(TaskMessage.BatchAccepted.class, this::handleBatchReply)
                 .matchAny(o -> log.warning("Received unknown message: {}", o))
                 .build();
     }
@@ -95,6 +151,7 @@ public class ScheduledTaskActor extends AbstractActor {
 
     /**
      * 执行定时任务的业务逻辑
+     * 这里运行在Actor的消息处理线程上，耗时的工作应交给任务管理器执行，而不是在此阻塞
      */
     private void performScheduledTask() {
         // 这里可以添加实际的定时任务逻辑
@@ -105,15 +162,139 @@ public class ScheduledTaskActor extends AbstractActor {
         // - 健康检查
         // - 发送通知
 
-        log.info("Performing scheduled task logic...");
+        log.info("Performing scheduled task logic, {} pending schedules", schedules.size());
+    }
 
-        // 模拟任务处理
+    /**
+     * 登记延迟或周期任务，回复TaskScheduled；cron表达式无效时回复Status.Failure
+     */
+    private void handleScheduleTask(TaskMessage.ScheduleTask message) {
+        long now = System.currentTimeMillis();
+        CronExpression cron;
+        long runAt;
         try {
-            Thread.sleep(1000);
-            log.info("Scheduled task logic completed successfully");
-        } catch (InterruptedException e) {
-            log.error(e, "Scheduled task execution interrupted");
-            Thread.currentThread().interrupt();
+            cron = message.getCron() != null ? CronExpression.parse(message.getCron()) : null;
+            runAt = cron != null ? nextCronRun(cron, now) : Math.max(message.getRunAtMillis(), now);
+        } catch (IllegalArgumentException e) {
+            getSender().tell(new Status.Failure(e), getSelf());
+            return;
+        }
+
+        String scheduleId = "sched-" + UUID.randomUUID().toString().substring(0, 8);
+        ScheduleEntry entry = new ScheduleEntry(scheduleId, message.getTask(), cron);
+        schedules.put(scheduleId, wheel.schedule(entry, runAt));
+
+        log.info("Task {} scheduled as {} at {}", message.getTask().getTaskId(), scheduleId, Instant.ofEpochMilli(runAt));
+        getSender().tell(new TaskMessage.TaskScheduled(scheduleId, message.getTask().getTaskId(), runAt), getSelf());
+    }
+
+    private void handleCancelSchedule(TaskMessage.CancelSchedule message) {
+        HashedTimingWheel.Timeout<ScheduleEntry> timeout = schedules.remove(message.getScheduleId());
+        if (timeout != null && wheel.cancel(timeout)) {
+            log.info("Schedule {} cancelled", message.getScheduleId());
+            getSender().tell(new TaskMessage.TaskStatusResponse(
+                    message.getScheduleId(), "CANCELLED", "Schedule cancelled"), getSelf());
+        } else {
+            getSender().tell(new TaskMessage.TaskStatusResponse(
+                    message.getScheduleId(), "NOT_FOUND", "Schedule not found"), getSelf());
+        }
+    }
+
+    /**
+     * 推进时间轮，把到期任务提交给任务管理器：
+     * 同一刻度到期的多个任务合并成一个SubmitBatch；周期任务计算下一次触发时间后重新放入时间轮；
+     * 带相对超时的任务在此时计算截止时间
+     */
+    private void handleWheelTick() {
+        long now = System.currentTimeMillis();
+        List<ScheduleEntry> due = wheel.advance(now);
+        if (due.isEmpty()) {
+            return;
+        }
+
+        List<Task> tasks = new ArrayList<>(due.size());
+        LocalDateTime releasedAt = LocalDateTime.now();
+        for (ScheduleEntry entry : due) {
+            schedules.remove(entry.scheduleId);
+            if (entry.cron == null) {
+                // 相对超时从到期执行时开始计算
+                entry.template.startTimeout(releasedAt);
+                tasks.add(entry.template);
+                continue;
+            }
+            entry.runs++;
+            tasks.add(copyForRun(entry.template, entry.runs, releasedAt));
+            schedules.put(entry.scheduleId, wheel.schedule(entry, nextCronRun(entry.cron, now)));
         }
+
+        if (taskManager == null) {
+            log.info("{} scheduled tasks due, no task manager attached", tasks.size());
+            return;
+        }
+        log.debug("Releasing {} scheduled tasks", tasks.size());
+        if (tasks.size() == 1) {
+            taskManager.tell(tasks.get(0), getSelf());
+        } else {
+            taskManager.tell(new TaskMessage.SubmitBatch(tasks), getSelf());
+        }
+    }
+
+    private void handleSubmitReply(TaskMessage.TaskStatusResponse response) {
+        if ("REJECTED".equals(response.getStatus())) {
+            log.warning("Scheduled task {} rejected: {}", response.getTaskId(), response.getMessage());
+        }
+    }
+
+    private void handleBatchReply(TaskMessage.BatchAccepted reply) {
+        if (!reply.getRejectedTaskIds().isEmpty()) {
+            log.warning("{} scheduled tasks rejected: {}", reply.getRejectedTaskIds().size(), reply.getRejectedTaskIds());
+        }
+    }
+
+    private static long nextCronRun(CronExpression cron, long afterMillis) {
+        ZonedDateTime after = Instant.ofEpochMilli(afterMillis).atZone(ZoneId.systemDefault());
+        return cron.next(after).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 周期任务每次触发生成一个新任务，带上模板的所有任务选项：taskId和幂等键追加执行序号
+     * （每次执行各自去重，不会被当作上一次执行的重复提交），相对超时从本次触发时开始计算
+     */
+    static Task copyForRun(Task template, int run, LocalDateTime runAt) {
+        Task task = new Task(template.getTaskId() + "-" + run, template.getTaskName(), template.getTaskType(),
+                template.getTaskData(), template.getPriority());
+        task.setMaxRetries(template.getMaxRetries());
+        task.setTenant(template.getTenant());
+        task.setCoalesce(template.isCoalesce());
+        if (template.getIdempotencyKey() != null) {
+            task.setIdempotencyKey(template.getIdempotencyKey() + "-" + run);
+        }
+        task.setDeadline(template.getDeadline());
+        task.setTimeoutMillis(template.getTimeoutMillis());
+        task.startTimeout(runAt);
+        return task;
+    }
+
+    /**
+     * 时间轮中的条目
+     */
+    private static final class ScheduleEntry {
+        final String scheduleId;
+        final Task template;
+        final CronExpression cron;
+        int runs;
+
+        ScheduleEntry(String scheduleId, Task template, CronExpression cron) {
+            this.scheduleId = scheduleId;
+            this.template = template;
+            this.cron = cron;
+        }
+    }
+
+    /**
+     * 推进时间轮的内部消息
+     */
+    private static final class WheelTick {
+        static final WheelTick INSTANCE = new WheelTick();
     }
 }
@@ -0,0 +1,132 @@
+package actors;
+
+import models.Task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已终结任务的磁盘归档
+ * 按taskId哈希分桶追加写入紧凑的二进制记录，查询时只需扫描一个桶；
+ * 单个桶超过上限后滚动为 .old 文件（覆盖更早的 .old），磁盘占用约为 2 × 桶数 × 单桶上限
+ * 非线程安全，由TaskArchiveActor独占访问
+ */
+public class TaskArchive {
+
+    private static final int RECORD_VERSION = 7;
+
+    private final File directory;
+    private final int buckets;
+    private final long maxBucketBytes;
+    private final int maxFieldChars;
+
+    public TaskArchive(File directory, int buckets, long maxBucketBytes, int maxFieldChars) throws IOException {
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("buckets must be positive");
+        }
+        this.directory = directory;
+        this.buckets = buckets;
+        this.maxBucketBytes = maxBucketBytes;
+        this.maxFieldChars = maxFieldChars;
+        Files.createDirectories(directory.toPath());
+    }
+
+    /**
+     * 批量归档，同一个桶的记录一次性追加
+     */
+    public void append(Collection<Task> tasks) throws IOException {
+        Map<Integer, List<Task>> byBucket = new HashMap<>();
+        for (Task task : tasks) {
+            byBucket.computeIfAbsent(bucketOf(task.getTaskId()), b -> new ArrayList<>()).add(task);
+        }
+
+        for (Map.Entry<Integer, List<Task>> entry : byBucket.entrySet()) {
+            File file = bucketFile(entry.getKey());
+            rotateIfFull(file);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file, true)))) {
+                for (Task task : entry.getValue()) {
+                    writeRecord(out, task);
+                }
+            }
+        }
+    }
+
+    /**
+     * 查找归档的任务，同一任务有多条记录时以最后写入的为准，找不到返回null
+     */
+    public Task find(String taskId) throws IOException {
+        File current = bucketFile(bucketOf(taskId));
+        Task found = scan(current, taskId);
+        return found != null ? found : scan(rotatedFile(current), taskId);
+    }
+
+    private Task scan(File file, String taskId) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+
+        Task found = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                Task task;
+                try {
+                    task = readRecord(in);
+                } catch (EOFException e) {
+                    // 文件尾部可能是进程崩溃时未写完的记录，忽略即可
+                    break;
+                }
+                if (taskId.equals(task.getTaskId())) {
+                    found = task;
+                }
+            }
+        }
+        return found;
+    }
+
+    private void rotateIfFull(File file) throws IOException {
+        if (file.length() < maxBucketBytes) {
+            return;
+        }
+        Files.move(file.toPath(), rotatedFile(file).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void writeRecord(DataOutputStream out, Task task) throws IOException {
+        out.writeByte(RECORD_VERSION);
+        TaskCodec.write(out, task, false, maxFieldChars);
+    }
+
+    private Task readRecord(DataInputStream in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != RECORD_VERSION) {
+            throw new IOException("Unsupported archive record version: " + version);
+        }
+        return TaskCodec.read(in);
+    }
+
+    private int bucketOf(String taskId) {
+        return Math.floorMod(taskId.hashCode(), buckets);
+    }
+
+    private File bucketFile(int bucket) {
+        return new File(directory, String.format("bucket-%04d.dat", bucket));
+    }
+
+    private static File rotatedFile(File file) {
+        return new File(file.getParentFile(), file.getName() + ".old");
+    }
+}
@@ -0,0 +1,103 @@
+package actors;
+
+import akka.actor.AbstractActor;
+import akka.actor.Props;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import models.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 任务归档Actor
+ * 在独立的阻塞调度器上执行磁盘读写，TaskManagerActor淘汰的任务由它写入归档，
+ * 内存中查不到的任务也由它从归档中查询并直接回复原始请求方
+ */
+public class TaskArchiveActor extends AbstractActor {
+
+    private final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
+
+    /**
+     * 批量归档消息
+     */
+    public static final class ArchiveTasks {
+        private final List<Task> tasks;
+
+        public ArchiveTasks(List<Task> tasks) {
+            this.tasks = Collections.unmodifiableList(new ArrayList<>(tasks));
+        }
+
+        public List<Task> getTasks() {
+            return tasks;
+        }
+    }
+
+    private final TaskSystemSettings.ArchiveSettings settings;
+    private TaskArchive archive;
+    private long archivedCount = 0;
+
+    public TaskArchiveActor(TaskSystemSettings.ArchiveSettings settings) {
+        this.settings = settings;
+    }
+
+    public static Props props(TaskSystemSettings.ArchiveSettings settings) {
+        return Props.create(TaskArchiveActor.class, settings);
+    }
+
+    @Override
+    public void preStart() throws Exception {
+        archive = new TaskArchive(
+                new File(settings.getDirectory()),
+                settings.getBuckets(),
+                settings.getMaxBucketBytes(),
+                settings.getMaxFieldChars()
+        );
+        log.info("TaskArchiveActor started (directory: {}, buckets: {})",
+                settings.getDirectory(), settings.getBuckets());
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(ArchiveTasks.class, this::handleArchive)
+                .match(TaskMessage.QueryTaskStatus.class, this::handleQuery)
+                .build();
+    }
+
+    private void handleArchive(ArchiveTasks message) {
+        try {
+            archive.append(message.getTasks());
+            archivedCount += message.getTasks().size();
+            log.debug("Archived {} tasks (total archived: {})", message.getTasks().size(), archivedCount);
+        } catch (IOException e) {
+            log.error(e, "Failed to archive {} tasks", message.getTasks().size());
+        }
+    }
+
+    private void handleQuery(TaskMessage.QueryTaskStatus query) {
+        Task task = null;
+        try {
+            task = archive.find(query.getTaskId());
+        } catch (IOException e) {
+            log.error(e, "Failed to read archived task {}", query.getTaskId());
+        }
+
+        if (task != null) {
+            getSender().tell(new TaskMessage.TaskStatusResponse(
+                    task.getTaskId(),
+                    task.getStatus().name(),
+                    "Task found: " + task.getResult()
+            ), getSelf());
+        } else {
+            getSender().tell(new TaskMessage.TaskStatusResponse(
+                    query.getTaskId(),
+                    "NOT_FOUND",
+                    "Task not found"
+            ), getSelf());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package actors;
+
+import models.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 重复任务合并
+ * 允许合并的任务按 taskType + taskData 分组，同一组中只有最先到达的主任务进入队列执行，
+ * 之后到达的相同任务作为跟随任务等待主任务结束，再复制其最终状态和结果。
+ * 非线程安全，由TaskManagerActor独占访问
+ */
+class TaskCoalescer {
+
+    // 合并键 -> 未终结的主任务
+    private final Map<String, Task> leaders = new HashMap<>();
+
+    // 主任务taskId -> 等待其结果的跟随任务（按到达顺序）
+    private final Map<String, List<Task>> followers = new HashMap<>();
+
+    // 跟随任务taskId -> 主任务taskId
+    private final Map<String, String> leaderOf = new HashMap<>();
+
+    static String keyOf(Task task) {
+        return task.getTaskType() + '\u0000' + task.getTaskData();
+    }
+
+    /**
+     * 与该任务相同的未终结主任务，没有时返回null
+     */
+    Task leaderFor(Task task) {
+        return leaders.get(keyOf(task));
+    }
+
+    void addLeader(Task task) {
+        leaders.put(keyOf(task), task);
+    }
+
+    void addFollower(Task leader, Task follower) {
+        followers.computeIfAbsent(leader.getTaskId(), id -> new ArrayList<>()).add(follower);
+        leaderOf.put(follower.getTaskId(), leader.getTaskId());
+    }
+
+    boolean isFollower(String taskId) {
+        return leaderOf.containsKey(taskId);
+    }
+
+    /**
+     * 移除一个跟随任务（例如被单独取消），不存在时返回false
+     */
+    boolean removeFollower(String taskId) {
+        String leaderId = leaderOf.remove(taskId);
+        if (leaderId == null) {
+            return false;
+        }
+        List<Task> waiting = followers.get(leaderId);
+        waiting.removeIf(task -> task.getTaskId().equals(taskId));
+        if (waiting.isEmpty()) {
+            followers.remove(leaderId);
+        }
+        return true;
+    }
+
+    /**
+     * 主任务已终结：不再作为合并目标，返回等待它的跟随任务；不是主任务时返回空列表
+     */
+    List<Task> release(Task task) {
+        String key = keyOf(task);
+        if (leaders.get(key) == task) {
+            leaders.remove(key);
+        }
+        List<Task> waiting = followers.remove(task.getTaskId());
+        if (waiting == null) {
+            return Collections.emptyList();
+        }
+        for (Task follower : waiting) {
+            leaderOf.remove(follower.getTaskId());
+        }
+        return waiting;
+    }
+
+    int followerCount() {
+        return leaderOf.size();
+    }
+
+    void clear() {
+        leaders.clear();
+        followers.clear();
+        leaderOf.clear();
+    }
+}
@@ -0,0 +1,133 @@
+package actors;
+
+import models.Task;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Task的紧凑二进制编码，供任务归档和任务日志共用
+ * 字符串按长度前缀的UTF-8写入（-1表示null），时间按ISO字符串写入
+ */
+final class TaskCodec {
+
+    private TaskCodec() {
+    }
+
+    /**
+     * @param includeData   是否写入taskData（归档不需要保留输入数据）
+     * @param maxFieldChars result和errorMessage最多保留的字符数，小于等于0表示不截断
+     */
+    static void write(DataOutput out, Task task, boolean includeData, int maxFieldChars) throws IOException {
+        writeString(out, task.getTaskId());
+        writeString(out, task.getTaskName());
+        writeString(out, task.getTaskType());
+        writeString(out, includeData ? task.getTaskData() : null);
+        writeString(out, task.getPriority() != null ? task.getPriority().name() : null);
+        writeString(out, task.getStatus() != null ? task.getStatus().name() : null);
+        writeTime(out, task.getCreatedAt());
+        writeTime(out, task.getStartedAt());
+        writeTime(out, task.getCompletedAt());
+        writeString(out, truncate(task.getResult(), maxFieldChars));
+        writeString(out, truncate(task.getErrorMessage(), maxFieldChars));
+        out.writeInt(task.getRetryCount());
+        out.writeInt(task.getMaxRetries());
+        writeTime(out, task.getDeadline());
+        writeString(out, task.getIdempotencyKey());
+        out.writeBoolean(task.isCoalesce());
+        writeInputs(out, includeData ? task.getInputs() : null);
+        writeString(out, task.getResultHandle());
+        writeString(out, task.getTenant());
+    }
+
+    static Task read(DataInput in) throws IOException {
+        Task task = new Task();
+        task.setTaskId(readString(in));
+        task.setTaskName(readString(in));
+        task.setTaskType(readString(in));
+        task.setTaskData(readString(in));
+        String priority = readString(in);
+        task.setPriority(priority != null ? Task.TaskPriority.valueOf(priority) : null);
+        String status = readString(in);
+        task.setStatus(status != null ? Task.TaskStatus.valueOf(status) : null);
+        task.setCreatedAt(readTime(in));
+        task.setStartedAt(readTime(in));
+        task.setCompletedAt(readTime(in));
+        task.setResult(readString(in));
+        task.setErrorMessage(readString(in));
+        task.setRetryCount(in.readInt());
+        task.setMaxRetries(in.readInt());
+        task.setDeadline(readTime(in));
+        task.setIdempotencyKey(readString(in));
+        task.setCoalesce(in.readBoolean());
+        task.setInputs(readInputs(in));
+        task.setResultHandle(readString(in));
+        task.setTenant(readString(in));
+        return task;
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInputs(DataOutput out, Map<String, String> inputs) throws IOException {
+        if (inputs == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(inputs.size());
+        for (Map.Entry<String, String> input : inputs.entrySet()) {
+            writeString(out, input.getKey());
+            writeString(out, input.getValue());
+        }
+    }
+
+    private static Map<String, String> readInputs(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        Map<String, String> inputs = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            inputs.put(readString(in), readString(in));
+        }
+        return inputs;
+    }
+
+    private static void writeTime(DataOutput out, LocalDateTime time) throws IOException {
+        writeString(out, time != null ? time.toString() : null);
+    }
+
+    private static LocalDateTime readTime(DataInput in) throws IOException {
+        String value = readString(in);
+        return value != null ? LocalDateTime.parse(value) : null;
+    }
+
+    private static String truncate(String value, int maxChars) {
+        if (value == null || maxChars <= 0 || value.length() <= maxChars) {
+            return value;
+        }
+        return value.substring(0, maxChars);
+    }
+}
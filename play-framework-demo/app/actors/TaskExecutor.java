@@ -0,0 +1,105 @@
+package actors;
+
+import models.Task;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 任务执行器SPI
+ * 每种任务类型对应一个执行器，通过Guice多重绑定（Multibinder&lt;TaskExecutor&gt;）注册，见 Module。
+ * 阻塞型执行器实现 {@link #execute(Task)}，由Worker提交到所属池的阻塞调度器上执行；
+ * 异步型执行器实现 {@link #executeAsync(Task)}，在Worker的线程上调用且必须立即返回，执行期间不占用线程。
+ * 支持批量的执行器另外实现对应的 executeBatch / executeBatchAsync，池开启微批时一次处理多个同类型任务。
+ * 输出很大的阻塞型执行器可以声明 {@link #streamsResult()} 并实现 {@link #executeTo(Task, OutputStream)}，
+ * 结果直接写入结果存储，不需要先拼成完整的String。
+ * 实现必须线程安全：同一个执行器会被多个Worker同时调用
+ */
+public interface TaskExecutor {
+
+    /**
+     * 执行方式
+     */
+    enum Mode {
+        BLOCKING,
+        ASYNC
+    }
+
+    /**
+     * 处理的任务类型，没有匹配执行器的任务交给 DEFAULT 类型的执行器
+     */
+    String taskType();
+
+    /**
+     * 执行方式，默认为阻塞型
+     */
+    default Mode mode() {
+        return Mode.BLOCKING;
+    }
+
+    /**
+     * 同时执行的任务数上限，按同名的Worker池生效，0表示只受池的Worker数和额度限制
+     */
+    default int maxConcurrency() {
+        return 0;
+    }
+
+    /**
+     * 是否支持把多个任务合并为一批执行（见 {@link #executeBatch(List)}）
+     */
+    default boolean supportsBatching() {
+        return false;
+    }
+
+    /**
+     * 是否以流的方式输出结果（见 {@link #executeTo(Task, OutputStream)}），只对阻塞型的单任务执行生效
+     */
+    default boolean streamsResult() {
+        return false;
+    }
+
+    /**
+     * 阻塞型执行，在池的阻塞调度器线程上调用，应响应线程中断（取消和截止时间通过中断实现）
+     */
+    default String execute(Task task) throws Exception {
+        throw new UnsupportedOperationException(taskType() + " executor does not support blocking execution");
+    }
+
+    /**
+     * 阻塞型流式执行，结果以UTF-8写入 out；超过内联阈值的部分直接写入结果存储。
+     * 调用约定同 {@link #execute(Task)}，不需要关闭 out，抛出异常时已写入的内容被丢弃
+     */
+    default void executeTo(Task task, OutputStream out) throws Exception {
+        throw new UnsupportedOperationException(taskType() + " executor does not support streaming execution");
+    }
+
+    /**
+     * 异步执行，不得阻塞调用线程；返回的结果被取消时应尽量停止执行
+     */
+    default CompletionStage<String> executeAsync(Task task) {
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(
+                new UnsupportedOperationException(taskType() + " executor does not support async execution"));
+        return failed;
+    }
+
+    /**
+     * 阻塞型批量执行，返回任务ID到结果的映射；映射中没有的任务按失败处理，抛出异常时整批失败
+     */
+    default Map<String, String> executeBatch(List<Task> tasks) throws Exception {
+        throw new UnsupportedOperationException(taskType() + " executor does not support batch execution");
+    }
+
+    /**
+     * 异步批量执行，结果约定同 {@link #executeBatch(List)}，不得阻塞调用线程
+     */
+    default CompletionStage<Map<String, String>> executeBatchAsync(List<Task> tasks) {
+        CompletableFuture<Map<String, String>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(
+                new UnsupportedOperationException(taskType() + " executor does not support batch execution"));
+        return failed;
+    }
+}
@@ -0,0 +1,64 @@
+package actors;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按任务类型查找执行器
+ * 以内置执行器为基础，注入的执行器覆盖同类型的内置执行器；
+ * 没有匹配执行器的任务交给 DEFAULT 类型的执行器。
+ * 创建后不可变，可被多个Worker共享
+ */
+public final class TaskExecutors {
+
+    private final Map<String, TaskExecutor> byType;
+    private final TaskExecutor fallback;
+
+    private TaskExecutors(Map<String, TaskExecutor> byType) {
+        this.byType = Collections.unmodifiableMap(byType);
+        this.fallback = byType.get(TaskSystemSettings.DEFAULT_POOL);
+    }
+
+    /**
+     * 只包含内置执行器
+     */
+    public static TaskExecutors builtIn() {
+        return withBuiltIns(Collections.emptySet());
+    }
+
+    /**
+     * 内置执行器加上自定义执行器，自定义执行器之间的类型不能重复
+     */
+    public static TaskExecutors withBuiltIns(Collection<? extends TaskExecutor> executors) {
+        Map<String, TaskExecutor> byType = new HashMap<>();
+        for (TaskExecutor executor : BuiltInTaskExecutors.all()) {
+            byType.put(executor.taskType(), executor);
+        }
+        Map<String, TaskExecutor> custom = new HashMap<>();
+        for (TaskExecutor executor : executors) {
+            TaskExecutor previous = custom.put(executor.taskType(), executor);
+            if (previous != null) {
+                throw new IllegalArgumentException("Multiple executors registered for task type "
+                        + executor.taskType() + ": " + previous.getClass().getName()
+                        + ", " + executor.getClass().getName());
+            }
+        }
+        byType.putAll(custom);
+        return new TaskExecutors(byType);
+    }
+
+    /**
+     * 任务类型对应的执行器，未注册的类型返回 DEFAULT 执行器
+     */
+    public TaskExecutor forType(String taskType) {
+        TaskExecutor executor = taskType != null ? byType.get(taskType) : null;
+        return executor != null ? executor : fallback;
+    }
+
+    public Set<String> taskTypes() {
+        return byType.keySet();
+    }
+}
@@ -0,0 +1,455 @@
+package actors;
+
+import models.Task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * 任务生命周期日志
+ * 事件追加写入本地日志段，由调用方批量刷盘（组提交）；每写入一定数量的事件后生成一次快照
+ * 并切换到新的日志段，旧日志段随即删除，因此重启时只需加载最新快照并重放其后的一个日志段，
+ * 恢复时间与历史总量无关。
+ * 每条记录格式：[长度][CRC32][类型][Task]，尾部不完整或校验失败的记录视为崩溃时未写完，恢复时丢弃。
+ * 非线程安全，由TaskManagerActor独占访问
+ */
+public class TaskJournal {
+
+    private static final byte ACCEPTED = 1;
+    private static final byte REQUEUED = 2;
+    private static final byte TERMINATED = 3;
+    private static final byte HANDED_OFF = 4;
+    private static final byte DEAD_LETTERED = 5;
+    private static final byte ADOPTED = 6;
+    private static final byte ADOPTED_DEAD_LETTER = 7;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.journal");
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.snap");
+
+    private final File directory;
+    private final boolean fsync;
+
+    private long segmentIndex;
+    private FileOutputStream segmentFile;
+    private DataOutputStream segment;
+    private int unflushedEvents = 0;
+    private int eventsSinceSnapshot = 0;
+
+    public TaskJournal(File directory, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        Files.createDirectories(directory.toPath());
+    }
+
+    /**
+     * 恢复得到的状态
+     */
+    public static class Recovery {
+        private final Map<String, Task> liveTasks = new LinkedHashMap<>();
+        private final Map<String, Task> terminalTasks = new LinkedHashMap<>();
+        private final Map<String, Task> deadLetters = new LinkedHashMap<>();
+        private long received;
+        private long completed;
+        private long failed;
+        private int replayedEvents;
+
+        /**
+         * 未终结的任务（按接收顺序）
+         */
+        public Map<String, Task> getLiveTasks() {
+            return liveTasks;
+        }
+
+        /**
+         * 已终结的任务（按完成顺序）
+         */
+        public Map<String, Task> getTerminalTasks() {
+            return terminalTasks;
+        }
+
+        /**
+         * 死信队列中的任务（按进入顺序，保留输入数据）
+         */
+        public Map<String, Task> getDeadLetters() {
+            return deadLetters;
+        }
+
+        public long getReceived() {
+            return received;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public int getReplayedEvents() {
+            return replayedEvents;
+        }
+
+        private void apply(byte type, Task task) {
+            switch (type) {
+                case ACCEPTED:
+                    received++;
+                    liveTasks.put(task.getTaskId(), task);
+                    // 重放的死信任务重新被接收
+                    terminalTasks.remove(task.getTaskId());
+                    deadLetters.remove(task.getTaskId());
+                    break;
+                case REQUEUED:
+                    failed++;
+                    liveTasks.put(task.getTaskId(), task);
+                    break;
+                case TERMINATED:
+                    if (task.getStatus() == Task.TaskStatus.COMPLETED) {
+                        completed++;
+                    } else if (task.getStatus() == Task.TaskStatus.FAILED) {
+                        failed++;
+                    }
+                    liveTasks.remove(task.getTaskId());
+                    terminalTasks.remove(task.getTaskId());
+                    terminalTasks.put(task.getTaskId(), task);
+                    break;
+                case DEAD_LETTERED:
+                    failed++;
+                    liveTasks.remove(task.getTaskId());
+                    terminalTasks.remove(task.getTaskId());
+                    terminalTasks.put(task.getTaskId(), task);
+                    deadLetters.remove(task.getTaskId());
+                    deadLetters.put(task.getTaskId(), task);
+                    break;
+                case ADOPTED:
+                    terminalTasks.remove(task.getTaskId());
+                    terminalTasks.put(task.getTaskId(), task);
+                    break;
+                case ADOPTED_DEAD_LETTER:
+                    deadLetters.remove(task.getTaskId());
+                    deadLetters.put(task.getTaskId(), task);
+                    break;
+                case HANDED_OFF:
+                    liveTasks.remove(task.getTaskId());
+                    terminalTasks.remove(task.getTaskId());
+                    deadLetters.remove(task.getTaskId());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 加载最新的有效快照并重放其后的日志段，然后打开新的日志段用于写入
+     * 必须在写入任何事件之前调用一次
+     */
+    public Recovery recover() throws IOException {
+        TreeMap<Long, File> snapshots = list(SNAPSHOT_NAME);
+        TreeMap<Long, File> segments = list(SEGMENT_NAME);
+
+        Recovery recovery = new Recovery();
+        long replayFrom = 0;
+        for (Map.Entry<Long, File> snapshot : snapshots.descendingMap().entrySet()) {
+            if (loadSnapshot(snapshot.getValue(), recovery)) {
+                replayFrom = snapshot.getKey();
+                break;
+            }
+            // 快照损坏（例如写入过程中崩溃）时退回到更早的快照
+            recovery = new Recovery();
+        }
+
+        for (Map.Entry<Long, File> entry : segments.tailMap(replayFrom, true).entrySet()) {
+            replaySegment(entry.getValue(), recovery);
+        }
+
+        long lastIndex = Math.max(replayFrom, segments.isEmpty() ? 0 : segments.lastKey());
+        openSegment(lastIndex + 1);
+        return recovery;
+    }
+
+    public void append(Task task) throws IOException {
+        writeEvent(ACCEPTED, task);
+    }
+
+    public void appendRequeued(Task task) throws IOException {
+        writeEvent(REQUEUED, task);
+    }
+
+    public void appendTerminated(Task task) throws IOException {
+        writeEvent(TERMINATED, task);
+    }
+
+    /**
+     * 任务失败后进入死信队列（保留输入数据以便重放）
+     */
+    public void appendDeadLettered(Task task) throws IOException {
+        writeEvent(DEAD_LETTERED, task);
+    }
+
+    /**
+     * 分片迁移时从其他节点接管的已终结任务或死信（不计入完成、失败计数）
+     */
+    public void appendAdopted(Task task, boolean deadLetter) throws IOException {
+        writeEvent(deadLetter ? ADOPTED_DEAD_LETTER : ADOPTED, task);
+    }
+
+    /**
+     * 任务（未完成的、已终结的或死信）已移交给其他节点上的管理器，本地不再负责
+     */
+    public void appendHandedOff(Task task) throws IOException {
+        writeEvent(HANDED_OFF, task);
+    }
+
+    /**
+     * 把缓冲的事件写入文件并（按配置）fsync，返回本次刷盘的事件数
+     */
+    public int flush() throws IOException {
+        if (unflushedEvents == 0) {
+            return 0;
+        }
+        segment.flush();
+        if (fsync) {
+            segmentFile.getChannel().force(false);
+        }
+        int flushed = unflushedEvents;
+        unflushedEvents = 0;
+        return flushed;
+    }
+
+    public int getEventsSinceSnapshot() {
+        return eventsSinceSnapshot;
+    }
+
+    /**
+     * 写入快照：切换到新的日志段后写入快照，并删除快照已覆盖的旧日志段和旧快照
+     */
+    public void snapshot(Collection<Task> liveTasks, Collection<Task> terminalTasks,
+                         long received, long completed, long failed) throws IOException {
+        snapshot(liveTasks, terminalTasks, Collections.emptyList(), received, completed, failed);
+    }
+
+    /**
+     * 写入快照，死信任务写在末尾（较早的快照没有这一段，加载时按空处理）
+     */
+    public void snapshot(Collection<Task> liveTasks, Collection<Task> terminalTasks, Collection<Task> deadLetters,
+                         long received, long completed, long failed) throws IOException {
+        writeSnapshot(rotate(), liveTasks, terminalTasks, deadLetters, received, completed, failed);
+    }
+
+    /**
+     * 快照的第一步：刷盘并切换到新的日志段，返回新日志段的序号，调用方随后用该序号写入此刻的状态。
+     * 快照写完之前崩溃时，恢复使用上一个快照并重放其后的全部日志段（包括刚关闭的这一段）
+     */
+    public long rotate() throws IOException {
+        flush();
+        long nextIndex = segmentIndex + 1;
+        closeSegment();
+        openSegment(nextIndex);
+        eventsSinceSnapshot = 0;
+        return nextIndex;
+    }
+
+    /**
+     * 快照的第二步：以临时文件+原子重命名的方式写入序号为 index 的快照，落盘后删除它覆盖的旧日志段和旧快照。
+     * 只访问快照文件和已关闭的日志段，可以在其他线程上与事件追加同时进行（同一时间只写一个快照）
+     */
+    public void writeSnapshot(long index, Collection<Task> liveTasks, Collection<Task> terminalTasks,
+                              Collection<Task> deadLetters, long received, long completed, long failed)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(received);
+        out.writeLong(completed);
+        out.writeLong(failed);
+        out.writeInt(liveTasks.size());
+        for (Task task : liveTasks) {
+            TaskCodec.write(out, task, true, 0);
+        }
+        out.writeInt(terminalTasks.size());
+        for (Task task : terminalTasks) {
+            TaskCodec.write(out, task, false, 0);
+        }
+        out.writeInt(deadLetters.size());
+        for (Task task : deadLetters) {
+            TaskCodec.write(out, task, true, 0);
+        }
+        out.flush();
+
+        File target = new File(directory, String.format("snapshot-%012d.snap", index));
+        File temp = new File(directory, target.getName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp)) {
+            DataOutputStream framed = new DataOutputStream(new BufferedOutputStream(file));
+            writeFrame(framed, bytes.toByteArray());
+            framed.flush();
+            file.getChannel().force(true);
+        }
+        Files.move(temp.toPath(), target.toPath(),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (Map.Entry<Long, File> old : list(SEGMENT_NAME).headMap(index, false).entrySet()) {
+            Files.deleteIfExists(old.getValue().toPath());
+        }
+        for (Map.Entry<Long, File> old : list(SNAPSHOT_NAME).headMap(index, false).entrySet()) {
+            Files.deleteIfExists(old.getValue().toPath());
+        }
+    }
+
+    public void close() throws IOException {
+        flush();
+        closeSegment();
+    }
+
+    /**
+     * 写入失败后放弃日志：不再刷盘，关闭当前日志段，缓冲中尚未写入的事件丢弃
+     */
+    public void abort() {
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            // 缓冲中的事件本来就无法写入
+        } finally {
+            segment = null;
+            segmentFile = null;
+        }
+    }
+
+    private void writeEvent(byte type, Task task) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        // 只有仍需执行的任务才需要保留输入数据
+        TaskCodec.write(out, task,
+                type == ACCEPTED || type == REQUEUED || type == DEAD_LETTERED || type == ADOPTED_DEAD_LETTER, 0);
+        out.flush();
+
+        writeFrame(segment, bytes.toByteArray());
+        unflushedEvents++;
+        eventsSinceSnapshot++;
+    }
+
+    private void replaySegment(File file, Recovery recovery) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] payload;
+            while ((payload = readFrame(in)) != null) {
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = record.readByte();
+                recovery.apply(type, TaskCodec.read(record));
+                recovery.replayedEvents++;
+            }
+        }
+    }
+
+    private boolean loadSnapshot(File file, Recovery recovery) throws IOException {
+        byte[] payload;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            payload = readFrame(in);
+        }
+        if (payload == null) {
+            return false;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        recovery.received = in.readLong();
+        recovery.completed = in.readLong();
+        recovery.failed = in.readLong();
+        int live = in.readInt();
+        for (int i = 0; i < live; i++) {
+            Task task = TaskCodec.read(in);
+            recovery.liveTasks.put(task.getTaskId(), task);
+        }
+        int terminal = in.readInt();
+        for (int i = 0; i < terminal; i++) {
+            Task task = TaskCodec.read(in);
+            recovery.terminalTasks.put(task.getTaskId(), task);
+        }
+        if (in.available() > 0) {
+            int deadLetters = in.readInt();
+            for (int i = 0; i < deadLetters; i++) {
+                Task task = TaskCodec.read(in);
+                recovery.deadLetters.put(task.getTaskId(), task);
+                recovery.terminalTasks.put(task.getTaskId(), task);
+            }
+        }
+        return true;
+    }
+
+    private static void writeFrame(DataOutputStream out, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+    }
+
+    /**
+     * 读取一条记录，到达文件尾或记录不完整、校验失败时返回null
+     */
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int expectedCrc = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            return (int) crc.getValue() == expectedCrc ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private void openSegment(long index) throws IOException {
+        segmentIndex = index;
+        segmentFile = new FileOutputStream(new File(directory, String.format("segment-%012d.journal", index)), true);
+        segment = new DataOutputStream(new BufferedOutputStream(segmentFile, 64 * 1024));
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment != null) {
+            segment.close();
+            segment = null;
+            segmentFile = null;
+        }
+    }
+
+    private TreeMap<Long, File> list(Pattern pattern) {
+        TreeMap<Long, File> files = new TreeMap<>();
+        File[] candidates = directory.listFiles();
+        if (candidates == null) {
+            return files;
+        }
+        for (File file : candidates) {
+            Matcher matcher = pattern.matcher(file.getName());
+            if (matcher.matches()) {
+                files.put(Long.parseLong(matcher.group(1)), file);
+            }
+        }
+        return files;
+    }
+}
@@ -2,50 +2,342 @@ package actors;
 
 import akka.actor.AbstractActor;
 import akka.actor.ActorRef;
+import akka.actor.Cancellable;
 import akka.actor.OneForOneStrategy;
 import akka.actor.Props;
+import akka.actor.Status;
 import akka.actor.SupervisorStrategy;
+import akka.cluster.sharding.ClusterSharding;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import akka.japi.pf.DeciderBuilder;
 import models.Task;
 import scala.concurrent.duration.Duration;
+import utils.BoundedTtlCache;
+import utils.HashedTimingWheel;
+import utils.MetricsRegistry;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 任务管理器Actor
  * 作为监督者管理多个TaskWorkerActor，实现任务调度和分发
+ * 每种任务类型拥有独立的Worker池、阻塞调度器和有界队列（舱壁隔离）
  */
 public class TaskManagerActor extends AbstractActor {
 
     private final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
 
-    // Worker池
-    private final List<ActorRef> workers = new ArrayList<>();
-    private final int workerCount;
-    private int currentWorkerIndex = 0;
+    // 每个Worker默认的并发额度（Worker内部串行执行，额度为1即可保证不在邮箱中堆积）
+    private static final int DEFAULT_WORKER_CREDITS = 1;
 
-    // 任务存储
+    // 攒够该数量的淘汰任务就立即写入归档，其余在清理周期或查询未命中时写入
+    private static final int ARCHIVE_BATCH_SIZE = 256;
+
+    // 等待空位的批次最长等待时间，超时后剩余任务按拒绝处理（需小于调用方的ask超时）
+    private static final long MAX_PARK_MILLIS = 30_000;
+
+    /**
+     * 集群分片中的实体类型名
+     */
+    public static final String SHARD_TYPE_NAME = "TaskManager";
+
+    /**
+     * 分片迁移时发给实体的停止消息：把未完成的任务交回分片区域，由新的所属节点接管
+     */
+    public static final class HandOff {
+        public static final HandOff INSTANCE = new HandOff();
+
+        private HandOff() {
+        }
+    }
+
+    /**
+     * 自动伸缩周期消息（仅发给自己）
+     */
+    private static final class AutoscaleTick {
+        static final AutoscaleTick INSTANCE = new AutoscaleTick();
+    }
+
+    /**
+     * 刷写任务日志（仅发给自己）
+     * 在第一次写入事件时发出，处理它之前邮箱中已有的消息产生的事件会在同一次刷盘中提交
+     */
+    private static final class FlushJournal {
+        static final FlushJournal INSTANCE = new FlushJournal();
+    }
+
+    /**
+     * 后台快照写入结束（仅发给自己）
+     */
+    private static final class SnapshotWritten {
+        final long index;
+        final int live;
+        final int terminal;
+        final IOException error;
+
+        SnapshotWritten(long index, int live, int terminal, IOException error) {
+            this.index = index;
+            this.live = live;
+            this.terminal = terminal;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 等待日志刷盘后才发送的回复
+     */
+    private static final class PendingReply {
+        final ActorRef recipient;
+        final Object message;
+
+        PendingReply(ActorRef recipient, Object message) {
+            this.recipient = recipient;
+            this.message = message;
+        }
+    }
+
+    /**
+     * 等待队列空位的批次（流式提交）
+     * 按到达顺序逐个接收，全部接收或等待超时后才回复，调用方在回复前不会发送下一批，以此形成背压
+     */
+    private static final class ParkedBatch {
+        final ActorRef replyTo;
+        final List<Task> remaining;
+        final List<String> rejectedTaskIds = new ArrayList<>();
+        final long parkedAt;
+        int accepted = 0;
+
+        ParkedBatch(ActorRef replyTo, List<Task> tasks, long parkedAt) {
+            this.replyTo = replyTo;
+            this.remaining = new LinkedList<>(tasks);
+            this.parkedAt = parkedAt;
+        }
+    }
+
+    /**
+     * 推进重试时间轮的周期消息（仅发给自己）
+     */
+    private static final class RetryTick {
+        static final RetryTick INSTANCE = new RetryTick();
+    }
+
+    /**
+     * 熔断到期，恢复派发某一任务类型（仅发给自己）
+     */
+    private static final class ResumeTaskType {
+        final String taskType;
+
+        ResumeTaskType(String taskType) {
+            this.taskType = taskType;
+        }
+    }
+
+    /**
+     * 凑批等待到期，派发该池中未凑满的批（仅发给自己）
+     */
+    private static final class BatchLingerElapsed {
+        final String poolName;
+
+        BatchLingerElapsed(String poolName) {
+            this.poolName = poolName;
+        }
+    }
+
+    /**
+     * 作为一批分配出去、尚未全部终结的任务，批中最后一个任务终结时才归还Worker的额度
+     */
+    private static final class InFlightBatch {
+        int remaining;
+
+        InFlightBatch(int remaining) {
+            this.remaining = remaining;
+        }
+    }
+
+    /**
+     * 已终结任务的过期清理周期消息（仅发给自己）
+     */
+    private static final class RetentionTick {
+        static final RetentionTick INSTANCE = new RetentionTick();
+    }
+
+    private final TaskSystemSettings settings;
+
+    // 作为集群分片实体运行时，日志和归档目录按实体（分片）区分
+    private final boolean sharded;
+    private Cancellable autoscaleTask;
+    private Cancellable retentionTask;
+    private Cancellable retryTask;
+
+    // Worker池：池名称（任务类型） -> 池
+    private final Map<String, WorkerPool> pools = new LinkedHashMap<>();
+    private final Map<ActorRef, WorkerPool> workerPools = new HashMap<>();
+
+    // 在途任务：taskId -> 执行该任务的Worker
+    private final Map<String, ActorRef> inFlightTasks = new HashMap<>();
+    // 以批分配的在途任务：taskId -> 所在的批
+    private final Map<String, InFlightBatch> inFlightBatches = new HashMap<>();
+
+    // 等待退避结束的重试任务，到期后重新入队
+    private final HashedTimingWheel<Task> retryWheel;
+    private final Map<String, HashedTimingWheel.Timeout<Task>> retryTimers = new HashMap<>();
+
+    // 按任务类型的熔断器，以及熔断中、已安排恢复派发的任务类型
+    private final Map<String, TaskTypeCircuitBreaker> breakers = new HashMap<>();
+    private final Set<String> pausedTypes = new HashSet<>();
+
+    // 重试耗尽或被重试预算拒绝的任务
+    private final DeadLetterQueue deadLetters;
+
+    // 幂等键 -> 首次提交的taskId，在时间窗口内重复提交的任务不再执行
+    private final BoundedTtlCache<String, IdempotencyRecord> idempotencyIndex;
+
+    // 合并执行的重复任务
+    private final TaskCoalescer coalescer = new TaskCoalescer();
+
+    // 运行指标，注册表由同一节点上的所有管理器共享，可被 /metrics 直接读取
+    private final MetricsRegistry metricsRegistry;
+    private TaskMetrics metrics;
+
+    // 按任务类型查找执行器，由所有Worker共享
+    private final TaskExecutors executors;
+
+    // 工作流的依赖跟踪，以及上游完成后有新任务入队、需要派发的池
+    private final WorkflowTracker workflows;
+    private final Set<WorkerPool> releasedPools = new LinkedHashSet<>();
+
+    // 已请求取消的在途任务：taskId -> 等待最终状态的请求方
+    private final Map<String, List<ActorRef>> cancelRequests = new HashMap<>();
+
+    // 未终结的任务（排队、执行中或等待重试）
     private final Map<String, Task> tasks = new HashMap<>();
-    private final Queue<Task> pendingTasks = new PriorityQueue<>(
-            (t1, t2) -> Integer.compare(t2.getPriority().getValue(), t1.getPriority().getValue())
-    );
+
+    // 已终结的任务：有界、按完成时间过期，淘汰的任务在开启归档时写入磁盘
+    private final BoundedTtlCache<String, Task> retainedTasks;
+    private final List<Task> pendingArchive = new ArrayList<>();
+    private ActorRef archiveActor;
+
+    // 等待队列空位的批次（先进先出）
+    private final Deque<ParkedBatch> parkedBatches = new ArrayDeque<>();
+
+    // 任务日志（未开启时为null）
+    private TaskJournal journal;
+
+    // 较大任务结果的存储，未启用时为null
+    private TaskResultStore resultStore;
+    private final List<PendingReply> pendingReplies = new ArrayList<>();
+    private boolean flushScheduled = false;
+    // 追加事件时的写入错误，下一次刷盘时按失败处理
+    private IOException journalError;
+    // 正在后台写入的快照，没有时为null
+    private CompletableFuture<Void> snapshotWrite;
 
     // 统计信息
     private int totalTasksReceived = 0;
     private int totalTasksCompleted = 0;
     private int totalTasksFailed = 0;
+    private int totalTasksRejected = 0;
+    private int totalTasksCancelled = 0;
+    private int totalTasksExpired = 0;
+    private int totalTasksDeduplicated = 0;
+    private int totalTasksCoalesced = 0;
 
     public TaskManagerActor(int workerCount) {
-        this.workerCount = workerCount;
+        this(workerCount, DEFAULT_WORKER_CREDITS);
+    }
+
+    public TaskManagerActor(int workerCount, int workerCredits) {
+        this(TaskSystemSettings.singlePool(workerCount, workerCredits));
+    }
+
+    public TaskManagerActor(TaskSystemSettings settings) {
+        this(settings, false);
+    }
+
+    public TaskManagerActor(TaskSystemSettings settings, boolean sharded) {
+        this(settings, sharded, new MetricsRegistry());
+    }
+
+    public TaskManagerActor(TaskSystemSettings settings, boolean sharded, MetricsRegistry metricsRegistry) {
+        this(settings, sharded, metricsRegistry, TaskExecutors.builtIn());
+    }
+
+    public TaskManagerActor(TaskSystemSettings settings, boolean sharded, MetricsRegistry metricsRegistry,
+                            TaskExecutors executors) {
+        this.settings = settings;
+        this.sharded = sharded;
+        this.metricsRegistry = metricsRegistry;
+        this.executors = executors;
+        TaskSystemSettings.RetentionSettings retention = settings.getRetention();
+        this.retainedTasks = new BoundedTtlCache<>(
+                retention.getMaxEntries(),
+                retention.getTtl().toMillis(),
+                (taskId, task) -> onTaskEvicted(task)
+        );
+        this.retryWheel = new HashedTimingWheel<>(settings.getScheduler().getTick().toMillis(),
+                settings.getScheduler().getWheelSize(), System.currentTimeMillis());
+        this.deadLetters = new DeadLetterQueue(settings.getDeadLetter().getMaxEntries());
+        this.workflows = new WorkflowTracker(retention.getMaxEntries(), retention.getTtl().toMillis());
+        this.idempotencyIndex = new BoundedTtlCache<>(settings.getIdempotency().getMaxEntries(),
+                settings.getIdempotency().getWindow().toMillis(), null);
     }
 
     public static Props props(int workerCount) {
         return Props.create(TaskManagerActor.class, workerCount);
     }
 
+    public static Props props(int workerCount, int workerCredits) {
+        return Props.create(TaskManagerActor.class, workerCount, workerCredits);
+    }
+
+    public static Props props(TaskSystemSettings settings) {
+        return Props.create(TaskManagerActor.class, settings);
+    }
+
+    /**
+     * 运行指标记录到共享的注册表
+     */
+    public static Props props(TaskSystemSettings settings, MetricsRegistry metricsRegistry) {
+        return Props.create(TaskManagerActor.class, settings, false, metricsRegistry);
+    }
+
+    /**
+     * 使用指定的任务执行器（通常由Guice注入）
+     */
+    public static Props props(TaskSystemSettings settings, MetricsRegistry metricsRegistry, TaskExecutors executors) {
+        return Props.create(TaskManagerActor.class, settings, false, metricsRegistry, executors);
+    }
+
+    /**
+     * 集群分片实体，每个分片一个管理器
+     */
+    public static Props shardedProps(TaskSystemSettings settings) {
+        return Props.create(TaskManagerActor.class, settings, true);
+    }
+
+    /**
+     * 集群分片实体，同一节点上的分片共享指标注册表
+     */
+    public static Props shardedProps(TaskSystemSettings settings, MetricsRegistry metricsRegistry) {
+        return Props.create(TaskManagerActor.class, settings, true, metricsRegistry);
+    }
+
+    /**
+     * 集群分片实体，使用指定的任务执行器
+     */
+    public static Props shardedProps(TaskSystemSettings settings, MetricsRegistry metricsRegistry,
+                                     TaskExecutors executors) {
+        return Props.create(TaskManagerActor.class, settings, true, metricsRegistry, executors);
+    }
+
     /**
      * 监督策略 - 实现监督策略模式
      */
@@ -67,161 +359,1726 @@ public class TaskManagerActor extends AbstractActor {
     @Override
     public void preStart() throws Exception {
         super.preStart();
-        log.info("TaskManagerActor started with {} workers", workerCount);
 
-        // 创建Worker池
-        for (int i = 0; i < workerCount; i++) {
-            ActorRef worker = getContext().actorOf(
-                    TaskWorkerActor.props(),
-                    "worker-" + i
+        metrics = new TaskMetrics(metricsRegistry, sharded ? getSelf().path().name() : null,
+                settings.getPools().keySet());
+
+        // Worker直接把较大的结果写入存储，必须先于Worker创建
+        TaskSystemSettings.ResultStoreSettings resultStoreSettings = settings.getResultStore();
+        if (resultStoreSettings.isEnabled()) {
+            resultStore = new TaskResultStore(storageDirectory(resultStoreSettings.getDirectory()),
+                    resultStoreSettings.getSegmentSize());
+        }
+
+        // 为每种任务类型创建独立的Worker池（拉取模式，Worker启动后主动通告额度）
+        for (TaskSystemSettings.PoolSettings poolSettings : settings.getPools().values()) {
+            WorkerPool pool = new WorkerPool(poolSettings, settings.getAutoscaling(), settings.getFairShare(),
+                    executors.forType(poolSettings.getName()).maxConcurrency());
+            for (int i = 0; i < poolSettings.getWorkers(); i++) {
+                startWorker(pool);
+            }
+            pools.put(poolSettings.getName(), pool);
+            metrics.updatePool(pool);
+        }
+
+        log.info("TaskManagerActor started with {} workers in pools {}", workerPools.size(), pools.keySet());
+
+        TaskSystemSettings.JournalSettings journalSettings = settings.getJournal();
+        if (journalSettings.isEnabled()) {
+            recoverFromJournal(journalSettings);
+        }
+        if (resultStore != null) {
+            // 恢复的任务已登记仍被引用的结果，其余的段是上次运行遗留的
+            int deleted = resultStore.sweep();
+            log.info("Result store {} opened ({} segments, {} unreferenced segments deleted)",
+                    resultStoreSettings.getDirectory(), resultStore.segmentCount(), deleted);
+        }
+
+        // 只有存在可伸缩的池时才启动伸缩周期
+        TaskSystemSettings.AutoscalingSettings autoscaling = settings.getAutoscaling();
+        if (autoscaling.isEnabled() && pools.values().stream().anyMatch(WorkerPool::isElastic)) {
+            autoscaleTask = getContext().getSystem().scheduler().scheduleWithFixedDelay(
+                    autoscaling.getInterval(),
+                    autoscaling.getInterval(),
+                    getSelf(),
+                    AutoscaleTick.INSTANCE,
+                    getContext().getDispatcher(),
+                    getSelf()
+            );
+            log.info("Pool autoscaling enabled (interval: {})", autoscaling.getInterval());
+        }
+
+        TaskSystemSettings.RetentionSettings retention = settings.getRetention();
+        if (retention.getArchive().isEnabled()) {
+            archiveActor = getContext().actorOf(
+                    TaskArchiveActor.props(retention.getArchive().withDirectory(
+                            storageDirectory(retention.getArchive().getDirectory()).getPath()))
+                            .withDispatcher(resolveDispatcher(retention.getArchive().getDispatcher())),
+                    "archive"
             );
-            workers.add(worker);
-            log.info("Created worker: {}", worker.path());
         }
+        retentionTask = getContext().getSystem().scheduler().scheduleWithFixedDelay(
+                retention.getSweepInterval(),
+                retention.getSweepInterval(),
+                getSelf(),
+                RetentionTick.INSTANCE,
+                getContext().getDispatcher(),
+                getSelf()
+        );
+        retryTask = getContext().getSystem().scheduler().scheduleWithFixedDelay(
+                settings.getScheduler().getTick(),
+                settings.getScheduler().getTick(),
+                getSelf(),
+                RetryTick.INSTANCE,
+                getContext().getDispatcher(),
+                getSelf()
+        );
+        log.info("Task retention: max {} terminal tasks, ttl {}, archive {}",
+                retention.getMaxEntries(), retention.getTtl(),
+                retention.getArchive().isEnabled() ? retention.getArchive().getDirectory() : "disabled");
     }
 
     @Override
     public void postStop() throws Exception {
-        log.info("TaskManagerActor stopped. Stats - Received: {}, Completed: {}, Failed: {}",
-                totalTasksReceived, totalTasksCompleted, totalTasksFailed);
+        if (autoscaleTask != null) {
+            autoscaleTask.cancel();
+        }
+        if (retentionTask != null) {
+            retentionTask.cancel();
+        }
+        if (retryTask != null) {
+            retryTask.cancel();
+        }
+        flushArchive();
+        if (journal != null) {
+            try {
+                flushJournal();
+                journal.close();
+            } catch (IllegalStateException e) {
+                // 日志已失效，等待中的回复已改为失败
+            }
+        }
+        if (snapshotWrite != null) {
+            // 等后台快照写完，避免重启后的恢复与它同时访问日志目录
+            try {
+                snapshotWrite.get(30, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                log.warning("Journal snapshot still running at shutdown: {}", e.toString());
+            }
+        }
+        if (resultStore != null) {
+            resultStore.close();
+        }
+        log.info("TaskManagerActor stopped. Stats - Received: {}, Completed: {}, Failed: {}, Rejected: {}",
+                totalTasksReceived, totalTasksCompleted, totalTasksFailed, totalTasksRejected);
         super.postStop();
     }
 
     @Override
     public Receive createReceive() {
         return receiveBuilder()
-                .match(Task.class, this::handleNewTask)
+                .match(Task.class, this::handleTask)
+                .match(TaskMessage.SubmitBatch.class, this::handleSubmitBatch)
+                .match(TaskMessage.WorkRequest.class, this::handleWorkRequest)
                 .match(TaskMessage.QueryTaskStatus.class, this::handleQueryStatus)
+                .match(TaskMessage.ReadResult.class, this::handleReadResult)
+                .match(TaskMessage.CancelTask.class, this::handleCancelTask)
+                .match(AutoscaleTick.class, t -> handleAutoscaleTick())
+                .match(RetentionTick.class, t -> handleRetentionTick())
+                .match(RetryTick.class, t -> handleRetryTick())
+                .match(ResumeTaskType.class, this::handleResumeTaskType)
+                .match(BatchLingerElapsed.class, this::handleBatchLingerElapsed)
+                .match(TaskMessage.QueryDeadLetters.class, this::handleQueryDeadLetters)
+                .match(TaskMessage.SubmitWorkflow.class, this::handleSubmitWorkflow)
+                .match(TaskMessage.QueryWorkflow.class, this::handleQueryWorkflow)
+                .match(TaskMessage.ReplayDeadLetters.class, this::handleReplayDeadLetters)
+                .match(FlushJournal.class, f -> flushJournal())
+                .match(SnapshotWritten.class, this::handleSnapshotWritten)
+                .match(TaskMessage.GetShardStats.class, this::handleGetShardStats)
+                .match(HandOff.class, h -> handleHandOff())
+                .match(TaskMessage.ShardState.class, this::handleShardState)
                 .matchEquals("GET_STATS", s -> handleGetStats())
-                .matchAny(o -> {
-                    // 检查是否是Worker返回的已完成任务
-                    if (o instanceof Task) {
-                        handleTaskCompleted((Task) o);
-                    } else {
-                        log.warning("Received unknown message: {}", o);
-                    }
-                })
+                .matchAny(o -> log.warning("Received unknown message: {}", o))
                 .build();
     }
 
+    /**
+     * 区分新提交的任务与Worker返回的已结束任务
+     */
+    private void handleTask(Task task) {
+        if (task.getStatus() == Task.TaskStatus.COMPLETED || task.getStatus() == Task.TaskStatus.FAILED
+                || task.getStatus() == Task.TaskStatus.CANCELLED) {
+            handleTaskCompleted(task);
+        } else {
+            handleNewTask(task);
+        }
+    }
+
     /**
      * 处理新任务
      */
     private void handleNewTask(Task task) {
+        if (replyIfDuplicate(task)) {
+            return;
+        }
+
         totalTasksReceived++;
-        log.info("Received new task: {} (Priority: {}, Total received: {})",
-                task.getTaskId(), task.getPriority(), totalTasksReceived);
+        WorkerPool pool = poolFor(task.getTaskType());
+        log.info("Received new task: {} (Priority: {}, Pool: {}, Total received: {})",
+                task.getTaskId(), task.getPriority(), pool.getName(), totalTasksReceived);
+
+        pool.getAutoscaler().recordArrival();
+
+        // 与未终结的相同任务合并，不占用队列和Worker
+        Task leader = task.isCoalesce() ? coalescer.leaderFor(task) : null;
+        if (leader != null) {
+            totalTasksCoalesced++;
+            metrics.coalesced();
+            coalescer.addFollower(leader, task);
+            tasks.put(task.getTaskId(), task);
+            rememberIdempotencyKey(task);
+            journalAccepted(task);
+            metrics.accepted(task);
+            log.info("Task {} coalesced with task {}", task.getTaskId(), leader.getTaskId());
+            replyDurably(getSender(), new TaskMessage.TaskStatusResponse(
+                    task.getTaskId(),
+                    "ACCEPTED",
+                    "Task coalesced with identical task " + leader.getTaskId()
+            ));
+            return;
+        }
+
+        // 队列已满时拒绝，避免单一类型的任务积压拖垮整个系统
+        if (!pool.offer(task)) {
+            totalTasksRejected++;
+            metrics.rejected(1);
+            log.warning("Task {} rejected: pool {} queue is full ({} pending)",
+                    task.getTaskId(), pool.getName(), pool.pendingSize());
+            getSender().tell(new TaskMessage.TaskStatusResponse(
+                    task.getTaskId(),
+                    "REJECTED",
+                    "Task queue for pool " + pool.getName() + " is full"
+            ), getSelf());
+            return;
+        }
 
-        // 存储任务
+        // 存储任务，由该池中有空闲额度的Worker按优先级拉取
         tasks.put(task.getTaskId(), task);
+        if (task.isCoalesce()) {
+            coalescer.addLeader(task);
+        }
+        rememberIdempotencyKey(task);
+        journalAccepted(task);
+        metrics.accepted(task);
+        dispatchPendingTasks(pool);
 
-        // 尝试分配给Worker
-        if (!assignTaskToWorker(task)) {
-            // 如果所有Worker都在忙，加入待处理队列
-            pendingTasks.offer(task);
-            log.info("Task {} added to pending queue (Queue size: {})",
-                    task.getTaskId(), pendingTasks.size());
+        if (!inFlightTasks.containsKey(task.getTaskId())) {
+            log.info("Task {} added to pending queue of pool {} (Queue size: {})",
+                    task.getTaskId(), pool.getName(), pool.pendingSize());
         }
 
-        // 响应任务已接收
-        getSender().tell(new TaskMessage.TaskStatusResponse(
+        // 响应任务已接收（开启日志时在事件刷盘后才回复）
+        replyDurably(getSender(), new TaskMessage.TaskStatusResponse(
                 task.getTaskId(),
                 "ACCEPTED",
                 "Task accepted and queued for processing"
-        ), getSelf());
+        ));
     }
 
     /**
-     * 将任务分配给Worker
+     * 幂等键（按租户区分）在时间窗口内已经提交过（或同一taskId的任务仍有记录）时，回复原任务而不再接收；
+     * 同一幂等键对应的任务内容不同时回复CONFLICT，不返回原任务
      */
-    private boolean assignTaskToWorker(Task task) {
-        if (workers.isEmpty()) {
+    private boolean replyIfDuplicate(Task task) {
+        String scope = task.getIdempotencyScope();
+        if (scope == null) {
+            return false;
+        }
+        IdempotencyRecord record = idempotencyIndex.get(scope, System.currentTimeMillis());
+        if (record == null) {
+            Task existing = tasks.get(task.getTaskId());
+            if (existing == null) {
+                existing = retainedTasks.get(task.getTaskId());
+            }
+            if (existing != null) {
+                record = new IdempotencyRecord(existing);
+            }
+        }
+        if (record == null) {
             return false;
         }
 
-        // 使用轮询方式选择Worker
-        ActorRef worker = workers.get(currentWorkerIndex);
-        currentWorkerIndex = (currentWorkerIndex + 1) % workers.size();
-
-        log.info("Assigning task {} to worker {}", task.getTaskId(), worker.path().name());
-        worker.tell(task, getSelf());
+        if (record.fingerprint != task.payloadFingerprint()) {
+            log.warning("Idempotency key {} reused with a different payload (task {})",
+                    task.getIdempotencyKey(), record.taskId);
+            getSender().tell(new TaskMessage.TaskStatusResponse(
+                    task.getTaskId(),
+                    "CONFLICT",
+                    "Idempotency key was already used for a different request"
+            ), getSelf());
+            return true;
+        }
 
+        String originalId = record.taskId;
+        totalTasksDeduplicated++;
+        metrics.deduplicated();
+        Task original = tasks.get(originalId);
+        if (original == null) {
+            original = retainedTasks.get(originalId);
+        }
+        log.info("Duplicate submission for idempotency key {} (task {})", task.getIdempotencyKey(), originalId);
+        // 原任务的接收事件可能尚未刷盘，同样等刷盘后再回复
+        replyDurably(getSender(), new TaskMessage.TaskStatusResponse(
+                originalId,
+                "DUPLICATE",
+                original != null
+                        ? "Duplicate of task " + originalId + " (" + original.getStatus() + ")"
+                        : "Duplicate of task " + originalId
+        ));
         return true;
     }
 
+    private void rememberIdempotencyKey(Task task) {
+        if (task.getIdempotencyScope() != null) {
+            idempotencyIndex.put(task.getIdempotencyScope(), new IdempotencyRecord(task), System.currentTimeMillis());
+        }
+    }
+
     /**
-     * 处理任务完成
+     * 幂等索引中的一项：原任务及其内容摘要
      */
-    private void handleTaskCompleted(Task task) {
-        if (task.getStatus() == Task.TaskStatus.COMPLETED) {
-            totalTasksCompleted++;
-            log.info("Task {} completed successfully (Total completed: {})",
-                    task.getTaskId(), totalTasksCompleted);
-        } else if (task.getStatus() == Task.TaskStatus.FAILED) {
-            totalTasksFailed++;
-            log.warning("Task {} failed (Retry: {}/{}, Total failed: {})",
-                    task.getTaskId(), task.getRetryCount(), task.getMaxRetries(), totalTasksFailed);
+    private static final class IdempotencyRecord {
+        private final String scope;
+        private final String taskId;
+        private final int fingerprint;
+
+        private IdempotencyRecord(Task task) {
+            this(task.getIdempotencyScope(), task.getTaskId(), task.payloadFingerprint());
+        }
+
+        private IdempotencyRecord(String scope, String taskId, int fingerprint) {
+            this.scope = scope;
+            this.taskId = taskId;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * 批量接收任务：按池分组后批量入队，每个池只分配一次，整批只回复一条汇总响应
+     */
+    private void handleSubmitBatch(TaskMessage.SubmitBatch batch) {
+        if (batch.isWaitForCapacity()) {
+            parkedBatches.add(new ParkedBatch(getSender(), batch.getTasks(), System.currentTimeMillis()));
+            admitParkedBatches();
+            return;
+        }
+
+        Map<WorkerPool, List<Task>> byPool = new LinkedHashMap<>();
+        for (Task task : batch.getTasks()) {
+            byPool.computeIfAbsent(poolFor(task.getTaskType()), p -> new ArrayList<>()).add(task);
+        }
 
-            // 如果还有重试次数，重新加入队列
-            if (task.getRetryCount() < task.getMaxRetries()) {
-                log.info("Retrying task {}", task.getTaskId());
-                task.setStatus(Task.TaskStatus.PENDING);
-                pendingTasks.offer(task);
+        int accepted = 0;
+        List<String> rejectedTaskIds = new ArrayList<>();
+        for (Map.Entry<WorkerPool, List<Task>> entry : byPool.entrySet()) {
+            WorkerPool pool = entry.getKey();
+            List<Task> poolTasks = entry.getValue();
+            pool.getAutoscaler().recordArrivals(poolTasks.size());
+
+            int admitted = pool.offerAll(poolTasks);
+            for (int i = 0; i < poolTasks.size(); i++) {
+                Task task = poolTasks.get(i);
+                if (i < admitted) {
+                    tasks.put(task.getTaskId(), task);
+                    journalAccepted(task);
+                    metrics.accepted(task);
+                } else {
+                    rejectedTaskIds.add(task.getTaskId());
+                }
+            }
+            accepted += admitted;
+
+            if (admitted < poolTasks.size()) {
+                log.warning("{} tasks of batch rejected: pool {} queue is full ({} pending)",
+                        poolTasks.size() - admitted, pool.getName(), pool.pendingSize());
             }
+            dispatchPendingTasks(pool);
         }
 
-        // 更新任务存储
-        tasks.put(task.getTaskId(), task);
+        totalTasksReceived += batch.getTasks().size();
+        totalTasksRejected += rejectedTaskIds.size();
+        metrics.rejected(rejectedTaskIds.size());
+        log.info("Received batch of {} tasks ({} accepted, {} rejected, Total received: {})",
+                batch.getTasks().size(), accepted, rejectedTaskIds.size(), totalTasksReceived);
 
-        // 处理待处理队列中的下一个任务
-        processNextPendingTask();
+        replyDurably(getSender(), new TaskMessage.BatchAccepted(accepted, rejectedTaskIds));
     }
 
     /**
-     * 处理待处理队列中的下一个任务
+     * 接收工作流：没有依赖的节点立即入队，其余节点等上游完成后入队
+     * 依赖无效时回复INVALID，没有依赖的节点所在池的队列容量不足时整个工作流回复REJECTED
      */
-    private void processNextPendingTask() {
-        if (!pendingTasks.isEmpty()) {
-            Task nextTask = pendingTasks.poll();
-            log.info("Processing next pending task: {} (Remaining: {})",
-                    nextTask.getTaskId(), pendingTasks.size());
-            assignTaskToWorker(nextTask);
+    private void handleSubmitWorkflow(TaskMessage.SubmitWorkflow submit) {
+        String workflowId = submit.getWorkflowId();
+        if (workflows.contains(workflowId)) {
+            getSender().tell(new TaskMessage.TaskStatusResponse(
+                    workflowId, "INVALID", "Workflow " + workflowId + " already exists"), getSelf());
+            return;
+        }
+        for (Task task : submit.getTasks()) {
+            if (tasks.containsKey(task.getTaskId()) || retainedTasks.containsKey(task.getTaskId())) {
+                getSender().tell(new TaskMessage.TaskStatusResponse(
+                        workflowId, "INVALID", "Task " + task.getTaskId() + " already exists"), getSelf());
+                return;
+            }
+        }
+
+        List<Task> ready;
+        try {
+            ready = workflows.add(workflowId, submit.getTasks(), submit.getDependencies());
+        } catch (IllegalArgumentException e) {
+            getSender().tell(new TaskMessage.TaskStatusResponse(workflowId, "INVALID", e.getMessage()), getSelf());
+            return;
+        }
+
+        Map<WorkerPool, Integer> needed = new HashMap<>();
+        for (Task task : ready) {
+            needed.merge(poolFor(task.getTaskType()), 1, Integer::sum);
+        }
+        for (Map.Entry<WorkerPool, Integer> entry : needed.entrySet()) {
+            WorkerPool pool = entry.getKey();
+            if (pool.getSettings().getQueueCapacity() - pool.pendingSize() < entry.getValue()) {
+                workflows.remove(workflowId);
+                totalTasksRejected += submit.getTasks().size();
+                metrics.rejected(submit.getTasks().size());
+                log.warning("Workflow {} rejected: pool {} queue is full", workflowId, pool.getName());
+                getSender().tell(new TaskMessage.TaskStatusResponse(
+                        workflowId, "REJECTED", "Task queue for pool " + pool.getName() + " is full"), getSelf());
+                return;
+            }
+        }
+
+        for (Task task : ready) {
+            WorkerPool pool = poolFor(task.getTaskType());
+            pool.offer(task);
+            pool.getAutoscaler().recordArrival();
+            tasks.put(task.getTaskId(), task);
+            journalAccepted(task);
+            metrics.accepted(task);
+        }
+        totalTasksReceived += ready.size();
+        for (WorkerPool pool : needed.keySet()) {
+            dispatchPendingTasks(pool);
         }
+
+        log.info("Workflow {} accepted with {} tasks ({} ready)", workflowId, submit.getTasks().size(), ready.size());
+        replyDurably(getSender(), new TaskMessage.TaskStatusResponse(
+                workflowId,
+                "ACCEPTED",
+                "Workflow accepted with " + submit.getTasks().size() + " tasks (" + ready.size() + " ready)"
+        ));
+    }
+
+    private void handleQueryWorkflow(TaskMessage.QueryWorkflow query) {
+        TaskMessage.WorkflowStatus status = workflows.status(query.getWorkflowId());
+        getSender().tell(status != null
+                ? status
+                : new TaskMessage.WorkflowStatus(query.getWorkflowId(), "NOT_FOUND", Collections.emptyMap()), getSelf());
     }
 
     /**
-     * 查询任务状态
+     * 工作流中的任务终结后，把所有上游都已完成的下游任务放入各自的池（不受队列容量限制，
+     * 工作流接收时已经承诺执行），由handleTaskCompleted随后统一派发
      */
-    private void handleQueryStatus(TaskMessage.QueryTaskStatus query) {
-        Task task = tasks.get(query.getTaskId());
+    private void releaseWorkflowSuccessors(Task task) {
+        for (Task next : workflows.onTaskFinished(task, System.currentTimeMillis(), this::resultOf)) {
+            WorkerPool pool = poolFor(next.getTaskType());
+            pool.requeue(next);
+            pool.getAutoscaler().recordArrival();
+            tasks.put(next.getTaskId(), next);
+            journalAccepted(next);
+            metrics.accepted(next);
+            totalTasksReceived++;
+            releasedPools.add(pool);
+            log.debug("Workflow task {} released", next.getTaskId());
+        }
+    }
 
-        if (task != null) {
-            getSender().tell(new TaskMessage.TaskStatusResponse(
-                    task.getTaskId(),
-                    task.getStatus().name(),
-                    "Task found: " + task.getResult()
-            ), getSelf());
-        } else {
-            getSender().tell(new TaskMessage.TaskStatusResponse(
-                    query.getTaskId(),
-                    "NOT_FOUND",
-                    "Task not found"
-            ), getSelf());
+    /**
+     * 按到达顺序接收等待中的批次：只要对应池有空位就接收，某个批次全部接收后回复并继续下一个，
+     * 队首批次仍有任务无法接收时停止（后面的批次继续等待），超时的批次拒绝剩余任务
+     */
+    private void admitParkedBatches() {
+        long now = System.currentTimeMillis();
+        while (!parkedBatches.isEmpty()) {
+            ParkedBatch parked = parkedBatches.peek();
+            Set<WorkerPool> touched = new LinkedHashSet<>();
+
+            Iterator<Task> it = parked.remaining.iterator();
+            while (it.hasNext()) {
+                Task task = it.next();
+                WorkerPool pool = poolFor(task.getTaskType());
+                if (pool.offer(task)) {
+                    it.remove();
+                    totalTasksReceived++;
+                    pool.getAutoscaler().recordArrival();
+                    tasks.put(task.getTaskId(), task);
+                    journalAccepted(task);
+                    metrics.accepted(task);
+                    parked.accepted++;
+                    touched.add(pool);
+                }
+            }
+            for (WorkerPool pool : touched) {
+                dispatchPendingTasks(pool);
+            }
+
+            if (!parked.remaining.isEmpty()) {
+                if (now - parked.parkedAt < MAX_PARK_MILLIS) {
+                    return;
+                }
+                log.warning("Parked batch timed out, rejecting {} tasks", parked.remaining.size());
+                for (Task task : parked.remaining) {
+                    totalTasksReceived++;
+                    totalTasksRejected++;
+                    metrics.rejected(1);
+                    parked.rejectedTaskIds.add(task.getTaskId());
+                }
+                parked.remaining.clear();
+            }
+
+            parkedBatches.poll();
+            log.debug("Parked batch admitted ({} accepted, {} rejected)",
+                    parked.accepted, parked.rejectedTaskIds.size());
+            replyDurably(parked.replyTo, new TaskMessage.BatchAccepted(parked.accepted, parked.rejectedTaskIds));
         }
     }
 
     /**
-     * 获取统计信息
+     * Worker通告额度
+     * Worker只会在启动或重启时通告，此时它不再持有任何任务，
+     * 因此之前分配给它的在途任务需要重新入队
      */
-    private void handleGetStats() {
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("workerCount", workerCount);
-        stats.put("totalReceived", totalTasksReceived);
-        stats.put("totalCompleted", totalTasksCompleted);
-        stats.put("totalFailed", totalTasksFailed);
-        stats.put("pendingQueueSize", pendingTasks.size());
-        stats.put("totalTrackedTasks", tasks.size());
+    private void handleWorkRequest(TaskMessage.WorkRequest request) {
+        ActorRef worker = getSender();
+        WorkerPool pool = workerPools.get(worker);
+        if (pool == null) {
+            log.warning("Ignoring work request from unknown worker: {}", worker.path());
+            return;
+        }
+
+        Iterator<Map.Entry<String, ActorRef>> it = inFlightTasks.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, ActorRef> entry = it.next();
+            if (entry.getValue().equals(worker)) {
+                Task lost = tasks.get(entry.getKey());
+                List<ActorRef> waiters = cancelRequests.remove(entry.getKey());
+                if (lost != null && waiters != null) {
+                    // 取消请求尚未得到Worker确认，任务不再重新排队
+                    lost.setStatus(Task.TaskStatus.CANCELLED);
+                    lost.setCompletedAt(LocalDateTime.now());
+                    lost.setErrorMessage("Cancelled");
+                    totalTasksCancelled++;
+                    terminate(lost);
+                    for (ActorRef waiter : waiters) {
+                        replyDurably(waiter, new TaskMessage.TaskStatusResponse(
+                                lost.getTaskId(), "CANCELLED", "Task cancelled"));
+                    }
+                } else if (lost != null) {
+                    log.warning("Re-queueing task {} lost by restarted worker {}",
+                            lost.getTaskId(), worker.path().name());
+                    lost.setStatus(Task.TaskStatus.PENDING);
+                    pool.requeue(lost);
+                }
+                if (isLastOfUnit(entry.getKey())) {
+                    pool.forgetInFlight();
+                }
+                it.remove();
+            }
+        }
+
+        pool.setCredits(worker, request.getCredits());
+        log.debug("Worker {} advertised {} credits", worker.path().name(), request.getCredits());
+
+        dispatchPendingTasks(pool);
+        admitParkedBatches();
+    }
+
+    /**
+     * 按优先级把池中的待处理任务分配给有剩余额度的Worker；
+     * 执行器支持批量且池开启 batching 时，一个额度分配最多 maxSize 个同类型任务（一批），
+     * 队列中的任务不足一批时最多等待 linger 再派发
+     */
+    private void dispatchPendingTasks(WorkerPool pool) {
+        LocalDateTime now = LocalDateTime.now();
+        long nowMillis = System.currentTimeMillis();
+        TaskSystemSettings.BatchingSettings batching = pool.getSettings().getBatching();
+        // 凑批时出队的不同类型任务，留给下一个额度
+        Task carried = null;
+        long carriedEnqueuedAt = 0;
+        while (carried != null || pool.hasPendingTasks()) {
+            if (carried == null && isLingering(pool, nowMillis)) {
+                break;
+            }
+            ActorRef worker = pool.acquireWorker();
+            if (worker == null) {
+                break;
+            }
 
-        getSender().tell(stats, getSelf());
+            Task task = carried;
+            long enqueuedAt = carriedEnqueuedAt;
+            carried = null;
+            if (task == null) {
+                task = pollDispatchable(pool, now, nowMillis);
+                enqueuedAt = pool.lastEnqueuedAt();
+            }
+            if (task == null) {
+                pool.releaseWorker(worker);
+                break;
+            }
+            assign(task, worker, pool, nowMillis - enqueuedAt);
+            if (!isBatchable(task, batching)) {
+                log.debug("Assigning task {} to worker {} (Remaining in queue: {})",
+                        task.getTaskId(), worker.path().name(), pool.pendingSize());
+                worker.tell(task, getSelf());
+                continue;
+            }
+
+            List<Task> batch = new ArrayList<>(batching.getMaxSize());
+            batch.add(task);
+            while (batch.size() < batching.getMaxSize()) {
+                Task next = pollDispatchable(pool, now, nowMillis);
+                if (next == null) {
+                    break;
+                }
+                if (!isBatchable(next, batching) || !Objects.equals(next.getTaskType(), task.getTaskType())) {
+                    carried = next;
+                    carriedEnqueuedAt = pool.lastEnqueuedAt();
+                    break;
+                }
+                assign(next, worker, pool, nowMillis - pool.lastEnqueuedAt());
+                batch.add(next);
+            }
+            if (batch.size() == 1) {
+                worker.tell(task, getSelf());
+                continue;
+            }
+            InFlightBatch inFlightBatch = new InFlightBatch(batch.size());
+            for (Task member : batch) {
+                inFlightBatches.put(member.getTaskId(), inFlightBatch);
+            }
+            log.debug("Assigning batch of {} {} tasks to worker {} (Remaining in queue: {})",
+                    batch.size(), task.getTaskType(), worker.path().name(), pool.pendingSize());
+            worker.tell(new TaskMessage.AssignBatch(batch), getSelf());
+        }
+        if (carried != null) {
+            // 没有额度了，重新入队（重新计算老化等级）
+            pool.requeue(carried);
+        }
+        metrics.updatePool(pool);
+    }
+
+    private void assign(Task task, ActorRef worker, WorkerPool pool, long queueMillis) {
+        if (task.getRetryCount() == 0) {
+            pool.getRetryPolicy().recordFirstAttempt();
+        }
+        inFlightTasks.put(task.getTaskId(), worker);
+        metrics.dispatched(task, queueMillis);
+    }
+
+    /**
+     * 可以合并到一批的任务：执行器支持批量、池开启了批量且任务没有截止时间
+     */
+    private boolean isBatchable(Task task, TaskSystemSettings.BatchingSettings batching) {
+        return batching.isEnabled() && task.getDeadline() == null
+                && executors.forType(task.getTaskType()).supportsBatching();
+    }
+
+    /**
+     * 批量池中排队的任务不足一批时，从第一次派发尝试起等待 linger（期间只安排一次唤醒）；
+     * 凑满一批或等待到期后派发
+     */
+    private boolean isLingering(WorkerPool pool, long nowMillis) {
+        TaskSystemSettings.BatchingSettings batching = pool.getSettings().getBatching();
+        if (!batching.isEnabled() || batching.getLinger().isZero()
+                || !executors.forType(pool.getName()).supportsBatching()
+                || pool.pendingSize() >= batching.getMaxSize()) {
+            pool.setLingerStartedAt(-1);
+            return false;
+        }
+        long startedAt = pool.getLingerStartedAt();
+        if (startedAt < 0) {
+            if (pool.totalAvailableCredits() == 0) {
+                // 没有空闲额度，额度归还时再开始等待
+                return false;
+            }
+            pool.setLingerStartedAt(nowMillis);
+            getContext().getSystem().scheduler().scheduleOnce(
+                    batching.getLinger(),
+                    getSelf(),
+                    new BatchLingerElapsed(pool.getName()),
+                    getContext().getDispatcher(),
+                    getSelf()
+            );
+            return true;
+        }
+        if (nowMillis - startedAt < batching.getLinger().toMillis()) {
+            return true;
+        }
+        pool.setLingerStartedAt(-1);
+        return false;
+    }
+
+    private void handleBatchLingerElapsed(BatchLingerElapsed elapsed) {
+        WorkerPool pool = pools.get(elapsed.poolName);
+        if (pool != null) {
+            dispatchPendingTasks(pool);
+        }
+    }
+
+    /**
+     * 在途任务终结时判断是否归还额度：单独分配的任务直接归还，批中的任务在最后一个终结时归还
+     */
+    private boolean isLastOfUnit(String taskId) {
+        InFlightBatch batch = inFlightBatches.remove(taskId);
+        return batch == null || --batch.remaining == 0;
+    }
+
+    /**
+     * 出队下一个可以派发的任务，已超过截止时间的直接结束，不占用Worker；
+     * 所属类型熔断中的任务留在队列中（仍占用队列容量，队列满时新任务照常被拒绝），熔断到期后再参与出队
+     */
+    private Task pollDispatchable(WorkerPool pool, LocalDateTime now, long nowMillis) {
+        Task task;
+        while ((task = pool.pollPending(t -> isPaused(t, pool, now, nowMillis))) != null) {
+            if (task.isDeadlineExceeded(now)) {
+                expireQueuedTask(task);
+                continue;
+            }
+            return task;
+        }
+        return null;
+    }
+
+    /**
+     * 任务所属类型熔断中时暂停派发，并在熔断到期时安排一次恢复（每种类型同时只安排一次）
+     */
+    private boolean isPaused(Task task, WorkerPool pool, LocalDateTime now, long nowMillis) {
+        if (task.isDeadlineExceeded(now)) {
+            return false;
+        }
+        TaskTypeCircuitBreaker breaker = breakerFor(task.getTaskType(), pool);
+        if (breaker.tryAcquire(nowMillis)) {
+            return false;
+        }
+        String taskType = FairTaskQueue.typeOf(task);
+        if (pausedTypes.add(taskType)) {
+            long delay = breaker.remainingOpenMillis(nowMillis);
+            log.info("Circuit breaker for {} is open, pausing dispatch for {} ms", taskType, delay);
+            getContext().getSystem().scheduler().scheduleOnce(
+                    java.time.Duration.ofMillis(delay),
+                    getSelf(),
+                    new ResumeTaskType(taskType),
+                    getContext().getDispatcher(),
+                    getSelf()
+            );
+        }
+        return true;
+    }
+
+    /**
+     * 熔断到期（或试探任务成功）后恢复派发该类型的任务
+     */
+    private void handleResumeTaskType(ResumeTaskType resume) {
+        pausedTypes.remove(resume.taskType);
+        WorkerPool pool = poolFor(resume.taskType);
+        if (pool.resume(resume.taskType) > 0) {
+            dispatchPendingTasks(pool);
+        }
+    }
+
+    private TaskTypeCircuitBreaker breakerFor(String taskType, WorkerPool pool) {
+        String key = taskType != null ? taskType : TaskSystemSettings.DEFAULT_POOL;
+        TaskTypeCircuitBreaker breaker = breakers.get(key);
+        if (breaker == null) {
+            TaskSystemSettings.RetrySettings retry = pool.getSettings().getRetry();
+            breaker = new TaskTypeCircuitBreaker(retry.getBreakerFailureThreshold(),
+                    retry.getBreakerOpenTimeout().toMillis());
+            breakers.put(key, breaker);
+        }
+        return breaker;
+    }
+
+    private static double random() {
+        return ThreadLocalRandom.current().nextDouble();
+    }
+
+    /**
+     * 任务在 atMillis 之后重新入队，期间仍是未终结任务（可查询、可取消）
+     */
+    private void scheduleRetry(Task task, long atMillis) {
+        task.setStatus(Task.TaskStatus.PENDING);
+        retryTimers.put(task.getTaskId(), retryWheel.schedule(task, atMillis));
+    }
+
+    /**
+     * 推进重试时间轮，把到期的任务放回各自的池
+     */
+    private void handleRetryTick() {
+        List<Task> due = retryWheel.advance(System.currentTimeMillis());
+        if (due.isEmpty()) {
+            return;
+        }
+        Set<WorkerPool> touched = new LinkedHashSet<>();
+        for (Task task : due) {
+            retryTimers.remove(task.getTaskId());
+            // 等待期间已被取消或移交的任务不再入队
+            if (tasks.get(task.getTaskId()) != task) {
+                continue;
+            }
+            WorkerPool pool = poolFor(task.getTaskType());
+            pool.requeue(task);
+            touched.add(pool);
+        }
+        for (WorkerPool pool : touched) {
+            dispatchPendingTasks(pool);
+        }
+    }
+
+    /**
+     * 排队中的任务超过截止时间，不再执行
+     */
+    private void expireQueuedTask(Task task) {
+        totalTasksExpired++;
+        totalTasksFailed++;
+        metrics.expired(task);
+        log.warning("Task {} expired in queue (deadline: {})", task.getTaskId(), task.getDeadline());
+        task.setStatus(Task.TaskStatus.FAILED);
+        task.setCompletedAt(LocalDateTime.now());
+        task.setErrorMessage("Deadline exceeded before start");
+        terminate(task);
+    }
+
+    /**
+     * 取消任务
+     * 排队中的任务立即取消（队列中惰性删除），在途任务通知Worker中断，等Worker返回最终状态后再回复；
+     * 等待上游的工作流节点连同其下游节点一起取消
+     */
+    private void handleCancelTask(TaskMessage.CancelTask cancel) {
+        String taskId = cancel.getTaskId();
+        Task task = tasks.get(taskId);
+
+        if (task == null) {
+            Task waiting = workflows.cancelWaiting(taskId, System.currentTimeMillis());
+            if (waiting != null) {
+                // 等待上游的工作流节点：连同下游节点一起不再执行
+                waiting.setCompletedAt(LocalDateTime.now());
+                totalTasksCancelled++;
+                publishTerminated(waiting);
+                log.info("Workflow task {} cancelled while waiting for its dependencies", taskId);
+                getSender().tell(new TaskMessage.TaskStatusResponse(taskId, "CANCELLED", "Task cancelled"), getSelf());
+                return;
+            }
+            String nodeStatus = workflows.pendingNodeStatus(taskId);
+            if (nodeStatus != null) {
+                getSender().tell(new TaskMessage.TaskStatusResponse(taskId, nodeStatus, "Task already finished"),
+                        getSelf());
+                return;
+            }
+            Task finished = retainedTasks.get(taskId);
+            if (finished == null && archiveActor != null) {
+                // 已归档的任务必然已结束，由归档Actor回复其最终状态
+                flushArchive();
+                archiveActor.forward(new TaskMessage.QueryTaskStatus(taskId), getContext());
+                return;
+            }
+            getSender().tell(finished != null
+                    ? new TaskMessage.TaskStatusResponse(taskId, finished.getStatus().name(), "Task already finished")
+                    : new TaskMessage.TaskStatusResponse(taskId, "NOT_FOUND", "Task not found"), getSelf());
+            return;
+        }
+
+        ActorRef worker = inFlightTasks.get(taskId);
+        if (worker != null) {
+            List<ActorRef> waiters = cancelRequests.get(taskId);
+            if (waiters == null) {
+                waiters = new ArrayList<>();
+                cancelRequests.put(taskId, waiters);
+                worker.tell(cancel, getSelf());
+            }
+            waiters.add(getSender());
+            log.info("Cancel requested for running task {} on worker {}", taskId, worker.path().name());
+            return;
+        }
+
+        task.setStatus(Task.TaskStatus.CANCELLED);
+        task.setCompletedAt(LocalDateTime.now());
+        task.setErrorMessage("Cancelled");
+        HashedTimingWheel.Timeout<Task> retry = retryTimers.remove(taskId);
+        if (retry != null) {
+            retryWheel.cancel(retry);
+        } else if (!coalescer.removeFollower(taskId)) {
+            poolFor(task.getTaskType()).markCancelled();
+        }
+        totalTasksCancelled++;
+        terminate(task);
+        log.info("Task {} cancelled while queued", taskId);
+
+        // 队列腾出了空位（被取消的主任务可能由跟随任务接替入队）
+        dispatchPendingTasks(poolFor(task.getTaskType()));
+        admitParkedBatches();
+        replyDurably(getSender(), new TaskMessage.TaskStatusResponse(taskId, "CANCELLED", "Task cancelled"));
+    }
+
+    /**
+     * 处理任务完成
+     */
+    private void handleTaskCompleted(Task task) {
+        // 归还Worker额度
+        ActorRef worker = inFlightTasks.remove(task.getTaskId());
+        WorkerPool pool = worker != null ? workerPools.get(worker) : null;
+        if (pool != null) {
+            if (isLastOfUnit(task.getTaskId())) {
+                pool.releaseWorker(worker);
+            }
+        } else {
+            inFlightBatches.remove(task.getTaskId());
+            pool = poolFor(task.getTaskType());
+        }
+        pool.getAutoscaler().recordCompletion(executionMillis(task));
+        metrics.finished(task, executionMillis(task));
+
+        boolean deadLettered = false;
+        if (task.getStatus() == Task.TaskStatus.COMPLETED) {
+            breakerFor(task.getTaskType(), pool).onSuccess();
+            // 试探任务成功，暂停的同类型任务不必等到熔断到期，随后的派发即可出队
+            pool.resume(FairTaskQueue.typeOf(task));
+            totalTasksCompleted++;
+            log.info("Task {} completed successfully (Total completed: {})",
+                    task.getTaskId(), totalTasksCompleted);
+        } else if (task.getStatus() == Task.TaskStatus.FAILED) {
+            totalTasksFailed++;
+            log.warning("Task {} failed (Retry: {}/{}, Total failed: {})",
+                    task.getTaskId(), task.getRetryCount(), task.getMaxRetries(), totalTasksFailed);
+
+            long nowMillis = System.currentTimeMillis();
+            breakerFor(task.getTaskType(), pool).onFailure(nowMillis);
+
+            // 还有重试次数时按指数退避延迟重新入队；重试耗尽或重试预算不足时进入死信队列；
+            // 已请求取消或超过截止时间的任务直接终结
+            RetryPolicy policy = pool.getRetryPolicy();
+            if (cancelRequests.containsKey(task.getTaskId()) || task.isDeadlineExceeded(LocalDateTime.now())) {
+                log.info("Task {} will not be retried (cancelled or past deadline)", task.getTaskId());
+            } else if (task.getRetryCount() >= task.getMaxRetries()) {
+                deadLettered = true;
+            } else if (!policy.tryAcquireRetry(nowMillis)) {
+                task.setErrorMessage("Retry budget exhausted: " + task.getErrorMessage());
+                deadLettered = true;
+            } else {
+                long backoff = policy.backoffMillis(task.getRetryCount(), random());
+                log.info("Retrying task {} in {} ms", task.getTaskId(), backoff);
+                metrics.retried(task);
+                scheduleRetry(task, nowMillis + backoff);
+            }
+        } else if (task.getStatus() == Task.TaskStatus.CANCELLED) {
+            totalTasksCancelled++;
+            log.info("Task {} cancelled (Total cancelled: {})", task.getTaskId(), totalTasksCancelled);
+        }
+
+        // 更新任务存储：已终结的任务移入有界的保留区
+        if (task.getStatus() == Task.TaskStatus.PENDING) {
+            tasks.put(task.getTaskId(), task);
+            journalRequeued(task);
+        } else if (deadLettered) {
+            deadLetter(task);
+        } else {
+            terminate(task);
+        }
+
+        // 回复等待取消结果的请求方（任务可能在中断前已经完成）
+        List<ActorRef> waiters = cancelRequests.remove(task.getTaskId());
+        if (waiters != null) {
+            TaskMessage.TaskStatusResponse response = new TaskMessage.TaskStatusResponse(
+                    task.getTaskId(), task.getStatus().name(),
+                    task.getStatus() == Task.TaskStatus.CANCELLED ? "Task cancelled" : "Task already finished");
+            for (ActorRef waiter : waiters) {
+                replyDurably(waiter, response);
+            }
+        }
+
+        // Worker释放了额度，继续分配待处理任务（包括刚满足依赖的工作流任务），腾出的队列空位留给等待中的批次
+        dispatchPendingTasks(pool);
+        for (WorkerPool released : releasedPools) {
+            dispatchPendingTasks(released);
+        }
+        releasedPools.clear();
+        admitParkedBatches();
+    }
+
+    /**
+     * 已终结的任务移出未终结集合并记入日志和保留区
+     */
+    private void terminate(Task task) {
+        tasks.remove(task.getTaskId());
+        journalTerminated(task);
+        retainedTasks.put(task.getTaskId(), task, System.currentTimeMillis());
+        if (pendingArchive.size() >= ARCHIVE_BATCH_SIZE) {
+            flushArchive();
+        }
+        releaseFollowers(task);
+        releaseWorkflowSuccessors(task);
+        publishTerminated(task);
+    }
+
+    /**
+     * 任务终结事件发布到本地事件流，由WebSocketManagerActor按主题推送给订阅的客户端
+     */
+    private void publishTerminated(Task task) {
+        boolean success = task.getStatus() == Task.TaskStatus.COMPLETED;
+        String result = success ? task.getResult() : task.getErrorMessage();
+        getContext().getSystem().eventStream().publish(new TaskMessage.TaskCompleted(
+                task.getTaskId(), task.getTaskType(), success, result != null ? result : task.getStatus().name()));
+    }
+
+    /**
+     * 主任务终结后，跟随任务复制它的最终状态和结果；
+     * 主任务被取消时跟随任务不受影响，由最早到达的跟随任务接替主任务重新入队（由调用方负责随后派发）
+     */
+    private void releaseFollowers(Task leader) {
+        List<Task> followers = coalescer.release(leader);
+        if (followers.isEmpty()) {
+            return;
+        }
+
+        if (leader.getStatus() == Task.TaskStatus.CANCELLED) {
+            Task successor = followers.get(0);
+            coalescer.addLeader(successor);
+            for (Task follower : followers.subList(1, followers.size())) {
+                coalescer.addFollower(successor, follower);
+            }
+            poolFor(successor.getTaskType()).requeue(successor);
+            log.info("Task {} takes over {} coalesced tasks from cancelled task {}",
+                    successor.getTaskId(), followers.size() - 1, leader.getTaskId());
+            return;
+        }
+
+        for (Task follower : followers) {
+            follower.setStatus(leader.getStatus());
+            follower.setStartedAt(leader.getStartedAt());
+            follower.setCompletedAt(leader.getCompletedAt());
+            follower.setResult(leader.getResult());
+            if (leader.getResultHandle() != null && resultStore != null && resultStore.retain(leader.getResultHandle())) {
+                follower.setResultHandle(leader.getResultHandle());
+            }
+            follower.setErrorMessage(leader.getErrorMessage());
+            if (leader.getStatus() == Task.TaskStatus.COMPLETED) {
+                totalTasksCompleted++;
+            } else {
+                totalTasksFailed++;
+            }
+            metrics.finished(follower, -1);
+            terminate(follower);
+        }
+        log.info("Result of task {} shared with {} coalesced tasks", leader.getTaskId(), followers.size());
+    }
+
+    /**
+     * 失败的任务移入死信队列，同时作为已终结任务保留以便查询
+     */
+    private void deadLetter(Task task) {
+        tasks.remove(task.getTaskId());
+        deadLetters.add(task);
+        metrics.deadLettered(task);
+        retainedTasks.put(task.getTaskId(), task, System.currentTimeMillis());
+        journalDeadLettered(task);
+        releaseFollowers(task);
+        releaseWorkflowSuccessors(task);
+        publishTerminated(task);
+        log.warning("Task {} moved to dead-letter queue after {} retries: {}",
+                task.getTaskId(), task.getRetryCount(), task.getErrorMessage());
+    }
+
+    private void handleQueryDeadLetters(TaskMessage.QueryDeadLetters query) {
+        List<Task> matching = deadLetters.list(query.getTaskType());
+        int from = Math.min(Math.max(0, query.getOffset()), matching.size());
+        int to = Math.min(matching.size(), from + Math.max(0, query.getLimit()));
+        getSender().tell(new TaskMessage.DeadLetters(matching.size(), new ArrayList<>(matching.subList(from, to))),
+                getSelf());
+    }
+
+    /**
+     * 重放死信任务：重置重试次数、结果和截止时间后作为新任务重新入队；
+     * 不在死信队列中或对应池队列已满的任务计入拒绝，已满的仍留在死信队列中
+     */
+    private void handleReplayDeadLetters(TaskMessage.ReplayDeadLetters replay) {
+        List<Task> candidates = new ArrayList<>();
+        List<String> rejectedTaskIds = new ArrayList<>();
+        if (replay.getTaskIds() != null) {
+            for (String taskId : replay.getTaskIds()) {
+                Task task = deadLetters.get(taskId);
+                if (task != null) {
+                    candidates.add(task);
+                } else {
+                    rejectedTaskIds.add(taskId);
+                }
+            }
+        } else {
+            candidates.addAll(deadLetters.list(replay.getTaskType()));
+        }
+
+        int accepted = 0;
+        Set<WorkerPool> touched = new LinkedHashSet<>();
+        for (Task task : candidates) {
+            WorkerPool pool = poolFor(task.getTaskType());
+            if (pool.isFull()) {
+                rejectedTaskIds.add(task.getTaskId());
+                continue;
+            }
+            deadLetters.remove(task.getTaskId());
+            retainedTasks.remove(task.getTaskId());
+            task.setStatus(Task.TaskStatus.PENDING);
+            task.setRetryCount(0);
+            task.setResult(null);
+            task.setErrorMessage(null);
+            task.setStartedAt(null);
+            task.setCompletedAt(null);
+            task.setDeadline(null);
+            pool.offer(task);
+            pool.getAutoscaler().recordArrival();
+            tasks.put(task.getTaskId(), task);
+            journalAccepted(task);
+            metrics.accepted(task);
+            totalTasksReceived++;
+            accepted++;
+            touched.add(pool);
+        }
+        for (WorkerPool pool : touched) {
+            dispatchPendingTasks(pool);
+        }
+
+        log.info("Replayed {} dead letters ({} rejected)", accepted, rejectedTaskIds.size());
+        replyDurably(getSender(), new TaskMessage.BatchAccepted(accepted, rejectedTaskIds));
+    }
+
+    /**
+     * 自动伸缩：按各池的队列深度、执行时间和吞吐调整Worker数量
+     */
+    private void handleAutoscaleTick() {
+        long intervalMillis = settings.getAutoscaling().getInterval().toMillis();
+        for (WorkerPool pool : pools.values()) {
+            if (!pool.isElastic()) {
+                continue;
+            }
+
+            int current = pool.size();
+            int target = pool.getAutoscaler().evaluate(current, pool.pendingSize(), intervalMillis);
+            target = Math.min(target, Math.max(current, pool.maxUsefulWorkers()));
+
+            if (target > current) {
+                log.info("Scaling pool {} up from {} to {} workers (pending: {})",
+                        pool.getName(), current, target, pool.pendingSize());
+                for (int i = current; i < target; i++) {
+                    startWorker(pool);
+                }
+            } else if (target < current) {
+                ActorRef idle = pool.removeIdleWorker();
+                if (idle != null) {
+                    workerPools.remove(idle);
+                    getContext().stop(idle);
+                    log.info("Scaling pool {} down from {} to {} workers", pool.getName(), current, pool.size());
+                }
+            }
+            metrics.updatePool(pool);
+        }
+    }
+
+    /**
+     * 从日志恢复：重建计数、已终结任务，未终结的任务（包括崩溃前在途的）全部重新排队
+     */
+    private void recoverFromJournal(TaskSystemSettings.JournalSettings journalSettings) throws IOException {
+        long start = System.currentTimeMillis();
+        journal = new TaskJournal(storageDirectory(journalSettings.getDirectory()), journalSettings.isFsync());
+        TaskJournal.Recovery recovery = journal.recover();
+
+        totalTasksReceived = (int) recovery.getReceived();
+        totalTasksCompleted = (int) recovery.getCompleted();
+        totalTasksFailed = (int) recovery.getFailed();
+
+        long now = System.currentTimeMillis();
+        for (Task task : recovery.getTerminalTasks().values()) {
+            retainedTasks.put(task.getTaskId(), task, now);
+            rememberIdempotencyKey(task);
+            if (task.getResultHandle() != null && (resultStore == null || !resultStore.retain(task.getResultHandle()))) {
+                task.setResultHandle(null);
+            }
+        }
+        for (Task task : recovery.getDeadLetters().values()) {
+            deadLetters.add(task);
+        }
+        for (Task task : recovery.getLiveTasks().values()) {
+            task.setStatus(Task.TaskStatus.PENDING);
+            tasks.put(task.getTaskId(), task);
+            rememberIdempotencyKey(task);
+            Task leader = task.isCoalesce() ? coalescer.leaderFor(task) : null;
+            if (leader != null) {
+                coalescer.addFollower(leader, task);
+                continue;
+            }
+            if (task.isCoalesce()) {
+                coalescer.addLeader(task);
+            }
+            poolFor(task.getTaskType()).requeue(task);
+        }
+
+        log.info("Recovered {} pending and {} terminal tasks from journal ({} events replayed in {} ms)",
+                recovery.getLiveTasks().size(), recovery.getTerminalTasks().size(),
+                recovery.getReplayedEvents(), System.currentTimeMillis() - start);
+    }
+
+    private void journalAccepted(Task task) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.append(task);
+        } catch (IOException e) {
+            log.error(e, "Failed to journal accepted task {}", task.getTaskId());
+            journalError = e;
+        }
+        scheduleJournalFlush();
+    }
+
+    private void journalRequeued(Task task) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.appendRequeued(task);
+        } catch (IOException e) {
+            log.error(e, "Failed to journal retry of task {}", task.getTaskId());
+            journalError = e;
+        }
+        scheduleJournalFlush();
+    }
+
+    private void journalTerminated(Task task) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.appendTerminated(task);
+        } catch (IOException e) {
+            log.error(e, "Failed to journal completion of task {}", task.getTaskId());
+            journalError = e;
+        }
+        scheduleJournalFlush();
+    }
+
+    private void journalHandedOff(Task task) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.appendHandedOff(task);
+        } catch (IOException e) {
+            log.error(e, "Failed to journal hand-off of task {}", task.getTaskId());
+            journalError = e;
+        }
+    }
+
+    private void journalAdopted(Task task, boolean deadLetter) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.appendAdopted(task, deadLetter);
+        } catch (IOException e) {
+            log.error(e, "Failed to journal adopted task {}", task.getTaskId());
+            journalError = e;
+        }
+        scheduleJournalFlush();
+    }
+
+    private void journalDeadLettered(Task task) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.appendDeadLettered(task);
+        } catch (IOException e) {
+            log.error(e, "Failed to journal dead letter {}", task.getTaskId());
+            journalError = e;
+        }
+        scheduleJournalFlush();
+    }
+
+    /**
+     * 开启日志时回复要等到相关事件刷盘之后，保证回复ACCEPTED的任务在崩溃后可以恢复
+     */
+    private void replyDurably(ActorRef recipient, Object message) {
+        if (journal == null) {
+            recipient.tell(message, getSelf());
+            return;
+        }
+        pendingReplies.add(new PendingReply(recipient, message));
+        if (pendingReplies.size() >= settings.getJournal().getMaxBatch()) {
+            flushJournal();
+        }
+    }
+
+    private void scheduleJournalFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            getSelf().tell(FlushJournal.INSTANCE, getSelf());
+        }
+    }
+
+    /**
+     * 组提交：一次刷盘提交积攒的全部事件，然后发送等待中的回复，必要时在后台生成快照；
+     * 写入或刷盘失败时等待中的回复改为失败，并重启管理器（见 failJournal）
+     */
+    private void flushJournal() {
+        flushScheduled = false;
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            if (journalError != null) {
+                throw journalError;
+            }
+            journal.flush();
+        } catch (IOException e) {
+            failJournal(e);
+        }
+
+        for (PendingReply reply : pendingReplies) {
+            reply.recipient.tell(reply.message, getSelf());
+        }
+        pendingReplies.clear();
+
+        if (snapshotWrite == null && journal.getEventsSinceSnapshot() >= settings.getJournal().getSnapshotEvery()) {
+            startSnapshot();
+        }
+    }
+
+    /**
+     * 在Actor线程上切换日志段并复制当前状态，序列化和写盘在阻塞调度器上进行，不阻塞派发；
+     * 同一时间只写一个快照，写完后回到Actor线程（SnapshotWritten）
+     */
+    private void startSnapshot() {
+        long index;
+        try {
+            index = journal.rotate();
+        } catch (IOException e) {
+            failJournal(e);
+            return;
+        }
+        List<Task> live = copyOf(tasks.values());
+        List<Task> terminal = copyOf(retainedTasks.values());
+        List<Task> dead = copyOf(deadLetters.values());
+        long received = totalTasksReceived;
+        long completed = totalTasksCompleted;
+        long failed = totalTasksFailed;
+        TaskJournal target = journal;
+        ActorRef self = getSelf();
+        snapshotWrite = CompletableFuture.runAsync(() -> {
+            IOException error = null;
+            try {
+                target.writeSnapshot(index, live, terminal, dead, received, completed, failed);
+            } catch (IOException e) {
+                error = e;
+            }
+            self.tell(new SnapshotWritten(index, live.size(), terminal.size(), error), ActorRef.noSender());
+        }, getContext().getSystem().dispatchers().lookup(resolveDispatcher(TaskSystemSettings.SHARED_BLOCKING_DISPATCHER)));
+    }
+
+    /**
+     * 快照写入失败不影响正确性：旧快照和其后的日志段都还在，下一个快照周期再试
+     */
+    private void handleSnapshotWritten(SnapshotWritten written) {
+        snapshotWrite = null;
+        if (written.error != null) {
+            log.error(written.error, "Failed to write journal snapshot {}", written.index);
+        } else {
+            log.info("Journal snapshot {} written ({} live, {} terminal tasks)",
+                    written.index, written.live, written.terminal);
+        }
+    }
+
+    private static List<Task> copyOf(Collection<Task> source) {
+        List<Task> copies = new ArrayList<>(source.size());
+        for (Task task : source) {
+            copies.add(task.copy());
+        }
+        return copies;
+    }
+
+    /**
+     * 日志写入失败：积攒的事件不一定能在崩溃后恢复，等待中的回复（ACCEPTED等）改为失败；
+     * 随后放弃当前日志并抛出异常，由监督者重启管理器，重启后从已落盘的日志恢复
+     */
+    private void failJournal(IOException e) {
+        log.error(e, "Task journal write failed, failing {} pending replies", pendingReplies.size());
+        for (PendingReply reply : pendingReplies) {
+            reply.recipient.tell(new Status.Failure(e), getSelf());
+        }
+        pendingReplies.clear();
+        journal.abort();
+        journal = null;
+        throw new IllegalStateException("Task journal write failed", e);
+    }
+
+    /**
+     * 淘汰过期的已终结任务
+     */
+    private void handleRetentionTick() {
+        long now = System.currentTimeMillis();
+        int evicted = retainedTasks.evictExpired(now);
+        idempotencyIndex.evictExpired(now);
+        workflows.evictExpired(now);
+        if (evicted > 0) {
+            log.info("Evicted {} expired tasks (retained: {})", evicted, retainedTasks.size());
+        }
+        flushArchive();
+        // 没有任务完成时也要让等待超时的批次得到回复
+        admitParkedBatches();
+    }
+
+    /**
+     * 任务的完整结果，写入结果存储的结果从存储中读出（用作下游任务的输入）
+     */
+    private String resultOf(Task task) {
+        if (task.getResult() != null || task.getResultHandle() == null || resultStore == null) {
+            return task.getResult();
+        }
+        String handle = task.getResultHandle();
+        byte[] data = resultStore.read(handle, 0, (int) TaskResultStore.sizeOf(handle));
+        return data != null ? new String(data, StandardCharsets.UTF_8) : null;
+    }
+
+    private void onTaskEvicted(Task task) {
+        if (task.getResultHandle() != null && resultStore != null) {
+            resultStore.release(task.getResultHandle());
+        }
+        if (archiveActor != null) {
+            pendingArchive.add(task);
+        }
+    }
+
+    /**
+     * 把攒下的淘汰任务批量交给归档Actor
+     */
+    private void flushArchive() {
+        if (archiveActor == null || pendingArchive.isEmpty()) {
+            return;
+        }
+        archiveActor.tell(new TaskArchiveActor.ArchiveTasks(pendingArchive), getSelf());
+        pendingArchive.clear();
+    }
+
+    /**
+     * 查询任务状态：依次查找未终结任务、保留区和磁盘归档
+     */
+    private void handleQueryStatus(TaskMessage.QueryTaskStatus query) {
+        Task task = tasks.get(query.getTaskId());
+        if (task == null) {
+            task = retainedTasks.get(query.getTaskId());
+        }
+
+        // 尚未入队的工作流节点只登记在工作流中
+        String nodeStatus = task == null ? workflows.pendingNodeStatus(query.getTaskId()) : null;
+        if (nodeStatus != null) {
+            getSender().tell(new TaskMessage.TaskStatusResponse(
+                    query.getTaskId(),
+                    nodeStatus,
+                    WorkflowTracker.WAITING.equals(nodeStatus)
+                            ? "Workflow task waiting for its dependencies"
+                            : "Workflow task will not run"
+            ), getSelf());
+            return;
+        }
+
+        if (task == null && archiveActor != null) {
+            // 先写出尚未归档的任务，归档Actor按消息顺序处理，保证能查到刚淘汰的任务
+            flushArchive();
+            archiveActor.forward(query, getContext());
+            return;
+        }
+
+        if (task != null) {
+            getSender().tell(new TaskMessage.TaskStatusResponse(
+                    task.getTaskId(),
+                    task.getStatus().name(),
+                    "Task found: " + (task.getResultHandle() != null
+                            ? "result of " + TaskResultStore.sizeOf(task.getResultHandle())
+                                    + " bytes available at /api/tasks/" + task.getTaskId() + "/result"
+                            : task.getResult())
+            ), getSelf());
+        } else {
+            getSender().tell(new TaskMessage.TaskStatusResponse(
+                    query.getTaskId(),
+                    "NOT_FOUND",
+                    "Task not found"
+            ), getSelf());
+        }
+    }
+
+    /**
+     * 分块读取已完成任务的结果：较大的结果从结果存储读取，其余的取自任务本身
+     * 磁盘归档中的任务只保留截断的结果，不提供读取
+     */
+    private void handleReadResult(TaskMessage.ReadResult read) {
+        Task task = tasks.get(read.getTaskId());
+        if (task == null) {
+            task = retainedTasks.get(read.getTaskId());
+        }
+        if (task == null) {
+            getSender().tell(new TaskMessage.ResultChunk(read.getTaskId(), TaskMessage.ResultChunk.NOT_FOUND,
+                    null, 0, read.getOffset(), null), getSelf());
+            return;
+        }
+        if (task.getStatus() != Task.TaskStatus.COMPLETED) {
+            getSender().tell(new TaskMessage.ResultChunk(read.getTaskId(), TaskMessage.ResultChunk.NOT_READY,
+                    task.getStatus().name(), 0, read.getOffset(), null), getSelf());
+            return;
+        }
+
+        long offset = Math.max(0, read.getOffset());
+        long totalSize;
+        byte[] data;
+        if (task.getResultHandle() != null) {
+            totalSize = TaskResultStore.sizeOf(task.getResultHandle());
+            data = resultStore != null
+                    ? resultStore.read(task.getResultHandle(), Math.min(offset, totalSize), read.getMaxLength())
+                    : null;
+            if (data == null) {
+                getSender().tell(new TaskMessage.ResultChunk(read.getTaskId(), TaskMessage.ResultChunk.GONE,
+                        task.getStatus().name(), totalSize, offset, null), getSelf());
+                return;
+            }
+        } else {
+            byte[] result = task.getResult() != null
+                    ? task.getResult().getBytes(StandardCharsets.UTF_8)
+                    : new byte[0];
+            totalSize = result.length;
+            int from = (int) Math.min(offset, totalSize);
+            data = Arrays.copyOfRange(result, from, (int) Math.min(totalSize, from + (long) read.getMaxLength()));
+        }
+        getSender().tell(new TaskMessage.ResultChunk(read.getTaskId(), TaskMessage.ResultChunk.OK,
+                task.getStatus().name(), totalSize, offset, data), getSelf());
+    }
+
+    /**
+     * 分片迁移：未完成的任务（包括在途的）重新发给分片区域，随后发送保留区、死信、幂等索引和工作流状态，
+     * 由新的所属节点接管后停止自身。在途任务可能在两个节点各执行一次（至少一次语义）；
+     * 已请求取消的在途任务不再移交，直接按取消终结并回复等待方。
+     * 存放在本节点结果存储中的大结果和已归档到本地磁盘的任务不随之迁移，新节点上只能查到任务状态
+     */
+    private void handleHandOff() {
+        for (String taskId : new ArrayList<>(cancelRequests.keySet())) {
+            Task task = tasks.get(taskId);
+            List<ActorRef> waiters = cancelRequests.remove(taskId);
+            if (task == null) {
+                continue;
+            }
+            inFlightTasks.remove(taskId);
+            task.setStatus(Task.TaskStatus.CANCELLED);
+            task.setCompletedAt(LocalDateTime.now());
+            task.setErrorMessage("Cancelled");
+            totalTasksCancelled++;
+            terminate(task);
+            for (ActorRef waiter : waiters) {
+                replyDurably(waiter, new TaskMessage.TaskStatusResponse(taskId, "CANCELLED", "Task cancelled"));
+            }
+        }
+
+        ActorRef region = ClusterSharding.get(getContext().getSystem()).shardRegion(SHARD_TYPE_NAME);
+        int handedOff = 0;
+        for (Task task : new ArrayList<>(tasks.values())) {
+            task.setStatus(Task.TaskStatus.PENDING);
+            region.tell(task, ActorRef.noSender());
+            journalHandedOff(task);
+            handedOff++;
+        }
+
+        List<Task> retained = retainedTasks.values();
+        List<Task> dead = new ArrayList<>(deadLetters.values());
+        List<TaskMessage.IdempotencyEntry> idempotencyKeys = new ArrayList<>();
+        for (IdempotencyRecord record : idempotencyIndex.values()) {
+            idempotencyKeys.add(new TaskMessage.IdempotencyEntry(record.scope, record.taskId, record.fingerprint));
+        }
+        List<TaskMessage.WorkflowState> workflowStates = workflows.export();
+        region.tell(new TaskMessage.ShardState(getSelf().path().name(), retained, dead, idempotencyKeys, workflowStates),
+                ActorRef.noSender());
+        for (Task task : retained) {
+            journalHandedOff(task);
+        }
+        for (Task task : dead) {
+            journalHandedOff(task);
+        }
+
+        tasks.clear();
+        inFlightTasks.clear();
+        inFlightBatches.clear();
+        coalescer.clear();
+        log.info("Shard {} handing off {} unfinished tasks, {} retained tasks and {} dead letters",
+                getSelf().path().name(), handedOff, retained.size(), dead.size());
+
+        flushJournal();
+        getContext().stop(getSelf());
+    }
+
+    /**
+     * 接管分片迁移前所属管理器的状态；本地已有的任务、幂等键和工作流保持不变。
+     * 结果存储中的大结果留在原节点，句柄在这里无效，因此清除
+     */
+    private void handleShardState(TaskMessage.ShardState state) {
+        long now = System.currentTimeMillis();
+        for (Task task : state.getRetainedTasks()) {
+            if (tasks.containsKey(task.getTaskId()) || retainedTasks.containsKey(task.getTaskId())) {
+                continue;
+            }
+            task.setResultHandle(null);
+            retainedTasks.put(task.getTaskId(), task, now);
+            journalAdopted(task, false);
+        }
+        for (Task task : state.getDeadLetters()) {
+            if (deadLetters.get(task.getTaskId()) == null && !tasks.containsKey(task.getTaskId())) {
+                deadLetters.add(task);
+                journalAdopted(task, true);
+            }
+        }
+        for (TaskMessage.IdempotencyEntry entry : state.getIdempotencyKeys()) {
+            if (!idempotencyIndex.containsKey(entry.getScope())) {
+                idempotencyIndex.put(entry.getScope(),
+                        new IdempotencyRecord(entry.getScope(), entry.getTaskId(), entry.getFingerprint()), now);
+            }
+        }
+        for (TaskMessage.WorkflowState workflow : state.getWorkflows()) {
+            workflows.adopt(workflow, now);
+        }
+        log.info("Adopted shard state: {} retained tasks, {} dead letters, {} idempotency keys, {} workflows",
+                state.getRetainedTasks().size(), state.getDeadLetters().size(),
+                state.getIdempotencyKeys().size(), state.getWorkflows().size());
+    }
+
+    private void handleGetShardStats(TaskMessage.GetShardStats request) {
+        getSender().tell(new TaskMessage.ShardStats(request.getShardId(), buildStats()), getSelf());
+    }
+
+    /**
+     * 获取统计信息
+     */
+    private void handleGetStats() {
+        getSender().tell(buildStats(), getSelf());
+    }
+
+    private Map<String, Object> buildStats() {
+        int pending = 0;
+        int availableCredits = 0;
+        Map<String, Object> poolStats = new LinkedHashMap<>();
+        for (WorkerPool pool : pools.values()) {
+            pending += pool.pendingSize();
+            availableCredits += pool.totalAvailableCredits();
+            poolStats.put(pool.getName(), pool.stats());
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("workerCount", workerPools.size());
+        stats.put("totalReceived", totalTasksReceived);
+        stats.put("totalCompleted", totalTasksCompleted);
+        stats.put("totalFailed", totalTasksFailed);
+        stats.put("totalRejected", totalTasksRejected);
+        stats.put("totalCancelled", totalTasksCancelled);
+        stats.put("totalExpired", totalTasksExpired);
+        stats.put("totalDeduplicated", totalTasksDeduplicated);
+        stats.put("totalCoalesced", totalTasksCoalesced);
+        stats.put("coalescedWaiting", coalescer.followerCount());
+        stats.put("activeWorkflows", workflows.activeCount());
+        if (resultStore != null) {
+            stats.put("resultStoreSegments", resultStore.segmentCount());
+            stats.put("resultStoreMappedBytes", resultStore.mappedBytes());
+        }
+        stats.put("pendingQueueSize", pending);
+        stats.put("inFlightTasks", inFlightTasks.size());
+        stats.put("parkedBatches", parkedBatches.size());
+        stats.put("availableCredits", availableCredits);
+        stats.put("totalTrackedTasks", tasks.size() + retainedTasks.size());
+        stats.put("retainedTasks", retainedTasks.size());
+        stats.put("evictedTasks", retainedTasks.getEvictedCount());
+        stats.put("scheduledRetries", retryTimers.size());
+        stats.put("deadLetters", deadLetters.size());
+        Map<String, Object> breakerStates = new TreeMap<>();
+        for (Map.Entry<String, TaskTypeCircuitBreaker> entry : breakers.entrySet()) {
+            breakerStates.put(entry.getKey(), entry.getValue().getState().name());
+        }
+        stats.put("circuitBreakers", breakerStates);
+        stats.put("pools", poolStats);
+        return stats;
+    }
+
+    /**
+     * 分片实体的日志和归档放在以实体ID命名的子目录中，避免同一节点上的多个分片互相覆盖
+     */
+    private File storageDirectory(String directory) {
+        return sharded
+                ? new File(directory, "shard-" + getSelf().path().name())
+                : new File(directory);
+    }
+
+    /**
+     * 按任务类型选择Worker池，未配置专属池的类型进入默认池
+     */
+    private WorkerPool poolFor(String taskType) {
+        WorkerPool pool = taskType != null ? pools.get(taskType) : null;
+        return pool != null ? pool : pools.get(TaskSystemSettings.DEFAULT_POOL);
+    }
+
+    /**
+     * 配置中不存在的调度器退回到默认调度器，避免Worker创建失败
+     */
+    private String resolveDispatcher(String dispatcher) {
+        if (getContext().getSystem().dispatchers().hasDispatcher(dispatcher)) {
+            return dispatcher;
+        }
+        log.warning("Dispatcher {} not configured, workers fall back to the default dispatcher", dispatcher);
+        return "akka.actor.default-dispatcher";
+    }
+
+    private static String workerName(String poolName, int index) {
+        if (TaskSystemSettings.DEFAULT_POOL.equals(poolName)) {
+            return "worker-" + index;
+        }
+        return "worker-" + poolName.toLowerCase().replace('_', '-') + "-" + index;
+    }
+
+    /**
+     * 在池中创建一个新的Worker
+     */
+    private void startWorker(WorkerPool pool) {
+        TaskSystemSettings.PoolSettings poolSettings = pool.getSettings();
+        String dispatcher = resolveDispatcher(poolSettings.getDispatcher());
+        // Worker本身不阻塞，运行在默认调度器上，任务体在池的阻塞调度器上执行
+        ActorRef worker = getContext().actorOf(
+                TaskWorkerActor.props(poolSettings.getCredits(), dispatcher, executors, resultStore,
+                        settings.getResultStore().getInlineThreshold()),
+                workerName(poolSettings.getName(), pool.nextWorkerSeq())
+        );
+        pool.addWorker(worker);
+        workerPools.put(worker, pool);
+        log.info("Created worker: {} (dispatcher: {})", worker.path(), dispatcher);
+    }
+
+    /**
+     * 任务实际执行耗时，缺少时间戳时返回-1
+     */
+    private static long executionMillis(Task task) {
+        LocalDateTime startedAt = task.getStartedAt();
+        LocalDateTime completedAt = task.getCompletedAt();
+        if (startedAt == null || completedAt == null) {
+            return -1;
+        }
+        return java.time.Duration.between(startedAt, completedAt).toMillis();
     }
 }
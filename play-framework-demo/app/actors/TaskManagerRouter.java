@@ -0,0 +1,234 @@
+package actors;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import akka.pattern.Patterns;
+import models.Task;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 集群分片模式下任务管理器的本地入口
+ * 任务和状态查询转发给分片区域（由分片路由到所属节点），批量提交按分片拆分，
+ * 统计请求向所有分片并发查询后汇总，对调用方保持与单个TaskManagerActor相同的协议
+ */
+public class TaskManagerRouter extends AbstractActor {
+
+    private final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
+
+    private static final Duration SHARD_STATS_TIMEOUT = Duration.ofSeconds(3);
+    private static final Duration BATCH_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration PARKED_BATCH_TIMEOUT = Duration.ofSeconds(45);
+
+    private final ActorRef shardRegion;
+    private final int numberOfShards;
+
+    public TaskManagerRouter(ActorRef shardRegion, int numberOfShards) {
+        this.shardRegion = shardRegion;
+        this.numberOfShards = numberOfShards;
+    }
+
+    public static Props props(ActorRef shardRegion, int numberOfShards) {
+        return Props.create(TaskManagerRouter.class, shardRegion, numberOfShards);
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(Task.class, task -> shardRegion.forward(task, getContext()))
+                .match(TaskMessage.QueryTaskStatus.class, query -> shardRegion.forward(query, getContext()))
+                .match(TaskMessage.ReadResult.class, read -> shardRegion.forward(read, getContext()))
+                .match(TaskMessage.CancelTask.class, cancel -> shardRegion.forward(cancel, getContext()))
+                .match(TaskMessage.SubmitWorkflow.class, submit -> shardRegion.forward(submit, getContext()))
+                .match(TaskMessage.QueryWorkflow.class, query -> shardRegion.forward(query, getContext()))
+                .match(TaskMessage.SubmitBatch.class, this::handleSubmitBatch)
+                .match(TaskMessage.QueryDeadLetters.class, this::handleQueryDeadLetters)
+                .match(TaskMessage.ReplayDeadLetters.class, this::handleReplayDeadLetters)
+                .matchEquals("GET_STATS", s -> handleGetStats())
+                .matchAny(o -> log.warning("Received unknown message: {}", o))
+                .build();
+    }
+
+    /**
+     * 按分片拆分批次后并发提交，汇总各分片的响应；超时的分片按整批拒绝计
+     */
+    private void handleSubmitBatch(TaskMessage.SubmitBatch batch) {
+        Map<String, List<Task>> byShard = new HashMap<>();
+        for (Task task : batch.getTasks()) {
+            byShard.computeIfAbsent(TaskShardExtractor.shardOf(task.getTaskId(), numberOfShards),
+                    s -> new ArrayList<>()).add(task);
+        }
+
+        List<CompletableFuture<TaskMessage.BatchAccepted>> replies = new ArrayList<>();
+        for (List<Task> shardTasks : byShard.values()) {
+            replies.add(Patterns.ask(shardRegion,
+                    new TaskMessage.SubmitBatch(shardTasks, batch.isWaitForCapacity()),
+                    batch.isWaitForCapacity() ? PARKED_BATCH_TIMEOUT : BATCH_TIMEOUT)
+                    .toCompletableFuture()
+                    .handle((reply, e) -> {
+                        if (reply instanceof TaskMessage.BatchAccepted) {
+                            return (TaskMessage.BatchAccepted) reply;
+                        }
+                        List<String> rejected = new ArrayList<>();
+                        for (Task task : shardTasks) {
+                            rejected.add(task.getTaskId());
+                        }
+                        return new TaskMessage.BatchAccepted(0, rejected);
+                    }));
+        }
+
+        CompletableFuture<TaskMessage.BatchAccepted> merged = CompletableFuture
+                .allOf(replies.toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    int accepted = 0;
+                    List<String> rejected = new ArrayList<>();
+                    for (CompletableFuture<TaskMessage.BatchAccepted> reply : replies) {
+                        accepted += reply.join().getAccepted();
+                        rejected.addAll(reply.join().getRejectedTaskIds());
+                    }
+                    return new TaskMessage.BatchAccepted(accepted, rejected);
+                });
+
+        Patterns.pipe(merged, getContext().getDispatcher()).to(getSender());
+    }
+
+    /**
+     * 向所有分片查询前 offset + limit 条死信，合并后按进入死信队列的时间排序再分页；超时的分片不计入
+     */
+    private void handleQueryDeadLetters(TaskMessage.QueryDeadLetters query) {
+        int window = query.getOffset() + query.getLimit();
+        List<CompletableFuture<Object>> replies = new ArrayList<>();
+        for (int i = 0; i < numberOfShards; i++) {
+            replies.add(Patterns.ask(shardRegion,
+                    new TaskMessage.QueryDeadLetters(query.getTaskType(), 0, window, String.valueOf(i)),
+                    SHARD_STATS_TIMEOUT)
+                    .toCompletableFuture()
+                    .exceptionally(e -> null));
+        }
+
+        CompletableFuture<TaskMessage.DeadLetters> merged = CompletableFuture
+                .allOf(replies.toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    int total = 0;
+                    List<Task> tasks = new ArrayList<>();
+                    for (CompletableFuture<Object> reply : replies) {
+                        Object shard = reply.join();
+                        if (shard instanceof TaskMessage.DeadLetters) {
+                            total += ((TaskMessage.DeadLetters) shard).getTotal();
+                            tasks.addAll(((TaskMessage.DeadLetters) shard).getTasks());
+                        }
+                    }
+                    tasks.sort(Comparator.comparing(Task::getCompletedAt,
+                            Comparator.nullsFirst(Comparator.naturalOrder())));
+                    int from = Math.min(query.getOffset(), tasks.size());
+                    int to = Math.min(tasks.size(), window);
+                    return new TaskMessage.DeadLetters(total, new ArrayList<>(tasks.subList(from, to)));
+                });
+
+        Patterns.pipe(merged, getContext().getDispatcher()).to(getSender());
+    }
+
+    /**
+     * 指定taskId时按分片拆分，按类型重放时发给所有分片，汇总各分片的响应
+     */
+    private void handleReplayDeadLetters(TaskMessage.ReplayDeadLetters replay) {
+        Map<String, List<String>> byShard = new HashMap<>();
+        if (replay.getTaskIds() != null) {
+            for (String taskId : replay.getTaskIds()) {
+                byShard.computeIfAbsent(TaskShardExtractor.shardOf(taskId, numberOfShards),
+                        s -> new ArrayList<>()).add(taskId);
+            }
+        } else {
+            for (int i = 0; i < numberOfShards; i++) {
+                byShard.put(String.valueOf(i), null);
+            }
+        }
+
+        List<CompletableFuture<TaskMessage.BatchAccepted>> replies = new ArrayList<>();
+        for (Map.Entry<String, List<String>> shard : byShard.entrySet()) {
+            List<String> shardTaskIds = shard.getValue();
+            replies.add(Patterns.ask(shardRegion,
+                    new TaskMessage.ReplayDeadLetters(shardTaskIds, replay.getTaskType(), shard.getKey()),
+                    BATCH_TIMEOUT)
+                    .toCompletableFuture()
+                    .handle((reply, e) -> {
+                        if (reply instanceof TaskMessage.BatchAccepted) {
+                            return (TaskMessage.BatchAccepted) reply;
+                        }
+                        return new TaskMessage.BatchAccepted(0,
+                                shardTaskIds != null ? shardTaskIds : new ArrayList<>());
+                    }));
+        }
+
+        CompletableFuture<TaskMessage.BatchAccepted> merged = CompletableFuture
+                .allOf(replies.toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    int accepted = 0;
+                    List<String> rejected = new ArrayList<>();
+                    for (CompletableFuture<TaskMessage.BatchAccepted> reply : replies) {
+                        accepted += reply.join().getAccepted();
+                        rejected.addAll(reply.join().getRejectedTaskIds());
+                    }
+                    return new TaskMessage.BatchAccepted(accepted, rejected);
+                });
+
+        Patterns.pipe(merged, getContext().getDispatcher()).to(getSender());
+    }
+
+    /**
+     * 向所有分片并发查询统计信息，超时或失败的分片不计入汇总
+     */
+    private void handleGetStats() {
+        List<CompletableFuture<Object>> replies = new ArrayList<>();
+        for (int i = 0; i < numberOfShards; i++) {
+            replies.add(Patterns.ask(shardRegion, new TaskMessage.GetShardStats(String.valueOf(i)), SHARD_STATS_TIMEOUT)
+                    .toCompletableFuture()
+                    .exceptionally(e -> null));
+        }
+
+        CompletableFuture<Map<String, Object>> merged = CompletableFuture
+                .allOf(replies.toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    List<TaskMessage.ShardStats> shards = new ArrayList<>();
+                    for (CompletableFuture<Object> reply : replies) {
+                        Object stats = reply.join();
+                        if (stats instanceof TaskMessage.ShardStats) {
+                            shards.add((TaskMessage.ShardStats) stats);
+                        }
+                    }
+                    return merge(shards);
+                });
+
+        Patterns.pipe(merged, getContext().getDispatcher()).to(getSender());
+    }
+
+    /**
+     * 汇总各分片的数值型统计项，并保留每个分片的明细
+     */
+    static Map<String, Object> merge(List<TaskMessage.ShardStats> shards) {
+        Map<String, Object> merged = new HashMap<>();
+        Map<String, Object> perShard = new TreeMap<>();
+        for (TaskMessage.ShardStats shard : shards) {
+            for (Map.Entry<String, Object> entry : shard.getStats().entrySet()) {
+                if (entry.getValue() instanceof Number) {
+                    long value = ((Number) entry.getValue()).longValue();
+                    merged.merge(entry.getKey(), value, (a, b) -> (Long) a + (Long) b);
+                }
+            }
+            perShard.put(shard.getShardId(), shard.getStats());
+        }
+        merged.put("shardsReporting", shards.size());
+        merged.put("shards", perShard);
+        return merged;
+    }
+}
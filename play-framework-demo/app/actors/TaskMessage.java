@@ -1,7 +1,11 @@
 package actors;
 
+import models.Task;
+
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Actor消息基类
@@ -76,12 +80,21 @@ public interface TaskMessage extends Serializable {
      */
     class TaskCompleted implements TaskMessage {
         private final String taskId;
+        private final String taskType;
         private final boolean success;
         private final String result;
         private final LocalDateTime completedAt;
 
         public TaskCompleted(String taskId, boolean success, String result) {
+            this(taskId, null, success, result);
+        }
+
+        /**
+         * @param taskType 任务类型，用于WebSocket按主题推送，未知时为null
+         */
+        public TaskCompleted(String taskId, String taskType, boolean success, String result) {
             this.taskId = taskId;
+            this.taskType = taskType;
             this.success = success;
             this.result = result;
             this.completedAt = LocalDateTime.now();
@@ -91,6 +104,10 @@ public interface TaskMessage extends Serializable {
             return taskId;
         }
 
+        public String getTaskType() {
+            return taskType;
+        }
+
         public boolean isSuccess() {
             return success;
         }
@@ -107,6 +124,7 @@ public interface TaskMessage extends Serializable {
         public String toString() {
             return "TaskCompleted{" +
                     "taskId='" + taskId + '\'' +
+                    ", taskType='" + taskType + '\'' +
                     ", success=" + success +
                     ", completedAt=" + completedAt +
                     '}';
@@ -167,4 +185,725 @@ public interface TaskMessage extends Serializable {
                     '}';
         }
     }
+
+    /**
+     * Worker工作请求消息
+     * Worker启动（或重启）时向管理器通告自身可用的并发额度（credits），
+     * 管理器只在Worker有剩余额度时才分配任务（拉取模式）
+     */
+    class WorkRequest implements TaskMessage {
+        private final int credits;
+
+        public WorkRequest(int credits) {
+            this.credits = credits;
+        }
+
+        public int getCredits() {
+            return credits;
+        }
+
+        @Override
+        public String toString() {
+            return "WorkRequest{credits=" + credits + '}';
+        }
+    }
+
+    /**
+     * 管理器向Worker分配的一批同类型任务
+     * 只占用Worker的一个额度，由执行器的批量接口一次执行，每个任务仍单独回复
+     */
+    class AssignBatch implements TaskMessage {
+        private final List<Task> tasks;
+
+        public AssignBatch(List<Task> tasks) {
+            this.tasks = tasks;
+        }
+
+        public List<Task> getTasks() {
+            return tasks;
+        }
+
+        @Override
+        public String toString() {
+            return "AssignBatch{size=" + tasks.size() + '}';
+        }
+    }
+
+    /**
+     * 查询单个分片上任务管理器的统计信息（集群分片模式）
+     */
+    class GetShardStats implements TaskMessage {
+        private final String shardId;
+
+        public GetShardStats(String shardId) {
+            this.shardId = shardId;
+        }
+
+        public String getShardId() {
+            return shardId;
+        }
+
+        @Override
+        public String toString() {
+            return "GetShardStats{shardId='" + shardId + "'}";
+        }
+    }
+
+    /**
+     * 单个分片的统计信息响应
+     */
+    class ShardStats implements TaskMessage {
+        private final String shardId;
+        private final Map<String, Object> stats;
+
+        public ShardStats(String shardId, Map<String, Object> stats) {
+            this.shardId = shardId;
+            this.stats = stats;
+        }
+
+        public String getShardId() {
+            return shardId;
+        }
+
+        public Map<String, Object> getStats() {
+            return stats;
+        }
+
+        @Override
+        public String toString() {
+            return "ShardStats{shardId='" + shardId + "', stats=" + stats + '}';
+        }
+    }
+
+    /**
+     * 批量提交任务消息
+     * 一批任务只占用一条邮箱消息，管理器批量入队并统一回复一条BatchAccepted
+     */
+    class SubmitBatch implements TaskMessage {
+        private final List<Task> tasks;
+        private final boolean waitForCapacity;
+
+        public SubmitBatch(List<Task> tasks) {
+            this(tasks, false);
+        }
+
+        /**
+         * @param waitForCapacity 队列已满时不拒绝，而是等到有空位后再接收并回复（用于流式提交的背压）
+         */
+        public SubmitBatch(List<Task> tasks, boolean waitForCapacity) {
+            this.tasks = tasks;
+            this.waitForCapacity = waitForCapacity;
+        }
+
+        public List<Task> getTasks() {
+            return tasks;
+        }
+
+        public boolean isWaitForCapacity() {
+            return waitForCapacity;
+        }
+
+        @Override
+        public String toString() {
+            return "SubmitBatch{size=" + tasks.size() + ", waitForCapacity=" + waitForCapacity + '}';
+        }
+    }
+
+    /**
+     * 批量提交的汇总响应
+     * 未列入rejectedTaskIds的任务均已接收
+     */
+    class BatchAccepted implements TaskMessage {
+        private final int accepted;
+        private final List<String> rejectedTaskIds;
+
+        public BatchAccepted(int accepted, List<String> rejectedTaskIds) {
+            this.accepted = accepted;
+            this.rejectedTaskIds = rejectedTaskIds;
+        }
+
+        public int getAccepted() {
+            return accepted;
+        }
+
+        public List<String> getRejectedTaskIds() {
+            return rejectedTaskIds;
+        }
+
+        @Override
+        public String toString() {
+            return "BatchAccepted{accepted=" + accepted + ", rejected=" + rejectedTaskIds.size() + '}';
+        }
+    }
+
+    /**
+     * 定时提交任务消息
+     * runAtMillis 为首次执行时间（epoch毫秒）；cron不为空时按cron表达式周期执行，runAtMillis可为空
+     */
+    class ScheduleTask implements TaskMessage {
+        private final Task task;
+        private final Long runAtMillis;
+        private final String cron;
+
+        public ScheduleTask(Task task, Long runAtMillis, String cron) {
+            this.task = task;
+            this.runAtMillis = runAtMillis;
+            this.cron = cron;
+        }
+
+        public Task getTask() {
+            return task;
+        }
+
+        public Long getRunAtMillis() {
+            return runAtMillis;
+        }
+
+        public String getCron() {
+            return cron;
+        }
+
+        @Override
+        public String toString() {
+            return "ScheduleTask{taskId='" + task.getTaskId() + "', runAtMillis=" + runAtMillis + ", cron='" + cron + "'}";
+        }
+    }
+
+    /**
+     * 定时任务已登记的响应
+     */
+    class TaskScheduled implements TaskMessage {
+        private final String scheduleId;
+        private final String taskId;
+        private final long nextRunAtMillis;
+
+        public TaskScheduled(String scheduleId, String taskId, long nextRunAtMillis) {
+            this.scheduleId = scheduleId;
+            this.taskId = taskId;
+            this.nextRunAtMillis = nextRunAtMillis;
+        }
+
+        public String getScheduleId() {
+            return scheduleId;
+        }
+
+        public String getTaskId() {
+            return taskId;
+        }
+
+        public long getNextRunAtMillis() {
+            return nextRunAtMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "TaskScheduled{scheduleId='" + scheduleId + "', nextRunAtMillis=" + nextRunAtMillis + '}';
+        }
+    }
+
+    /**
+     * 取消定时任务消息，响应为TaskStatusResponse（CANCELLED或NOT_FOUND）
+     */
+    class CancelSchedule implements TaskMessage {
+        private final String scheduleId;
+
+        public CancelSchedule(String scheduleId) {
+            this.scheduleId = scheduleId;
+        }
+
+        public String getScheduleId() {
+            return scheduleId;
+        }
+
+        @Override
+        public String toString() {
+            return "CancelSchedule{scheduleId='" + scheduleId + "'}";
+        }
+    }
+
+    /**
+     * 取消任务消息
+     * 排队中的任务直接取消，执行中的任务由Worker中断；响应为TaskStatusResponse，
+     * 状态为CANCELLED、NOT_FOUND，或任务在取消前已经结束时的最终状态
+     */
+    class CancelTask implements TaskMessage {
+        private final String taskId;
+
+        public CancelTask(String taskId) {
+            this.taskId = taskId;
+        }
+
+        public String getTaskId() {
+            return taskId;
+        }
+
+        @Override
+        public String toString() {
+            return "CancelTask{taskId='" + taskId + "'}";
+        }
+    }
+
+    /**
+     * 查询死信队列
+     * 集群分片模式下由TaskManagerRouter向每个分片发送带shardId的查询后汇总，单机模式shardId为null
+     */
+    class QueryDeadLetters implements TaskMessage {
+        private final String taskType;
+        private final int offset;
+        private final int limit;
+        private final String shardId;
+
+        public QueryDeadLetters(String taskType, int offset, int limit) {
+            this(taskType, offset, limit, null);
+        }
+
+        public QueryDeadLetters(String taskType, int offset, int limit, String shardId) {
+            this.taskType = taskType;
+            this.offset = offset;
+            this.limit = limit;
+            this.shardId = shardId;
+        }
+
+        public String getTaskType() {
+            return taskType;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public String getShardId() {
+            return shardId;
+        }
+
+        @Override
+        public String toString() {
+            return "QueryDeadLetters{taskType='" + taskType + "', offset=" + offset + ", limit=" + limit + '}';
+        }
+    }
+
+    /**
+     * 死信查询结果，total为符合条件的总数
+     */
+    class DeadLetters implements TaskMessage {
+        private final int total;
+        private final List<Task> tasks;
+
+        public DeadLetters(int total, List<Task> tasks) {
+            this.total = total;
+            this.tasks = tasks;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public List<Task> getTasks() {
+            return tasks;
+        }
+
+        @Override
+        public String toString() {
+            return "DeadLetters{total=" + total + ", returned=" + tasks.size() + '}';
+        }
+    }
+
+    /**
+     * 批量重放死信任务，响应为BatchAccepted（不在死信队列中或队列已满的任务计入rejectedTaskIds）
+     * taskIds为null时重放指定类型（taskType为null时为全部）的死信
+     */
+    class ReplayDeadLetters implements TaskMessage {
+        private final List<String> taskIds;
+        private final String taskType;
+        private final String shardId;
+
+        public ReplayDeadLetters(List<String> taskIds, String taskType) {
+            this(taskIds, taskType, null);
+        }
+
+        public ReplayDeadLetters(List<String> taskIds, String taskType, String shardId) {
+            this.taskIds = taskIds;
+            this.taskType = taskType;
+            this.shardId = shardId;
+        }
+
+        public List<String> getTaskIds() {
+            return taskIds;
+        }
+
+        public String getTaskType() {
+            return taskType;
+        }
+
+        public String getShardId() {
+            return shardId;
+        }
+
+        @Override
+        public String toString() {
+            return "ReplayDeadLetters{taskIds=" + (taskIds != null ? taskIds.size() : "all")
+                    + ", taskType='" + taskType + "'}";
+        }
+    }
+
+    /**
+     * 提交工作流（任务的有向无环图），响应为TaskStatusResponse（taskId为workflowId，
+     * 状态为ACCEPTED、INVALID（依赖无效）或REJECTED（队列已满））
+     * 每个任务的taskId为 workflowId.nodeId，dependencies为 nodeId -> 依赖的nodeId列表；
+     * 没有依赖的节点立即入队，其余节点在所有依赖完成后入队，并通过 Task.inputs 收到依赖节点的结果
+     */
+    class SubmitWorkflow implements TaskMessage {
+        private final String workflowId;
+        private final List<Task> tasks;
+        private final Map<String, List<String>> dependencies;
+
+        public SubmitWorkflow(String workflowId, List<Task> tasks, Map<String, List<String>> dependencies) {
+            this.workflowId = workflowId;
+            this.tasks = tasks;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * 节点的taskId，分片模式下按 '.' 之前的workflowId路由，同一工作流的任务由同一个管理器处理
+         */
+        public static String taskIdOf(String workflowId, String nodeId) {
+            return workflowId + "." + nodeId;
+        }
+
+        public String getWorkflowId() {
+            return workflowId;
+        }
+
+        public List<Task> getTasks() {
+            return tasks;
+        }
+
+        public Map<String, List<String>> getDependencies() {
+            return dependencies;
+        }
+
+        @Override
+        public String toString() {
+            return "SubmitWorkflow{workflowId='" + workflowId + "', tasks=" + tasks.size() + '}';
+        }
+    }
+
+    /**
+     * 查询工作流状态，响应为WorkflowStatus
+     */
+    class QueryWorkflow implements TaskMessage {
+        private final String workflowId;
+
+        public QueryWorkflow(String workflowId) {
+            this.workflowId = workflowId;
+        }
+
+        public String getWorkflowId() {
+            return workflowId;
+        }
+
+        @Override
+        public String toString() {
+            return "QueryWorkflow{workflowId='" + workflowId + "'}";
+        }
+    }
+
+    /**
+     * 工作流状态：RUNNING、COMPLETED、FAILED 或 NOT_FOUND
+     * nodes为 nodeId -> 节点状态，尚未入队的节点为WAITING，因上游失败而不再执行的节点为CANCELLED
+     */
+    class WorkflowStatus implements TaskMessage {
+        private final String workflowId;
+        private final String status;
+        private final Map<String, String> nodes;
+
+        public WorkflowStatus(String workflowId, String status, Map<String, String> nodes) {
+            this.workflowId = workflowId;
+            this.status = status;
+            this.nodes = nodes;
+        }
+
+        public String getWorkflowId() {
+            return workflowId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public Map<String, String> getNodes() {
+            return nodes;
+        }
+
+        @Override
+        public String toString() {
+            return "WorkflowStatus{workflowId='" + workflowId + "', status=" + status + ", nodes=" + nodes.size() + '}';
+        }
+    }
+
+    /**
+     * 分块读取任务结果：从offset开始最多maxLength字节，响应为ResultChunk
+     */
+    class ReadResult implements TaskMessage {
+        private final String taskId;
+        private final long offset;
+        private final int maxLength;
+
+        public ReadResult(String taskId, long offset, int maxLength) {
+            this.taskId = taskId;
+            this.offset = offset;
+            this.maxLength = maxLength;
+        }
+
+        public String getTaskId() {
+            return taskId;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getMaxLength() {
+            return maxLength;
+        }
+
+        @Override
+        public String toString() {
+            return "ReadResult{taskId='" + taskId + "', offset=" + offset + ", maxLength=" + maxLength + '}';
+        }
+    }
+
+    /**
+     * 任务结果的一块
+     * status为 OK、NOT_FOUND、NOT_READY（任务尚未成功完成，taskStatus为当前状态）
+     * 或 GONE（结果已随任务的淘汰被释放）；totalSize为结果的总字节数
+     */
+    class ResultChunk implements TaskMessage {
+        public static final String OK = "OK";
+        public static final String NOT_FOUND = "NOT_FOUND";
+        public static final String NOT_READY = "NOT_READY";
+        public static final String GONE = "GONE";
+
+        private final String taskId;
+        private final String status;
+        private final String taskStatus;
+        private final long totalSize;
+        private final long offset;
+        private final byte[] data;
+
+        public ResultChunk(String taskId, String status, String taskStatus, long totalSize, long offset, byte[] data) {
+            this.taskId = taskId;
+            this.status = status;
+            this.taskStatus = taskStatus;
+            this.totalSize = totalSize;
+            this.offset = offset;
+            this.data = data;
+        }
+
+        public String getTaskId() {
+            return taskId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getTaskStatus() {
+            return taskStatus;
+        }
+
+        public long getTotalSize() {
+            return totalSize;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        @Override
+        public String toString() {
+            return "ResultChunk{taskId='" + taskId + "', status=" + status + ", offset=" + offset
+                    + ", length=" + (data != null ? data.length : 0) + ", totalSize=" + totalSize + '}';
+        }
+    }
+
+    /**
+     * 经集群分发的任务终结事件（WebSocket推送用）
+     * 同一事件可能因节点订阅了多个层级的主题而被多次收到，接收方按 eventId 去重
+     */
+    class ClusterTaskEvent implements TaskMessage {
+        private final String eventId;
+        private final String taskId;
+        private final String taskType;
+        private final boolean success;
+        private final String result;
+
+        public ClusterTaskEvent(String eventId, String taskId, String taskType, boolean success, String result) {
+            this.eventId = eventId;
+            this.taskId = taskId;
+            this.taskType = taskType;
+            this.success = success;
+            this.result = result;
+        }
+
+        public String getEventId() {
+            return eventId;
+        }
+
+        public String getTaskId() {
+            return taskId;
+        }
+
+        public String getTaskType() {
+            return taskType;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public String getResult() {
+            return result;
+        }
+
+        public TaskCompleted toTaskCompleted() {
+            return new TaskCompleted(taskId, taskType, success, result);
+        }
+
+        @Override
+        public String toString() {
+            return "ClusterTaskEvent{eventId='" + eventId + "', taskId='" + taskId + "', taskType='" + taskType
+                    + "', success=" + success + '}';
+        }
+    }
+
+    /**
+     * 分片迁移时旧管理器交给新管理器的状态，紧跟在重新发送的未完成任务之后发出：
+     * 保留区中的已终结任务、死信、幂等索引和工作流的依赖跟踪状态
+     */
+    class ShardState implements TaskMessage {
+        private final String shardId;
+        private final List<Task> retainedTasks;
+        private final List<Task> deadLetters;
+        private final List<IdempotencyEntry> idempotencyKeys;
+        private final List<WorkflowState> workflows;
+
+        public ShardState(String shardId, List<Task> retainedTasks, List<Task> deadLetters,
+                          List<IdempotencyEntry> idempotencyKeys, List<WorkflowState> workflows) {
+            this.shardId = shardId;
+            this.retainedTasks = retainedTasks;
+            this.deadLetters = deadLetters;
+            this.idempotencyKeys = idempotencyKeys;
+            this.workflows = workflows;
+        }
+
+        public String getShardId() {
+            return shardId;
+        }
+
+        public List<Task> getRetainedTasks() {
+            return retainedTasks;
+        }
+
+        public List<Task> getDeadLetters() {
+            return deadLetters;
+        }
+
+        public List<IdempotencyEntry> getIdempotencyKeys() {
+            return idempotencyKeys;
+        }
+
+        public List<WorkflowState> getWorkflows() {
+            return workflows;
+        }
+
+        @Override
+        public String toString() {
+            return "ShardState{shardId='" + shardId + "', retained=" + retainedTasks.size()
+                    + ", deadLetters=" + deadLetters.size() + ", idempotencyKeys=" + idempotencyKeys.size()
+                    + ", workflows=" + workflows.size() + '}';
+        }
+    }
+
+    /**
+     * 幂等索引中的一项：幂等键作用域 -&gt; 原任务及其内容摘要
+     */
+    class IdempotencyEntry implements Serializable {
+        private final String scope;
+        private final String taskId;
+        private final int fingerprint;
+
+        public IdempotencyEntry(String scope, String taskId, int fingerprint) {
+            this.scope = scope;
+            this.taskId = taskId;
+            this.fingerprint = fingerprint;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+
+        public String getTaskId() {
+            return taskId;
+        }
+
+        public int getFingerprint() {
+            return fingerprint;
+        }
+    }
+
+    /**
+     * 工作流的依赖跟踪状态：全部节点任务（已入队的节点为其当前状态）、依赖关系，
+     * 以及已入队和因上游失败而跳过的节点
+     */
+    class WorkflowState implements Serializable {
+        private final String workflowId;
+        private final List<Task> tasks;
+        private final Map<String, List<String>> dependencies;
+        private final List<String> released;
+        private final List<String> skipped;
+        private final boolean failed;
+
+        public WorkflowState(String workflowId, List<Task> tasks, Map<String, List<String>> dependencies,
+                             List<String> released, List<String> skipped, boolean failed) {
+            this.workflowId = workflowId;
+            this.tasks = tasks;
+            this.dependencies = dependencies;
+            this.released = released;
+            this.skipped = skipped;
+            this.failed = failed;
+        }
+
+        public String getWorkflowId() {
+            return workflowId;
+        }
+
+        public List<Task> getTasks() {
+            return tasks;
+        }
+
+        public Map<String, List<String>> getDependencies() {
+            return dependencies;
+        }
+
+        public List<String> getReleased() {
+            return released;
+        }
+
+        public List<String> getSkipped() {
+            return skipped;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+    }
 }
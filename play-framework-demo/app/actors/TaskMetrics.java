@@ -0,0 +1,147 @@
+package actors;
+
+import models.Task;
+import utils.MetricsRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * TaskManagerActor的运行指标
+ * 按任务类型缓存注册表中的计数器和耗时分布，按池缓存队列深度等瞬时值，记录时不再查找注册表。
+ * 同一节点上的多个分片共享注册表：计数器和耗时分布直接累加，瞬时值带 shard 标签区分。
+ * 任务类型来自客户端，没有专属池的类型统一记为 DEFAULT，避免标签数量无限增长。
+ * 非线程安全（缓存由TaskManagerActor独占访问），指标本身可被任意线程读取
+ */
+class TaskMetrics {
+
+    /**
+     * 单个任务类型的指标
+     */
+    private static final class TypeMetrics {
+        final MetricsRegistry.Counter accepted;
+        final MetricsRegistry.Counter completed;
+        final MetricsRegistry.Counter failed;
+        final MetricsRegistry.Counter cancelled;
+        final MetricsRegistry.Counter retried;
+        final MetricsRegistry.Counter deadLettered;
+        final MetricsRegistry.Counter expired;
+        final MetricsRegistry.Timer queueWait;
+        final MetricsRegistry.Timer execution;
+
+        TypeMetrics(MetricsRegistry registry, String taskType) {
+            accepted = registry.counter("task_accepted_total", "Tasks accepted for execution", "task_type", taskType);
+            completed = registry.counter("task_completed_total", "Tasks completed successfully", "task_type", taskType);
+            failed = registry.counter("task_failed_total", "Task executions that failed", "task_type", taskType);
+            cancelled = registry.counter("task_cancelled_total", "Tasks cancelled", "task_type", taskType);
+            retried = registry.counter("task_retries_total", "Failed tasks scheduled for retry", "task_type", taskType);
+            deadLettered = registry.counter("task_dead_lettered_total", "Tasks moved to the dead-letter queue",
+                    "task_type", taskType);
+            expired = registry.counter("task_expired_total", "Tasks whose deadline passed while queued",
+                    "task_type", taskType);
+            queueWait = registry.timer("task_queue_wait_seconds", "Time from enqueue to dispatch", "task_type", taskType);
+            execution = registry.timer("task_execution_seconds", "Task execution time", "task_type", taskType);
+        }
+    }
+
+    /**
+     * 单个Worker池的瞬时值
+     */
+    private static final class PoolMetrics {
+        final MetricsRegistry.Gauge pending;
+        final MetricsRegistry.Gauge inFlight;
+        final MetricsRegistry.Gauge workers;
+
+        PoolMetrics(MetricsRegistry registry, String pool, String shard) {
+            String[] labels = shard != null ? new String[]{"pool", pool, "shard", shard} : new String[]{"pool", pool};
+            pending = registry.gauge("task_pool_pending", "Tasks waiting in the pool queue", labels);
+            inFlight = registry.gauge("task_pool_in_flight", "Tasks dispatched to workers and not yet finished", labels);
+            workers = registry.gauge("task_pool_workers", "Workers in the pool", labels);
+        }
+    }
+
+    private final MetricsRegistry registry;
+    private final String shard;
+    private final Set<String> taskTypes;
+    private final Map<String, TypeMetrics> byType = new HashMap<>();
+    private final Map<String, PoolMetrics> byPool = new HashMap<>();
+
+    private final MetricsRegistry.Counter rejected;
+    private final MetricsRegistry.Counter deduplicated;
+    private final MetricsRegistry.Counter coalesced;
+
+    /**
+     * @param shard     分片名，未分片时为null
+     * @param taskTypes 单独统计的任务类型（各池的名称）
+     */
+    TaskMetrics(MetricsRegistry registry, String shard, Set<String> taskTypes) {
+        this.registry = registry;
+        this.shard = shard;
+        this.taskTypes = taskTypes;
+        this.rejected = registry.counter("task_rejected_total", "Tasks rejected because a pool queue was full");
+        this.deduplicated = registry.counter("task_deduplicated_total", "Submissions answered with an existing task");
+        this.coalesced = registry.counter("task_coalesced_total", "Tasks coalesced with an identical running task");
+    }
+
+    void accepted(Task task) {
+        forType(task).accepted.increment();
+    }
+
+    void rejected(int count) {
+        rejected.add(count);
+    }
+
+    void deduplicated() {
+        deduplicated.increment();
+    }
+
+    void coalesced() {
+        coalesced.increment();
+    }
+
+    void dispatched(Task task, long queueWaitMillis) {
+        forType(task).queueWait.recordMillis(queueWaitMillis);
+    }
+
+    /**
+     * Worker返回的任务结束，executionMillis为-1表示没有执行
+     */
+    void finished(Task task, long executionMillis) {
+        TypeMetrics metrics = forType(task);
+        if (task.getStatus() == Task.TaskStatus.COMPLETED) {
+            metrics.completed.increment();
+        } else if (task.getStatus() == Task.TaskStatus.FAILED) {
+            metrics.failed.increment();
+        } else if (task.getStatus() == Task.TaskStatus.CANCELLED) {
+            metrics.cancelled.increment();
+        }
+        if (executionMillis >= 0) {
+            metrics.execution.recordMillis(executionMillis);
+        }
+    }
+
+    void retried(Task task) {
+        forType(task).retried.increment();
+    }
+
+    void deadLettered(Task task) {
+        forType(task).deadLettered.increment();
+    }
+
+    void expired(Task task) {
+        forType(task).expired.increment();
+    }
+
+    void updatePool(WorkerPool pool) {
+        PoolMetrics metrics = byPool.computeIfAbsent(pool.getName(), name -> new PoolMetrics(registry, name, shard));
+        metrics.pending.set(pool.pendingSize());
+        metrics.inFlight.set(pool.getInFlight());
+        metrics.workers.set(pool.size());
+    }
+
+    private TypeMetrics forType(Task task) {
+        String taskType = taskTypes.contains(task.getTaskType()) ? task.getTaskType() : TaskSystemSettings.DEFAULT_POOL;
+        return byType.computeIfAbsent(taskType, type -> new TypeMetrics(registry, type));
+    }
+}
@@ -4,21 +4,51 @@ import akka.actor.AbstractActor;
 import akka.actor.Props;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import akka.pattern.Patterns;
+import utils.BoundedTtlCache;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * 任务处理Actor
  * 用于处理异步任务，展示Actor模型的消息传递机制和生命周期管理
+ * 任务体在专用调度器上执行，结果以TaskCompleted消息送回Actor（pipe），状态只在Actor线程上修改；
+ * 同时执行的任务数达到上限时拒绝新任务；任务状态保存在有界且带TTL的缓存中，持续负载下内存稳定
  */
 public class TaskProcessorActor extends AbstractActor {
 
     private final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
 
-    // 任务状态存储
-    private final Map<String, String> taskStatusMap = new HashMap<>();
+    private final TaskSystemSettings.ProcessorSettings settings;
+
+    // 任务状态存储（PROCESSING / COMPLETED / FAILED），按条目数和TTL淘汰
+    private final BoundedTtlCache<String, String> taskStatusMap;
+
+    // 执行任务体的调度器
+    private Executor taskExecutor;
+
+    // 执行中的任务数
+    private int inFlight = 0;
+
+    // 统计信息
+    private long totalAccepted = 0;
+    private long totalRejected = 0;
+    private long totalCompleted = 0;
+    private long totalFailed = 0;
+
+    public TaskProcessorActor() {
+        this(TaskSystemSettings.ProcessorSettings.defaults());
+    }
+
+    public TaskProcessorActor(TaskSystemSettings.ProcessorSettings settings) {
+        this.settings = settings;
+        this.taskStatusMap = new BoundedTtlCache<>(settings.getStatusMaxEntries(),
+                settings.getStatusTtl().toMillis(), null);
+    }
 
     /**
      * 创建Actor的Props
@@ -27,13 +57,24 @@ public class TaskProcessorActor extends AbstractActor {
         return Props.create(TaskProcessorActor.class);
     }
 
+    public static Props props(TaskSystemSettings.ProcessorSettings settings) {
+        return Props.create(TaskProcessorActor.class, settings);
+    }
+
     /**
      * Actor生命周期 - 启动前
      */
     @Override
     public void preStart() throws Exception {
         super.preStart();
-        log.info("TaskProcessorActor {} started", getSelf().path());
+        if (getContext().getSystem().dispatchers().hasDispatcher(settings.getDispatcher())) {
+            taskExecutor = getContext().getSystem().dispatchers().lookup(settings.getDispatcher());
+        } else {
+            log.warning("Dispatcher {} not configured, tasks fall back to the actor's dispatcher",
+                    settings.getDispatcher());
+            taskExecutor = getContext().getDispatcher();
+        }
+        log.info("TaskProcessorActor {} started (max in flight: {})", getSelf().path(), settings.getMaxInFlight());
     }
 
     /**
@@ -52,45 +93,57 @@ public class TaskProcessorActor extends AbstractActor {
     public Receive createReceive() {
         return receiveBuilder()
                 .match(TaskMessage.ProcessTask.class, this::handleProcessTask)
+                .match(TaskMessage.TaskCompleted.class, this::handleTaskCompleted)
                 .match(TaskMessage.QueryTaskStatus.class, this::handleQueryStatus)
+                .matchEquals("GET_STATS", msg -> handleGetStats())
                 .matchAny(o -> log.warning("Received unknown message: {}", o))
                 .build();
     }
 
     /**
-     * 处理任务
+     * 处理任务：执行中的任务数已达上限时回复REJECTED，否则提交到专用调度器并立即回复ACCEPTED
      */
     private void handleProcessTask(TaskMessage.ProcessTask message) {
+        long now = System.currentTimeMillis();
+        // 状态按写入时间有序，清理只扫描已过期的头部
+        taskStatusMap.evictExpired(now);
+
+        if (inFlight >= settings.getMaxInFlight()) {
+            totalRejected++;
+            log.warning("Task {} rejected: {} tasks in flight", message.getTaskId(), inFlight);
+            getSender().tell(new TaskMessage.TaskStatusResponse(
+                    message.getTaskId(),
+                    "REJECTED",
+                    "Processor busy: " + inFlight + " tasks in flight, retry later"
+            ), getSelf());
+            return;
+        }
+
         log.info("Processing task: {}", message);
+        inFlight++;
+        totalAccepted++;
 
         // 更新任务状态为处理中
-        taskStatusMap.put(message.getTaskId(), "PROCESSING");
-
-        // 模拟异步任务处理
-        CompletableFuture.runAsync(() -> {
-            try {
-                // 模拟耗时操作
-                Thread.sleep(2000);
-
-                // 处理任务逻辑
-                String result = processTaskLogic(message);
-
-                // 发送任务完成消息给自己
-                getSelf().tell(new TaskMessage.TaskCompleted(
-                        message.getTaskId(),
-                        true,
-                        result
-                ), getSelf());
-
-            } catch (Exception e) {
-                log.error(e, "Task processing failed: {}", message.getTaskId());
-                getSelf().tell(new TaskMessage.TaskCompleted(
-                        message.getTaskId(),
-                        false,
-                        "Error: " + e.getMessage()
-                ), getSelf());
-            }
-        });
+        taskStatusMap.put(message.getTaskId(), "PROCESSING", now);
+
+        // 任务体在专用调度器上执行，成功或失败都以TaskCompleted消息送回自己
+        long processingMillis = settings.getProcessingTime().toMillis();
+        CompletableFuture<TaskMessage.TaskCompleted> completion = CompletableFuture
+                .supplyAsync(() -> {
+                    try {
+                        // 模拟耗时操作
+                        Thread.sleep(processingMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CompletionException(e);
+                    }
+                    return new TaskMessage.TaskCompleted(message.getTaskId(), true, processTaskLogic(message));
+                }, taskExecutor)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    return new TaskMessage.TaskCompleted(message.getTaskId(), false, "Error: " + cause.getMessage());
+                });
+        Patterns.pipe(completion, getContext().getDispatcher()).to(getSelf());
 
         // 立即响应任务已接收
         getSender().tell(new TaskMessage.TaskStatusResponse(
@@ -101,23 +154,34 @@ public class TaskProcessorActor extends AbstractActor {
     }
 
     /**
-     * 查询任务状态
+     * 查询任务状态，已淘汰或过期的任务返回NOT_FOUND
      */
     private void handleQueryStatus(TaskMessage.QueryTaskStatus message) {
-        String status = taskStatusMap.getOrDefault(message.getTaskId(), "NOT_FOUND");
+        String status = taskStatusMap.get(message.getTaskId(), System.currentTimeMillis());
         getSender().tell(new TaskMessage.TaskStatusResponse(
                 message.getTaskId(),
-                status,
+                status != null ? status : "NOT_FOUND",
                 "Current task status"
         ), getSelf());
     }
 
+    private void handleGetStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("inFlight", inFlight);
+        stats.put("maxInFlight", settings.getMaxInFlight());
+        stats.put("totalAccepted", totalAccepted);
+        stats.put("totalRejected", totalRejected);
+        stats.put("totalCompleted", totalCompleted);
+        stats.put("totalFailed", totalFailed);
+        stats.put("trackedStatuses", taskStatusMap.size());
+        stats.put("evictedStatuses", taskStatusMap.getEvictedCount());
+        getSender().tell(stats, getSelf());
+    }
+
     /**
-     * 任务处理逻辑
+     * 任务处理逻辑（在调度器线程上执行，不访问Actor状态）
      */
-    private String processTaskLogic(TaskMessage.ProcessTask message) {
-        log.info("Executing task logic for: {}", message.getTaskName());
-
+    private static String processTaskLogic(TaskMessage.ProcessTask message) {
         // 这里可以添加实际的业务逻辑
         // 例如：数据处理、文件操作、API调用等
 
@@ -131,12 +195,17 @@ public class TaskProcessorActor extends AbstractActor {
      */
     private void handleTaskCompleted(TaskMessage.TaskCompleted message) {
         log.info("Task completed: {}", message);
+        inFlight = Math.max(0, inFlight - 1);
 
-        // 更新任务状态
+        // 更新任务状态（重新计算保留时间）；执行期间已被淘汰的条目不再重新插入
+        long now = System.currentTimeMillis();
         if (message.isSuccess()) {
-            taskStatusMap.put(message.getTaskId(), "COMPLETED");
+            totalCompleted++;
         } else {
-            taskStatusMap.put(message.getTaskId(), "FAILED");
+            totalFailed++;
+        }
+        if (taskStatusMap.containsKey(message.getTaskId())) {
+            taskStatusMap.put(message.getTaskId(), message.isSuccess() ? "COMPLETED" : "FAILED", now);
         }
     }
 }
@@ -0,0 +1,399 @@
+package actors;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 任务结果的本地块存储
+ * 结果顺序追加到固定大小的段文件中，每个段整体做内存映射，写入和按区间读取都只是内存拷贝，
+ * 大结果因此不需要作为一个完整的String在消息和任务表中传递；每个结果用句柄
+ * "段号:偏移:长度" 定位。段写满后封存，封存的段中所有结果都被释放后删除整个文件。
+ * 结果只写入操作系统缓存（不逐条刷盘），进程崩溃不丢数据。
+ * 线程安全：Worker在阻塞调度器上并发写入，TaskManagerActor负责读取和释放
+ */
+public class TaskResultStore {
+
+    private static final String SEGMENT_PREFIX = "results-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final File directory;
+    private final int segmentSize;
+
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+
+    // 当前追加的段，由this保护
+    private Segment current;
+    private int nextSegmentId;
+
+    /**
+     * 一个内存映射的段文件
+     */
+    private static final class Segment {
+        final int id;
+        final File file;
+        final MappedByteBuffer buffer;
+        // 已分配的字节数，由store的锁保护
+        int writeOffset;
+        // 尚未释放的结果数
+        final AtomicInteger liveBlobs = new AtomicInteger();
+        volatile boolean sealed;
+
+        Segment(int id, File file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * 打开存储目录，已有的段（上次运行写入的）以只读方式映射并视为封存，
+     * 仍被引用的结果需要在恢复时调用 {@link #retain(String)}，随后 {@link #sweep()} 删除无人引用的段
+     *
+     * @param segmentSize 段文件大小，超过该大小的结果单独占用一个段
+     */
+    public TaskResultStore(File directory, int segmentSize) throws IOException {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize must be positive");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create result store directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                int id = segmentIdOf(file.getName());
+                if (id < 0) {
+                    continue;
+                }
+                Segment segment = new Segment(id, file, map(file, FileChannel.MapMode.READ_ONLY, file.length()));
+                segment.sealed = true;
+                segments.put(id, segment);
+                nextSegmentId = Math.max(nextSegmentId, id + 1);
+            }
+        }
+    }
+
+    /**
+     * 写入一个结果，返回其句柄
+     */
+    public String write(byte[] data) throws IOException {
+        Allocation allocation = allocate(data.length);
+        allocation.buffer.put(data);
+        return allocation.handle;
+    }
+
+    /**
+     * 写入一个文本结果（UTF-8），直接编码到映射的段中，不另外生成字节数组
+     */
+    public String write(CharSequence text) throws IOException {
+        long encodedLength = utf8Length(text);
+        if (encodedLength > Integer.MAX_VALUE) {
+            throw new IOException("Result of " + encodedLength + " bytes exceeds the maximum blob size");
+        }
+        int length = (int) encodedLength;
+        Allocation allocation = allocate(length);
+        ByteBuffer target = allocation.buffer;
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CoderResult result = encoder.encode(CharBuffer.wrap(text), target, true);
+        if (!result.isUnderflow()) {
+            throw new CharacterCodingException();
+        }
+        encoder.flush(target);
+        return allocation.handle;
+    }
+
+    /**
+     * 文本按UTF-8编码后的字节数（与 String.getBytes 一致，无效的代理字符按一个替换字节计）
+     */
+    public static long utf8Length(CharSequence text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 流式写入一个结果：输出直接追加到单独的段文件，长度不需要事先知道，结果不会整体留在内存中；
+     * 关闭后通过 {@link ResultWriter#handle()} 取得句柄，写入失败时调用 {@link ResultWriter#discard()}
+     */
+    public ResultWriter openWriter() throws IOException {
+        int id;
+        synchronized (this) {
+            id = nextSegmentId++;
+        }
+        return new ResultWriter(id, segmentFile(id));
+    }
+
+    /**
+     * 流式写入的结果，写完（close）后映射为只包含这一个结果的封存段
+     */
+    public final class ResultWriter extends OutputStream {
+        private final int id;
+        private final File file;
+        private final OutputStream out;
+        private long length;
+        private String handle;
+
+        private ResultWriter(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            length++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            length += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (handle != null) {
+                return;
+            }
+            out.close();
+            Segment segment = new Segment(id, file, map(file, FileChannel.MapMode.READ_ONLY, length));
+            segment.sealed = true;
+            segment.liveBlobs.incrementAndGet();
+            segments.put(id, segment);
+            handle = id + ":0:" + length;
+        }
+
+        /**
+         * 放弃写了一半的结果并删除文件
+         */
+        public void discard() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // 文件随即删除
+            }
+            file.delete();
+        }
+
+        /**
+         * 结果的句柄，close之前为null
+         */
+        public String handle() {
+            return handle;
+        }
+    }
+
+    /**
+     * 读取结果中 [offset, offset + maxLength) 的部分（不超过结果末尾），结果已被释放时返回null
+     */
+    public byte[] read(String handle, long offset, int maxLength) {
+        long[] parsed = parse(handle);
+        Segment segment = segments.get((int) parsed[0]);
+        if (segment == null) {
+            return null;
+        }
+        long length = parsed[2];
+        if (offset < 0 || offset > length) {
+            throw new IllegalArgumentException("Offset " + offset + " out of range [0, " + length + "]");
+        }
+        byte[] data = new byte[(int) Math.min(maxLength, length - offset)];
+        ByteBuffer source = segment.buffer.duplicate();
+        source.position((int) (parsed[1] + offset));
+        source.get(data);
+        return data;
+    }
+
+    /**
+     * 结果的字节数
+     */
+    public static long sizeOf(String handle) {
+        return parse(handle)[2];
+    }
+
+    /**
+     * 恢复时登记仍被引用的结果，对应的段已不存在时返回false
+     */
+    public boolean retain(String handle) {
+        Segment segment = segments.get((int) parse(handle)[0]);
+        if (segment == null) {
+            return false;
+        }
+        segment.liveBlobs.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 释放一个结果，所在的段已封存且不再有结果被引用时删除段文件
+     */
+    public void release(String handle) {
+        Segment segment = segments.get((int) parse(handle)[0]);
+        if (segment != null && segment.liveBlobs.decrementAndGet() <= 0 && segment.sealed) {
+            delete(segment);
+        }
+    }
+
+    /**
+     * 删除已封存且不再有结果被引用的段，返回删除的段数
+     */
+    public int sweep() {
+        int deleted = 0;
+        for (Segment segment : segments.values()) {
+            if (segment.sealed && segment.liveBlobs.get() <= 0) {
+                delete(segment);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 所有段的映射字节数
+     */
+    public long mappedBytes() {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.buffer.capacity();
+        }
+        return total;
+    }
+
+    /**
+     * 封存当前段，文件保留到其中的结果全部被释放
+     */
+    public synchronized void close() {
+        if (current != null) {
+            current.buffer.force();
+            seal(current);
+            current = null;
+        }
+    }
+
+    private void seal(Segment segment) {
+        segment.sealed = true;
+        if (segment.liveBlobs.get() <= 0) {
+            delete(segment);
+        }
+    }
+
+    private void delete(Segment segment) {
+        // 映射在缓冲区被回收时解除，Linux下删除已映射的文件是安全的
+        if (segments.remove(segment.id, segment)) {
+            segment.file.delete();
+        }
+    }
+
+    /**
+     * 段中分配出的一段区间
+     */
+    private static final class Allocation {
+        final String handle;
+        // 定位到区间起点、limit为区间终点
+        final ByteBuffer buffer;
+
+        Allocation(String handle, ByteBuffer buffer) {
+            this.handle = handle;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * 在当前段中分配 length 字节；各次分配互不重叠，调用方在锁外写入
+     */
+    private Allocation allocate(int length) throws IOException {
+        Segment segment;
+        int offset;
+        synchronized (this) {
+            if (current == null || current.buffer.capacity() - current.writeOffset < length) {
+                if (current != null) {
+                    seal(current);
+                }
+                current = createSegment(Math.max(segmentSize, length));
+            }
+            segment = current;
+            offset = current.writeOffset;
+            current.writeOffset += length;
+            segment.liveBlobs.incrementAndGet();
+        }
+        ByteBuffer target = segment.buffer.duplicate();
+        target.position(offset);
+        target.limit(offset + length);
+        return new Allocation(segment.id + ":" + offset + ":" + length, target);
+    }
+
+    private Segment createSegment(int size) throws IOException {
+        int id = nextSegmentId++;
+        File file = segmentFile(id);
+        Segment segment = new Segment(id, file, map(file, FileChannel.MapMode.READ_WRITE, size));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private File segmentFile(int id) {
+        return new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private static MappedByteBuffer map(File file, FileChannel.MapMode mode, long size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw");
+             FileChannel channel = raf.getChannel()) {
+            // 关闭通道不影响已建立的映射
+            return channel.map(mode, 0, size);
+        }
+    }
+
+    private static int segmentIdOf(String fileName) {
+        try {
+            return Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long[] parse(String handle) {
+        String[] parts = handle.split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid result handle: " + handle);
+        }
+        return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])};
+    }
+}
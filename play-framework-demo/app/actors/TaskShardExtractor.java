@@ -0,0 +1,80 @@
+package actors;
+
+import akka.cluster.sharding.ShardRegion;
+import models.Task;
+
+/**
+ * 任务管理器分片的消息路由
+ * 每个分片只有一个任务管理器实体，实体ID即分片ID（taskId哈希取模），
+ * 因此同一任务的提交和状态查询总是路由到同一个管理器
+ */
+public class TaskShardExtractor implements ShardRegion.MessageExtractor {
+
+    private final int numberOfShards;
+
+    public TaskShardExtractor(int numberOfShards) {
+        this.numberOfShards = numberOfShards;
+    }
+
+    /**
+     * taskId所属的分片
+     * 工作流中的任务（taskId为 workflowId.nodeId）按workflowId路由，与工作流本身在同一个分片
+     */
+    public static String shardOf(String taskId, int numberOfShards) {
+        int dot = taskId.indexOf('.');
+        String routingKey = dot > 0 ? taskId.substring(0, dot) : taskId;
+        return String.valueOf(Math.floorMod(routingKey.hashCode(), numberOfShards));
+    }
+
+    @Override
+    public String entityId(Object message) {
+        if (message instanceof Task) {
+            return shardOf(((Task) message).getTaskId(), numberOfShards);
+        }
+        if (message instanceof TaskMessage.QueryTaskStatus) {
+            return shardOf(((TaskMessage.QueryTaskStatus) message).getTaskId(), numberOfShards);
+        }
+        if (message instanceof TaskMessage.ReadResult) {
+            return shardOf(((TaskMessage.ReadResult) message).getTaskId(), numberOfShards);
+        }
+        if (message instanceof TaskMessage.CancelTask) {
+            return shardOf(((TaskMessage.CancelTask) message).getTaskId(), numberOfShards);
+        }
+        if (message instanceof TaskMessage.SubmitBatch) {
+            // TaskManagerRouter按分片拆分批次，同一批中的任务属于同一个分片
+            TaskMessage.SubmitBatch batch = (TaskMessage.SubmitBatch) message;
+            return batch.getTasks().isEmpty()
+                    ? null
+                    : shardOf(batch.getTasks().get(0).getTaskId(), numberOfShards);
+        }
+        if (message instanceof TaskMessage.GetShardStats) {
+            return ((TaskMessage.GetShardStats) message).getShardId();
+        }
+        if (message instanceof TaskMessage.SubmitWorkflow) {
+            return shardOf(((TaskMessage.SubmitWorkflow) message).getWorkflowId(), numberOfShards);
+        }
+        if (message instanceof TaskMessage.QueryWorkflow) {
+            return shardOf(((TaskMessage.QueryWorkflow) message).getWorkflowId(), numberOfShards);
+        }
+        if (message instanceof TaskMessage.QueryDeadLetters) {
+            return ((TaskMessage.QueryDeadLetters) message).getShardId();
+        }
+        if (message instanceof TaskMessage.ReplayDeadLetters) {
+            return ((TaskMessage.ReplayDeadLetters) message).getShardId();
+        }
+        if (message instanceof TaskMessage.ShardState) {
+            return ((TaskMessage.ShardState) message).getShardId();
+        }
+        return null;
+    }
+
+    @Override
+    public Object entityMessage(Object message) {
+        return message;
+    }
+
+    @Override
+    public String shardId(Object message) {
+        return entityId(message);
+    }
+}
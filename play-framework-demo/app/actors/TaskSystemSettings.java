@@ -0,0 +1,1106 @@
+package actors;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 任务系统配置
+ * 从 application.conf 的 task-system 节点读取，按任务类型划分独立的Worker池（舱壁隔离）
+ */
+public class TaskSystemSettings {
+
+    /**
+     * 未配置专属池的任务类型统一进入该池
+     */
+    public static final String DEFAULT_POOL = "DEFAULT";
+
+    /**
+     * 未配置专属调度器时Worker使用的阻塞调度器
+     */
+    public static final String SHARED_BLOCKING_DISPATCHER = "task-system.dispatchers.shared-blocking";
+
+    private final Map<String, PoolSettings> pools;
+    private final AutoscalingSettings autoscaling;
+    private final RetentionSettings retention;
+    private final JournalSettings journal;
+    private final ShardingSettings sharding;
+    private final SchedulerSettings scheduler;
+    private final DeadLetterSettings deadLetter;
+    private final IdempotencySettings idempotency;
+    private final ResultStoreSettings resultStore;
+    private final FairShareSettings fairShare;
+    private final ProcessorSettings processor;
+    private final WebSocketSettings webSocket;
+
+    public TaskSystemSettings(Map<String, PoolSettings> pools) {
+        this(pools, AutoscalingSettings.disabled());
+    }
+
+    public TaskSystemSettings(Map<String, PoolSettings> pools, AutoscalingSettings autoscaling) {
+        this(pools, autoscaling, RetentionSettings.defaults());
+    }
+
+    public TaskSystemSettings(Map<String, PoolSettings> pools, AutoscalingSettings autoscaling,
+                              RetentionSettings retention) {
+        this(pools, autoscaling, retention, JournalSettings.disabled());
+    }
+
+    public TaskSystemSettings(Map<String, PoolSettings> pools, AutoscalingSettings autoscaling,
+                              RetentionSettings retention, JournalSettings journal) {
+        this(pools, autoscaling, retention, journal, ShardingSettings.disabled());
+    }
+
+    public TaskSystemSettings(Map<String, PoolSettings> pools, AutoscalingSettings autoscaling,
+                              RetentionSettings retention, JournalSettings journal, ShardingSettings sharding) {
+        this(pools, autoscaling, retention, journal, sharding, SchedulerSettings.defaults());
+    }
+
+    public TaskSystemSettings(Map<String, PoolSettings> pools, AutoscalingSettings autoscaling,
+                              RetentionSettings retention, JournalSettings journal, ShardingSettings sharding,
+                              SchedulerSettings scheduler) {
+        this(pools, autoscaling, retention, journal, sharding, scheduler, DeadLetterSettings.defaults());
+    }
+
+    public TaskSystemSettings(Map<String, PoolSettings> pools, AutoscalingSettings autoscaling,
+                              RetentionSettings retention, JournalSettings journal, ShardingSettings sharding,
+                              SchedulerSettings scheduler, DeadLetterSettings deadLetter) {
+        this(pools, autoscaling, retention, journal, sharding, scheduler, deadLetter, IdempotencySettings.defaults());
+    }
+
+    public TaskSystemSettings(Map<String, PoolSettings> pools, AutoscalingSettings autoscaling,
+                              RetentionSettings retention, JournalSettings journal, ShardingSettings sharding,
+                              SchedulerSettings scheduler, DeadLetterSettings deadLetter,
+                              IdempotencySettings idempotency) {
+        this(pools, autoscaling, retention, journal, sharding, scheduler, deadLetter, idempotency,
+                ResultStoreSettings.disabled());
+    }
+
+    public TaskSystemSettings(Map<String, PoolSettings> pools, AutoscalingSettings autoscaling,
+                              RetentionSettings retention, JournalSettings journal, ShardingSettings sharding,
+                              SchedulerSettings scheduler, DeadLetterSettings deadLetter,
+                              IdempotencySettings idempotency, ResultStoreSettings resultStore) {
+        this(pools, autoscaling, retention, journal, sharding, scheduler, deadLetter, idempotency, resultStore,
+                FairShareSettings.defaults());
+    }
+
+    public TaskSystemSettings(Map<String, PoolSettings> pools, AutoscalingSettings autoscaling,
+                              RetentionSettings retention, JournalSettings journal, ShardingSettings sharding,
+                              SchedulerSettings scheduler, DeadLetterSettings deadLetter,
+                              IdempotencySettings idempotency, ResultStoreSettings resultStore,
+                              FairShareSettings fairShare) {
+        this(pools, autoscaling, retention, journal, sharding, scheduler, deadLetter, idempotency, resultStore,
+                fairShare, ProcessorSettings.defaults());
+    }
+
+    public TaskSystemSettings(Map<String, PoolSettings> pools, AutoscalingSettings autoscaling,
+                              RetentionSettings retention, JournalSettings journal, ShardingSettings sharding,
+                              SchedulerSettings scheduler, DeadLetterSettings deadLetter,
+                              IdempotencySettings idempotency, ResultStoreSettings resultStore,
+                              FairShareSettings fairShare, ProcessorSettings processor) {
+        this(pools, autoscaling, retention, journal, sharding, scheduler, deadLetter, idempotency, resultStore,
+                fairShare, processor, WebSocketSettings.defaults());
+    }
+
+    public TaskSystemSettings(Map<String, PoolSettings> pools, AutoscalingSettings autoscaling,
+                              RetentionSettings retention, JournalSettings journal, ShardingSettings sharding,
+                              SchedulerSettings scheduler, DeadLetterSettings deadLetter,
+                              IdempotencySettings idempotency, ResultStoreSettings resultStore,
+                              FairShareSettings fairShare, ProcessorSettings processor,
+                              WebSocketSettings webSocket) {
+        if (!pools.containsKey(DEFAULT_POOL)) {
+            throw new IllegalArgumentException("task-system.pools must define a " + DEFAULT_POOL + " pool");
+        }
+        this.pools = Collections.unmodifiableMap(new LinkedHashMap<>(pools));
+        this.autoscaling = autoscaling;
+        this.retention = retention;
+        this.journal = journal;
+        this.sharding = sharding;
+        this.scheduler = scheduler;
+        this.deadLetter = deadLetter;
+        this.idempotency = idempotency;
+        this.resultStore = resultStore;
+        this.fairShare = fairShare;
+        this.processor = processor;
+        this.webSocket = webSocket;
+    }
+
+    /**
+     * 从配置读取，缺少 task-system.pools 时退化为单个共享池
+     */
+    public static TaskSystemSettings fromConfig(Config config) {
+        if (!config.hasPath("task-system.pools")) {
+            return singlePool(5, 1);
+        }
+
+        // 池内的 retry 配置覆盖 task-system.retry 中的默认值
+        Config defaultRetry = config.hasPath("task-system.retry")
+                ? config.getConfig("task-system.retry")
+                : null;
+        Config poolsConfig = config.getConfig("task-system.pools");
+        Map<String, PoolSettings> pools = new LinkedHashMap<>();
+        for (String name : poolsConfig.root().keySet()) {
+            pools.put(name, PoolSettings.fromConfig(name, poolsConfig.getConfig(name), defaultRetry));
+        }
+
+        AutoscalingSettings autoscaling = config.hasPath("task-system.autoscaling")
+                ? AutoscalingSettings.fromConfig(config.getConfig("task-system.autoscaling"))
+                : AutoscalingSettings.disabled();
+        RetentionSettings retention = config.hasPath("task-system.retention")
+                ? RetentionSettings.fromConfig(config.getConfig("task-system.retention"))
+                : RetentionSettings.defaults();
+        JournalSettings journal = config.hasPath("task-system.journal")
+                ? JournalSettings.fromConfig(config.getConfig("task-system.journal"))
+                : JournalSettings.disabled();
+        ShardingSettings sharding = config.hasPath("task-system.cluster-sharding")
+                ? ShardingSettings.fromConfig(config.getConfig("task-system.cluster-sharding"))
+                : ShardingSettings.disabled();
+        SchedulerSettings scheduler = config.hasPath("task-system.scheduler")
+                ? SchedulerSettings.fromConfig(config.getConfig("task-system.scheduler"))
+                : SchedulerSettings.defaults();
+        DeadLetterSettings deadLetter = config.hasPath("task-system.dead-letter")
+                ? DeadLetterSettings.fromConfig(config.getConfig("task-system.dead-letter"))
+                : DeadLetterSettings.defaults();
+        IdempotencySettings idempotency = config.hasPath("task-system.idempotency")
+                ? IdempotencySettings.fromConfig(config.getConfig("task-system.idempotency"))
+                : IdempotencySettings.defaults();
+        ResultStoreSettings resultStore = config.hasPath("task-system.result-store")
+                ? ResultStoreSettings.fromConfig(config.getConfig("task-system.result-store"))
+                : ResultStoreSettings.disabled();
+        FairShareSettings fairShare = config.hasPath("task-system.fair-share")
+                ? FairShareSettings.fromConfig(config.getConfig("task-system.fair-share"))
+                : FairShareSettings.defaults();
+        ProcessorSettings processor = config.hasPath("task-system.processor")
+                ? ProcessorSettings.fromConfig(config.getConfig("task-system.processor"))
+                : ProcessorSettings.defaults();
+        WebSocketSettings webSocket = config.hasPath("task-system.websocket")
+                ? WebSocketSettings.fromConfig(config.getConfig("task-system.websocket"))
+                : WebSocketSettings.defaults();
+        return new TaskSystemSettings(pools, autoscaling, retention, journal, sharding, scheduler, deadLetter,
+                idempotency, resultStore, fairShare, processor, webSocket);
+    }
+
+    /**
+     * 所有任务类型共用一个池（兼容 TaskManagerActor.props(workerCount)）
+     */
+    public static TaskSystemSettings singlePool(int workerCount, int workerCredits) {
+        Map<String, PoolSettings> pools = new LinkedHashMap<>();
+        pools.put(DEFAULT_POOL, new PoolSettings(DEFAULT_POOL, workerCount, workerCredits,
+                Integer.MAX_VALUE, SHARED_BLOCKING_DISPATCHER));
+        return new TaskSystemSettings(pools);
+    }
+
+    public Map<String, PoolSettings> getPools() {
+        return pools;
+    }
+
+    public AutoscalingSettings getAutoscaling() {
+        return autoscaling;
+    }
+
+    public RetentionSettings getRetention() {
+        return retention;
+    }
+
+    public JournalSettings getJournal() {
+        return journal;
+    }
+
+    public ShardingSettings getSharding() {
+        return sharding;
+    }
+
+    public SchedulerSettings getScheduler() {
+        return scheduler;
+    }
+
+    public DeadLetterSettings getDeadLetter() {
+        return deadLetter;
+    }
+
+    public IdempotencySettings getIdempotency() {
+        return idempotency;
+    }
+
+    public ResultStoreSettings getResultStore() {
+        return resultStore;
+    }
+
+    public FairShareSettings getFairShare() {
+        return fairShare;
+    }
+
+    public ProcessorSettings getProcessor() {
+        return processor;
+    }
+
+    public WebSocketSettings getWebSocket() {
+        return webSocket;
+    }
+
+    /**
+     * 单个Worker池的配置
+     */
+    public static class PoolSettings {
+        private final String name;
+        private final int workers;
+        private final int minWorkers;
+        private final int maxWorkers;
+        private final int credits;
+        private final int queueCapacity;
+        private final String dispatcher;
+        private final RetrySettings retry;
+        private final BatchingSettings batching;
+
+        public PoolSettings(String name, int workers, int credits, int queueCapacity, String dispatcher) {
+            this(name, workers, workers, workers, credits, queueCapacity, dispatcher);
+        }
+
+        public PoolSettings(String name, int workers, int minWorkers, int maxWorkers,
+                            int credits, int queueCapacity, String dispatcher) {
+            this(name, workers, minWorkers, maxWorkers, credits, queueCapacity, dispatcher, RetrySettings.defaults());
+        }
+
+        public PoolSettings(String name, int workers, int minWorkers, int maxWorkers,
+                            int credits, int queueCapacity, String dispatcher, RetrySettings retry) {
+            this(name, workers, minWorkers, maxWorkers, credits, queueCapacity, dispatcher, retry,
+                    BatchingSettings.disabled());
+        }
+
+        public PoolSettings(String name, int workers, int minWorkers, int maxWorkers, int credits,
+                            int queueCapacity, String dispatcher, RetrySettings retry, BatchingSettings batching) {
+            if (minWorkers < 1 || minWorkers > workers || workers > maxWorkers) {
+                throw new IllegalArgumentException("Pool " + name
+                        + " requires 1 <= min-workers <= workers <= max-workers");
+            }
+            this.name = name;
+            this.workers = workers;
+            this.minWorkers = minWorkers;
+            this.maxWorkers = maxWorkers;
+            this.credits = credits;
+            this.queueCapacity = queueCapacity;
+            this.dispatcher = dispatcher;
+            this.retry = retry;
+            this.batching = batching;
+        }
+
+        static PoolSettings fromConfig(String name, Config config) {
+            return fromConfig(name, config, null);
+        }
+
+        static PoolSettings fromConfig(String name, Config config, Config defaultRetry) {
+            int workers = config.getInt("workers");
+            RetrySettings retry;
+            if (config.hasPath("retry")) {
+                retry = RetrySettings.fromConfig(defaultRetry != null
+                        ? config.getConfig("retry").withFallback(defaultRetry)
+                        : config.getConfig("retry"));
+            } else {
+                retry = defaultRetry != null ? RetrySettings.fromConfig(defaultRetry) : RetrySettings.defaults();
+            }
+            return new PoolSettings(
+                    name,
+                    workers,
+                    config.hasPath("min-workers") ? config.getInt("min-workers") : workers,
+                    config.hasPath("max-workers") ? config.getInt("max-workers") : workers,
+                    config.hasPath("credits") ? config.getInt("credits") : 1,
+                    config.hasPath("queue-capacity") ? config.getInt("queue-capacity") : Integer.MAX_VALUE,
+                    config.hasPath("dispatcher") ? config.getString("dispatcher") : SHARED_BLOCKING_DISPATCHER,
+                    retry,
+                    config.hasPath("batching")
+                            ? BatchingSettings.fromConfig(config.getConfig("batching"))
+                            : BatchingSettings.disabled()
+            );
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public int getMinWorkers() {
+            return minWorkers;
+        }
+
+        public int getMaxWorkers() {
+            return maxWorkers;
+        }
+
+        public int getCredits() {
+            return credits;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public String getDispatcher() {
+            return dispatcher;
+        }
+
+        public RetrySettings getRetry() {
+            return retry;
+        }
+
+        public BatchingSettings getBatching() {
+            return batching;
+        }
+
+        @Override
+        public String toString() {
+            return "PoolSettings{" +
+                    "name='" + name + '\'' +
+                    ", workers=" + workers +
+                    ", minWorkers=" + minWorkers +
+                    ", maxWorkers=" + maxWorkers +
+                    ", credits=" + credits +
+                    ", queueCapacity=" + queueCapacity +
+                    ", dispatcher='" + dispatcher + '\'' +
+                    ", batching=" + batching +
+                    '}';
+        }
+    }
+
+    /**
+     * 池内Worker的微批配置（仅对支持批量执行的执行器生效）
+     * Worker把同类型的已分配任务攒成一批，达到 maxSize 或首个任务等待超过 linger 时作为一次调用执行；
+     * 每个Worker最多持有 credits 个任务，因此批大小实际不超过池的 credits
+     */
+    public static class BatchingSettings {
+        private final int maxSize;
+        private final Duration linger;
+
+        public BatchingSettings(int maxSize, Duration linger) {
+            if (maxSize < 1) {
+                throw new IllegalArgumentException("batching.max-size must be at least 1");
+            }
+            this.maxSize = maxSize;
+            this.linger = linger;
+        }
+
+        public static BatchingSettings disabled() {
+            return new BatchingSettings(1, Duration.ZERO);
+        }
+
+        static BatchingSettings fromConfig(Config config) {
+            return new BatchingSettings(config.getInt("max-size"), config.getDuration("linger"));
+        }
+
+        public boolean isEnabled() {
+            return maxSize > 1;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public Duration getLinger() {
+            return linger;
+        }
+
+        @Override
+        public String toString() {
+            return "BatchingSettings{maxSize=" + maxSize + ", linger=" + linger + '}';
+        }
+    }
+
+    /**
+     * Worker池自动伸缩配置
+     */
+    public static class AutoscalingSettings {
+        private final boolean enabled;
+        private final Duration interval;
+        private final int scaleUpAfter;
+        private final int scaleDownAfter;
+        private final Duration targetDrainTime;
+        private final double ewmaAlpha;
+
+        public AutoscalingSettings(boolean enabled, Duration interval, int scaleUpAfter, int scaleDownAfter,
+                                   Duration targetDrainTime, double ewmaAlpha) {
+            this.enabled = enabled;
+            this.interval = interval;
+            this.scaleUpAfter = scaleUpAfter;
+            this.scaleDownAfter = scaleDownAfter;
+            this.targetDrainTime = targetDrainTime;
+            this.ewmaAlpha = ewmaAlpha;
+        }
+
+        public static AutoscalingSettings disabled() {
+            return new AutoscalingSettings(false, Duration.ofSeconds(2), 2, 5, Duration.ofSeconds(5), 0.3);
+        }
+
+        static AutoscalingSettings fromConfig(Config config) {
+            return new AutoscalingSettings(
+                    config.getBoolean("enabled"),
+                    config.getDuration("interval"),
+                    config.getInt("scale-up-after"),
+                    config.getInt("scale-down-after"),
+                    config.getDuration("target-drain-time"),
+                    config.getDouble("ewma-alpha")
+            );
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public int getScaleUpAfter() {
+            return scaleUpAfter;
+        }
+
+        public int getScaleDownAfter() {
+            return scaleDownAfter;
+        }
+
+        public Duration getTargetDrainTime() {
+            return targetDrainTime;
+        }
+
+        public double getEwmaAlpha() {
+            return ewmaAlpha;
+        }
+    }
+
+    /**
+     * 已终结任务的保留策略：内存中最多保留 maxEntries 个，完成 ttl 之后淘汰，
+     * 开启归档时被淘汰的任务写入磁盘，仍可按taskId查询
+     */
+    public static class RetentionSettings {
+        private final int maxEntries;
+        private final Duration ttl;
+        private final Duration sweepInterval;
+        private final ArchiveSettings archive;
+
+        public RetentionSettings(int maxEntries, Duration ttl, Duration sweepInterval, ArchiveSettings archive) {
+            this.maxEntries = maxEntries;
+            this.ttl = ttl;
+            this.sweepInterval = sweepInterval;
+            this.archive = archive;
+        }
+
+        public static RetentionSettings defaults() {
+            return new RetentionSettings(10000, Duration.ofHours(1), Duration.ofSeconds(10), ArchiveSettings.disabled());
+        }
+
+        static RetentionSettings fromConfig(Config config) {
+            return new RetentionSettings(
+                    config.getInt("max-entries"),
+                    config.getDuration("ttl"),
+                    config.getDuration("sweep-interval"),
+                    config.hasPath("archive")
+                            ? ArchiveSettings.fromConfig(config.getConfig("archive"))
+                            : ArchiveSettings.disabled()
+            );
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public Duration getSweepInterval() {
+            return sweepInterval;
+        }
+
+        public ArchiveSettings getArchive() {
+            return archive;
+        }
+    }
+
+    /**
+     * 任务磁盘归档配置
+     */
+    public static class ArchiveSettings {
+        private final boolean enabled;
+        private final String directory;
+        private final int buckets;
+        private final long maxBucketBytes;
+        private final int maxFieldChars;
+        private final String dispatcher;
+
+        public ArchiveSettings(boolean enabled, String directory, int buckets, long maxBucketBytes,
+                               int maxFieldChars, String dispatcher) {
+            this.enabled = enabled;
+            this.directory = directory;
+            this.buckets = buckets;
+            this.maxBucketBytes = maxBucketBytes;
+            this.maxFieldChars = maxFieldChars;
+            this.dispatcher = dispatcher;
+        }
+
+        public static ArchiveSettings disabled() {
+            return new ArchiveSettings(false, "task-archive", 64, 16L * 1024 * 1024, 1024, SHARED_BLOCKING_DISPATCHER);
+        }
+
+        static ArchiveSettings fromConfig(Config config) {
+            return new ArchiveSettings(
+                    config.getBoolean("enabled"),
+                    config.getString("directory"),
+                    config.getInt("buckets"),
+                    config.getBytes("max-bucket-size"),
+                    config.getInt("max-field-chars"),
+                    config.hasPath("dispatcher") ? config.getString("dispatcher") : SHARED_BLOCKING_DISPATCHER
+            );
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public int getBuckets() {
+            return buckets;
+        }
+
+        public long getMaxBucketBytes() {
+            return maxBucketBytes;
+        }
+
+        public int getMaxFieldChars() {
+            return maxFieldChars;
+        }
+
+        public String getDispatcher() {
+            return dispatcher;
+        }
+
+        public ArchiveSettings withDirectory(String directory) {
+            return new ArchiveSettings(enabled, directory, buckets, maxBucketBytes, maxFieldChars, dispatcher);
+        }
+    }
+
+    /**
+     * 任务日志配置
+     */
+    public static class JournalSettings {
+        private final boolean enabled;
+        private final String directory;
+        private final boolean fsync;
+        private final int maxBatch;
+        private final int snapshotEvery;
+
+        public JournalSettings(boolean enabled, String directory, boolean fsync, int maxBatch, int snapshotEvery) {
+            this.enabled = enabled;
+            this.directory = directory;
+            this.fsync = fsync;
+            this.maxBatch = maxBatch;
+            this.snapshotEvery = snapshotEvery;
+        }
+
+        public static JournalSettings disabled() {
+            return new JournalSettings(false, "task-journal", true, 512, 10000);
+        }
+
+        static JournalSettings fromConfig(Config config) {
+            return new JournalSettings(
+                    config.getBoolean("enabled"),
+                    config.getString("directory"),
+                    config.getBoolean("fsync"),
+                    config.getInt("max-batch"),
+                    config.getInt("snapshot-every")
+            );
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public boolean isFsync() {
+            return fsync;
+        }
+
+        public int getMaxBatch() {
+            return maxBatch;
+        }
+
+        public int getSnapshotEvery() {
+            return snapshotEvery;
+        }
+    }
+
+    /**
+     * 集群分片配置：任务按taskId哈希分布到带有指定角色的节点上的任务管理器
+     */
+    public static class ShardingSettings {
+        private final boolean enabled;
+        private final String role;
+        private final int numberOfShards;
+
+        public ShardingSettings(boolean enabled, String role, int numberOfShards) {
+            if (numberOfShards <= 0) {
+                throw new IllegalArgumentException("number-of-shards must be positive");
+            }
+            this.enabled = enabled;
+            this.role = role;
+            this.numberOfShards = numberOfShards;
+        }
+
+        public static ShardingSettings disabled() {
+            return new ShardingSettings(false, "worker", 12);
+        }
+
+        static ShardingSettings fromConfig(Config config) {
+            return new ShardingSettings(
+                    config.getBoolean("enabled"),
+                    config.getString("role"),
+                    config.getInt("number-of-shards")
+            );
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public int getNumberOfShards() {
+            return numberOfShards;
+        }
+    }
+
+    /**
+     * 定时任务时间轮配置
+     */
+    public static class SchedulerSettings {
+        private final Duration tick;
+        private final int wheelSize;
+
+        public SchedulerSettings(Duration tick, int wheelSize) {
+            this.tick = tick;
+            this.wheelSize = wheelSize;
+        }
+
+        public static SchedulerSettings defaults() {
+            return new SchedulerSettings(Duration.ofMillis(100), 512);
+        }
+
+        static SchedulerSettings fromConfig(Config config) {
+            return new SchedulerSettings(config.getDuration("tick"), config.getInt("wheel-size"));
+        }
+
+        public Duration getTick() {
+            return tick;
+        }
+
+        public int getWheelSize() {
+            return wheelSize;
+        }
+    }
+
+    /**
+     * 失败重试策略：指数退避加抖动、重试预算和按任务类型的熔断器
+     */
+    public static class RetrySettings {
+        private final Duration initialBackoff;
+        private final Duration maxBackoff;
+        private final double multiplier;
+        private final double jitter;
+        private final double budgetRatio;
+        private final double budgetMinPerSecond;
+        private final int budgetMaxTokens;
+        private final int breakerFailureThreshold;
+        private final Duration breakerOpenTimeout;
+
+        public RetrySettings(Duration initialBackoff, Duration maxBackoff, double multiplier, double jitter,
+                             double budgetRatio, double budgetMinPerSecond, int budgetMaxTokens,
+                             int breakerFailureThreshold, Duration breakerOpenTimeout) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("retry.jitter must be between 0 and 1");
+            }
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            this.multiplier = multiplier;
+            this.jitter = jitter;
+            this.budgetRatio = budgetRatio;
+            this.budgetMinPerSecond = budgetMinPerSecond;
+            this.budgetMaxTokens = budgetMaxTokens;
+            this.breakerFailureThreshold = breakerFailureThreshold;
+            this.breakerOpenTimeout = breakerOpenTimeout;
+        }
+
+        public static RetrySettings defaults() {
+            return new RetrySettings(Duration.ofMillis(500), Duration.ofSeconds(30), 2.0, 0.5,
+                    0.2, 1.0, 100, 5, Duration.ofSeconds(30));
+        }
+
+        static RetrySettings fromConfig(Config config) {
+            return new RetrySettings(
+                    config.getDuration("initial-backoff"),
+                    config.getDuration("max-backoff"),
+                    config.getDouble("multiplier"),
+                    config.getDouble("jitter"),
+                    config.getDouble("budget.ratio"),
+                    config.getDouble("budget.min-per-second"),
+                    config.getInt("budget.max-tokens"),
+                    config.getInt("circuit-breaker.failure-threshold"),
+                    config.getDuration("circuit-breaker.open-timeout")
+            );
+        }
+
+        public Duration getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public double getMultiplier() {
+            return multiplier;
+        }
+
+        public double getJitter() {
+            return jitter;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public double getBudgetMinPerSecond() {
+            return budgetMinPerSecond;
+        }
+
+        public int getBudgetMaxTokens() {
+            return budgetMaxTokens;
+        }
+
+        public int getBreakerFailureThreshold() {
+            return breakerFailureThreshold;
+        }
+
+        public Duration getBreakerOpenTimeout() {
+            return breakerOpenTimeout;
+        }
+    }
+
+    /**
+     * 死信队列配置：重试耗尽或被重试预算拒绝的任务
+     */
+    public static class DeadLetterSettings {
+        private final int maxEntries;
+
+        public DeadLetterSettings(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public static DeadLetterSettings defaults() {
+            return new DeadLetterSettings(10000);
+        }
+
+        static DeadLetterSettings fromConfig(Config config) {
+            return new DeadLetterSettings(config.getInt("max-entries"));
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+    }
+
+    /**
+     * 幂等提交配置：同一幂等键在时间窗口内只接收一次
+     */
+    public static class IdempotencySettings {
+        private final int maxEntries;
+        private final Duration window;
+
+        public IdempotencySettings(int maxEntries, Duration window) {
+            this.maxEntries = maxEntries;
+            this.window = window;
+        }
+
+        public static IdempotencySettings defaults() {
+            return new IdempotencySettings(100000, Duration.ofHours(24));
+        }
+
+        static IdempotencySettings fromConfig(Config config) {
+            return new IdempotencySettings(config.getInt("max-entries"), config.getDuration("window"));
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+    }
+
+    /**
+     * 结果存储配置：超过 inline-threshold 字节的结果写入内存映射的段文件，任务上只保留句柄
+     */
+    public static class ResultStoreSettings {
+        private final boolean enabled;
+        private final String directory;
+        private final int inlineThreshold;
+        private final int segmentSize;
+
+        public ResultStoreSettings(boolean enabled, String directory, int inlineThreshold, int segmentSize) {
+            if (segmentSize <= 0) {
+                throw new IllegalArgumentException("result-store.segment-size must be positive");
+            }
+            this.enabled = enabled;
+            this.directory = directory;
+            this.inlineThreshold = inlineThreshold;
+            this.segmentSize = segmentSize;
+        }
+
+        public static ResultStoreSettings disabled() {
+            return new ResultStoreSettings(false, "task-results", 4096, 64 * 1024 * 1024);
+        }
+
+        static ResultStoreSettings fromConfig(Config config) {
+            return new ResultStoreSettings(
+                    config.getBoolean("enabled"),
+                    config.getString("directory"),
+                    (int) Math.min(Integer.MAX_VALUE, config.getBytes("inline-threshold")),
+                    (int) Math.min(Integer.MAX_VALUE, config.getBytes("segment-size"))
+            );
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public int getInlineThreshold() {
+            return inlineThreshold;
+        }
+
+        public int getSegmentSize() {
+            return segmentSize;
+        }
+    }
+
+    /**
+     * 租户公平调度配置：租户间按权重差额轮询，排队时间越长的任务优先级越高
+     */
+    public static class FairShareSettings {
+        private final Duration agingInterval;
+        private final Map<String, Integer> weights;
+        private final String tenantTokenSecret;
+
+        public FairShareSettings(Duration agingInterval, Map<String, Integer> weights) {
+            this(agingInterval, weights, "");
+        }
+
+        /**
+         * @param tenantTokenSecret 校验JWT签名（HS256）的密钥，为空时不信任token中的租户声明
+         */
+        public FairShareSettings(Duration agingInterval, Map<String, Integer> weights, String tenantTokenSecret) {
+            for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+                if (weight.getValue() <= 0) {
+                    throw new IllegalArgumentException("fair-share weight of " + weight.getKey() + " must be positive");
+                }
+            }
+            this.agingInterval = agingInterval;
+            this.weights = Collections.unmodifiableMap(new LinkedHashMap<>(weights));
+            this.tenantTokenSecret = tenantTokenSecret == null ? "" : tenantTokenSecret;
+        }
+
+        public static FairShareSettings defaults() {
+            return new FairShareSettings(Duration.ofSeconds(30), Collections.emptyMap());
+        }
+
+        static FairShareSettings fromConfig(Config config) {
+            Map<String, Integer> weights = new LinkedHashMap<>();
+            if (config.hasPath("weights")) {
+                Config weightsConfig = config.getConfig("weights");
+                for (String tenant : weightsConfig.root().keySet()) {
+                    weights.put(tenant, weightsConfig.getInt(ConfigUtil.quoteString(tenant)));
+                }
+            }
+            String tenantTokenSecret = config.hasPath("tenant-token-secret") ? config.getString("tenant-token-secret") : "";
+            return new FairShareSettings(config.getDuration("aging-interval"), weights, tenantTokenSecret);
+        }
+
+        public Duration getAgingInterval() {
+            return agingInterval;
+        }
+
+        public Map<String, Integer> getWeights() {
+            return weights;
+        }
+
+        public String getTenantTokenSecret() {
+            return tenantTokenSecret;
+        }
+    }
+
+    /**
+     * TaskProcessorActor配置（/api/actor/task）：任务体在专用调度器上执行，
+     * 同时执行的任务数超过 maxInFlight 时拒绝新任务，任务状态按条目数和TTL淘汰
+     */
+    public static class ProcessorSettings {
+        private final int maxInFlight;
+        private final int statusMaxEntries;
+        private final Duration statusTtl;
+        private final Duration processingTime;
+        private final String dispatcher;
+
+        public ProcessorSettings(int maxInFlight, int statusMaxEntries, Duration statusTtl,
+                                 Duration processingTime, String dispatcher) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("processor.max-in-flight must be at least 1");
+            }
+            this.maxInFlight = maxInFlight;
+            this.statusMaxEntries = statusMaxEntries;
+            this.statusTtl = statusTtl;
+            this.processingTime = processingTime;
+            this.dispatcher = dispatcher;
+        }
+
+        public static ProcessorSettings defaults() {
+            return new ProcessorSettings(256, 10000, Duration.ofMinutes(10), Duration.ofSeconds(2),
+                    "task-system.dispatchers.processor");
+        }
+
+        static ProcessorSettings fromConfig(Config config) {
+            return new ProcessorSettings(
+                    config.getInt("max-in-flight"),
+                    config.getInt("status.max-entries"),
+                    config.getDuration("status.ttl"),
+                    config.getDuration("processing-time"),
+                    config.getString("dispatcher")
+            );
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public int getStatusMaxEntries() {
+            return statusMaxEntries;
+        }
+
+        public Duration getStatusTtl() {
+            return statusTtl;
+        }
+
+        public Duration getProcessingTime() {
+            return processingTime;
+        }
+
+        public String getDispatcher() {
+            return dispatcher;
+        }
+    }
+
+    /**
+     * WebSocket连接管理配置：连接登记表按 clientId 的哈希分布在 shards 个分片Actor上，
+     * 注册、断开和广播投递由各分片并行处理；
+     * 每个连接的出站缓冲最多 outboundBufferSize 帧，客户端跟不上时按 overflowStrategy 处理；
+     * 开启 distributedPubSub 时任务事件在集群内分发，客户端不必连到执行任务的节点
+     */
+    public static class WebSocketSettings {
+
+        /**
+         * 出站缓冲溢出策略
+         */
+        public enum OverflowStrategy {
+            // 丢弃最早的一帧
+            DROP_OLDEST,
+            // 同一主题只保留最新的一帧，仍然溢出时丢弃最早的一帧
+            CONFLATE,
+            // 断开慢客户端
+            DISCONNECT;
+
+            /**
+             * 配置中的写法，如 drop-oldest
+             */
+            static OverflowStrategy fromConfigValue(String value) {
+                for (OverflowStrategy strategy : values()) {
+                    if (strategy.name().replace('_', '-').equalsIgnoreCase(value)) {
+                        return strategy;
+                    }
+                }
+                throw new IllegalArgumentException("Unknown websocket.outbound.overflow-strategy: " + value);
+            }
+        }
+
+        private final int shards;
+        private final int outboundBufferSize;
+        private final OverflowStrategy overflowStrategy;
+        private final boolean distributedPubSub;
+
+        public WebSocketSettings(int shards) {
+            this(shards, 256, OverflowStrategy.DROP_OLDEST);
+        }
+
+        public WebSocketSettings(int shards, int outboundBufferSize, OverflowStrategy overflowStrategy) {
+            this(shards, outboundBufferSize, overflowStrategy, false);
+        }
+
+        /**
+         * @param distributedPubSub 任务事件经 DistributedPubSub 发往集群中有订阅的节点（需要集群模式）
+         */
+        public WebSocketSettings(int shards, int outboundBufferSize, OverflowStrategy overflowStrategy,
+                                 boolean distributedPubSub) {
+            if (shards < 1) {
+                throw new IllegalArgumentException("websocket.shards must be at least 1");
+            }
+            if (outboundBufferSize < 1) {
+                throw new IllegalArgumentException("websocket.outbound.buffer-size must be at least 1");
+            }
+            this.shards = shards;
+            this.outboundBufferSize = outboundBufferSize;
+            this.overflowStrategy = overflowStrategy;
+            this.distributedPubSub = distributedPubSub;
+        }
+
+        public static WebSocketSettings defaults() {
+            return new WebSocketSettings(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        }
+
+        static WebSocketSettings fromConfig(Config config) {
+            return new WebSocketSettings(
+                    config.getInt("shards"),
+                    config.getInt("outbound.buffer-size"),
+                    OverflowStrategy.fromConfigValue(config.getString("outbound.overflow-strategy")),
+                    config.getBoolean("distributed-pub-sub")
+            );
+        }
+
+        public int getShards() {
+            return shards;
+        }
+
+        public int getOutboundBufferSize() {
+            return outboundBufferSize;
+        }
+
+        public OverflowStrategy getOverflowStrategy() {
+            return overflowStrategy;
+        }
+
+        public boolean isDistributedPubSub() {
+            return distributedPubSub;
+        }
+    }
+}
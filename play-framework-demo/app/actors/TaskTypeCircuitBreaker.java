@@ -0,0 +1,88 @@
+package actors;
+
+/**
+ * 单一任务类型的熔断器
+ * 连续失败达到阈值后打开，打开期间不再派发该类型的任务；openTimeout 之后进入半开状态，
+ * 只放行一个试探任务，试探成功则关闭，失败则重新打开。试探任务迟迟没有结果（例如被取消）时，
+ * 再过一个 openTimeout 放行下一个试探任务。
+ * 非线程安全，由TaskManagerActor独占访问
+ */
+class TaskTypeCircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openTimeoutMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt;
+    private long trialStartedAt;
+
+    TaskTypeCircuitBreaker(int failureThreshold, long openTimeoutMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openTimeoutMillis = openTimeoutMillis;
+    }
+
+    /**
+     * 是否可以派发一个该类型的任务；半开状态下放行的任务即为试探任务
+     */
+    boolean tryAcquire(long nowMillis) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nowMillis - openedAt < openTimeoutMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialStartedAt = nowMillis;
+                return true;
+            default:
+                if (nowMillis - trialStartedAt < openTimeoutMillis) {
+                    return false;
+                }
+                trialStartedAt = nowMillis;
+                return true;
+        }
+    }
+
+    void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    void onFailure(long nowMillis) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = nowMillis;
+        }
+    }
+
+    /**
+     * 距离可以再次派发（放行试探任务）的剩余时间，关闭状态下为0
+     */
+    long remainingOpenMillis(long nowMillis) {
+        switch (state) {
+            case OPEN:
+                return Math.max(0, openedAt + openTimeoutMillis - nowMillis);
+            case HALF_OPEN:
+                return Math.max(0, trialStartedAt + openTimeoutMillis - nowMillis);
+            default:
+                return 0;
+        }
+    }
+
+    State getState() {
+        return state;
+    }
+
+    int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+}
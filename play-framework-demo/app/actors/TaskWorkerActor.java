@@ -1,35 +1,223 @@
 package actors;
 
 import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Cancellable;
 import akka.actor.Props;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import models.Task;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.Random;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 任务工作者Actor
- * 负责实际执行任务的处理逻辑
+ * 按任务类型把任务交给对应的TaskExecutor执行
+ * 阻塞型执行器以FutureTask提交到池的阻塞调度器上执行，异步型执行器直接调用、执行期间不占用线程；
+ * Worker自身不阻塞（运行在默认调度器上），因此执行期间仍能处理取消和截止时间消息；
+ * 异步型执行器最多同时执行 credits 个任务（或批）；阻塞型同一时刻只执行一个，
+ * 阻塞调度器为虚拟线程调度器时同样最多同时执行 credits 个（阻塞不占用平台线程），其余已分配的任务在本地排队。
+ * 微批由管理器组好后以 {@link TaskMessage.AssignBatch} 分配，作为一次执行器调用执行，每个任务仍单独回复各自的状态
  */
 public class TaskWorkerActor extends AbstractActor {
 
     private final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
-    private final Random random = new Random();
+
+    // 按任务类型查找执行器
+    private final TaskExecutors executors;
+
+    // 可用并发额度，0 表示推送模式（不向父Actor申请任务）
+    private final int credits;
+
+    // 执行阻塞型任务体的调度器，为null时使用Worker自身的调度器
+    private final String taskDispatcher;
+    private Executor taskExecutor;
+    // 阻塞型任务体是否可以同时执行多个（虚拟线程调度器）
+    private boolean concurrentBlocking;
+
+    // 结果存储，为null时结果总是保存在任务上；超过 inlineThreshold 字节的结果写入存储
+    private final TaskResultStore resultStore;
+    private final int inlineThreshold;
+
+    // 执行中的任务（或批）：结束通知的future -> 执行，以及已分配但尚未开始的任务（或批）
+    private final Map<Future<?>, Running> running = new LinkedHashMap<>();
+    private final Deque<PendingWork> waiting = new ArrayDeque<>();
+
+    /**
+     * 已分配的任务及其回复对象
+     */
+    private static final class Assignment {
+        final Task task;
+        final ActorRef replyTo;
+
+        Assignment(Task task, ActorRef replyTo) {
+            this.task = task;
+            this.replyTo = replyTo;
+        }
+    }
+
+    /**
+     * 已分配但尚未开始的一个任务或一批任务
+     */
+    private static final class PendingWork {
+        final List<Assignment> assignments;
+        final boolean batch;
+
+        PendingWork(List<Assignment> assignments, boolean batch) {
+            this.assignments = assignments;
+            this.batch = batch;
+        }
+    }
+
+    /**
+     * 执行中的任务（批量执行时为一批，批中取消的任务被移除）
+     */
+    private static final class Running {
+        final List<Assignment> assignments;
+        final boolean batch;
+        // 是否占用阻塞调度器的线程
+        final boolean blocking;
+        // 执行结束时发出Finished的结果
+        final Future<?> future;
+        // 执行器返回的结果（异步执行时结果还要经过结果存储，与future不同）
+        final Future<?> execution;
+        Cancellable deadlineTimer;
+
+        Running(List<Assignment> assignments, boolean batch, boolean blocking, Future<?> future, Future<?> execution) {
+            this.assignments = assignments;
+            this.batch = batch;
+            this.blocking = blocking;
+            this.future = future;
+            this.execution = execution;
+        }
+    }
+
+    /**
+     * 任务体执行结束（仅发给自己）
+     */
+    private static final class Finished {
+        final Future<?> future;
+
+        Finished(Future<?> future) {
+            this.future = future;
+        }
+    }
+
+    /**
+     * 执行中的任务到达截止时间（仅发给自己）
+     */
+    private static final class DeadlineExceeded {
+        final Future<?> future;
+
+        DeadlineExceeded(Future<?> future) {
+            this.future = future;
+        }
+    }
+
+    public TaskWorkerActor() {
+        this(0);
+    }
+
+    public TaskWorkerActor(int credits) {
+        this(credits, null);
+    }
+
+    public TaskWorkerActor(int credits, String taskDispatcher) {
+        this(credits, taskDispatcher, null, 0);
+    }
+
+    public TaskWorkerActor(int credits, String taskDispatcher, TaskResultStore resultStore, int inlineThreshold) {
+        this(credits, taskDispatcher, TaskExecutors.builtIn(), resultStore, inlineThreshold);
+    }
+
+    public TaskWorkerActor(int credits, String taskDispatcher, TaskExecutors executors,
+                           TaskResultStore resultStore, int inlineThreshold) {
+        this.credits = credits;
+        this.executors = executors;
+        this.taskDispatcher = taskDispatcher;
+        this.resultStore = resultStore;
+        this.inlineThreshold = inlineThreshold;
+    }
 
     public static Props props() {
         return Props.create(TaskWorkerActor.class);
     }
 
+    /**
+     * 拉取模式：启动后向父Actor（TaskManagerActor）通告可用额度
+     */
+    public static Props props(int credits) {
+        return Props.create(TaskWorkerActor.class, credits);
+    }
+
+    /**
+     * 拉取模式，任务体在 taskDispatcher 上执行
+     */
+    public static Props props(int credits, String taskDispatcher) {
+        return Props.create(TaskWorkerActor.class, credits, taskDispatcher);
+    }
+
+    /**
+     * 拉取模式，超过 inlineThreshold 字节的结果写入 resultStore，任务上只保留句柄
+     */
+    public static Props props(int credits, String taskDispatcher, TaskResultStore resultStore, int inlineThreshold) {
+        return Props.create(TaskWorkerActor.class, credits, taskDispatcher, resultStore, inlineThreshold);
+    }
+
+    /**
+     * 拉取模式，使用指定的执行器，resultStore 可以为null
+     */
+    public static Props props(int credits, String taskDispatcher, TaskExecutors executors,
+                              TaskResultStore resultStore, int inlineThreshold) {
+        return Props.create(TaskWorkerActor.class, credits, taskDispatcher, executors, resultStore, inlineThreshold);
+    }
+
     @Override
     public void preStart() throws Exception {
         super.preStart();
         log.info("TaskWorker {} started", getSelf().path());
+        taskExecutor = taskDispatcher != null
+                ? getContext().getSystem().dispatchers().lookup(taskDispatcher)
+                : getContext().getDispatcher();
+        concurrentBlocking = taskDispatcher != null && VirtualThreadExecutorConfigurator.isUsedBy(
+                getContext().getSystem().settings().config(), taskDispatcher);
+
+        // 重启后同样会重新通告额度，管理器据此回收在途任务
+        if (credits > 0) {
+            getContext().getParent().tell(new TaskMessage.WorkRequest(credits), getSelf());
+        }
     }
 
     @Override
     public void postStop() throws Exception {
+        // 停止或重启时中断执行中的任务，避免占用调度器线程
+        for (Running execution : new ArrayList<>(running.values())) {
+            stopRunning(execution);
+        }
         log.info("TaskWorker {} stopped", getSelf().path());
         super.postStop();
     }
@@ -38,125 +226,405 @@ public class TaskWorkerActor extends AbstractActor {
     public Receive createReceive() {
         return receiveBuilder()
                 .match(Task.class, this::handleTask)
+                .match(TaskMessage.AssignBatch.class, this::handleAssignBatch)
+                .match(Finished.class, this::handleFinished)
+                .match(TaskMessage.CancelTask.class, this::handleCancelTask)
+                .match(DeadlineExceeded.class, this::handleDeadlineExceeded)
                 .matchAny(o -> log.warning("Received unknown message: {}", o))
                 .build();
     }
 
     /**
-     * 处理任务
+     * 接收任务：空闲时立即开始，否则在本地排队
      */
     private void handleTask(Task task) {
-        log.info("Worker {} processing task: {}", getSelf().path().name(), task.getTaskId());
-
-        task.setStatus(Task.TaskStatus.RUNNING);
-        task.setStartedAt(LocalDateTime.now());
-
-        try {
-            // 根据任务类型执行不同的处理逻辑
-            String result = executeTaskByType(task);
+        waiting.add(new PendingWork(Collections.singletonList(new Assignment(task, getSender())), false));
+        startNext();
+    }
 
-            // 任务成功完成
-            task.setStatus(Task.TaskStatus.COMPLETED);
-            task.setCompletedAt(LocalDateTime.now());
-            task.setResult(result);
+    /**
+     * 接收一批任务，与单个任务一样排队
+     */
+    private void handleAssignBatch(TaskMessage.AssignBatch assign) {
+        List<Assignment> batch = new ArrayList<>(assign.getTasks().size());
+        for (Task task : assign.getTasks()) {
+            batch.add(new Assignment(task, getSender()));
+        }
+        waiting.add(new PendingWork(batch, true));
+        startNext();
+    }
 
-            log.info("Task {} completed successfully by worker {}", task.getTaskId(), getSelf().path().name());
+    /**
+     * 按分配顺序开始排队的任务或批，直到并发已满，已超过截止时间的任务不再执行，直接按失败返回
+     */
+    private void startNext() {
+        PendingWork work;
+        while ((work = waiting.peek()) != null && running.size() < Math.max(1, credits)) {
+            LocalDateTime now = LocalDateTime.now();
+            Task first = work.assignments.get(0).task;
+            if (!work.batch && first.isDeadlineExceeded(now)) {
+                waiting.poll();
+                log.warning("Task {} skipped: deadline {} already passed", first.getTaskId(), first.getDeadline());
+                fail(work.assignments.get(0), "Deadline exceeded before start", false);
+                continue;
+            }
 
-            // 将结果发送回发送者（通常是TaskManagerActor）
-            getSender().tell(task, getSelf());
+            TaskExecutor executor = executors.forType(first.getTaskType());
+            if (!canStart(executor)) {
+                return;
+            }
+            waiting.poll();
+            Running started = work.batch
+                    ? startBatch(new ArrayList<>(work.assignments), executor, now)
+                    : startSingle(work.assignments.get(0), executor, now);
+            running.put(started.future, started);
+        }
+    }
 
-        } catch (Exception e) {
-            // 任务执行失败
-            log.error(e, "Task {} failed on worker {}", task.getTaskId(), getSelf().path().name());
+    /**
+     * 异步型执行不占用线程，可以与其他执行同时进行；阻塞型任务体一次只执行一个（虚拟线程调度器上不限）
+     */
+    private boolean canStart(TaskExecutor executor) {
+        if (executor.mode() == TaskExecutor.Mode.ASYNC || concurrentBlocking) {
+            return true;
+        }
+        for (Running execution : running.values()) {
+            if (execution.blocking) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-            task.setStatus(Task.TaskStatus.FAILED);
-            task.setCompletedAt(LocalDateTime.now());
-            task.setErrorMessage(e.getMessage());
-            task.setRetryCount(task.getRetryCount() + 1);
+    private Running startSingle(Assignment assignment, TaskExecutor executor, LocalDateTime now) {
+        Task task = assignment.task;
+        log.info("Worker {} processing task: {}", getSelf().path().name(), task.getTaskId());
+        task.setStatus(Task.TaskStatus.RUNNING);
+        task.setStartedAt(now);
 
-            // 发送失败的任务回去
-            getSender().tell(task, getSelf());
+        List<Assignment> single = Collections.singletonList(assignment);
+        Running started = executor.mode() == TaskExecutor.Mode.ASYNC
+                ? runAsync(single, false, () -> executor.executeAsync(task),
+                        result -> storeLargeResult(task, result))
+                : executor.streamsResult()
+                ? runBlocking(single, false, () -> streamResult(task, executor))
+                : runBlocking(single, false, () -> storeLargeResult(task, executor.execute(task)));
+        if (task.getDeadline() != null) {
+            long remaining = java.time.Duration.between(now, task.getDeadline()).toMillis();
+            started.deadlineTimer = getContext().getSystem().scheduler().scheduleOnce(
+                    java.time.Duration.ofMillis(remaining),
+                    getSelf(),
+                    new DeadlineExceeded(started.future),
+                    getContext().getDispatcher(),
+                    getSelf()
+            );
         }
+        return started;
     }
 
     /**
-     * 根据任务类型执行不同的处理逻辑
+     * 一批任务作为一次执行器调用执行
      */
-    private String executeTaskByType(Task task) throws Exception {
-        String taskType = task.getTaskType();
+    private Running startBatch(List<Assignment> batch, TaskExecutor executor, LocalDateTime now) {
+        List<Task> tasks = new ArrayList<>(batch.size());
+        for (Assignment assignment : batch) {
+            assignment.task.setStatus(Task.TaskStatus.RUNNING);
+            assignment.task.setStartedAt(now);
+            tasks.add(assignment.task);
+        }
+        log.info("Worker {} processing batch of {} {} tasks", getSelf().path().name(), tasks.size(),
+                tasks.get(0).getTaskType());
+
+        return executor.mode() == TaskExecutor.Mode.ASYNC
+                ? runAsync(batch, true, () -> executor.executeBatchAsync(tasks),
+                        results -> storeLargeResults(tasks, results))
+                : runBlocking(batch, true, () -> storeLargeResults(tasks, executor.executeBatch(tasks)));
+    }
 
-        switch (taskType) {
-            case "DATA_PROCESSING":
-                return processDataTask(task);
+    /**
+     * 阻塞型执行：任务体提交到阻塞调度器，结束时通知自己
+     */
+    private <T> Running runBlocking(List<Assignment> assignments, boolean batch, Callable<T> body) {
+        ActorRef self = getSelf();
+        FutureTask<T> future = new FutureTask<T>(body) {
+            @Override
+            protected void done() {
+                self.tell(new Finished(this), ActorRef.noSender());
+            }
+        };
+        taskExecutor.execute(future);
+        return new Running(new ArrayList<>(assignments), batch, true, future, future);
+    }
 
-            case "FILE_OPERATION":
-                return processFileTask(task);
+    /**
+     * 异步型执行：在当前线程上发起执行，结果就绪时通知自己；
+     * 写入结果存储可能触发缺页，放到阻塞调度器上进行
+     */
+    private <T> Running runAsync(List<Assignment> assignments, boolean batch,
+                                 Supplier<CompletionStage<T>> call, Function<T, T> store) {
+        CompletableFuture<T> execution;
+        try {
+            execution = call.get().toCompletableFuture();
+        } catch (RuntimeException e) {
+            execution = new CompletableFuture<>();
+            execution.completeExceptionally(e);
+        }
+        CompletableFuture<T> future = resultStore == null ? execution : execution.thenApplyAsync(store, taskExecutor);
+        ActorRef self = getSelf();
+        future.whenComplete((result, error) -> self.tell(new Finished(future), ActorRef.noSender()));
+        return new Running(new ArrayList<>(assignments), batch, false, future, execution);
+    }
 
-            case "API_CALL":
-                return processApiTask(task);
+    /**
+     * 任务体执行结束，已被取消或超时中断的任务忽略
+     */
+    @SuppressWarnings("unchecked")
+    private void handleFinished(Finished finished) {
+        Running execution = running.remove(finished.future);
+        if (execution == null) {
+            return;
+        }
+        List<Assignment> assignments = execution.assignments;
+        boolean batch = execution.batch;
+        if (execution.deadlineTimer != null) {
+            execution.deadlineTimer.cancel();
+        }
 
-            case "NOTIFICATION":
-                return processNotificationTask(task);
+        try {
+            Object outcome = finished.future.get();
+            if (batch) {
+                completeBatch(assignments, (Map<String, String>) outcome);
+            } else {
+                complete(assignments.get(0), (String) outcome);
+                log.info("Task {} completed successfully by worker {}", assignments.get(0).task.getTaskId(),
+                        getSelf().path().name());
+            }
+        } catch (InterruptedException | ExecutionException | CancellationException e) {
+            // 任务执行失败（批量执行时整批失败）
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            if (batch) {
+                log.error(cause, "Batch of {} tasks failed on worker {}", assignments.size(), getSelf().path().name());
+            } else {
+                log.error(cause, "Task {} failed on worker {}", assignments.get(0).task.getTaskId(),
+                        getSelf().path().name());
+            }
+            for (Assignment assignment : assignments) {
+                fail(assignment, cause.getMessage(), true);
+            }
+        }
 
-            case "REPORT_GENERATION":
-                return processReportTask(task);
+        startNext();
+    }
 
-            default:
-                return processDefaultTask(task);
+    /**
+     * 批量执行结束：每个任务按各自的结果单独回复，执行器没有返回结果的任务按失败处理
+     */
+    private void completeBatch(List<Assignment> assignments, Map<String, String> results) {
+        int completed = 0;
+        for (Assignment assignment : assignments) {
+            String taskId = assignment.task.getTaskId();
+            if (results != null && results.containsKey(taskId)) {
+                complete(assignment, results.get(taskId));
+                completed++;
+            } else {
+                fail(assignment, "No result returned by batch execution", true);
+            }
         }
+        log.info("Batch of {} tasks finished on worker {} ({} completed)", assignments.size(),
+                getSelf().path().name(), completed);
+    }
+
+    private void complete(Assignment assignment, String result) {
+        Task task = assignment.task;
+        task.setStatus(Task.TaskStatus.COMPLETED);
+        task.setCompletedAt(LocalDateTime.now());
+        task.setResult(result);
+
+        // 将结果发送回发送者（通常是TaskManagerActor）
+        assignment.replyTo.tell(task, getSelf());
     }
 
     /**
-     * 数据处理任务
+     * 取消任务：排队中的直接移除，执行中的中断执行线程，两种情况都以CANCELLED状态返回；
+     * 批量执行中的任务从批中移除，其余任务继续执行，批中的任务全部取消时才中断执行
      */
-    private String processDataTask(Task task) throws InterruptedException {
-        log.info("Processing data task: {}", task.getTaskName());
-        Thread.sleep(1000 + random.nextInt(2000));
-        return "Data processed: " + task.getTaskData();
+    private void handleCancelTask(TaskMessage.CancelTask cancel) {
+        for (Running execution : running.values()) {
+            Iterator<Assignment> it = execution.assignments.iterator();
+            while (it.hasNext()) {
+                Assignment assignment = it.next();
+                if (assignment.task.getTaskId().equals(cancel.getTaskId())) {
+                    it.remove();
+                    log.info("Task {} cancelled while running on worker {}", cancel.getTaskId(),
+                            getSelf().path().name());
+                    if (execution.assignments.isEmpty()) {
+                        stopRunning(execution);
+                    }
+                    cancelled(assignment);
+                    startNext();
+                    return;
+                }
+            }
+        }
+
+        Iterator<PendingWork> pending = waiting.iterator();
+        while (pending.hasNext()) {
+            PendingWork work = pending.next();
+            Iterator<Assignment> it = work.assignments.iterator();
+            while (it.hasNext()) {
+                Assignment assignment = it.next();
+                if (assignment.task.getTaskId().equals(cancel.getTaskId())) {
+                    if (work.assignments.size() == 1) {
+                        pending.remove();
+                    } else {
+                        it.remove();
+                    }
+                    log.info("Task {} cancelled before start on worker {}", cancel.getTaskId(),
+                            getSelf().path().name());
+                    cancelled(assignment);
+                    return;
+                }
+            }
+        }
     }
 
     /**
-     * 文件操作任务
+     * 执行中的任务超过截止时间：中断执行并按失败返回（不再重试）
      */
-    private String processFileTask(Task task) throws InterruptedException {
-        log.info("Processing file task: {}", task.getTaskName());
-        Thread.sleep(1500 + random.nextInt(1500));
-        return "File operation completed: " + task.getTaskData();
+    private void handleDeadlineExceeded(DeadlineExceeded exceeded) {
+        Running execution = running.get(exceeded.future);
+        if (execution == null) {
+            return;
+        }
+        Assignment assignment = execution.assignments.get(0);
+        stopRunning(execution);
+        log.warning("Task {} interrupted: deadline {} exceeded", assignment.task.getTaskId(),
+                assignment.task.getDeadline());
+        fail(assignment, "Deadline exceeded", false);
+        startNext();
+    }
+
+    private void stopRunning(Running execution) {
+        running.remove(execution.future);
+        execution.execution.cancel(true);
+        execution.future.cancel(true);
+        if (execution.deadlineTimer != null) {
+            execution.deadlineTimer.cancel();
+        }
+    }
+
+    private void fail(Assignment assignment, String errorMessage, boolean countRetry) {
+        Task task = assignment.task;
+        task.setStatus(Task.TaskStatus.FAILED);
+        task.setCompletedAt(LocalDateTime.now());
+        task.setErrorMessage(errorMessage);
+        if (countRetry) {
+            task.setRetryCount(task.getRetryCount() + 1);
+        }
+
+        // 发送失败的任务回去
+        assignment.replyTo.tell(task, getSelf());
+    }
+
+    private void cancelled(Assignment assignment) {
+        Task task = assignment.task;
+        task.setStatus(Task.TaskStatus.CANCELLED);
+        task.setCompletedAt(LocalDateTime.now());
+        task.setErrorMessage("Cancelled");
+        assignment.replyTo.tell(task, getSelf());
     }
 
     /**
-     * API调用任务
+     * 在执行线程上把较大的结果写入结果存储，返回值为null表示结果只能通过任务的句柄读取
      */
-    private String processApiTask(Task task) throws InterruptedException {
-        log.info("Processing API task: {}", task.getTaskName());
-        Thread.sleep(500 + random.nextInt(1000));
-        return "API call successful: " + task.getTaskData();
+    private String storeLargeResult(Task task, String result) {
+        if (resultStore == null || result == null) {
+            return result;
+        }
+        if (TaskResultStore.utf8Length(result) <= inlineThreshold) {
+            return result;
+        }
+        try {
+            task.setResultHandle(resultStore.write(result));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
     }
 
     /**
-     * 通知任务
+     * 批量结果逐个写入结果存储，返回新的映射（执行器返回的映射可能不可修改）
      */
-    private String processNotificationTask(Task task) throws InterruptedException {
-        log.info("Processing notification task: {}", task.getTaskName());
-        Thread.sleep(300 + random.nextInt(500));
-        return "Notification sent: " + task.getTaskData();
+    private Map<String, String> storeLargeResults(List<Task> tasks, Map<String, String> results) {
+        if (resultStore == null || results == null) {
+            return results;
+        }
+        Map<String, String> stored = new HashMap<>(results);
+        for (Task task : tasks) {
+            if (stored.containsKey(task.getTaskId())) {
+                stored.put(task.getTaskId(), storeLargeResult(task, stored.get(task.getTaskId())));
+            }
+        }
+        return stored;
     }
 
     /**
-     * 报表生成任务
+     * 在执行线程上运行流式执行器：不超过内联阈值的输出留在内存中作为结果返回，
+     * 超过后改为写入结果存储的独立段，返回null（结果只能通过句柄读取）
      */
-    private String processReportTask(Task task) throws InterruptedException {
-        log.info("Processing report task: {}", task.getTaskName());
-        Thread.sleep(2000 + random.nextInt(3000));
-        return "Report generated: " + task.getTaskData();
+    private String streamResult(Task task, TaskExecutor executor) throws Exception {
+        SpillingOutput out = new SpillingOutput();
+        try {
+            executor.executeTo(task, out);
+            out.close();
+        } catch (Exception e) {
+            out.discard();
+            throw e;
+        }
+        if (out.writer == null) {
+            return new String(out.buffer.toByteArray(), StandardCharsets.UTF_8);
+        }
+        task.setResultHandle(out.writer.handle());
+        return null;
     }
 
     /**
-     * 默认任务处理
+     * 先写入内存，超过内联阈值（没有结果存储时不限）后转为结果存储的流式写入
      */
-    private String processDefaultTask(Task task) throws InterruptedException {
-        log.info("Processing default task: {}", task.getTaskName());
-        Thread.sleep(1000);
-        return "Task processed: " + task.getTaskName();
+    private final class SpillingOutput extends OutputStream {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        TaskResultStore.ResultWriter writer;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (writer == null && resultStore != null && buffer.size() + len > inlineThreshold) {
+                writer = resultStore.openWriter();
+                buffer.writeTo(writer);
+                buffer.reset();
+            }
+            if (writer != null) {
+                writer.write(b, off, len);
+            } else {
+                buffer.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+
+        void discard() {
+            if (writer != null) {
+                writer.discard();
+            }
+        }
     }
 }
@@ -0,0 +1,91 @@
+package actors;
+
+import akka.dispatch.DispatcherPrerequisites;
+import akka.dispatch.ExecutorServiceConfigurator;
+import akka.dispatch.ExecutorServiceFactory;
+import akka.event.Logging;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以虚拟线程执行任务体的调度器执行器（在调度器配置中以 executor = "actors.VirtualThreadExecutorConfigurator" 使用）
+ * 每个任务体一个虚拟线程，阻塞（sleep、I/O）时卸载，载体线程由JVM的虚拟线程调度器统一管理，
+ * 数量默认等于CPU核数（可用 -Djdk.virtualThreadScheduler.parallelism 调整），因此上千个阻塞中的任务只占用少量平台线程。
+ * 虚拟线程通过反射创建，项目仍可在没有虚拟线程的JDK上编译运行；
+ * 运行时不支持时回退为 fallback-pool-size 个平台线程的固定线程池，并发出一条警告。
+ * 任务体仍通过FutureTask把结束通知发回Worker，取消和截止时间的中断对虚拟线程同样有效。
+ * 使用该调度器的Worker最多同时执行 credits 个阻塞型任务体（见 {@link #isUsedBy(Config, String)}）
+ */
+public class VirtualThreadExecutorConfigurator extends ExecutorServiceConfigurator {
+
+    private final int fallbackPoolSize;
+    private final DispatcherPrerequisites prerequisites;
+
+    public VirtualThreadExecutorConfigurator(Config config, DispatcherPrerequisites prerequisites) {
+        super(config, prerequisites);
+        this.prerequisites = prerequisites;
+        Config executorConfig = config.hasPath("virtual-thread-executor")
+                ? config.getConfig("virtual-thread-executor")
+                : config;
+        this.fallbackPoolSize = executorConfig.hasPath("fallback-pool-size")
+                ? executorConfig.getInt("fallback-pool-size")
+                : Runtime.getRuntime().availableProcessors() * 4;
+    }
+
+    @Override
+    public ExecutorServiceFactory createExecutorServiceFactory(String id, ThreadFactory threadFactory) {
+        return () -> {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor(id + "-virtual-");
+            if (virtual != null) {
+                return virtual;
+            }
+            prerequisites.eventStream().publish(new Logging.Warning(id, VirtualThreadExecutorConfigurator.class,
+                    "Virtual threads are not available on this JVM, falling back to " + fallbackPoolSize
+                            + " platform threads"));
+            ThreadPoolExecutor fallback = new ThreadPoolExecutor(fallbackPoolSize, fallbackPoolSize,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+            fallback.allowCoreThreadTimeOut(true);
+            return fallback;
+        };
+    }
+
+    /**
+     * 调度器 dispatcherId 是否配置为虚拟线程执行器
+     */
+    static boolean isUsedBy(Config config, String dispatcherId) {
+        try {
+            String path = dispatcherId + ".executor";
+            return config.hasPath(path)
+                    && VirtualThreadExecutorConfigurator.class.getName().equals(config.getString(path));
+        } catch (ConfigException e) {
+            // 调度器ID不是合法的配置路径
+            return false;
+        }
+    }
+
+    /**
+     * 以反射调用 Thread.ofVirtual().name(prefix, 0).factory() 和 Executors.newThreadPerTaskExecutor，
+     * 运行时不支持虚拟线程时返回null
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // JDK 21 之前没有虚拟线程（或以预览特性提供但未开启）
+            return null;
+        }
+    }
+}
@@ -3,38 +3,96 @@ package actors;
 import akka.actor.AbstractActor;
 import akka.actor.ActorRef;
 import akka.actor.Props;
+import akka.actor.Status;
+import akka.actor.Terminated;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import akka.stream.CompletionStrategy;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import play.libs.Json;
+import utils.MetricsRegistry;
+import utils.TopicTrie;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 /**
  * WebSocket连接Actor
- * 每个WebSocket连接对应一个Actor实例
+ * 每个WebSocket连接对应一个Actor实例；
+ * 启动时向WebSocketManagerActor注册，订阅和取消订阅转交管理器记录，任务事件由管理器按主题推送。
+ * 配置了出站缓冲时（由 WebSocketFlow 创建，out 是带确认的流入口），每次只向 out 发送一帧，
+ * 收到 {@link Ack} 后再发下一帧，期间的消息进入有界的 OutboundBuffer，溢出时按策略丢弃、合并或断开，
+ * 慢客户端不会让服务端内存无限增长；未配置时直接发送
  */
 public class WebSocketActor extends AbstractActor {
 
     private final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private final ActorRef out;
     private final String clientId;
+    // 连接管理器，为null时不注册也不接收任务事件
+    private final ActorRef manager;
     private LocalDateTime connectedAt;
     private int messageCount = 0;
 
+    // 出站缓冲，为null时直接发送（out不发确认）
+    private final OutboundBuffer outbound;
+    private final OutboundMetrics metrics;
+    // 已发出一帧、等待流的确认
+    private boolean awaitingAck = false;
+    // 因缓冲溢出被断开，不再发送
+    private boolean disconnected = false;
+
+    /**
+     * 出站流处理完一帧后发回的确认
+     */
+    public enum Ack {
+        INSTANCE
+    }
+
     public WebSocketActor(ActorRef out, String clientId) {
+        this(out, clientId, null);
+    }
+
+    public WebSocketActor(ActorRef out, String clientId, ActorRef manager) {
+        this.out = out;
+        this.clientId = clientId;
+        this.manager = manager;
+        this.outbound = null;
+        this.metrics = null;
+    }
+
+    /**
+     * @param settings 出站缓冲大小和溢出策略
+     * @param registry 出站缓冲指标的注册表
+     */
+    public WebSocketActor(ActorRef out, String clientId, ActorRef manager,
+                          TaskSystemSettings.WebSocketSettings settings, MetricsRegistry registry) {
         this.out = out;
         this.clientId = clientId;
+        this.manager = manager;
+        this.outbound = new OutboundBuffer(settings.getOutboundBufferSize(), settings.getOverflowStrategy());
+        this.metrics = new OutboundMetrics(registry);
     }
 
     public static Props props(ActorRef out, String clientId) {
         return Props.create(WebSocketActor.class, out, clientId);
     }
 
+    public static Props props(ActorRef out, String clientId, ActorRef manager) {
+        return Props.create(WebSocketActor.class, out, clientId, manager);
+    }
+
+    /**
+     * 带出站缓冲的连接，out 必须在处理完每一帧后回复 {@link Ack}（见 WebSocketFlow）
+     */
+    public static Props props(ActorRef out, String clientId, ActorRef manager,
+                              TaskSystemSettings.WebSocketSettings settings, MetricsRegistry registry) {
+        return Props.create(WebSocketActor.class, out, clientId, manager, settings, registry);
+    }
+
     @Override
     public void preStart() throws Exception {
         super.preStart();
@@ -47,22 +105,31 @@ public class WebSocketActor extends AbstractActor {
         welcome.put("action", "CONNECTED");
         welcome.put("message", "Welcome to WebSocket service!");
         welcome.put("clientId", clientId);
-        welcome.put("timestamp", LocalDateTime.now().format(formatter));
+        welcome.put("timestamp", LocalDateTime.now().format(FORMATTER));
+
+        send(welcome);
 
-        out.tell(welcome, getSelf());
+        // 出站流结束（客户端断开、流失败）时停止自己，不再向已失效的 out 缓冲消息
+        getContext().watch(out);
 
-        // 订阅任务完成通知（如果需要）
-        getContext().getSystem().eventStream().subscribe(getSelf(), TaskMessage.TaskCompleted.class);
+        // 向管理器注册，连接停止后由管理器通过监控自动移除连接及其订阅
+        if (manager != null) {
+            manager.tell(new WebSocketManagerActor.Register(clientId), getSelf());
+        }
     }
 
     @Override
     public void postStop() throws Exception {
+        if (outbound != null) {
+            metrics.buffered.add(-outbound.size());
+            outbound.clear();
+            // 结束出站流：正常停止时写完已发出的帧，被断开时立即关闭
+            out.tell(new Status.Success(disconnected
+                    ? CompletionStrategy.immediately()
+                    : CompletionStrategy.draining()), getSelf());
+        }
         log.info("WebSocket connection closed for client: {} (Messages: {}, Duration: {})",
                 clientId, messageCount, java.time.Duration.between(connectedAt, LocalDateTime.now()));
-
-        // 取消订阅
-        getContext().getSystem().eventStream().unsubscribe(getSelf());
-
         super.postStop();
     }
 
@@ -70,8 +137,14 @@ public class WebSocketActor extends AbstractActor {
     public Receive createReceive() {
         return receiveBuilder()
                 .match(JsonNode.class, this::handleClientMessage)
+                .matchEquals(Ack.INSTANCE, ack -> handleAck())
+                .match(WebSocketFrame.class, this::handleFrame)
                 .match(TaskMessage.TaskCompleted.class, this::handleTaskCompleted)
                 .match(String.class, this::handleBroadcastMessage)
+                .match(Terminated.class, terminated -> terminated.getActor().equals(out), terminated -> {
+                    log.info("Outbound stream of client {} terminated", clientId);
+                    getContext().stop(getSelf());
+                })
                 .matchAny(o -> log.warning("Received unknown message: {}", o))
                 .build();
     }
@@ -114,27 +187,35 @@ public class WebSocketActor extends AbstractActor {
     private void handlePing() {
         ObjectNode pong = Json.newObject();
         pong.put("type", "PONG");
-        pong.put("timestamp", LocalDateTime.now().format(formatter));
+        pong.put("timestamp", LocalDateTime.now().format(FORMATTER));
         pong.put("clientId", clientId);
 
-        out.tell(pong, getSelf());
+        send(pong);
     }
 
     /**
      * 处理订阅请求
+     * 主题如 tasks.# （全部任务）、tasks.API_CALL.* （某类任务）、tasks.*.&lt;taskId&gt; （单个任务）
      */
     private void handleSubscribe(JsonNode message) {
         String topic = message.path("topic").asText("");
+        if (!TopicTrie.isValidPattern(topic)) {
+            handleInvalidTopic(topic);
+            return;
+        }
         log.info("Client {} subscribing to topic: {}", clientId, topic);
+        if (manager != null) {
+            manager.tell(new WebSocketManagerActor.Subscribe(clientId, topic), getSelf());
+        }
 
         ObjectNode response = Json.newObject();
         response.put("type", "SYSTEM");
         response.put("action", "SUBSCRIBED");
         response.put("topic", topic);
         response.put("message", "Successfully subscribed to topic: " + topic);
-        response.put("timestamp", LocalDateTime.now().format(formatter));
+        response.put("timestamp", LocalDateTime.now().format(FORMATTER));
 
-        out.tell(response, getSelf());
+        send(response);
     }
 
     /**
@@ -143,15 +224,33 @@ public class WebSocketActor extends AbstractActor {
     private void handleUnsubscribe(JsonNode message) {
         String topic = message.path("topic").asText("");
         log.info("Client {} unsubscribing from topic: {}", clientId, topic);
+        if (manager != null) {
+            manager.tell(new WebSocketManagerActor.Unsubscribe(clientId, topic), getSelf());
+        }
 
         ObjectNode response = Json.newObject();
         response.put("type", "SYSTEM");
         response.put("action", "UNSUBSCRIBED");
         response.put("topic", topic);
         response.put("message", "Successfully unsubscribed from topic: " + topic);
-        response.put("timestamp", LocalDateTime.now().format(formatter));
+        response.put("timestamp", LocalDateTime.now().format(FORMATTER));
+
+        send(response);
+    }
+
+    /**
+     * 主题模式不合法：段不能为空，通配符 * 和 # 只能独占一段
+     */
+    private void handleInvalidTopic(String topic) {
+        log.warning("Client {} sent invalid topic pattern: {}", clientId, topic);
+
+        ObjectNode response = Json.newObject();
+        response.put("type", "ERROR");
+        response.put("topic", topic);
+        response.put("message", "Invalid topic pattern: " + topic);
+        response.put("timestamp", LocalDateTime.now().format(FORMATTER));
 
-        out.tell(response, getSelf());
+        send(response);
     }
 
     /**
@@ -165,9 +264,9 @@ public class WebSocketActor extends AbstractActor {
         response.put("type", "MESSAGE");
         response.put("from", clientId);
         response.put("content", content);
-        response.put("timestamp", LocalDateTime.now().format(formatter));
+        response.put("timestamp", LocalDateTime.now().format(FORMATTER));
 
-        out.tell(response, getSelf());
+        send(response);
     }
 
     /**
@@ -179,9 +278,75 @@ public class WebSocketActor extends AbstractActor {
         ObjectNode response = Json.newObject();
         response.put("type", "ERROR");
         response.put("message", "Unknown message type");
-        response.put("timestamp", LocalDateTime.now().format(formatter));
+        response.put("timestamp", LocalDateTime.now().format(FORMATTER));
+
+        send(response);
+    }
+
+    /**
+     * 发送一帧：等待确认期间进入出站缓冲，缓冲溢出时按策略处理
+     */
+    private void send(Object message) {
+        if (disconnected) {
+            return;
+        }
+        if (outbound == null || !awaitingAck) {
+            out.tell(message, getSelf());
+            awaitingAck = outbound != null;
+            return;
+        }
+
+        String topic = message instanceof WebSocketFrame ? ((WebSocketFrame) message).getTopic() : null;
+        switch (outbound.offer(message, topic)) {
+            case QUEUED:
+                metrics.buffered.add(1);
+                break;
+            case CONFLATED:
+                metrics.conflated.increment();
+                break;
+            case DROPPED_OLDEST:
+                metrics.droppedOldest.increment();
+                break;
+            case OVERFLOW:
+                disconnectSlowConsumer();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 上一帧已写出，继续发送缓冲中的下一帧
+     */
+    private void handleAck() {
+        awaitingAck = false;
+        Object next = outbound != null ? outbound.poll() : null;
+        if (next != null) {
+            metrics.buffered.add(-1);
+            out.tell(next, getSelf());
+            awaitingAck = true;
+        }
+    }
+
+    /**
+     * 缓冲溢出且策略为断开：丢弃缓冲并停止自己，postStop 中立即结束出站流（关闭WebSocket）
+     */
+    private void disconnectSlowConsumer() {
+        log.warning("Disconnecting slow WebSocket client {}: outbound buffer of {} frames is full",
+                clientId, outbound.size());
+        metrics.droppedOnDisconnect.add(outbound.size() + 1);
+        metrics.buffered.add(-outbound.size());
+        metrics.disconnects.increment();
+        outbound.clear();
+        disconnected = true;
+        getContext().stop(getSelf());
+    }
 
-        out.tell(response, getSelf());
+    /**
+     * 预先序列化的帧（广播、主题推送）原样转发，不再重新构建JSON
+     */
+    private void handleFrame(WebSocketFrame frame) {
+        send(frame);
     }
 
     /**
@@ -189,27 +354,65 @@ public class WebSocketActor extends AbstractActor {
      */
     private void handleTaskCompleted(TaskMessage.TaskCompleted taskCompleted) {
         log.info("Notifying client {} of task completion: {}", clientId, taskCompleted.getTaskId());
+        send(taskNotification(taskCompleted));
+    }
+
+    /**
+     * 处理广播消息
+     */
+    private void handleBroadcastMessage(String message) {
+        send(broadcastMessage(message));
+    }
 
+    /**
+     * 任务完成通知的JSON，WebSocketManagerActor按主题推送时也用它构建共享帧
+     */
+    static ObjectNode taskNotification(TaskMessage.TaskCompleted taskCompleted) {
         ObjectNode notification = Json.newObject();
         notification.put("type", "NOTIFICATION");
         notification.put("action", "TASK_COMPLETED");
         notification.put("taskId", taskCompleted.getTaskId());
+        if (taskCompleted.getTaskType() != null) {
+            notification.put("taskType", taskCompleted.getTaskType());
+        }
         notification.put("success", taskCompleted.isSuccess());
         notification.put("result", taskCompleted.getResult());
-        notification.put("timestamp", LocalDateTime.now().format(formatter));
-
-        out.tell(notification, getSelf());
+        notification.put("timestamp", LocalDateTime.now().format(FORMATTER));
+        return notification;
     }
 
     /**
-     * 处理广播消息
+     * 广播消息的JSON
      */
-    private void handleBroadcastMessage(String message) {
+    static ObjectNode broadcastMessage(String message) {
         ObjectNode broadcast = Json.newObject();
         broadcast.put("type", "BROADCAST");
         broadcast.put("message", message);
-        broadcast.put("timestamp", LocalDateTime.now().format(formatter));
+        broadcast.put("timestamp", LocalDateTime.now().format(FORMATTER));
+        return broadcast;
+    }
 
-        out.tell(broadcast, getSelf());
+    /**
+     * 出站缓冲指标，所有连接共享同一组计数器（不按连接打标签，避免标签数量随连接数增长）
+     */
+    private static final class OutboundMetrics {
+        final MetricsRegistry.Gauge buffered;
+        final MetricsRegistry.Counter droppedOldest;
+        final MetricsRegistry.Counter conflated;
+        final MetricsRegistry.Counter droppedOnDisconnect;
+        final MetricsRegistry.Counter disconnects;
+
+        OutboundMetrics(MetricsRegistry registry) {
+            buffered = registry.gauge("websocket_outbound_buffered_frames",
+                    "Frames waiting in per-connection outbound buffers");
+            droppedOldest = registry.counter("websocket_outbound_dropped_frames_total",
+                    "Outbound frames dropped because a client fell behind", "reason", "drop_oldest");
+            conflated = registry.counter("websocket_outbound_dropped_frames_total",
+                    "Outbound frames dropped because a client fell behind", "reason", "conflated");
+            droppedOnDisconnect = registry.counter("websocket_outbound_dropped_frames_total",
+                    "Outbound frames dropped because a client fell behind", "reason", "disconnect");
+            disconnects = registry.counter("websocket_slow_consumer_disconnects_total",
+                    "Connections closed because their outbound buffer overflowed");
+        }
     }
 }
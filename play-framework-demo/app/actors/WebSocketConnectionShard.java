@@ -0,0 +1,261 @@
+package actors;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.actor.Terminated;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import utils.TopicTrie;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * WebSocket连接分片Actor
+ * WebSocketManagerActor 按 clientId 的哈希把连接分配到各分片，每个分片独立维护自己的连接、
+ * ActorRef -&gt; clientId 反向索引和主题订阅，注册、断开（Terminated）都是O(1)，各分片在不同线程上并行处理。
+ * 分片内某个模式的第一个订阅出现或最后一个订阅消失时通知管理器，管理器据此只把主题事件发给有订阅的分片
+ */
+public class WebSocketConnectionShard extends AbstractActor {
+
+    private final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
+
+    private final int shardId;
+
+    // clientId -> 连接
+    private final Map<String, ActorRef> connections = new HashMap<>();
+
+    // 连接 -> clientId（Terminated时O(1)定位）
+    private final Map<ActorRef, String> clientIds = new HashMap<>();
+
+    // 客户端的主题订阅，以及每个模式在本分片内的订阅客户端数
+    private final TopicTrie<String> subscriptions = new TopicTrie<>();
+    private final Map<String, Integer> patternRefCounts = new HashMap<>();
+
+    // 广播用的连接快照（不可变），连接变化时失效
+    private List<ActorRef> connectionSnapshot;
+
+    public WebSocketConnectionShard(int shardId) {
+        this.shardId = shardId;
+    }
+
+    public static Props props(int shardId) {
+        return Props.create(WebSocketConnectionShard.class, shardId);
+    }
+
+    /**
+     * 向本分片的所有连接投递共享帧
+     */
+    static class DeliverBroadcast {
+        private final WebSocketFrame frame;
+
+        DeliverBroadcast(WebSocketFrame frame) {
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * 向本分片中订阅了匹配模式的连接投递共享帧
+     */
+    static class DeliverTopic {
+        private final String topic;
+        private final WebSocketFrame frame;
+
+        DeliverTopic(String topic, WebSocketFrame frame) {
+            this.topic = topic;
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * 分片内某个模式开始或不再有订阅（发给管理器）
+     */
+    static class PatternInterest {
+        private final String pattern;
+        private final boolean subscribed;
+
+        PatternInterest(String pattern, boolean subscribed) {
+            this.pattern = pattern;
+            this.subscribed = subscribed;
+        }
+
+        String getPattern() {
+            return pattern;
+        }
+
+        boolean isSubscribed() {
+            return subscribed;
+        }
+    }
+
+    @Override
+    public void postStop() throws Exception {
+        log.info("WebSocket connection shard {} stopped. Connections: {}", shardId, connections.size());
+        super.postStop();
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(WebSocketManagerActor.Register.class, this::handleRegister)
+                .match(WebSocketManagerActor.Unregister.class, this::handleUnregister)
+                .match(WebSocketManagerActor.Subscribe.class, this::handleSubscribe)
+                .match(WebSocketManagerActor.Unsubscribe.class, this::handleUnsubscribe)
+                .match(WebSocketManagerActor.SendToClient.class, this::handleSendToClient)
+                .match(DeliverBroadcast.class, this::handleDeliverBroadcast)
+                .match(DeliverTopic.class, this::handleDeliverTopic)
+                .match(WebSocketManagerActor.GetConnectionCount.class,
+                        request -> getSender().tell(connections.size(), getSelf()))
+                .match(WebSocketManagerActor.GetSubscriptionCount.class,
+                        request -> getSender().tell(subscriptions.size(), getSelf()))
+                .match(Terminated.class, this::handleTerminated)
+                .matchAny(o -> log.warning("Received unknown message: {}", o))
+                .build();
+    }
+
+    /**
+     * 处理注册：同一客户端ID的新连接取代旧连接，旧连接的订阅随之失效
+     */
+    private void handleRegister(WebSocketManagerActor.Register register) {
+        String clientId = register.getClientId();
+        ActorRef connection = getSender();
+
+        ActorRef previous = connections.put(clientId, connection);
+        if (previous != null && !previous.equals(connection)) {
+            getContext().unwatch(previous);
+            clientIds.remove(previous);
+            dropSubscriptions(clientId);
+        }
+        clientIds.put(connection, clientId);
+        connectionSnapshot = null;
+        getContext().watch(connection);  // 监控连接Actor
+
+        log.info("WebSocket connection registered: {} (Shard {} connections: {})",
+                clientId, shardId, connections.size());
+    }
+
+    /**
+     * 处理取消注册
+     */
+    private void handleUnregister(WebSocketManagerActor.Unregister unregister) {
+        String clientId = unregister.getClientId();
+        ActorRef connection = connections.remove(clientId);
+
+        if (connection != null) {
+            getContext().unwatch(connection);
+            removeConnection(clientId, connection);
+            log.info("WebSocket connection unregistered: {} (Shard {} connections: {})",
+                    clientId, shardId, connections.size());
+        }
+    }
+
+    /**
+     * 连接Actor终止：通过反向索引直接定位，不扫描连接表
+     */
+    private void handleTerminated(Terminated terminated) {
+        ActorRef connection = terminated.getActor();
+        String clientId = clientIds.get(connection);
+        if (clientId != null && connections.remove(clientId, connection)) {
+            removeConnection(clientId, connection);
+            log.info("WebSocket connection terminated: {} (Shard {} connections: {})",
+                    clientId, shardId, connections.size());
+        }
+    }
+
+    private void removeConnection(String clientId, ActorRef connection) {
+        clientIds.remove(connection);
+        connectionSnapshot = null;
+        dropSubscriptions(clientId);
+    }
+
+    /**
+     * 处理订阅：只接受已注册客户端的合法模式
+     */
+    private void handleSubscribe(WebSocketManagerActor.Subscribe subscribe) {
+        if (!connections.containsKey(subscribe.getClientId())) {
+            log.warning("Ignoring subscription of unregistered client: {}", subscribe.getClientId());
+            return;
+        }
+        if (!TopicTrie.isValidPattern(subscribe.getTopic())) {
+            log.warning("Ignoring invalid topic pattern from client {}: {}",
+                    subscribe.getClientId(), subscribe.getTopic());
+            return;
+        }
+        if (subscriptions.subscribe(subscribe.getTopic(), subscribe.getClientId())) {
+            retainPattern(subscribe.getTopic());
+            log.info("Client {} subscribed to {} (Shard {} subscriptions: {})",
+                    subscribe.getClientId(), subscribe.getTopic(), shardId, subscriptions.size());
+        }
+    }
+
+    /**
+     * 处理取消订阅
+     */
+    private void handleUnsubscribe(WebSocketManagerActor.Unsubscribe unsubscribe) {
+        if (subscriptions.unsubscribe(unsubscribe.getTopic(), unsubscribe.getClientId())) {
+            releasePattern(unsubscribe.getTopic());
+            log.info("Client {} unsubscribed from {} (Shard {} subscriptions: {})",
+                    unsubscribe.getClientId(), unsubscribe.getTopic(), shardId, subscriptions.size());
+        }
+    }
+
+    private void dropSubscriptions(String clientId) {
+        for (String pattern : subscriptions.unsubscribeAll(clientId)) {
+            releasePattern(pattern);
+        }
+    }
+
+    private void retainPattern(String pattern) {
+        if (patternRefCounts.merge(pattern, 1, Integer::sum) == 1) {
+            getContext().getParent().tell(new PatternInterest(pattern, true), getSelf());
+        }
+    }
+
+    private void releasePattern(String pattern) {
+        Integer remaining = patternRefCounts.computeIfPresent(pattern, (p, count) -> count > 1 ? count - 1 : null);
+        if (remaining == null) {
+            getContext().getParent().tell(new PatternInterest(pattern, false), getSelf());
+        }
+    }
+
+    /**
+     * 发送消息给特定客户端，发送者保持为管理器
+     */
+    private void handleSendToClient(WebSocketManagerActor.SendToClient sendToClient) {
+        String clientId = sendToClient.getClientId();
+        ActorRef connection = connections.get(clientId);
+
+        if (connection != null) {
+            log.info("Sending message to client: {}", clientId);
+            connection.tell(sendToClient.getMessage(), getContext().getParent());
+        } else {
+            log.warning("Client not found: {}", clientId);
+        }
+    }
+
+    private void handleDeliverBroadcast(DeliverBroadcast deliver) {
+        if (connectionSnapshot == null) {
+            connectionSnapshot = Collections.unmodifiableList(new ArrayList<>(connections.values()));
+        }
+        ActorRef manager = getContext().getParent();
+        for (ActorRef connection : connectionSnapshot) {
+            connection.tell(deliver.frame, manager);
+        }
+    }
+
+    private void handleDeliverTopic(DeliverTopic deliver) {
+        Set<String> subscribers = subscriptions.match(deliver.topic);
+        ActorRef manager = getContext().getParent();
+        for (String clientId : subscribers) {
+            ActorRef connection = connections.get(clientId);
+            if (connection != null) {
+                connection.tell(deliver.frame, manager);
+            }
+        }
+    }
+}
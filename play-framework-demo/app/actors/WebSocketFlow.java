@@ -0,0 +1,60 @@
+package actors;
+
+import akka.NotUsed;
+import akka.actor.ActorRef;
+import akka.actor.ActorRefFactory;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.actor.Status;
+import akka.japi.Pair;
+import akka.stream.CompletionStrategy;
+import akka.stream.Materializer;
+import akka.stream.javadsl.AsPublisher;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import org.reactivestreams.Publisher;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * 由连接Actor处理的WebSocket消息流（代替 ActorFlow.actorRef）
+ * ActorFlow 的出站端是固定大小的缓冲，溢出时静默丢弃新消息，连接Actor无从得知客户端是否跟得上；
+ * 这里的出站端在每个元素被下游取走后向连接Actor回复 {@link WebSocketActor.Ack}，
+ * 未确认期间的消息由连接Actor自己的有界缓冲按策略处理。
+ * 连接Actor向 out 发送 Status.Success 时结束出站流（关闭连接），入站流正常结束或失败（如对端重置连接）时
+ * 连接Actor都会被停止，连接Actor停止时也会结束出站流
+ */
+public final class WebSocketFlow {
+
+    private WebSocketFlow() {
+    }
+
+    /**
+     * @param props 根据出站端 out 创建连接Actor的Props
+     */
+    public static <In> Flow<In, Object, NotUsed> actorFlow(Function<ActorRef, Props> props,
+                                                          ActorRefFactory factory, Materializer materializer) {
+        Pair<ActorRef, Publisher<Object>> outbound = Source.actorRefWithBackpressure(
+                WebSocketActor.Ack.INSTANCE,
+                message -> message instanceof Status.Success
+                        ? Optional.of(((Status.Success) message).status() instanceof CompletionStrategy
+                                ? (CompletionStrategy) ((Status.Success) message).status()
+                                : CompletionStrategy.draining())
+                        : Optional.<CompletionStrategy>empty(),
+                message -> message instanceof Status.Failure
+                        ? Optional.of(((Status.Failure) message).cause())
+                        : Optional.<Throwable>empty())
+                .toMat(Sink.asPublisher(AsPublisher.WITHOUT_FANOUT), Keep.both())
+                .run(materializer);
+
+        ActorRef connection = factory.actorOf(props.apply(outbound.first()));
+        return Flow.fromSinkAndSource(
+                // javadsl 只有两参数版本（失败时发送 Status.Failure），这里用 scaladsl 的三参数版本让失败同样停止连接Actor
+                akka.stream.scaladsl.Sink.<In>actorRef(connection, PoisonPill.getInstance(),
+                        failure -> PoisonPill.getInstance()).asJava(),
+                Source.fromPublisher(outbound.second()));
+    }
+}
@@ -0,0 +1,44 @@
+package actors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import play.libs.Json;
+
+/**
+ * 预先序列化的WebSocket文本帧
+ * 广播和主题推送时只构建并序列化一次，同一个不可变实例发给所有连接，
+ * 连接Actor原样转发，WebSocketController 直接把文本写成 Text 帧，不再逐连接生成JSON
+ */
+public final class WebSocketFrame {
+
+    private final String topic;
+    private final String text;
+
+    private WebSocketFrame(String topic, String text) {
+        this.topic = topic;
+        this.text = text;
+    }
+
+    public static WebSocketFrame of(JsonNode json) {
+        return of(null, json);
+    }
+
+    /**
+     * @param topic 帧所属的主题，广播帧为null
+     */
+    public static WebSocketFrame of(String topic, JsonNode json) {
+        return new WebSocketFrame(topic, Json.stringify(json));
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return "WebSocketFrame{topic='" + topic + "', length=" + text.length() + '}';
+    }
+}
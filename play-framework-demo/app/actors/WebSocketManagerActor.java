@@ -3,28 +3,87 @@ package actors;
 import akka.actor.AbstractActor;
 import akka.actor.ActorRef;
 import akka.actor.Props;
-import akka.actor.Terminated;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import akka.pattern.Patterns;
+import utils.BoundedTtlCache;
+import utils.TopicTrie;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * WebSocket管理器Actor
- * 管理所有WebSocket连接，提供广播和消息推送功能
+ * 管理所有WebSocket连接，提供广播和消息推送功能。
+ * 连接登记表按 clientId 的哈希分布在多个 WebSocketConnectionShard 子Actor上，
+ * 注册、断开和定向发送只经过本Actor转发一次，由各分片并行处理；连接数等统计向所有分片查询后汇总。
+ * 客户端的主题订阅（TopicTrie，支持 * 和 # 通配符）保存在所属分片中，本Actor只记录每个模式有哪些分片订阅：
+ * 任务终结事件只由本Actor订阅事件流，按主题 tasks.&lt;taskType&gt;.&lt;taskId&gt; 找到有订阅的分片后投递，
+ * 没有订阅的连接不产生任何开销。
+ * 广播和主题推送的内容只序列化一次（WebSocketFrame），所有分片和连接共享同一个帧。
+ * 开启 distributed-pub-sub 时，本地事件不再直接推送，而是发布到 DistributedPubSub：
+ * 每个订阅模式映射为其第一个通配符之前的前缀（如 tasks.API_CALL.* -&gt; tasks.API_CALL），
+ * 节点只在某个前缀第一次被需要时向中介订阅、不再被需要时取消（引用计数），
+ * 事件发布到其主题的各级前缀，中介只把它发给订阅了对应前缀的节点（每个节点一次，本节点也经由中介收到）；
+ * 节点因订阅了多个层级而重复收到的事件按 eventId 去重后再按主题推送给本地客户端
  */
 public class WebSocketManagerActor extends AbstractActor {
 
     private final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
 
-    // 存储所有活跃的WebSocket连接
-    private final Map<String, ActorRef> connections = new HashMap<>();
+    private static final Duration SHARD_QUERY_TIMEOUT = Duration.ofSeconds(3);
+
+    // 任务事件主题前缀
+    public static final String TASK_TOPIC_PREFIX = "tasks";
+
+    // DistributedPubSub 中的主题命名空间
+    static final String CLUSTER_TOPIC_PREFIX = "websocket:";
+
+    // 集群事件去重窗口
+    private static final int RECENT_EVENTS_MAX = 10000;
+    private static final long RECENT_EVENTS_TTL_MILLIS = 60_000;
+
+    private final TaskSystemSettings.WebSocketSettings settings;
+
+    // 连接分片
+    private final List<ActorRef> shards = new ArrayList<>();
+
+    // 模式 -> 有订阅的分片
+    private final TopicTrie<ActorRef> shardSubscriptions = new TopicTrie<>();
+
+    // 模式 -> 订阅该模式的分片数
+    private final Map<String, Integer> patternShardCounts = new HashMap<>();
+
+    // 集群分发：中介（未开启时为null）、已订阅的前缀主题 -&gt; 映射到它的模式数、最近收到的事件
+    private ActorRef mediator;
+    private final Map<String, Integer> clusterTopicRefCounts = new HashMap<>();
+    private final BoundedTtlCache<String, Boolean> recentClusterEvents =
+            new BoundedTtlCache<>(RECENT_EVENTS_MAX, RECENT_EVENTS_TTL_MILLIS, null);
+
+    public WebSocketManagerActor() {
+        this(TaskSystemSettings.WebSocketSettings.defaults());
+    }
+
+    public WebSocketManagerActor(TaskSystemSettings.WebSocketSettings settings) {
+        this.settings = settings;
+    }
 
     public static Props props() {
         return Props.create(WebSocketManagerActor.class);
     }
 
+    public static Props props(TaskSystemSettings.WebSocketSettings settings) {
+        return Props.create(WebSocketManagerActor.class, settings);
+    }
+
     /**
      * 注册消息 - WebSocket连接注册
      */
@@ -91,113 +150,273 @@ public class WebSocketManagerActor extends AbstractActor {
         }
     }
 
+    /**
+     * 订阅主题消息（由连接Actor发送，模式可含通配符）
+     */
+    public static class Subscribe {
+        private final String clientId;
+        private final String topic;
+
+        public Subscribe(String clientId, String topic) {
+            this.clientId = clientId;
+            this.topic = topic;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+    }
+
+    /**
+     * 取消订阅主题消息
+     */
+    public static class Unsubscribe {
+        private final String clientId;
+        private final String topic;
+
+        public Unsubscribe(String clientId, String topic) {
+            this.clientId = clientId;
+            this.topic = topic;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+    }
+
     /**
      * 获取连接数
      */
     public static class GetConnectionCount {
     }
 
+    /**
+     * 获取订阅数（客户端与模式的组合数）
+     */
+    public static class GetSubscriptionCount {
+    }
+
+    /**
+     * 任务事件的主题：tasks.&lt;taskType&gt;.&lt;taskId&gt;，段内的"."替换为"_"以免被拆成多段
+     */
+    public static String taskTopic(String taskType, String taskId) {
+        String type = taskType != null ? taskType : TaskSystemSettings.DEFAULT_POOL;
+        return TASK_TOPIC_PREFIX + TopicTrie.SEPARATOR + segment(type) + TopicTrie.SEPARATOR + segment(taskId);
+    }
+
+    private static String segment(String value) {
+        String segment = value.replace(TopicTrie.SEPARATOR, "_");
+        return segment.isEmpty() || segment.equals(TopicTrie.SINGLE_WILDCARD)
+                || segment.equals(TopicTrie.MULTI_WILDCARD) ? "_" : segment;
+    }
+
+    /**
+     * clientId 所属的分片
+     */
+    static int shardOf(String clientId, int numberOfShards) {
+        return Math.floorMod(clientId.hashCode(), numberOfShards);
+    }
+
+    /**
+     * 订阅模式对应的集群主题：第一个通配符之前的前缀
+     */
+    static String clusterTopicOf(String pattern) {
+        StringBuilder prefix = new StringBuilder();
+        for (String segment : pattern.split("\\.", -1)) {
+            if (segment.equals(TopicTrie.SINGLE_WILDCARD) || segment.equals(TopicTrie.MULTI_WILDCARD)) {
+                break;
+            }
+            if (prefix.length() > 0) {
+                prefix.append(TopicTrie.SEPARATOR);
+            }
+            prefix.append(segment);
+        }
+        return CLUSTER_TOPIC_PREFIX + prefix;
+    }
+
+    /**
+     * 事件主题需要发布到的集群主题：主题的各级前缀（包括空前缀）
+     */
+    static List<String> clusterTopicsFor(String topic) {
+        List<String> topics = new ArrayList<>();
+        topics.add(CLUSTER_TOPIC_PREFIX);
+        int end = -1;
+        do {
+            end = topic.indexOf(TopicTrie.SEPARATOR, end + 1);
+            topics.add(CLUSTER_TOPIC_PREFIX + (end < 0 ? topic : topic.substring(0, end)));
+        } while (end >= 0);
+        return topics;
+    }
+
     @Override
     public void preStart() throws Exception {
         super.preStart();
-        log.info("WebSocketManagerActor started");
+        if (settings.isDistributedPubSub()) {
+            mediator = DistributedPubSub.get(getContext().getSystem()).mediator();
+        }
+        for (int i = 0; i < settings.getShards(); i++) {
+            shards.add(getContext().actorOf(WebSocketConnectionShard.props(i), "shard-" + i));
+        }
+        // 全局只有本Actor订阅任务事件，再按主题分发
+        getContext().getSystem().eventStream().subscribe(getSelf(), TaskMessage.TaskCompleted.class);
+        log.info("WebSocketManagerActor started with {} connection shards (distributed pub-sub: {})",
+                shards.size(), mediator != null);
     }
 
     @Override
     public void postStop() throws Exception {
-        log.info("WebSocketManagerActor stopped. Total connections managed: {}", connections.size());
+        getContext().getSystem().eventStream().unsubscribe(getSelf());
+        log.info("WebSocketManagerActor stopped");
         super.postStop();
     }
 
     @Override
     public Receive createReceive() {
         return receiveBuilder()
-                .match(Register.class, this::handleRegister)
-                .match(Unregister.class, this::handleUnregister)
+                .match(Register.class, register -> shardFor(register.getClientId()).forward(register, getContext()))
+                .match(Unregister.class, unregister ->
+                        shardFor(unregister.getClientId()).forward(unregister, getContext()))
+                .match(Subscribe.class, subscribe ->
+                        shardFor(subscribe.getClientId()).forward(subscribe, getContext()))
+                .match(Unsubscribe.class, unsubscribe ->
+                        shardFor(unsubscribe.getClientId()).forward(unsubscribe, getContext()))
+                .match(SendToClient.class, send -> shardFor(send.getClientId()).forward(send, getContext()))
                 .match(Broadcast.class, this::handleBroadcast)
-                .match(SendToClient.class, this::handleSendToClient)
-                .match(GetConnectionCount.class, this::handleGetConnectionCount)
-                .match(Terminated.class, this::handleTerminated)
+                .match(TaskMessage.TaskCompleted.class, this::handleTaskCompleted)
+                .match(TaskMessage.ClusterTaskEvent.class, this::handleClusterTaskEvent)
+                .match(WebSocketConnectionShard.PatternInterest.class, this::handlePatternInterest)
+                .match(DistributedPubSubMediator.SubscribeAck.class,
+                        ack -> log.debug("Subscribed to cluster topic {}", ack.subscribe().topic()))
+                .match(DistributedPubSubMediator.UnsubscribeAck.class,
+                        ack -> log.debug("Unsubscribed from cluster topic {}", ack.unsubscribe().topic()))
+                .match(GetConnectionCount.class, request -> sumOverShards(request))
+                .match(GetSubscriptionCount.class, request -> sumOverShards(request))
                 .matchAny(o -> log.warning("Received unknown message: {}", o))
                 .build();
     }
 
+    private ActorRef shardFor(String clientId) {
+        return shards.get(shardOf(clientId, shards.size()));
+    }
+
     /**
-     * 处理注册
+     * 处理广播消息：帧只构建和序列化一次，各分片并行投递给自己的连接
      */
-    private void handleRegister(Register register) {
-        String clientId = register.getClientId();
-        ActorRef connection = getSender();
-
-        connections.put(clientId, connection);
-        getContext().watch(connection);  // 监控连接Actor
-
-        log.info("WebSocket connection registered: {} (Total connections: {})",
-                clientId, connections.size());
+    private void handleBroadcast(Broadcast broadcast) {
+        log.info("Broadcasting message to {} shards: {}", shards.size(), broadcast.getMessage());
+        WebSocketConnectionShard.DeliverBroadcast deliver = new WebSocketConnectionShard.DeliverBroadcast(
+                WebSocketFrame.of(WebSocketActor.broadcastMessage(broadcast.getMessage())));
+        for (ActorRef shard : shards) {
+            shard.tell(deliver, getSelf());
+        }
     }
 
     /**
-     * 处理取消注册
+     * 本地任务终结事件：开启集群分发时发布到集群，否则直接推送给本节点的订阅者
      */
-    private void handleUnregister(Unregister unregister) {
-        String clientId = unregister.getClientId();
-        ActorRef connection = connections.remove(clientId);
-
-        if (connection != null) {
-            getContext().unwatch(connection);
-            log.info("WebSocket connection unregistered: {} (Remaining connections: {})",
-                    clientId, connections.size());
+    private void handleTaskCompleted(TaskMessage.TaskCompleted event) {
+        if (mediator == null) {
+            deliverTaskEvent(event);
+            return;
+        }
+        TaskMessage.ClusterTaskEvent clusterEvent = new TaskMessage.ClusterTaskEvent(UUID.randomUUID().toString(),
+                event.getTaskId(), event.getTaskType(), event.isSuccess(), event.getResult());
+        for (String clusterTopic : clusterTopicsFor(taskTopic(event.getTaskType(), event.getTaskId()))) {
+            mediator.tell(new DistributedPubSubMediator.Publish(clusterTopic, clusterEvent), getSelf());
         }
     }
 
     /**
-     * 处理广播消息
+     * 经集群收到的事件（包括本节点发布的），去重后推送给本节点的订阅者
      */
-    private void handleBroadcast(Broadcast broadcast) {
-        log.info("Broadcasting message to {} connections: {}",
-                connections.size(), broadcast.getMessage());
-
-        for (Map.Entry<String, ActorRef> entry : connections.entrySet()) {
-            entry.getValue().tell(broadcast.getMessage(), getSelf());
+    private void handleClusterTaskEvent(TaskMessage.ClusterTaskEvent event) {
+        long now = System.currentTimeMillis();
+        recentClusterEvents.evictExpired(now);
+        if (recentClusterEvents.containsKey(event.getEventId())) {
+            return;
         }
+        recentClusterEvents.put(event.getEventId(), Boolean.TRUE, now);
+        deliverTaskEvent(event.toTaskCompleted());
     }
 
     /**
-     * 发送消息给特定客户端
+     * 任务事件只发给有匹配订阅的分片，通知帧在有订阅时构建一次
      */
-    private void handleSendToClient(SendToClient sendToClient) {
-        String clientId = sendToClient.getClientId();
-        ActorRef connection = connections.get(clientId);
-
-        if (connection != null) {
-            log.info("Sending message to client: {}", clientId);
-            connection.tell(sendToClient.getMessage(), getSelf());
-        } else {
-            log.warning("Client not found: {}", clientId);
+    private void deliverTaskEvent(TaskMessage.TaskCompleted event) {
+        String topic = taskTopic(event.getTaskType(), event.getTaskId());
+        Set<ActorRef> interested = shardSubscriptions.match(topic);
+        if (interested.isEmpty()) {
+            return;
+        }
+        WebSocketConnectionShard.DeliverTopic deliver = new WebSocketConnectionShard.DeliverTopic(
+                topic, WebSocketFrame.of(topic, WebSocketActor.taskNotification(event)));
+        for (ActorRef shard : interested) {
+            shard.tell(deliver, getSelf());
         }
+        log.debug("Task event {} routed to {} shards", event.getTaskId(), interested.size());
     }
 
     /**
-     * 获取连接数
+     * 分片内某个模式的订阅出现或消失；本节点第一次需要或不再需要某个模式时调整集群订阅
      */
-    private void handleGetConnectionCount(GetConnectionCount request) {
-        getSender().tell(connections.size(), getSelf());
+    private void handlePatternInterest(WebSocketConnectionShard.PatternInterest interest) {
+        String pattern = interest.getPattern();
+        if (interest.isSubscribed()) {
+            if (shardSubscriptions.subscribe(pattern, getSender())
+                    && patternShardCounts.merge(pattern, 1, Integer::sum) == 1) {
+                retainClusterTopic(clusterTopicOf(pattern));
+            }
+        } else if (shardSubscriptions.unsubscribe(pattern, getSender())
+                && patternShardCounts.computeIfPresent(pattern, (p, count) -> count > 1 ? count - 1 : null) == null) {
+            releaseClusterTopic(clusterTopicOf(pattern));
+        }
+    }
+
+    private void retainClusterTopic(String clusterTopic) {
+        if (mediator != null && clusterTopicRefCounts.merge(clusterTopic, 1, Integer::sum) == 1) {
+            mediator.tell(new DistributedPubSubMediator.Subscribe(clusterTopic, getSelf()), getSelf());
+        }
+    }
+
+    private void releaseClusterTopic(String clusterTopic) {
+        if (mediator != null
+                && clusterTopicRefCounts.computeIfPresent(clusterTopic, (t, count) -> count > 1 ? count - 1 : null) == null) {
+            mediator.tell(new DistributedPubSubMediator.Unsubscribe(clusterTopic, getSelf()), getSelf());
+        }
     }
 
     /**
-     * 处理Actor终止
+     * 向所有分片并发查询计数后求和；超时的分片不计入
      */
-    private void handleTerminated(Terminated terminated) {
-        ActorRef terminatedActor = terminated.getActor();
+    private void sumOverShards(Object request) {
+        List<CompletableFuture<Object>> replies = new ArrayList<>();
+        for (ActorRef shard : shards) {
+            replies.add(Patterns.ask(shard, request, SHARD_QUERY_TIMEOUT)
+                    .toCompletableFuture()
+                    .exceptionally(e -> null));
+        }
 
-        // 从连接映射中移除已终止的Actor
-        connections.entrySet().removeIf(entry -> {
-            if (entry.getValue().equals(terminatedActor)) {
-                log.info("WebSocket connection terminated: {} (Remaining: {})",
-                        entry.getKey(), connections.size() - 1);
-                return true;
-            }
-            return false;
-        });
+        CompletableFuture<Integer> merged = CompletableFuture
+                .allOf(replies.toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    int total = 0;
+                    for (CompletableFuture<Object> reply : replies) {
+                        Object count = reply.join();
+                        if (count instanceof Integer) {
+                            total += (Integer) count;
+                        }
+                    }
+                    return total;
+                });
+
+        Patterns.pipe(merged, getContext().getDispatcher()).to(getSender());
     }
 }
@@ -0,0 +1,290 @@
+package actors;
+
+import akka.actor.ActorRef;
+import models.Task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 单一任务类型的Worker池
+ * 由TaskManagerActor独占访问，维护该池的Worker、剩余额度和有界的待处理队列（按租户公平调度）
+ */
+class WorkerPool {
+
+    private final TaskSystemSettings.PoolSettings settings;
+    private final PoolAutoscaler autoscaler;
+    private final RetryPolicy retryPolicy;
+    // 同时派发的任务数上限（来自同名执行器），0表示不限
+    private final int maxConcurrency;
+
+    private final List<ActorRef> workers = new ArrayList<>();
+    private final Map<ActorRef, Integer> availableCredits = new HashMap<>();
+    private int currentWorkerIndex = 0;
+    private int inFlight = 0;
+
+    // 用于生成不重复的Worker名称（伸缩后名称不复用）
+    private int nextWorkerSeq = 0;
+
+    private final FairTaskQueue pendingTasks;
+
+    // 开始等待凑批的时间，-1 表示没有在等待
+    private long lingerStartedAt = -1;
+
+    WorkerPool(TaskSystemSettings.PoolSettings settings, TaskSystemSettings.AutoscalingSettings autoscaling) {
+        this(settings, autoscaling, TaskSystemSettings.FairShareSettings.defaults());
+    }
+
+    WorkerPool(TaskSystemSettings.PoolSettings settings, TaskSystemSettings.AutoscalingSettings autoscaling,
+               TaskSystemSettings.FairShareSettings fairShare) {
+        this(settings, autoscaling, fairShare, 0);
+    }
+
+    WorkerPool(TaskSystemSettings.PoolSettings settings, TaskSystemSettings.AutoscalingSettings autoscaling,
+               TaskSystemSettings.FairShareSettings fairShare, int maxConcurrency) {
+        this.settings = settings;
+        this.maxConcurrency = maxConcurrency;
+        this.autoscaler = new PoolAutoscaler(settings, autoscaling);
+        this.retryPolicy = new RetryPolicy(settings.getRetry(), System.currentTimeMillis());
+        this.pendingTasks = new FairTaskQueue(fairShare.getAgingInterval().toMillis(), fairShare.getWeights());
+    }
+
+    String getName() {
+        return settings.getName();
+    }
+
+    TaskSystemSettings.PoolSettings getSettings() {
+        return settings;
+    }
+
+    PoolAutoscaler getAutoscaler() {
+        return autoscaler;
+    }
+
+    RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * 是否允许自动伸缩（上下限不同）
+     */
+    boolean isElastic() {
+        return settings.getMinWorkers() < settings.getMaxWorkers();
+    }
+
+    /**
+     * 受并发上限约束时，超过该数量的Worker不会再分到任务，扩容没有意义
+     */
+    int maxUsefulWorkers() {
+        if (maxConcurrency <= 0) {
+            return settings.getMaxWorkers();
+        }
+        int credits = Math.max(1, settings.getCredits());
+        return Math.max(settings.getMinWorkers(), (maxConcurrency + credits - 1) / credits);
+    }
+
+    int nextWorkerSeq() {
+        return nextWorkerSeq++;
+    }
+
+    void addWorker(ActorRef worker) {
+        workers.add(worker);
+        availableCredits.put(worker, 0);
+    }
+
+    int size() {
+        return workers.size();
+    }
+
+    /**
+     * 移除一个空闲Worker（额度全部可用，即没有在途任务），没有空闲Worker时返回null
+     */
+    ActorRef removeIdleWorker() {
+        for (int i = workers.size() - 1; i >= 0; i--) {
+            ActorRef worker = workers.get(i);
+            if (availableCredits.getOrDefault(worker, 0) >= settings.getCredits()) {
+                workers.remove(i);
+                availableCredits.remove(worker);
+                if (currentWorkerIndex >= workers.size()) {
+                    currentWorkerIndex = 0;
+                }
+                return worker;
+            }
+        }
+        return null;
+    }
+
+    boolean hasWorker(ActorRef worker) {
+        return availableCredits.containsKey(worker);
+    }
+
+    List<ActorRef> getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Worker通告额度（绝对值）
+     */
+    void setCredits(ActorRef worker, int credits) {
+        availableCredits.put(worker, credits);
+    }
+
+    /**
+     * 入队，超过队列容量时返回false
+     */
+    boolean offer(Task task) {
+        if (pendingSize() >= settings.getQueueCapacity()) {
+            return false;
+        }
+        pendingTasks.offer(task, System.currentTimeMillis());
+        return true;
+    }
+
+    boolean isFull() {
+        return pendingSize() >= settings.getQueueCapacity();
+    }
+
+    /**
+     * 批量入队，按顺序接收到队列容量为止，返回接收的数量（即前N个任务被接收）
+     */
+    int offerAll(List<Task> tasks) {
+        int room = settings.getQueueCapacity() - pendingSize();
+        int admitted = Math.max(0, Math.min(room, tasks.size()));
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < admitted; i++) {
+            pendingTasks.offer(tasks.get(i), now);
+        }
+        return admitted;
+    }
+
+    /**
+     * 重新入队（重试或回收的在途任务），不受容量限制，避免丢失已接收的任务
+     */
+    void requeue(Task task) {
+        pendingTasks.offer(task, System.currentTimeMillis());
+    }
+
+    /**
+     * 标记一个排队中的任务已取消（调用方已把任务状态改为CANCELLED）
+     * 任务不立即从堆中删除（O(n)），而是在出队时跳过，取消后立即让出队列容量
+     */
+    void markCancelled() {
+        pendingTasks.markCancelled();
+    }
+
+    boolean hasPendingTasks() {
+        return pendingSize() > 0;
+    }
+
+    /**
+     * 租户间轮流、租户内按优先级出队，跳过已取消的任务
+     */
+    Task pollPending() {
+        return pendingTasks.poll();
+    }
+
+    /**
+     * 同 pollPending，paused 判定为暂停派发的任务留在队列中（仍占用容量），直到 resume 其类型
+     */
+    Task pollPending(Predicate<Task> paused) {
+        return pendingTasks.poll(paused);
+    }
+
+    /**
+     * 恢复派发某一类型的任务，返回重新参与出队的任务数
+     */
+    int resume(String taskType) {
+        return pendingTasks.resume(taskType);
+    }
+
+    int pendingSize() {
+        return pendingTasks.size();
+    }
+
+    /**
+     * 最近一次pollPending返回的任务的入队时间，用于统计排队时长
+     */
+    long lastEnqueuedAt() {
+        return pendingTasks.lastEnqueuedAt();
+    }
+
+    /**
+     * 从上次分配位置开始轮询，找到第一个还有额度的Worker并占用一个额度；
+     * 在途任务数已达并发上限时返回null
+     */
+    ActorRef acquireWorker() {
+        if (maxConcurrency > 0 && inFlight >= maxConcurrency) {
+            return null;
+        }
+        for (int i = 0; i < workers.size(); i++) {
+            ActorRef worker = workers.get(currentWorkerIndex);
+            currentWorkerIndex = (currentWorkerIndex + 1) % workers.size();
+            if (availableCredits.getOrDefault(worker, 0) > 0) {
+                availableCredits.merge(worker, -1, Integer::sum);
+                inFlight++;
+                return worker;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 任务完成后归还额度
+     */
+    void releaseWorker(ActorRef worker) {
+        if (availableCredits.containsKey(worker)) {
+            availableCredits.merge(worker, 1, Integer::sum);
+        }
+        inFlight = Math.max(0, inFlight - 1);
+    }
+
+    /**
+     * Worker重启丢失在途任务时，只修正在途计数，额度由随后的WorkRequest重置
+     */
+    void forgetInFlight() {
+        inFlight = Math.max(0, inFlight - 1);
+    }
+
+    long getLingerStartedAt() {
+        return lingerStartedAt;
+    }
+
+    void setLingerStartedAt(long lingerStartedAt) {
+        this.lingerStartedAt = lingerStartedAt;
+    }
+
+    int getInFlight() {
+        return inFlight;
+    }
+
+    int totalAvailableCredits() {
+        int total = 0;
+        for (int credits : availableCredits.values()) {
+            total += credits;
+        }
+        return total;
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("workers", workers.size());
+        stats.put("minWorkers", settings.getMinWorkers());
+        stats.put("maxWorkers", settings.getMaxWorkers());
+        stats.put("pending", pendingSize());
+        stats.put("pendingTenants", pendingTasks.tenantCount());
+        stats.put("paused", pendingTasks.heldSize());
+        stats.put("inFlight", inFlight);
+        stats.put("maxConcurrency", maxConcurrency);
+        stats.put("availableCredits", totalAvailableCredits());
+        stats.put("queueCapacity", settings.getQueueCapacity());
+        stats.put("dispatcher", settings.getDispatcher());
+        stats.put("avgExecutionMillis", Math.round(autoscaler.getServiceMillis()));
+        stats.put("arrivalRate", autoscaler.getArrivalRate());
+        stats.put("throughput", autoscaler.getThroughput());
+        stats.put("retryTokens", (long) retryPolicy.availableTokens(System.currentTimeMillis()));
+        return stats;
+    }
+}
@@ -0,0 +1,400 @@
+package actors;
+
+import models.Task;
+import utils.BoundedTtlCache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 工作流（任务的有向无环图）的依赖跟踪
+ * 每个节点记录尚未完成的上游数量，任务完成时把下游计数减一，减到0的节点即可入队，
+ * 同时收到所有上游的结果；任务失败或被取消时，其所有下游节点不再执行。
+ * 结束的工作流移入有界的保留区，仍可查询状态。
+ * 非线程安全，由TaskManagerActor独占访问
+ */
+class WorkflowTracker {
+
+    static final String RUNNING = "RUNNING";
+    static final String COMPLETED = "COMPLETED";
+    static final String FAILED = "FAILED";
+    static final String WAITING = "WAITING";
+    static final String SKIPPED = "CANCELLED";
+
+    /**
+     * 工作流节点
+     */
+    private static final class Node {
+        final String nodeId;
+        // 任务终结时替换为终结后的实例，下游节点从这里取上游结果
+        Task task;
+        final List<String> parents;
+        final List<Node> children = new ArrayList<>();
+        int pendingParents;
+        boolean released;
+        boolean skipped;
+
+        Node(String nodeId, Task task, List<String> parents) {
+            this.nodeId = nodeId;
+            this.task = task;
+            this.parents = parents;
+            this.pendingParents = parents.size();
+        }
+    }
+
+    private static final class Workflow {
+        final String workflowId;
+        final Map<String, Node> nodes = new LinkedHashMap<>();
+        int unfinished;
+        boolean failed;
+
+        Workflow(String workflowId) {
+            this.workflowId = workflowId;
+        }
+    }
+
+    private final Map<String, Workflow> active = new HashMap<>();
+
+    // 未结束工作流中的节点：taskId -> 节点
+    private final Map<String, Node> nodesByTaskId = new HashMap<>();
+    private final Map<String, Workflow> workflowsByTaskId = new HashMap<>();
+
+    private final BoundedTtlCache<String, Workflow> finished;
+
+    WorkflowTracker(int maxFinished, long finishedTtlMillis) {
+        this.finished = new BoundedTtlCache<>(maxFinished, finishedTtlMillis, null);
+    }
+
+    boolean contains(String workflowId) {
+        return active.containsKey(workflowId) || finished.containsKey(workflowId);
+    }
+
+    /**
+     * 登记工作流，返回没有依赖、可以立即入队的任务
+     *
+     * @param tasks        节点任务，taskId必须为 SubmitWorkflow.taskIdOf(workflowId, nodeId)
+     * @param dependencies nodeId -> 依赖的nodeId
+     * @throws IllegalArgumentException 依赖了不存在的节点或存在环
+     */
+    List<Task> add(String workflowId, List<Task> tasks, Map<String, List<String>> dependencies) {
+        Workflow workflow = new Workflow(workflowId);
+        String prefix = workflowId + ".";
+        for (Task task : tasks) {
+            if (!task.getTaskId().startsWith(prefix)) {
+                throw new IllegalArgumentException("Task " + task.getTaskId() + " does not belong to workflow " + workflowId);
+            }
+            String nodeId = task.getTaskId().substring(prefix.length());
+            List<String> parents = dependencies.getOrDefault(nodeId, Collections.emptyList());
+            if (workflow.nodes.put(nodeId, new Node(nodeId, task, parents)) != null) {
+                throw new IllegalArgumentException("Duplicate node " + nodeId);
+            }
+        }
+        for (Node node : workflow.nodes.values()) {
+            for (String parentId : node.parents) {
+                Node parent = workflow.nodes.get(parentId);
+                if (parent == null) {
+                    throw new IllegalArgumentException("Node " + node.nodeId + " depends on unknown node " + parentId);
+                }
+                parent.children.add(node);
+            }
+        }
+        checkAcyclic(workflow);
+
+        List<Task> ready = new ArrayList<>();
+        for (Node node : workflow.nodes.values()) {
+            nodesByTaskId.put(node.task.getTaskId(), node);
+            workflowsByTaskId.put(node.task.getTaskId(), workflow);
+            if (node.pendingParents == 0) {
+                node.released = true;
+                ready.add(node.task);
+            }
+        }
+        workflow.unfinished = workflow.nodes.size();
+        active.put(workflowId, workflow);
+        return ready;
+    }
+
+    /**
+     * 撤销刚登记、尚未有任务入队的工作流（例如队列容量不足时整体拒绝）
+     */
+    void remove(String workflowId) {
+        Workflow workflow = active.remove(workflowId);
+        if (workflow == null) {
+            return;
+        }
+        for (Node node : workflow.nodes.values()) {
+            nodesByTaskId.remove(node.task.getTaskId());
+            workflowsByTaskId.remove(node.task.getTaskId());
+        }
+    }
+
+    /**
+     * 工作流中的任务已终结，返回因此可以入队的下游任务（已填入上游结果）；不属于工作流的任务返回空列表
+     */
+    List<Task> onTaskFinished(Task task, long nowMillis) {
+        return onTaskFinished(task, nowMillis, Task::getResult);
+    }
+
+    /**
+     * 同上，上游结果由 resultOf 读取（结果写入结果存储时任务中只有句柄）
+     */
+    List<Task> onTaskFinished(Task task, long nowMillis, Function<Task, String> resultOf) {
+        Node node = nodesByTaskId.remove(task.getTaskId());
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        Workflow workflow = workflowsByTaskId.remove(task.getTaskId());
+        workflow.unfinished--;
+        node.task = task;
+
+        List<Task> ready = new ArrayList<>();
+        if (task.getStatus() == Task.TaskStatus.COMPLETED) {
+            for (Node child : node.children) {
+                if (--child.pendingParents == 0 && !child.skipped) {
+                    child.released = true;
+                    child.task.setInputs(collectInputs(workflow, child, resultOf));
+                    ready.add(child.task);
+                }
+            }
+        } else {
+            workflow.failed = true;
+            skipDescendants(workflow, node);
+        }
+
+        if (workflow.unfinished == 0) {
+            active.remove(workflow.workflowId);
+            finished.put(workflow.workflowId, workflow, nowMillis);
+        }
+        return ready;
+    }
+
+    /**
+     * 工作流状态，不存在时返回null
+     */
+    TaskMessage.WorkflowStatus status(String workflowId) {
+        Workflow workflow = active.get(workflowId);
+        boolean done = false;
+        if (workflow == null) {
+            workflow = finished.get(workflowId);
+            done = true;
+        }
+        if (workflow == null) {
+            return null;
+        }
+
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (Node node : workflow.nodes.values()) {
+            nodes.put(node.nodeId, node.skipped ? SKIPPED
+                    : node.released ? node.task.getStatus().name()
+                    : WAITING);
+        }
+        String status = !done ? RUNNING : workflow.failed ? FAILED : COMPLETED;
+        return new TaskMessage.WorkflowStatus(workflowId, status, nodes);
+    }
+
+    /**
+     * 尚未入队的工作流节点的状态：等待上游时为WAITING，因上游失败或被取消而不再执行时为CANCELLED；
+     * 不属于工作流或已入队的节点（其状态由任务本身给出）返回null
+     */
+    String pendingNodeStatus(String taskId) {
+        Node node = findNode(taskId);
+        if (node == null || node.released) {
+            return null;
+        }
+        return node.skipped ? SKIPPED : WAITING;
+    }
+
+    /**
+     * 取消等待上游的节点：该节点及其所有尚未入队的下游节点不再执行，工作流计为失败。
+     * 返回被取消节点的任务，节点不在等待中时返回null
+     */
+    Task cancelWaiting(String taskId, long nowMillis) {
+        Node node = nodesByTaskId.get(taskId);
+        if (node == null || node.released) {
+            return null;
+        }
+        Workflow workflow = workflowsByTaskId.remove(taskId);
+        nodesByTaskId.remove(taskId);
+        node.skipped = true;
+        node.task.setStatus(Task.TaskStatus.CANCELLED);
+        node.task.setErrorMessage("Cancelled");
+        workflow.unfinished--;
+        workflow.failed = true;
+        skipDescendants(workflow, node);
+
+        if (workflow.unfinished == 0) {
+            active.remove(workflow.workflowId);
+            finished.put(workflow.workflowId, workflow, nowMillis);
+        }
+        return node.task;
+    }
+
+    /**
+     * 导出所有工作流（包括保留区中已结束的）的状态，用于分片迁移
+     */
+    List<TaskMessage.WorkflowState> export() {
+        List<TaskMessage.WorkflowState> states = new ArrayList<>();
+        for (Workflow workflow : active.values()) {
+            states.add(stateOf(workflow));
+        }
+        for (Workflow workflow : finished.values()) {
+            states.add(stateOf(workflow));
+        }
+        return states;
+    }
+
+    /**
+     * 接管其他管理器导出的工作流：等待中的节点在其余上游完成后照常入队，
+     * 已入队但未终结的节点由随状态一起移交的任务继续执行。已存在的工作流忽略
+     */
+    void adopt(TaskMessage.WorkflowState state, long nowMillis) {
+        if (contains(state.getWorkflowId())) {
+            return;
+        }
+        Workflow workflow = new Workflow(state.getWorkflowId());
+        workflow.failed = state.isFailed();
+        String prefix = state.getWorkflowId() + ".";
+        for (Task task : state.getTasks()) {
+            String nodeId = task.getTaskId().substring(prefix.length());
+            Node node = new Node(nodeId, task,
+                    state.getDependencies().getOrDefault(nodeId, Collections.emptyList()));
+            node.released = state.getReleased().contains(nodeId);
+            node.skipped = state.getSkipped().contains(nodeId);
+            workflow.nodes.put(nodeId, node);
+        }
+        for (Node node : workflow.nodes.values()) {
+            node.pendingParents = 0;
+            for (String parentId : node.parents) {
+                Node parent = workflow.nodes.get(parentId);
+                parent.children.add(node);
+                if (!parent.released || parent.task.getStatus() != Task.TaskStatus.COMPLETED) {
+                    node.pendingParents++;
+                }
+            }
+        }
+
+        for (Node node : workflow.nodes.values()) {
+            if (!node.skipped && !(node.released && isTerminal(node.task))) {
+                workflow.unfinished++;
+                nodesByTaskId.put(node.task.getTaskId(), node);
+                workflowsByTaskId.put(node.task.getTaskId(), workflow);
+            }
+        }
+        if (workflow.unfinished == 0) {
+            finished.put(workflow.workflowId, workflow, nowMillis);
+        } else {
+            active.put(workflow.workflowId, workflow);
+        }
+    }
+
+    void evictExpired(long nowMillis) {
+        finished.evictExpired(nowMillis);
+    }
+
+    int activeCount() {
+        return active.size();
+    }
+
+    /**
+     * 失败节点的所有（尚未入队的）下游节点不再执行，直接计为结束
+     */
+    private void skipDescendants(Workflow workflow, Node failed) {
+        Deque<Node> stack = new ArrayDeque<>(failed.children);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node.skipped || node.released) {
+                continue;
+            }
+            node.skipped = true;
+            nodesByTaskId.remove(node.task.getTaskId());
+            workflowsByTaskId.remove(node.task.getTaskId());
+            workflow.unfinished--;
+            stack.addAll(node.children);
+        }
+    }
+
+    private Node findNode(String taskId) {
+        Node node = nodesByTaskId.get(taskId);
+        if (node != null) {
+            return node;
+        }
+        int dot = taskId.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        String workflowId = taskId.substring(0, dot);
+        Workflow workflow = active.get(workflowId);
+        if (workflow == null) {
+            workflow = finished.get(workflowId);
+        }
+        return workflow != null ? workflow.nodes.get(taskId.substring(dot + 1)) : null;
+    }
+
+    private static TaskMessage.WorkflowState stateOf(Workflow workflow) {
+        List<Task> tasks = new ArrayList<>();
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        List<String> released = new ArrayList<>();
+        List<String> skipped = new ArrayList<>();
+        for (Node node : workflow.nodes.values()) {
+            tasks.add(node.task);
+            if (!node.parents.isEmpty()) {
+                dependencies.put(node.nodeId, node.parents);
+            }
+            if (node.released) {
+                released.add(node.nodeId);
+            }
+            if (node.skipped) {
+                skipped.add(node.nodeId);
+            }
+        }
+        return new TaskMessage.WorkflowState(workflow.workflowId, tasks, dependencies, released, skipped, workflow.failed);
+    }
+
+    private static boolean isTerminal(Task task) {
+        return task.getStatus() == Task.TaskStatus.COMPLETED
+                || task.getStatus() == Task.TaskStatus.FAILED
+                || task.getStatus() == Task.TaskStatus.CANCELLED;
+    }
+
+    private static Map<String, String> collectInputs(Workflow workflow, Node child, Function<Task, String> resultOf) {
+        Map<String, String> inputs = new LinkedHashMap<>();
+        for (String parentId : child.parents) {
+            inputs.put(parentId, resultOf.apply(workflow.nodes.get(parentId).task));
+        }
+        return inputs;
+    }
+
+    /**
+     * 拓扑排序（Kahn算法）检查是否有环
+     */
+    private static void checkAcyclic(Workflow workflow) {
+        Map<Node, Integer> inDegree = new HashMap<>();
+        Deque<Node> ready = new ArrayDeque<>();
+        for (Node node : workflow.nodes.values()) {
+            inDegree.put(node, node.parents.size());
+            if (node.parents.isEmpty()) {
+                ready.add(node);
+            }
+        }
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            visited++;
+            for (Node child : node.children) {
+                if (inDegree.merge(child, -1, Integer::sum) == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+        if (visited != workflow.nodes.size()) {
+            throw new IllegalArgumentException("Workflow " + workflow.workflowId + " contains a dependency cycle");
+        }
+    }
+}
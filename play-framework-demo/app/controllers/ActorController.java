@@ -68,6 +68,10 @@ public class ActorController extends Controller {
                         result.put("taskId", statusResponse.getTaskId());
                         result.put("status", statusResponse.getStatus());
                         result.put("message", statusResponse.getMessage());
+                        // 执行中的任务数已达上限，提示客户端稍后重试
+                        if ("REJECTED".equals(statusResponse.getStatus())) {
+                            return status(TOO_MANY_REQUESTS, result);
+                        }
                         return ok(result);
                     }
                     return internalServerError(createErrorResponse("Unexpected response type"));
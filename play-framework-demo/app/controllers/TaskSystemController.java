@@ -2,25 +2,57 @@ package controllers;
 
 import actors.ActorSystemManager;
 import actors.TaskMessage;
+import akka.NotUsed;
 import akka.actor.ActorRef;
+import akka.japi.Pair;
 import akka.pattern.Patterns;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import models.Task;
+import play.http.HttpEntity;
 import play.libs.Json;
+import play.mvc.BodyParser;
 import play.mvc.Controller;
 import play.mvc.Http;
 import play.mvc.Result;
+import play.mvc.WebSocket;
 import scala.concurrent.duration.Duration;
 import akka.util.Timeout;
+import interceptors.AuthenticatedAction;
 import scala.compat.java8.FutureConverters;
+import utils.CronExpression;
 
 import javax.inject.Inject;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 实时任务处理系统控制器
@@ -28,6 +60,27 @@ import java.util.concurrent.TimeUnit;
  */
 public class TaskSystemController extends Controller {
 
+    // 每条SubmitBatch消息最多携带的任务数
+    private static final int BATCH_CHUNK_SIZE = 500;
+
+    // 批量请求体不超过该大小时直接在内存中解析
+    private static final int MAX_IN_MEMORY_BODY = 1024 * 1024;
+
+    // 流式提交：每批最多任务数和最长聚合时间，以及等待管理器确认的最长时间
+    private static final int STREAM_BATCH_SIZE = 200;
+    private static final java.time.Duration STREAM_BATCH_WINDOW = java.time.Duration.ofMillis(20);
+    private static final java.time.Duration STREAM_ACK_TIMEOUT = java.time.Duration.ofSeconds(60);
+
+    // 幂等键的最大长度
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    // 流式返回任务结果时每次向管理器读取的字节数
+    private static final int RESULT_CHUNK_SIZE = 256 * 1024;
+
+    // 单个工作流最多包含的任务数，以及节点ID的格式（不能包含 '.'，它用于拼接taskId）
+    private static final int MAX_WORKFLOW_TASKS = 1000;
+    private static final java.util.regex.Pattern WORKFLOW_NODE_ID = java.util.regex.Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
     private final ActorSystemManager actorSystemManager;
 
     @Inject
@@ -46,6 +99,22 @@ public class TaskSystemController extends Controller {
      *   "taskData": "some data",
      *   "priority": "HIGH"
      * }
+     *
+     * 可选的截止时间（二选一），超过截止时间的任务不再开始，执行中的任务被中断：
+     *   "deadline": "2024-01-01T08:00:00Z"（格式同runAt）
+     *   "timeout": 60000（毫秒）或 "PT1M"，从提交时开始计算，定时任务从到期执行时开始计算
+     *
+     * 可选的定时字段（三选一）：
+     *   "runAt": "2024-01-01T08:00:00Z"（ISO时间，不带时区时按服务器时区）或epoch毫秒
+     *   "delay": 30000（毫秒）或 "PT30S"（ISO-8601时长）
+     *   "cron": "0/5 * * * *"（5字段cron表达式，按服务器时区周期执行）
+     *
+     * 幂等提交：同一租户的请求头 Idempotency-Key（或请求体中的 "idempotencyKey"）相同的请求在去重窗口内
+     * 只会创建一个任务，重复的请求返回原任务的taskId和 "duplicate": true（仅对立即执行的任务生效）；
+     * 同一幂等键对应的taskType或taskData不同时返回422，不同租户的幂等键互不影响
+     *
+     * 合并执行："coalesce": true 的任务如果已有相同taskType和taskData的任务在排队或执行，
+     * 不再单独执行，而是在该任务结束后共享其结果（每个提交仍有自己的taskId）
      */
     public CompletableFuture<Result> submitTask(Http.Request request) {
         JsonNode json = request.body().asJson();
@@ -71,11 +140,45 @@ public class TaskSystemController extends Controller {
         }
         final Task.TaskPriority priority = priorityTemp;
 
-        // 创建任务
-        String taskId = UUID.randomUUID().toString();
-        Task task = new Task(taskId, taskName, taskType, taskData, priority);
+        // 创建任务：带幂等键时taskId由租户和幂等键确定，重复的请求总是落到同一个（分片的）管理器上
+        String idempotencyKey = request.header("Idempotency-Key")
+                .orElse(json.hasNonNull("idempotencyKey") ? json.get("idempotencyKey").asText() : null);
+        if (idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            return CompletableFuture.completedFuture(
+                    badRequest(createErrorResponse("Idempotency key must be 1-" + MAX_IDEMPOTENCY_KEY_LENGTH + " characters"))
+            );
+        }
+        Task task = new Task(UUID.randomUUID().toString(), taskName, taskType, taskData, priority);
+        task.setIdempotencyKey(idempotencyKey);
+        task.setTenant(tenantOf(request));
+        if (idempotencyKey != null) {
+            task.setTaskId(UUID.nameUUIDFromBytes(
+                    ("idempotency:" + task.getIdempotencyScope()).getBytes(StandardCharsets.UTF_8)).toString());
+        }
+        task.setCoalesce(json.path("coalesce").asBoolean(false));
+        try {
+            parseDeadline(json, task);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return CompletableFuture.completedFuture(
+                    badRequest(createErrorResponse("Invalid deadline: " + e.getMessage()))
+            );
+        }
+
+        // 带定时字段的任务交给ScheduledTaskActor，到期后再提交给管理器
+        if (json.hasNonNull("runAt") || json.hasNonNull("delay") || json.hasNonNull("cron")) {
+            TaskMessage.ScheduleTask schedule;
+            try {
+                schedule = parseSchedule(json, task);
+            } catch (IllegalArgumentException | DateTimeException e) {
+                return CompletableFuture.completedFuture(
+                        badRequest(createErrorResponse("Invalid schedule: " + e.getMessage()))
+                );
+            }
+            return submitScheduledTask(schedule, taskName, taskType, priority);
+        }
 
         // 发送任务给TaskManagerActor
+        task.startTimeout(LocalDateTime.now());
         ActorRef taskManager = actorSystemManager.getTaskManagerActor();
 
         return FutureConverters.toJava(Patterns
@@ -91,6 +194,19 @@ public class TaskSystemController extends Controller {
                         result.put("taskName", taskName);
                         result.put("taskType", taskType);
                         result.put("priority", priority.name());
+                        // 重复提交：返回原任务，不创建新任务
+                        if ("DUPLICATE".equals(statusResponse.getStatus())) {
+                            result.put("duplicate", true);
+                            return ok(result);
+                        }
+                        // 幂等键已用于内容不同的请求
+                        if ("CONFLICT".equals(statusResponse.getStatus())) {
+                            return status(UNPROCESSABLE_ENTITY, result);
+                        }
+                        // 对应类型的任务队列已满，提示客户端稍后重试
+                        if ("REJECTED".equals(statusResponse.getStatus())) {
+                            return status(SERVICE_UNAVAILABLE, result);
+                        }
                         return ok(result);
                     }
                     return internalServerError(createErrorResponse("Unexpected response type"));
@@ -101,6 +217,305 @@ public class TaskSystemController extends Controller {
                 });
     }
 
+    /**
+     * 取消任务
+     * DELETE /api/tasks/:taskId
+     *
+     * 排队中的任务立即取消，执行中的任务被中断；任务已结束时返回409及其最终状态
+     */
+    public CompletableFuture<Result> cancelTask(String taskId) {
+        ActorRef taskManager = actorSystemManager.getTaskManagerActor();
+
+        return FutureConverters.toJava(Patterns
+                .ask(taskManager, new TaskMessage.CancelTask(taskId), Timeout.apply(5, TimeUnit.SECONDS)))
+                .toCompletableFuture()
+                .thenApply(response -> {
+                    if (response instanceof TaskMessage.TaskStatusResponse) {
+                        TaskMessage.TaskStatusResponse statusResponse = (TaskMessage.TaskStatusResponse) response;
+                        ObjectNode result = Json.newObject();
+                        result.put("taskId", statusResponse.getTaskId());
+                        result.put("status", statusResponse.getStatus());
+                        result.put("message", statusResponse.getMessage());
+                        if ("CANCELLED".equals(statusResponse.getStatus())) {
+                            return ok(result);
+                        }
+                        if ("NOT_FOUND".equals(statusResponse.getStatus())) {
+                            return notFound(result);
+                        }
+                        return status(CONFLICT, result);
+                    }
+                    return internalServerError(createErrorResponse("Unexpected response type"));
+                })
+                .toCompletableFuture()
+                .exceptionally(throwable -> {
+                    return internalServerError(createErrorResponse("Task cancellation failed: " + throwable.getMessage()));
+                });
+    }
+
+    /**
+     * 取消定时任务
+     * DELETE /api/tasks/schedules/:scheduleId
+     */
+    public CompletableFuture<Result> cancelSchedule(String scheduleId) {
+        ActorRef scheduler = actorSystemManager.getScheduledTaskActor();
+
+        return FutureConverters.toJava(Patterns
+                .ask(scheduler, new TaskMessage.CancelSchedule(scheduleId), Timeout.apply(5, TimeUnit.SECONDS)))
+                .toCompletableFuture()
+                .thenApply(response -> {
+                    if (response instanceof TaskMessage.TaskStatusResponse) {
+                        TaskMessage.TaskStatusResponse statusResponse = (TaskMessage.TaskStatusResponse) response;
+                        ObjectNode result = Json.newObject();
+                        result.put("scheduleId", scheduleId);
+                        result.put("status", statusResponse.getStatus());
+                        result.put("message", statusResponse.getMessage());
+                        if ("NOT_FOUND".equals(statusResponse.getStatus())) {
+                            return notFound(result);
+                        }
+                        return ok(result);
+                    }
+                    return internalServerError(createErrorResponse("Unexpected response type"));
+                })
+                .toCompletableFuture()
+                .exceptionally(throwable -> {
+                    return internalServerError(createErrorResponse("Cancel schedule failed: " + throwable.getMessage()));
+                });
+    }
+
+    /**
+     * 查询死信队列
+     * GET /api/tasks/dead-letters?taskType=API_CALL&offset=0&limit=50
+     *
+     * 按进入死信队列的先后排序，taskType为空时返回所有类型
+     */
+    public CompletableFuture<Result> getDeadLetters(Http.Request request) {
+        ActorRef taskManager = actorSystemManager.getTaskManagerActor();
+        String taskType = request.getQueryString("taskType");
+        String offsetParam = request.getQueryString("offset");
+        String limitParam = request.getQueryString("limit");
+        int offset;
+        int limit;
+        try {
+            offset = offsetParam != null ? Integer.parseInt(offsetParam) : 0;
+            limit = Math.min(limitParam != null ? Integer.parseInt(limitParam) : 50, 1000);
+        } catch (NumberFormatException e) {
+            return CompletableFuture.completedFuture(badRequest(createErrorResponse("Invalid offset or limit")));
+        }
+        if (offset < 0 || limit < 0) {
+            return CompletableFuture.completedFuture(badRequest(createErrorResponse("Invalid offset or limit")));
+        }
+
+        return FutureConverters.toJava(Patterns
+                .ask(taskManager, new TaskMessage.QueryDeadLetters(taskType, offset, limit), Timeout.apply(5, TimeUnit.SECONDS)))
+                .toCompletableFuture()
+                .thenApply(response -> {
+                    if (response instanceof TaskMessage.DeadLetters) {
+                        TaskMessage.DeadLetters deadLetters = (TaskMessage.DeadLetters) response;
+                        ArrayNode tasks = Json.newArray();
+                        for (Task task : deadLetters.getTasks()) {
+                            ObjectNode node = Json.newObject();
+                            node.put("taskId", task.getTaskId());
+                            node.put("taskName", task.getTaskName());
+                            node.put("taskType", task.getTaskType());
+                            node.put("priority", task.getPriority().name());
+                            node.put("retryCount", task.getRetryCount());
+                            node.put("errorMessage", task.getErrorMessage());
+                            node.put("failedAt", task.getCompletedAt() != null ? task.getCompletedAt().toString() : null);
+                            tasks.add(node);
+                        }
+                        ObjectNode result = Json.newObject();
+                        result.put("total", deadLetters.getTotal());
+                        result.put("offset", offset);
+                        result.set("tasks", tasks);
+                        return ok(result);
+                    }
+                    return internalServerError(createErrorResponse("Unexpected response type"));
+                })
+                .toCompletableFuture()
+                .exceptionally(throwable -> {
+                    return internalServerError(createErrorResponse("Dead letter query failed: " + throwable.getMessage()));
+                });
+    }
+
+    /**
+     * 重放死信任务
+     * POST /api/tasks/dead-letters/replay
+     *
+     * Request body: {"taskIds": ["..."]} 或 {"taskType": "API_CALL"}（两者都为空时重放全部）
+     * 重放的任务重置重试次数后重新入队，对应队列已满的任务留在死信队列中并计入rejected
+     */
+    @BodyParser.Of(BodyParser.Json.class)
+    public CompletableFuture<Result> replayDeadLetters(Http.Request request) {
+        JsonNode json = request.body().asJson();
+        List<String> taskIds = null;
+        String taskType = null;
+        if (json != null) {
+            if (json.has("taskIds")) {
+                if (!json.get("taskIds").isArray()) {
+                    return CompletableFuture.completedFuture(badRequest(createErrorResponse("taskIds must be an array")));
+                }
+                taskIds = new ArrayList<>();
+                for (JsonNode id : json.get("taskIds")) {
+                    taskIds.add(id.asText());
+                }
+            }
+            if (json.hasNonNull("taskType")) {
+                taskType = json.get("taskType").asText();
+            }
+        }
+
+        ActorRef taskManager = actorSystemManager.getTaskManagerActor();
+        return FutureConverters.toJava(Patterns
+                .ask(taskManager, new TaskMessage.ReplayDeadLetters(taskIds, taskType), Timeout.apply(10, TimeUnit.SECONDS)))
+                .toCompletableFuture()
+                .thenApply(response -> {
+                    if (response instanceof TaskMessage.BatchAccepted) {
+                        TaskMessage.BatchAccepted replayed = (TaskMessage.BatchAccepted) response;
+                        ArrayNode rejected = Json.newArray();
+                        replayed.getRejectedTaskIds().forEach(rejected::add);
+                        ObjectNode result = Json.newObject();
+                        result.put("replayed", replayed.getAccepted());
+                        result.put("rejected", replayed.getRejectedTaskIds().size());
+                        result.set("rejectedTaskIds", rejected);
+                        return ok(result);
+                    }
+                    return internalServerError(createErrorResponse("Unexpected response type"));
+                })
+                .toCompletableFuture()
+                .exceptionally(throwable -> {
+                    return internalServerError(createErrorResponse("Dead letter replay failed: " + throwable.getMessage()));
+                });
+    }
+
+    /**
+     * 解析定时字段，cron不能与runAt/delay同时使用；
+     * 周期任务的每次执行各有自己的截止时间，只能用相对的timeout，不能用绝对的deadline
+     */
+    private TaskMessage.ScheduleTask parseSchedule(JsonNode json, Task task) {
+        JsonNode runAt = json.path("runAt");
+        JsonNode delay = json.path("delay");
+        JsonNode cron = json.path("cron");
+
+        if (cron.isTextual()) {
+            if (!runAt.isMissingNode() && !runAt.isNull() || !delay.isMissingNode() && !delay.isNull()) {
+                throw new IllegalArgumentException("cron cannot be combined with runAt or delay");
+            }
+            if (task.getDeadline() != null) {
+                throw new IllegalArgumentException("use timeout instead of deadline for cron tasks");
+            }
+            // 提前校验表达式，避免把格式错误留到调度器中
+            CronExpression.parse(cron.asText());
+            return new TaskMessage.ScheduleTask(task, null, cron.asText());
+        }
+        if (!cron.isMissingNode() && !cron.isNull()) {
+            throw new IllegalArgumentException("cron must be a string");
+        }
+        if (!runAt.isMissingNode() && !runAt.isNull() && !delay.isMissingNode() && !delay.isNull()) {
+            throw new IllegalArgumentException("runAt and delay are mutually exclusive");
+        }
+
+        long now = System.currentTimeMillis();
+        if (runAt.isNumber()) {
+            return new TaskMessage.ScheduleTask(task, runAt.asLong(), null);
+        }
+        if (runAt.isTextual()) {
+            return new TaskMessage.ScheduleTask(task, parseInstant(runAt.asText()), null);
+        }
+        if (delay.isNumber()) {
+            if (delay.asLong() < 0) {
+                throw new IllegalArgumentException("delay must not be negative");
+            }
+            return new TaskMessage.ScheduleTask(task, now + delay.asLong(), null);
+        }
+        if (delay.isTextual()) {
+            java.time.Duration duration = java.time.Duration.parse(delay.asText());
+            if (duration.isNegative()) {
+                throw new IllegalArgumentException("delay must not be negative");
+            }
+            return new TaskMessage.ScheduleTask(task, now + duration.toMillis(), null);
+        }
+        throw new IllegalArgumentException("runAt must be a timestamp and delay a number or ISO-8601 duration");
+    }
+
+    /**
+     * 解析截止时间：deadline为绝对时间，直接设置；timeout只记录相对时长，
+     * 在任务交给管理器时（定时任务在到期时）才换算成截止时间。两者不能同时使用
+     */
+    private void parseDeadline(JsonNode json, Task task) {
+        JsonNode deadline = json.path("deadline");
+        JsonNode timeout = json.path("timeout");
+        boolean hasDeadline = !deadline.isMissingNode() && !deadline.isNull();
+        boolean hasTimeout = !timeout.isMissingNode() && !timeout.isNull();
+
+        if (hasDeadline && hasTimeout) {
+            throw new IllegalArgumentException("deadline and timeout are mutually exclusive");
+        }
+        if (hasDeadline) {
+            long deadlineMillis;
+            if (deadline.isNumber()) {
+                deadlineMillis = deadline.asLong();
+            } else if (deadline.isTextual()) {
+                deadlineMillis = parseInstant(deadline.asText());
+            } else {
+                throw new IllegalArgumentException("deadline must be a timestamp");
+            }
+            task.setDeadline(LocalDateTime.ofInstant(Instant.ofEpochMilli(deadlineMillis), ZoneId.systemDefault()));
+        } else if (hasTimeout) {
+            long timeoutMillis;
+            if (timeout.isNumber()) {
+                timeoutMillis = timeout.asLong();
+            } else if (timeout.isTextual()) {
+                timeoutMillis = java.time.Duration.parse(timeout.asText()).toMillis();
+            } else {
+                throw new IllegalArgumentException("timeout must be a number or ISO-8601 duration");
+            }
+            if (timeoutMillis <= 0) {
+                throw new IllegalArgumentException("timeout must be positive");
+            }
+            task.setTimeoutMillis(timeoutMillis);
+        }
+    }
+
+    private static long parseInstant(String value) {
+        try {
+            return Instant.parse(value).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(value)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+
+    private CompletableFuture<Result> submitScheduledTask(TaskMessage.ScheduleTask schedule, String taskName,
+                                                          String taskType, Task.TaskPriority priority) {
+        ActorRef scheduler = actorSystemManager.getScheduledTaskActor();
+
+        return FutureConverters.toJava(Patterns
+                .ask(scheduler, schedule, Timeout.apply(5, TimeUnit.SECONDS)))
+                .toCompletableFuture()
+                .thenApply(response -> {
+                    if (response instanceof TaskMessage.TaskScheduled) {
+                        TaskMessage.TaskScheduled scheduled = (TaskMessage.TaskScheduled) response;
+                        ObjectNode result = Json.newObject();
+                        result.put("taskId", scheduled.getTaskId());
+                        result.put("scheduleId", scheduled.getScheduleId());
+                        result.put("status", "SCHEDULED");
+                        result.put("nextRunAt", Instant.ofEpochMilli(scheduled.getNextRunAtMillis()).toString());
+                        if (schedule.getCron() != null) {
+                            result.put("cron", schedule.getCron());
+                        }
+                        result.put("taskName", taskName);
+                        result.put("taskType", taskType);
+                        result.put("priority", priority.name());
+                        return ok(result);
+                    }
+                    return internalServerError(createErrorResponse("Unexpected response type"));
+                })
+                .toCompletableFuture()
+                .exceptionally(throwable -> {
+                    return internalServerError(createErrorResponse("Task scheduling failed: " + throwable.getMessage()));
+                });
+    }
+
     /**
      * 查询任务状态
      * GET /api/tasks/:taskId
@@ -129,6 +544,117 @@ public class TaskSystemController extends Controller {
                 });
     }
 
+    /**
+     * 流式读取任务结果
+     * GET /api/tasks/:taskId/result
+     *
+     * 结果分块从任务所在的管理器读取后直接写入响应，不会在内存中拼成完整的字符串。
+     * 支持单个区间的Range请求（bytes=0-1023、bytes=1024-、bytes=-512），返回206和Content-Range；
+     * 任务不存在返回404，尚未成功完成返回409，结果已被清理返回410
+     */
+    public CompletionStage<Result> getTaskResult(String taskId, Http.Request request) {
+        ActorRef taskManager = actorSystemManager.getTaskManagerActor();
+        // 无法解析或包含多个区间的Range按规范忽略，返回完整结果
+        long[] range = request.header(RANGE).map(TaskSystemController::parseRange).orElse(null);
+
+        // 先读取0字节得到结果的状态和总大小
+        return readResultChunk(taskManager, taskId, 0, 0)
+                .thenApply(head -> {
+                    switch (head.getStatus()) {
+                        case TaskMessage.ResultChunk.NOT_FOUND:
+                            return notFound(createErrorResponse("Task not found"));
+                        case TaskMessage.ResultChunk.NOT_READY:
+                            return status(CONFLICT, createErrorResponse(
+                                    "Task has no result (status: " + head.getTaskStatus() + ")"));
+                        case TaskMessage.ResultChunk.GONE:
+                            return status(GONE, createErrorResponse("Task result is no longer available"));
+                        default:
+                            break;
+                    }
+
+                    long total = head.getTotalSize();
+                    long start = 0;
+                    long end = total - 1;
+                    if (range != null) {
+                        if (range[0] < 0) {
+                            start = Math.max(0, total - range[1]);
+                        } else {
+                            start = range[0];
+                            if (range[1] >= 0) {
+                                end = Math.min(range[1], total - 1);
+                            }
+                        }
+                        if (start >= total || start > end) {
+                            return status(REQUESTED_RANGE_NOT_SATISFIABLE)
+                                    .withHeader(CONTENT_RANGE, "bytes */" + total);
+                        }
+                    }
+
+                    long last = end;
+                    Source<ByteString, NotUsed> body = Source.unfoldAsync(start, offset -> {
+                        if (offset > last) {
+                            return CompletableFuture.completedFuture(Optional.empty());
+                        }
+                        int length = (int) Math.min(RESULT_CHUNK_SIZE, last + 1 - offset);
+                        return readResultChunk(taskManager, taskId, offset, length).thenApply(chunk -> {
+                            // 传输过程中结果被清理时中断响应
+                            if (!TaskMessage.ResultChunk.OK.equals(chunk.getStatus()) || chunk.getData().length == 0) {
+                                throw new IllegalStateException("Result of task " + taskId + " is no longer available");
+                            }
+                            return Optional.of(Pair.create(offset + chunk.getData().length,
+                                    ByteString.fromArray(chunk.getData())));
+                        });
+                    });
+
+                    HttpEntity entity = new HttpEntity.Streamed(body, Optional.of(last - start + 1),
+                            Optional.of("text/plain; charset=utf-8"));
+                    if (range == null) {
+                        return ok().sendEntity(entity).withHeader(ACCEPT_RANGES, "bytes");
+                    }
+                    return status(PARTIAL_CONTENT).sendEntity(entity)
+                            .withHeader(ACCEPT_RANGES, "bytes")
+                            .withHeader(CONTENT_RANGE, "bytes " + start + "-" + last + "/" + total);
+                })
+                .exceptionally(throwable -> {
+                    return internalServerError(createErrorResponse("Read failed: " + throwable.getMessage()));
+                });
+    }
+
+    private static CompletionStage<TaskMessage.ResultChunk> readResultChunk(ActorRef taskManager, String taskId,
+                                                                            long offset, int maxLength) {
+        return FutureConverters.toJava(Patterns
+                .ask(taskManager, new TaskMessage.ReadResult(taskId, offset, maxLength), Timeout.apply(5, TimeUnit.SECONDS)))
+                .thenApply(TaskMessage.ResultChunk.class::cast);
+    }
+
+    /**
+     * 解析单个区间的Range请求头，返回 {start, end}（end为-1表示到末尾）或 {-1, 后缀长度}；
+     * 无法解析时返回null
+     */
+    private static long[] parseRange(String header) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            if (from.isEmpty()) {
+                long suffix = Long.parseLong(to);
+                return suffix > 0 ? new long[]{-1, suffix} : null;
+            }
+            long start = Long.parseLong(from);
+            long end = to.isEmpty() ? -1 : Long.parseLong(to);
+            return start >= 0 && (end < 0 || end >= start) ? new long[]{start, end} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * 批量提交任务
      * POST /api/tasks/batch
@@ -145,53 +671,416 @@ public class TaskSystemController extends Controller {
      *     ...
      *   ]
      * }
+     *
+     * 请求体以原始字节接收并流式解析两遍：第一遍只校验整个请求体（不保留任务），
+     * 有错误时返回400且不提交任何任务，客户端可以安全地整体重试；
+     * 第二遍解析任务并按 BATCH_CHUNK_SIZE 分块，每块作为一条SubmitBatch消息发给TaskManagerActor。
+     * 解析时只保留当前一个任务的JSON，但响应中每个任务都有一项结果
      */
+    @BodyParser.Of(BodyParser.Raw.class)
     public CompletableFuture<Result> submitBatchTasks(Http.Request request) {
-        JsonNode json = request.body().asJson();
+        ActorRef taskManager = actorSystemManager.getTaskManagerActor();
+        List<CompletableFuture<Object>> acks = new ArrayList<>();
+        Map<String, ObjectNode> taskResults = new LinkedHashMap<>();
+        String tenant = tenantOf(request);
+
+        String invalid = validateBatch(request);
+        if (invalid != null) {
+            return CompletableFuture.completedFuture(badRequest(createErrorResponse(invalid)));
+        }
+
+        try (JsonParser parser = openBatchParser(request)) {
+            seekTasksArray(parser);
+            List<Task> chunk = new ArrayList<>(BATCH_CHUNK_SIZE);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                JsonNode taskJson = parser.readValueAsTree();
+                Task task = parseBatchTask(taskJson, tenant);
+                chunk.add(task);
 
-        if (json == null || !json.has("tasks")) {
+                ObjectNode taskResult = Json.newObject();
+                taskResult.put("taskId", task.getTaskId());
+                taskResult.put("taskName", task.getTaskName());
+                taskResult.put("status", "SUBMITTED");
+                taskResults.put(task.getTaskId(), taskResult);
+
+                if (chunk.size() >= BATCH_CHUNK_SIZE) {
+                    acks.add(submitChunk(taskManager, chunk));
+                    chunk = new ArrayList<>(BATCH_CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                acks.add(submitChunk(taskManager, chunk));
+            }
+        } catch (IOException e) {
+            // 请求体已通过校验，只有读取缓冲失败才会到这里
             return CompletableFuture.completedFuture(
-                    badRequest(createErrorResponse("Missing tasks array"))
+                    internalServerError(createErrorResponse("Failed to read request body: " + e.getMessage()))
             );
         }
 
-        ArrayNode tasksArray = (ArrayNode) json.get("tasks");
-        ArrayNode results = Json.newArray();
+        return CompletableFuture.allOf(acks.toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    int rejected = 0;
+                    for (CompletableFuture<Object> ack : acks) {
+                        Object response = ack.join();
+                        if (!(response instanceof TaskMessage.BatchAccepted)) {
+                            return internalServerError(createErrorResponse("Unexpected response type"));
+                        }
+                        for (String taskId : ((TaskMessage.BatchAccepted) response).getRejectedTaskIds()) {
+                            taskResults.get(taskId).put("status", "REJECTED");
+                            rejected++;
+                        }
+                    }
 
-        ActorRef taskManager = actorSystemManager.getTaskManagerActor();
+                    ArrayNode results = Json.newArray();
+                    results.addAll(taskResults.values());
 
-        // 提交所有任务
-        for (JsonNode taskJson : tasksArray) {
-            String taskName = taskJson.path("taskName").asText("Unnamed Task");
-            String taskType = taskJson.path("taskType").asText("DEFAULT");
-            String taskData = taskJson.path("taskData").asText("");
-            String priorityStr = taskJson.path("priority").asText("NORMAL");
+                    ObjectNode response = Json.newObject();
+                    response.put("totalTasks", taskResults.size());
+                    response.put("accepted", taskResults.size() - rejected);
+                    response.put("rejected", rejected);
+                    response.set("tasks", results);
+                    return ok(response);
+                })
+                .exceptionally(throwable -> {
+                    return internalServerError(createErrorResponse("Batch submission failed: " + throwable.getMessage()));
+                });
+    }
 
-            Task.TaskPriority priority;
-            try {
-                priority = Task.TaskPriority.valueOf(priorityStr.toUpperCase());
-            } catch (IllegalArgumentException e) {
-                priority = Task.TaskPriority.NORMAL;
+    /**
+     * 流式提交任务（WebSocket，NDJSON）
+     * GET /api/tasks/stream
+     *
+     * 客户端每行发送一个任务JSON（可选 "ref" 字段用于关联确认），服务端为每个任务回复一行确认：
+     * {"ref": "...", "seq": 1, "taskId": "...", "status": "ACCEPTED|REJECTED|INVALID|TIMEOUT"}
+     *
+     * 任务按 STREAM_BATCH_SIZE / STREAM_BATCH_WINDOW 聚合成批次，同一时刻只有一个批次在等待管理器确认；
+     * 管理器队列已满时批次会等待空位，期间不再读取客户端数据，背压经由TCP传递给生产者
+     */
+    public WebSocket streamTasks() {
+        return WebSocket.Text.accept(request -> {
+            ActorRef taskManager = actorSystemManager.getTaskManagerActor();
+            AtomicLong sequence = new AtomicLong();
+            String tenant = tenantOf(request);
+
+            return Flow.<String>create()
+                    .mapConcat(frame -> Arrays.asList(frame.split("\n")))
+                    .filter(line -> !line.trim().isEmpty())
+                    .map(line -> parseStreamItem(line, sequence.incrementAndGet(), tenant))
+                    .groupedWithin(STREAM_BATCH_SIZE, STREAM_BATCH_WINDOW)
+                    .mapAsync(1, items -> submitStreamBatch(taskManager, items))
+                    .mapConcat(acks -> acks);
+        });
+    }
+
+    private StreamItem parseStreamItem(String line, long seq, String tenant) {
+        try {
+            JsonNode json = Json.parse(line);
+            String ref = json.has("ref") ? json.get("ref").asText() : null;
+            if (!json.isObject()) {
+                return new StreamItem(seq, ref, null, "Task must be a JSON object");
             }
+            return new StreamItem(seq, ref, parseBatchTask(json, tenant), null);
+        } catch (RuntimeException e) {
+            return new StreamItem(seq, null, null, "Invalid JSON");
+        }
+    }
 
-            String taskId = UUID.randomUUID().toString();
-            Task task = new Task(taskId, taskName, taskType, taskData, priority);
+    /**
+     * 提交一个批次并按原顺序生成逐任务确认
+     */
+    private CompletionStage<List<String>> submitStreamBatch(ActorRef taskManager, List<StreamItem> items) {
+        List<Task> batch = new ArrayList<>();
+        for (StreamItem item : items) {
+            if (item.task != null) {
+                batch.add(item.task);
+            }
+        }
+        if (batch.isEmpty()) {
+            return CompletableFuture.completedFuture(streamAcks(items, Collections.emptySet(), "ACCEPTED"));
+        }
 
-            // 发送任务（fire and forget方式）
-            taskManager.tell(task, ActorRef.noSender());
+        return Patterns.ask(taskManager, new TaskMessage.SubmitBatch(batch, true), STREAM_ACK_TIMEOUT)
+                .handle((response, throwable) -> {
+                    if (response instanceof TaskMessage.BatchAccepted) {
+                        Set<String> rejected = new HashSet<>(((TaskMessage.BatchAccepted) response).getRejectedTaskIds());
+                        return streamAcks(items, rejected, "ACCEPTED");
+                    }
+                    // 超时时任务可能已被接收，客户端可通过任务状态接口确认
+                    return streamAcks(items, Collections.emptySet(), "TIMEOUT");
+                });
+    }
 
-            ObjectNode taskResult = Json.newObject();
-            taskResult.put("taskId", taskId);
-            taskResult.put("taskName", taskName);
-            taskResult.put("status", "SUBMITTED");
-            results.add(taskResult);
+    private List<String> streamAcks(List<StreamItem> items, Set<String> rejected, String defaultStatus) {
+        List<String> acks = new ArrayList<>(items.size());
+        for (StreamItem item : items) {
+            ObjectNode ack = Json.newObject();
+            if (item.ref != null) {
+                ack.put("ref", item.ref);
+            }
+            ack.put("seq", item.seq);
+            if (item.task == null) {
+                ack.put("status", "INVALID");
+                ack.put("message", item.error);
+            } else {
+                ack.put("taskId", item.task.getTaskId());
+                ack.put("status", rejected.contains(item.task.getTaskId()) ? "REJECTED" : defaultStatus);
+            }
+            acks.add(ack.toString());
         }
+        return acks;
+    }
 
-        ObjectNode response = Json.newObject();
-        response.put("totalTasks", tasksArray.size());
-        response.set("tasks", results);
+    /**
+     * 流式提交中的一行：解析成功时task不为null，否则error说明原因
+     */
+    private static final class StreamItem {
+        final long seq;
+        final String ref;
+        final Task task;
+        final String error;
+
+        StreamItem(long seq, String ref, Task task, String error) {
+            this.seq = seq;
+            this.ref = ref;
+            this.task = task;
+            this.error = error;
+        }
+    }
+
+    private CompletableFuture<Object> submitChunk(ActorRef taskManager, List<Task> chunk) {
+        return FutureConverters.toJava(Patterns
+                .ask(taskManager, new TaskMessage.SubmitBatch(chunk), Timeout.apply(10, TimeUnit.SECONDS)))
+                .toCompletableFuture();
+    }
+
+    /**
+     * 小请求体直接从内存解析，大请求体从Play缓冲的临时文件流式读取
+     */
+    private JsonParser openBatchParser(Http.Request request) throws IOException {
+        Http.RawBuffer raw = request.body().asRaw();
+        if (raw != null) {
+            ByteString bytes = raw.asBytes(MAX_IN_MEMORY_BODY);
+            InputStream in = bytes != null
+                    ? bytes.iterator().asInputStream()
+                    : new FileInputStream(raw.asFile());
+            return Json.mapper().getFactory().createParser(in);
+        }
+
+        JsonNode json = request.body().asJson();
+        return json != null ? Json.mapper().treeAsTokens(json) : null;
+    }
+
+    /**
+     * 校验批量请求体：tasks 数组存在、只包含任务对象且整个JSON格式正确，
+     * 逐个跳过元素，不在内存中保留任务；合法时返回null，否则返回错误说明
+     */
+    private String validateBatch(Http.Request request) {
+        try (JsonParser parser = openBatchParser(request)) {
+            if (parser == null || !seekTasksArray(parser)) {
+                return "Missing tasks array";
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                parser.skipChildren();
+            }
+            if (token != JsonToken.END_ARRAY) {
+                return "Tasks array must contain only task objects";
+            }
+            // 读完根对象的其余部分，确保后面的内容也是合法JSON
+            while (parser.nextToken() != null) {
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            return "Invalid JSON: " + e.getMessage();
+        }
+    }
 
-        return CompletableFuture.completedFuture(ok(response));
+    /**
+     * 移动到根对象的 tasks 数组起始处，不存在时返回false
+     */
+    private boolean seekTasksArray(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("tasks".equals(field)) {
+                return value == JsonToken.START_ARRAY;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private Task parseBatchTask(JsonNode taskJson, String tenant) {
+        String taskName = taskJson.path("taskName").asText("Unnamed Task");
+        String taskType = taskJson.path("taskType").asText("DEFAULT");
+        String taskData = taskJson.path("taskData").asText("");
+        String priorityStr = taskJson.path("priority").asText("NORMAL");
+
+        Task.TaskPriority priority;
+        try {
+            priority = Task.TaskPriority.valueOf(priorityStr.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            priority = Task.TaskPriority.NORMAL;
+        }
+
+        Task task = new Task(UUID.randomUUID().toString(), taskName, taskType, taskData, priority);
+        task.setTenant(tenant);
+        return task;
+    }
+
+    /**
+     * 请求所属的租户：优先使用认证拦截器解析的结果，其次按Bearer token计算（见 AuthenticatedAction.tenantOf），
+     * 匿名请求返回null，与 default 租户同等对待
+     */
+    private String tenantOf(Http.RequestHeader request) {
+        Optional<String> tenant = request.attrs().getOptional(AuthenticatedAction.TENANT);
+        if (tenant.isPresent()) {
+            return tenant.get();
+        }
+        return request.header(AUTHORIZATION)
+                .filter(header -> header.startsWith("Bearer ") && header.length() > "Bearer ".length())
+                .map(header -> AuthenticatedAction.tenantOf(header.substring("Bearer ".length()),
+                        actorSystemManager.getFairShareSettings().getTenantTokenSecret()))
+                .orElse(null);
+    }
+
+    /**
+     * 提交工作流（任务的有向无环图）
+     * POST /api/workflows
+     *
+     * Request body:
+     * {
+     *   "tasks": [
+     *     {"id": "extract", "taskType": "DATA_PROCESSING", "taskData": "..."},
+     *     {"id": "report", "taskType": "REPORT_GENERATION", "dependsOn": ["extract"]},
+     *     {"id": "notify", "taskType": "NOTIFICATION", "dependsOn": ["report"]}
+     *   ]
+     * }
+     *
+     * 没有依赖的任务立即并行执行，其余任务在所有依赖完成后立即入队，并收到依赖任务的结果；
+     * 任一任务最终失败或被取消时，依赖它的任务不再执行。每个任务的taskId为 workflowId.id，
+     * 可通过任务接口单独查询或取消
+     */
+    @BodyParser.Of(BodyParser.Json.class)
+    public CompletableFuture<Result> submitWorkflow(Http.Request request) {
+        JsonNode json = request.body().asJson();
+        if (json == null || !json.path("tasks").isArray() || json.path("tasks").size() == 0) {
+            return CompletableFuture.completedFuture(badRequest(createErrorResponse("Missing tasks array")));
+        }
+        if (json.path("tasks").size() > MAX_WORKFLOW_TASKS) {
+            return CompletableFuture.completedFuture(
+                    badRequest(createErrorResponse("A workflow may contain at most " + MAX_WORKFLOW_TASKS + " tasks")));
+        }
+
+        String workflowId = "wf-" + UUID.randomUUID();
+        String tenant = tenantOf(request);
+        List<Task> tasks = new ArrayList<>();
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        ArrayNode taskIds = Json.newArray();
+        for (JsonNode taskJson : json.get("tasks")) {
+            String nodeId = taskJson.path("id").asText("");
+            if (!WORKFLOW_NODE_ID.matcher(nodeId).matches()) {
+                return CompletableFuture.completedFuture(
+                        badRequest(createErrorResponse("Invalid task id '" + nodeId + "': use 1-64 letters, digits, '_' or '-'")));
+            }
+            JsonNode parents = taskJson.path("dependsOn");
+            if (!parents.isMissingNode() && !parents.isArray()) {
+                return CompletableFuture.completedFuture(
+                        badRequest(createErrorResponse("dependsOn of task '" + nodeId + "' must be an array of task ids")));
+            }
+            List<String> dependsOn = new ArrayList<>();
+            for (JsonNode parent : parents) {
+                if (!parent.isTextual()) {
+                    return CompletableFuture.completedFuture(
+                            badRequest(createErrorResponse("dependsOn of task '" + nodeId + "' must be an array of task ids")));
+                }
+                dependsOn.add(parent.asText());
+            }
+
+            Task task = parseBatchTask(taskJson, tenant);
+            task.setTaskId(TaskMessage.SubmitWorkflow.taskIdOf(workflowId, nodeId));
+            tasks.add(task);
+            dependencies.put(nodeId, dependsOn);
+
+            ObjectNode node = Json.newObject();
+            node.put("id", nodeId);
+            node.put("taskId", task.getTaskId());
+            taskIds.add(node);
+        }
+
+        ActorRef taskManager = actorSystemManager.getTaskManagerActor();
+        return FutureConverters.toJava(Patterns
+                .ask(taskManager, new TaskMessage.SubmitWorkflow(workflowId, tasks, dependencies),
+                        Timeout.apply(5, TimeUnit.SECONDS)))
+                .toCompletableFuture()
+                .thenApply(response -> {
+                    if (response instanceof TaskMessage.TaskStatusResponse) {
+                        TaskMessage.TaskStatusResponse statusResponse = (TaskMessage.TaskStatusResponse) response;
+                        ObjectNode result = Json.newObject();
+                        result.put("workflowId", workflowId);
+                        result.put("status", statusResponse.getStatus());
+                        result.put("message", statusResponse.getMessage());
+                        // 依赖无效（环、未知节点）时是请求错误，队列已满时提示稍后重试
+                        if ("INVALID".equals(statusResponse.getStatus())) {
+                            return badRequest(result);
+                        }
+                        if ("REJECTED".equals(statusResponse.getStatus())) {
+                            return status(SERVICE_UNAVAILABLE, result);
+                        }
+                        result.set("tasks", taskIds);
+                        return ok(result);
+                    }
+                    return internalServerError(createErrorResponse("Unexpected response type"));
+                })
+                .toCompletableFuture()
+                .exceptionally(throwable -> {
+                    return internalServerError(createErrorResponse("Workflow submission failed: " + throwable.getMessage()));
+                });
+    }
+
+    /**
+     * 查询工作流状态
+     * GET /api/workflows/:workflowId
+     *
+     * status为RUNNING、COMPLETED或FAILED；tasks为每个任务的状态，尚未满足依赖的为WAITING
+     */
+    public CompletableFuture<Result> getWorkflowStatus(String workflowId) {
+        ActorRef taskManager = actorSystemManager.getTaskManagerActor();
+
+        return FutureConverters.toJava(Patterns
+                .ask(taskManager, new TaskMessage.QueryWorkflow(workflowId), Timeout.apply(5, TimeUnit.SECONDS)))
+                .toCompletableFuture()
+                .thenApply(response -> {
+                    if (response instanceof TaskMessage.WorkflowStatus) {
+                        TaskMessage.WorkflowStatus workflow = (TaskMessage.WorkflowStatus) response;
+                        ObjectNode result = Json.newObject();
+                        result.put("workflowId", workflow.getWorkflowId());
+                        result.put("status", workflow.getStatus());
+                        if ("NOT_FOUND".equals(workflow.getStatus())) {
+                            return notFound(result);
+                        }
+                        ArrayNode nodes = Json.newArray();
+                        for (Map.Entry<String, String> entry : workflow.getNodes().entrySet()) {
+                            ObjectNode node = Json.newObject();
+                            node.put("id", entry.getKey());
+                            node.put("taskId", TaskMessage.SubmitWorkflow.taskIdOf(workflowId, entry.getKey()));
+                            node.put("status", entry.getValue());
+                            nodes.add(node);
+                        }
+                        result.set("tasks", nodes);
+                        return ok(result);
+                    }
+                    return internalServerError(createErrorResponse("Unexpected response type"));
+                })
+                .toCompletableFuture()
+                .exceptionally(throwable -> {
+                    return internalServerError(createErrorResponse("Workflow query failed: " + throwable.getMessage()));
+                });
     }
 
     /**
@@ -219,16 +1108,26 @@ public class TaskSystemController extends Controller {
     }
 
     /**
-     * 获取任务类型列表
+     * 运行指标（Prometheus文本格式）
+     * GET /metrics
+     *
+     * 直接读取无锁的指标注册表，不经过任务管理器的邮箱，适合高频抓取；
+     * 各池和分片的详细状态仍可通过 /api/tasks/stats 查询
+     */
+    public Result metrics() {
+        return ok(actorSystemManager.getMetricsRegistry().scrape())
+                .as("text/plain; version=0.0.4; charset=utf-8");
+    }
+
+    /**
+     * 获取任务类型列表（内置执行器和通过多重绑定注册的执行器的类型）
      * GET /api/tasks/types
      */
     public Result getTaskTypes() {
         ArrayNode types = Json.newArray();
-        types.add("DATA_PROCESSING");
-        types.add("FILE_OPERATION");
-        types.add("API_CALL");
-        types.add("NOTIFICATION");
-        types.add("REPORT_GENERATION");
+        for (String taskType : new TreeSet<>(actorSystemManager.getTaskExecutors().taskTypes())) {
+            types.add(taskType);
+        }
 
         ObjectNode response = Json.newObject();
         response.set("taskTypes", types);
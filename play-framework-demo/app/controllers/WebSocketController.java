@@ -1,20 +1,28 @@
 package controllers;
 
 import actors.ActorSystemManager;
+import actors.TaskSystemSettings;
 import actors.WebSocketActor;
+import actors.WebSocketFlow;
+import actors.WebSocketFrame;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import akka.actor.Props;
 import akka.stream.Materializer;
 import akka.stream.javadsl.Flow;
 import akka.stream.javadsl.Sink;
 import akka.stream.javadsl.Source;
 import com.fasterxml.jackson.databind.JsonNode;
+import play.http.websocket.Message;
 import play.libs.F;
-import play.libs.streams.ActorFlow;
+import play.libs.Json;
+import play.libs.Scala;
 import play.mvc.Controller;
 import play.mvc.Http;
 import play.mvc.WebSocket;
 
+import utils.MetricsRegistry;
+
 import javax.inject.Inject;
 import java.util.UUID;
 
@@ -24,12 +32,45 @@ import java.util.UUID;
  */
 public class WebSocketController extends Controller {
 
+    // 1003：收到无法接受的数据
+    private static final int CLOSE_UNACCEPTABLE = 1003;
+
+    /**
+     * 与 WebSocket.Json 相同的入站解析；出站的 WebSocketFrame 已经序列化，直接作为文本帧写出，
+     * 其他消息（JsonNode）照常序列化
+     */
+    private static final WebSocket.MappedWebSocketAcceptor<JsonNode, Object> JSON_OR_FRAME =
+            new WebSocket.MappedWebSocketAcceptor<>(
+                    Scala.partialFunction(message -> {
+                        if (message instanceof Message.Text) {
+                            try {
+                                return F.Either.Left(Json.parse(((Message.Text) message).data()));
+                            } catch (RuntimeException e) {
+                                return F.Either.Right(
+                                        new Message.Close(CLOSE_UNACCEPTABLE, "Unable to parse JSON message"));
+                            }
+                        } else if (message instanceof Message.Binary) {
+                            return F.Either.Right(
+                                    new Message.Close(CLOSE_UNACCEPTABLE, "This websocket only accepts text frames"));
+                        }
+                        throw Scala.noMatch();
+                    }),
+                    out -> out instanceof WebSocketFrame
+                            ? new Message.Text(((WebSocketFrame) out).getText())
+                            : new Message.Text(Json.stringify((JsonNode) out)));
+
     private final ActorSystem actorSystem;
+    private final ActorRef webSocketManager;
+    private final TaskSystemSettings.WebSocketSettings webSocketSettings;
+    private final MetricsRegistry metricsRegistry;
     private final Materializer materializer;
 
     @Inject
     public WebSocketController(ActorSystemManager actorSystemManager, Materializer materializer) {
         this.actorSystem = actorSystemManager.getActorSystem();
+        this.webSocketManager = actorSystemManager.getWebSocketManagerActor();
+        this.webSocketSettings = actorSystemManager.getWebSocketSettings();
+        this.metricsRegistry = actorSystemManager.getMetricsRegistry();
         this.materializer = materializer;
     }
 
@@ -38,14 +79,14 @@ public class WebSocketController extends Controller {
      * ws://localhost:9000/ws
      */
     public WebSocket socket() {
-        return WebSocket.Json.accept(request -> {
+        return JSON_OR_FRAME.accept(request -> {
             // 为每个连接生成唯一的客户端ID
             String clientId = generateClientId(request);
 
-            // 使用ActorFlow创建WebSocket流
+            // 使用WebSocketFlow创建WebSocket流（出站带确认，由连接Actor的有界缓冲处理慢客户端）
             // 每个WebSocket连接都会创建一个新的WebSocketActor
-            return ActorFlow.actorRef(
-                    out -> WebSocketActor.props(out, clientId),
+            return WebSocketFlow.actorFlow(
+                    out -> connectionProps(out, clientId),
                     actorSystem,
                     materializer
             );
@@ -57,15 +98,19 @@ public class WebSocketController extends Controller {
      * ws://localhost:9000/ws/:clientId
      */
     public WebSocket socketWithId(String clientId) {
-        return WebSocket.Json.accept(request -> {
-            return ActorFlow.actorRef(
-                    out -> WebSocketActor.props(out, clientId),
+        return JSON_OR_FRAME.accept(request -> {
+            return WebSocketFlow.actorFlow(
+                    out -> connectionProps(out, clientId),
                     actorSystem,
                     materializer
             );
         });
     }
 
+    private Props connectionProps(ActorRef out, String clientId) {
+        return WebSocketActor.props(out, clientId, webSocketManager, webSocketSettings, metricsRegistry);
+    }
+
     /**
      * 生成客户端ID
      */
@@ -1,5 +1,7 @@
 package interceptors;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.typesafe.config.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import play.libs.Json;
@@ -7,7 +9,15 @@ import play.mvc.Action;
 import play.mvc.Http;
 import play.mvc.Result;
 import play.mvc.Results;
+import play.libs.typedmap.TypedKey;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
@@ -19,6 +29,25 @@ public class AuthenticatedAction extends Action.Simple {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthenticatedAction.class);
 
+    /**
+     * 认证通过后请求上携带的租户标识
+     */
+    public static final TypedKey<String> TENANT = TypedKey.create("tenant");
+
+    /**
+     * 未携带可信租户声明的请求所属的租户
+     */
+    public static final String DEFAULT_TENANT = "default";
+
+    private static final String TENANT_TOKEN_SECRET = "task-system.fair-share.tenant-token-secret";
+
+    private final String tenantTokenSecret;
+
+    @Inject
+    public AuthenticatedAction(Config config) {
+        this.tenantTokenSecret = config.hasPath(TENANT_TOKEN_SECRET) ? config.getString(TENANT_TOKEN_SECRET) : "";
+    }
+
     @Override
     public CompletionStage<Result> call(Http.Request request) {
         // 检查Authorization header
@@ -54,7 +83,46 @@ public class AuthenticatedAction extends Action.Simple {
                 request.uri(), token.substring(0, Math.min(10, token.length())) + "...");
 
         // 认证通过，继续执行
-        return delegate.call(request);
+        return delegate.call(request.addAttr(TENANT, tenantOf(token, tenantTokenSecret)));
+    }
+
+    /**
+     * 从Bearer token得到租户标识。
+     * 租户只和token校验一样可信：本拦截器并不验证token本身，所以只有用配置的密钥
+     * （task-system.fair-share.tenant-token-secret）验证过HS256签名且未过期的JWT，
+     * 才采用其载荷中的 tenant（或 sub）声明；未配置密钥、签名不符或不是JWT的token一律归入 default 租户，
+     * 客户端既不能冒用其他租户，也不能靠轮换token为自己多分公平份额
+     */
+    public static String tenantOf(String token, String secret) {
+        if (secret == null || secret.isEmpty()) {
+            return DEFAULT_TENANT;
+        }
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            return DEFAULT_TENANT;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            JsonNode header = Json.parse(new String(decoder.decode(parts[0]), StandardCharsets.UTF_8));
+            if (!"HS256".equals(header.path("alg").asText())) {
+                return DEFAULT_TENANT;
+            }
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] expected = mac.doFinal((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+            if (!MessageDigest.isEqual(expected, decoder.decode(parts[2]))) {
+                return DEFAULT_TENANT;
+            }
+            JsonNode claims = Json.parse(new String(decoder.decode(parts[1]), StandardCharsets.UTF_8));
+            if (claims.has("exp") && claims.path("exp").asLong() * 1000 <= System.currentTimeMillis()) {
+                return DEFAULT_TENANT;
+            }
+            String tenant = claims.path("tenant").asText(claims.path("sub").asText(""));
+            return tenant.isEmpty() ? DEFAULT_TENANT : tenant;
+        } catch (RuntimeException | GeneralSecurityException e) {
+            // 格式错误的token不携带可信声明
+            return DEFAULT_TENANT;
+        }
     }
 
     private String createErrorJson(String message) {
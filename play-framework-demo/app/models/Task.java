@@ -2,6 +2,9 @@ package models;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * 任务模型
@@ -47,6 +50,20 @@ public class Task implements Serializable {
     private String errorMessage;
     private int retryCount;
     private int maxRetries;
+    // 截止时间，为null表示不限制；超过截止时间的任务不再开始执行，执行中的任务被中断
+    private LocalDateTime deadline;
+    // 相对超时（毫秒），0表示不限制；在任务交给管理器时换算成截止时间（定时任务从到期时开始计算）
+    private long timeoutMillis;
+    // 客户端提供的幂等键，为null表示不去重
+    private String idempotencyKey;
+    // 是否允许与相同类型、相同数据的待处理任务合并执行
+    private boolean coalesce;
+    // 工作流中上游节点的结果：nodeId -> result，不属于工作流时为null
+    private Map<String, String> inputs;
+    // 存放在结果存储中的大结果的句柄，此时result为null；结果较小时直接保存在result中
+    private String resultHandle;
+    // 提交方所属租户，排队时按租户公平分配执行机会；为null表示匿名提交
+    private String tenant;
 
     public Task() {
     }
@@ -168,6 +185,124 @@ public class Task implements Serializable {
         this.maxRetries = maxRetries;
     }
 
+    public LocalDateTime getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(LocalDateTime deadline) {
+        this.deadline = deadline;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 任务交给管理器时调用：有相对超时时从now开始计算截止时间
+     */
+    public void startTimeout(LocalDateTime now) {
+        if (timeoutMillis > 0) {
+            deadline = now.plusNanos(timeoutMillis * 1_000_000L);
+        }
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * 幂等键的作用域：只有同一租户使用的相同幂等键才视为同一次提交，没有幂等键时为null
+     */
+    public String getIdempotencyScope() {
+        if (idempotencyKey == null) {
+            return null;
+        }
+        String owner = tenant != null ? tenant : "";
+        return owner.length() + ":" + owner + ":" + idempotencyKey;
+    }
+
+    /**
+     * 任务内容（类型和数据）的摘要，用于判断同一幂等键的两次提交是否为同一个请求
+     */
+    public int payloadFingerprint() {
+        return Objects.hash(taskType, taskData);
+    }
+
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    public Map<String, String> getInputs() {
+        return inputs;
+    }
+
+    public void setInputs(Map<String, String> inputs) {
+        this.inputs = inputs;
+    }
+
+    public String getResultHandle() {
+        return resultHandle;
+    }
+
+    public void setResultHandle(String resultHandle) {
+        this.resultHandle = resultHandle;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
+
+    /**
+     * 是否已超过截止时间
+     */
+    public boolean isDeadlineExceeded(LocalDateTime now) {
+        return deadline != null && !now.isBefore(deadline);
+    }
+
+    /**
+     * 当前状态的副本（inputs另行复制），用于在其他线程上读取而不受原任务后续修改的影响
+     */
+    public Task copy() {
+        Task copy = new Task();
+        copy.taskId = taskId;
+        copy.taskName = taskName;
+        copy.taskType = taskType;
+        copy.taskData = taskData;
+        copy.priority = priority;
+        copy.status = status;
+        copy.createdAt = createdAt;
+        copy.startedAt = startedAt;
+        copy.completedAt = completedAt;
+        copy.result = result;
+        copy.errorMessage = errorMessage;
+        copy.retryCount = retryCount;
+        copy.maxRetries = maxRetries;
+        copy.deadline = deadline;
+        copy.timeoutMillis = timeoutMillis;
+        copy.idempotencyKey = idempotencyKey;
+        copy.coalesce = coalesce;
+        copy.inputs = inputs != null ? new LinkedHashMap<>(inputs) : null;
+        copy.resultHandle = resultHandle;
+        copy.tenant = tenant;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "Task{" +
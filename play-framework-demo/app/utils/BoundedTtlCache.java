@@ -0,0 +1,144 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * 有界且带过期时间的缓存
+ * 按写入顺序保存条目，超过最大条目数时淘汰最早写入的条目，超过TTL的条目在 evictExpired 时淘汰。
+ * 由于条目按写入时间有序，过期清理只需从头部扫描到第一个未过期条目即可，耗时与淘汰数量成正比。
+ * 非线程安全，设计为在单个Actor内部使用。
+ */
+public class BoundedTtlCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final BiConsumer<K, V> onEvict;
+
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>();
+    private long evictedCount = 0;
+
+    /**
+     * @param maxEntries 最大条目数
+     * @param ttlMillis  条目存活时间，小于等于0表示不过期
+     * @param onEvict    条目被淘汰（而非主动移除）时的回调，可为null
+     */
+    public BoundedTtlCache(int maxEntries, long ttlMillis, BiConsumer<K, V> onEvict) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.onEvict = onEvict;
+    }
+
+    /**
+     * 写入条目，重复的key会移动到队尾并刷新写入时间
+     */
+    public void put(K key, V value, long nowMillis) {
+        entries.remove(key);
+        entries.put(key, new Entry<>(value, nowMillis));
+
+        while (entries.size() > maxEntries) {
+            evictEldest();
+        }
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * 读取未过期的条目
+     */
+    public V get(K key, long nowMillis) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || isExpired(entry, nowMillis)) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    public boolean containsKey(K key) {
+        return entries.containsKey(key);
+    }
+
+    public V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * 淘汰所有已过期的条目，返回淘汰数量
+     */
+    public int evictExpired(long nowMillis) {
+        if (ttlMillis <= 0) {
+            return 0;
+        }
+
+        int evicted = 0;
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Entry<V>> eldest = it.next();
+            if (!isExpired(eldest.getValue(), nowMillis)) {
+                break;
+            }
+            it.remove();
+            notifyEvicted(eldest.getKey(), eldest.getValue().value);
+            evicted++;
+        }
+        return evicted;
+    }
+
+    /**
+     * 按写入顺序返回所有条目的值（副本）
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<>(entries.size());
+        for (Entry<V> entry : entries.values()) {
+            values.add(entry.value);
+        }
+        return values;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+
+    private void evictEldest() {
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        Map.Entry<K, Entry<V>> eldest = it.next();
+        it.remove();
+        notifyEvicted(eldest.getKey(), eldest.getValue().value);
+    }
+
+    private void notifyEvicted(K key, V value) {
+        evictedCount++;
+        if (onEvict != null) {
+            onEvict.accept(key, value);
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry, long nowMillis) {
+        return ttlMillis > 0 && nowMillis - entry.insertedAt >= ttlMillis;
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long insertedAt;
+
+        Entry(V value, long insertedAt) {
+            this.value = value;
+            this.insertedAt = insertedAt;
+        }
+    }
+}
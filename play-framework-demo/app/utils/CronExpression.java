@@ -0,0 +1,145 @@
+package utils;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+
+/**
+ * 标准5字段cron表达式：分 时 日 月 周
+ * 每个字段支持 *、数字、范围 a-b、带步长的范围（a-b/n，* 或单个数字加步长表示到最大值）以及逗号分隔的列表；
+ * 周字段中0和7都表示周日。
+ * 日和周字段同时受限时，两者任一匹配即可；以 * 开头的字段（包括带步长的 *）视为不受限（与Vixie cron一致）。
+ */
+public class CronExpression {
+
+    private final String expression;
+    private final BitSet minutes;
+    private final BitSet hours;
+    private final BitSet daysOfMonth;
+    private final BitSet months;
+    private final BitSet daysOfWeek;
+    private final boolean dayOfMonthRestricted;
+    private final boolean dayOfWeekRestricted;
+
+    private CronExpression(String expression, String[] fields) {
+        this.expression = expression;
+        this.minutes = parseField(fields[0], 0, 59);
+        this.hours = parseField(fields[1], 0, 23);
+        this.daysOfMonth = parseField(fields[2], 1, 31);
+        this.months = parseField(fields[3], 1, 12);
+        BitSet dow = parseField(fields[4], 0, 7);
+        if (dow.get(7)) {
+            dow.set(0);
+            dow.clear(7);
+        }
+        this.daysOfWeek = dow;
+        this.dayOfMonthRestricted = !fields[2].startsWith("*");
+        this.dayOfWeekRestricted = !fields[4].startsWith("*");
+    }
+
+    /**
+     * 解析表达式，格式错误时抛出IllegalArgumentException
+     */
+    public static CronExpression parse(String expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("Cron expression is required");
+        }
+        String[] fields = expression.trim().split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Cron expression must have 5 fields: " + expression);
+        }
+        return new CronExpression(expression.trim(), fields);
+    }
+
+    /**
+     * 严格晚于 after 的下一个触发时间（精确到分钟）
+     */
+    public ZonedDateTime next(ZonedDateTime after) {
+        ZonedDateTime time = after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        ZonedDateTime limit = time.plusYears(5);
+
+        while (time.isBefore(limit)) {
+            if (!months.get(time.getMonthValue())) {
+                time = time.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+                continue;
+            }
+            if (!dayMatches(time)) {
+                time = time.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+                continue;
+            }
+            if (!hours.get(time.getHour())) {
+                time = time.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+                continue;
+            }
+            if (!minutes.get(time.getMinute())) {
+                time = time.plusMinutes(1);
+                continue;
+            }
+            return time;
+        }
+        throw new IllegalArgumentException("Cron expression never fires: " + expression);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private boolean dayMatches(ZonedDateTime time) {
+        boolean domMatch = daysOfMonth.get(time.getDayOfMonth());
+        boolean dowMatch = daysOfWeek.get(time.getDayOfWeek().getValue() % 7);
+        if (dayOfMonthRestricted && dayOfWeekRestricted) {
+            return domMatch || dowMatch;
+        }
+        return domMatch && dowMatch;
+    }
+
+    private static BitSet parseField(String field, int min, int max) {
+        BitSet bits = new BitSet(max + 1);
+        for (String part : field.split(",")) {
+            int step = 1;
+            String range = part;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseNumber(part.substring(slash + 1), 1, Integer.MAX_VALUE, field);
+                range = part.substring(0, slash);
+            }
+
+            int start;
+            int end;
+            if ("*".equals(range)) {
+                start = min;
+                end = max;
+            } else if (range.contains("-")) {
+                String[] bounds = range.split("-", 2);
+                start = parseNumber(bounds[0], min, max, field);
+                end = parseNumber(bounds[1], min, max, field);
+                if (start > end) {
+                    throw new IllegalArgumentException("Invalid range in cron field: " + field);
+                }
+            } else {
+                start = parseNumber(range, min, max, field);
+                // 单个数字带步长（如 5/15）表示从该值开始到最大值
+                end = slash >= 0 ? max : start;
+            }
+
+            // 步长可以超过字段范围，用long避免 i += step 溢出
+            for (long i = start; i <= end; i += step) {
+                bits.set((int) i);
+            }
+        }
+        return bits;
+    }
+
+    private static int parseNumber(String value, int min, int max, String field) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number < min || number > max) {
+                throw new IllegalArgumentException("Value " + number + " out of range in cron field: " + field);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cron field: " + field);
+        }
+    }
+}
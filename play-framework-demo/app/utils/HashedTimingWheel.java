@@ -0,0 +1,175 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 哈希时间轮
+ * 时间按 tickMillis 划分为刻度，到期刻度对 wheelSize 取模决定所在的槽，每个槽是一个双向链表，
+ * 因此插入和取消都是 O(1)；推进时只扫描经过的槽，到期刻度未到的条目（相差整数圈）留在原槽中。
+ * 非线程安全，由单个Actor驱动（定期调用 advance）。
+ */
+public class HashedTimingWheel<T> {
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final Slot<T>[] slots;
+    private final int mask;
+
+    // 下一个待处理的刻度
+    private long currentTick = 0;
+    private int size = 0;
+
+    /**
+     * @param tickMillis  刻度长度，决定触发精度
+     * @param wheelSize   槽数量，会向上取整为2的幂
+     * @param startMillis 第0个刻度对应的时间
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMillis and wheelSize must be positive");
+        }
+        int normalized = Integer.highestOneBit(wheelSize);
+        if (normalized < wheelSize) {
+            normalized <<= 1;
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.slots = new Slot[normalized];
+        for (int i = 0; i < normalized; i++) {
+            slots[i] = new Slot<>();
+        }
+        this.mask = normalized - 1;
+    }
+
+    /**
+     * 加入一个在 deadlineMillis 到期的条目，已经过期的条目在下一次推进时触发
+     */
+    public Timeout<T> schedule(T payload, long deadlineMillis) {
+        long deadlineTick = Math.max(ceilDiv(deadlineMillis - startMillis, tickMillis), currentTick);
+        Timeout<T> timeout = new Timeout<>(payload, deadlineMillis, deadlineTick);
+        slots[(int) (deadlineTick & mask)].add(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * 取消条目，已触发或已取消时返回false
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        if (timeout.slot == null) {
+            return false;
+        }
+        timeout.slot.remove(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * 推进到 nowMillis，返回期间到期的条目
+     */
+    public List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        long targetTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        if (targetTick < currentTick) {
+            return expired;
+        }
+
+        // 间隔超过一圈时每个槽只需扫描一次
+        long lastTick = Math.min(targetTick, currentTick + slots.length - 1);
+        for (long tick = currentTick; tick <= lastTick; tick++) {
+            Slot<T> slot = slots[(int) (tick & mask)];
+            Timeout<T> timeout = slot.head;
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                if (timeout.deadlineTick <= targetTick) {
+                    slot.remove(timeout);
+                    size--;
+                    expired.add(timeout.payload);
+                }
+                timeout = next;
+            }
+        }
+        currentTick = targetTick + 1;
+        return expired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return -Math.floorDiv(-a, b);
+    }
+
+    /**
+     * 时间轮中的条目句柄
+     */
+    public static final class Timeout<T> {
+        private final T payload;
+        private final long deadlineMillis;
+        private final long deadlineTick;
+
+        private Slot<T> slot;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T payload, long deadlineMillis, long deadlineTick) {
+            this.payload = payload;
+            this.deadlineMillis = deadlineMillis;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        /**
+         * 仍在时间轮中（未触发且未取消）
+         */
+        public boolean isPending() {
+            return slot != null;
+        }
+    }
+
+    private static final class Slot<T> {
+        private Timeout<T> head;
+        private Timeout<T> tail;
+
+        void add(Timeout<T> timeout) {
+            timeout.slot = this;
+            timeout.prev = tail;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout<T> timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.slot = null;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的运行指标注册表
+ * 计数器基于LongAdder，瞬时值基于AtomicLong，耗时分布使用LatencyHistogram；
+ * 记录方（如TaskManagerActor）在自己的线程上更新，读取方（/metrics）直接读取，无需给Actor发消息。
+ * 同名同标签的指标只创建一次，记录方应缓存返回的指标对象，避免每次查找。
+ * 线程安全
+ */
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    /**
+     * 单调递增的计数器
+     */
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * 瞬时值
+     */
+    public static final class Gauge {
+        private final AtomicLong value = new AtomicLong();
+
+        public void set(long newValue) {
+            value.set(newValue);
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * 耗时分布，记录毫秒，按秒导出为Prometheus summary
+     */
+    public static final class Timer {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        public void recordMillis(long millis) {
+            histogram.record(millis);
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+    }
+
+    private static final class Family {
+        final String type;
+        final String help;
+        // 标签（已格式化为 k="v",...）-> 指标，按标签排序导出
+        final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+        Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param labels 标签名和值交替排列，例如 "task_type", "REPORT_GENERATION"
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, "counter", help).metrics.computeIfAbsent(formatLabels(labels), l -> new Counter());
+    }
+
+    public Gauge gauge(String name, String help, String... labels) {
+        return (Gauge) family(name, "gauge", help).metrics.computeIfAbsent(formatLabels(labels), l -> new Gauge());
+    }
+
+    public Timer timer(String name, String help, String... labels) {
+        return (Timer) family(name, "summary", help).metrics.computeIfAbsent(formatLabels(labels), l -> new Timer());
+    }
+
+    /**
+     * 以Prometheus文本格式（0.0.4）导出所有指标
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+                String labels = metric.getKey();
+                Object value = metric.getValue();
+                if (value instanceof Counter) {
+                    sample(out, name, labels, Long.toString(((Counter) value).get()));
+                } else if (value instanceof Gauge) {
+                    sample(out, name, labels, Long.toString(((Gauge) value).get()));
+                } else {
+                    LatencyHistogram histogram = ((Timer) value).getHistogram();
+                    for (double quantile : QUANTILES) {
+                        String quantileLabel = "quantile=\"" + quantile + "\"";
+                        sample(out, name, labels.isEmpty() ? quantileLabel : labels + "," + quantileLabel,
+                                seconds(histogram.valueAt(quantile)));
+                    }
+                    sample(out, name + "_sum", labels, seconds(histogram.getSum()));
+                    sample(out, name + "_count", labels, Long.toString(histogram.getCount()));
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private Family family(String name, String type, String help) {
+        Family family = families.computeIfAbsent(name, n -> new Family(type, help));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long millis) {
+        return Double.toString(millis / 1000.0);
+    }
+
+    private static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        StringBuilder formatted = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                formatted.append(',');
+            }
+            String value = labels[i + 1] != null ? labels[i + 1] : "";
+            formatted.append(labels[i]).append("=\"")
+                    .append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return formatted.toString();
+    }
+}
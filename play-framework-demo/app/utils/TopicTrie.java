@@ -0,0 +1,178 @@
+package utils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 主题订阅前缀树
+ * 主题由"."分隔的段组成（如 tasks.API_CALL.task-1），订阅模式支持两种通配符：
+ * "*" 匹配恰好一段，"#" 匹配零段或多段（如 tasks.# 匹配所有任务事件，tasks.*.task-1 只匹配某个任务）。
+ * 匹配一个主题只访问与其各段相关的节点，耗时与主题段数和命中的通配符分支有关，与订阅总数无关；
+ * 同时按订阅者维护其订阅的模式，订阅者断开时可一次移除全部订阅。
+ * 非线程安全，设计为在单个Actor内部使用。
+ */
+public class TopicTrie<S> {
+
+    public static final String SEPARATOR = ".";
+    public static final String SINGLE_WILDCARD = "*";
+    public static final String MULTI_WILDCARD = "#";
+
+    private final Node<S> root = new Node<>();
+    private final Map<S, Set<String>> patternsBySubscriber = new HashMap<>();
+    private int subscriptionCount = 0;
+
+    /**
+     * 订阅模式，返回是否为新增的订阅
+     */
+    public boolean subscribe(String pattern, S subscriber) {
+        if (!isValidPattern(pattern)) {
+            throw new IllegalArgumentException("Invalid topic pattern: " + pattern);
+        }
+        Node<S> node = root;
+        for (String segment : pattern.split("\\.", -1)) {
+            node = node.children.computeIfAbsent(segment, s -> new Node<>());
+        }
+        if (!node.subscribers.add(subscriber)) {
+            return false;
+        }
+        patternsBySubscriber.computeIfAbsent(subscriber, s -> new HashSet<>()).add(pattern);
+        subscriptionCount++;
+        return true;
+    }
+
+    /**
+     * 取消订阅模式，返回该订阅是否存在
+     */
+    public boolean unsubscribe(String pattern, S subscriber) {
+        Set<String> patterns = patternsBySubscriber.get(subscriber);
+        if (patterns == null || !patterns.remove(pattern)) {
+            return false;
+        }
+        if (patterns.isEmpty()) {
+            patternsBySubscriber.remove(subscriber);
+        }
+        remove(root, pattern.split("\\.", -1), 0, subscriber);
+        subscriptionCount--;
+        return true;
+    }
+
+    /**
+     * 取消订阅者的全部订阅，返回被移除的模式
+     */
+    public Set<String> unsubscribeAll(S subscriber) {
+        Set<String> patterns = patternsBySubscriber.remove(subscriber);
+        if (patterns == null) {
+            return Collections.emptySet();
+        }
+        for (String pattern : patterns) {
+            remove(root, pattern.split("\\.", -1), 0, subscriber);
+        }
+        subscriptionCount -= patterns.size();
+        return patterns;
+    }
+
+    /**
+     * 返回订阅了匹配该主题的模式的订阅者（每个订阅者只出现一次）
+     */
+    public Set<S> match(String topic) {
+        Set<S> result = new HashSet<>();
+        collect(root, topic.split("\\.", -1), 0, result);
+        return result;
+    }
+
+    /**
+     * 订阅者当前订阅的模式
+     */
+    public Set<String> patternsOf(S subscriber) {
+        Set<String> patterns = patternsBySubscriber.get(subscriber);
+        return patterns == null ? Collections.emptySet() : Collections.unmodifiableSet(patterns);
+    }
+
+    /**
+     * 订阅总数（订阅者与模式的组合数）
+     */
+    public int size() {
+        return subscriptionCount;
+    }
+
+    /**
+     * 有订阅的订阅者数
+     */
+    public int subscriberCount() {
+        return patternsBySubscriber.size();
+    }
+
+    /**
+     * 模式非空，各段非空，通配符只能独占一段
+     */
+    public static boolean isValidPattern(String pattern) {
+        if (pattern == null || pattern.isEmpty()) {
+            return false;
+        }
+        for (String segment : pattern.split("\\.", -1)) {
+            if (segment.isEmpty()) {
+                return false;
+            }
+            if (segment.length() > 1 && (segment.contains(SINGLE_WILDCARD) || segment.contains(MULTI_WILDCARD))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 发布用的主题：合法模式且不含通配符
+     */
+    public static boolean isValidTopic(String topic) {
+        return isValidPattern(topic) && !topic.contains(SINGLE_WILDCARD) && !topic.contains(MULTI_WILDCARD);
+    }
+
+    private void collect(Node<S> node, String[] segments, int index, Set<S> result) {
+        if (index == segments.length) {
+            result.addAll(node.subscribers);
+        } else {
+            Node<S> exact = node.children.get(segments[index]);
+            if (exact != null) {
+                collect(exact, segments, index + 1, result);
+            }
+            Node<S> single = node.children.get(SINGLE_WILDCARD);
+            if (single != null) {
+                collect(single, segments, index + 1, result);
+            }
+        }
+        // "#" 可以吞掉剩余的零到多段
+        Node<S> multi = node.children.get(MULTI_WILDCARD);
+        if (multi != null) {
+            for (int next = index; next <= segments.length; next++) {
+                collect(multi, segments, next, result);
+            }
+        }
+    }
+
+    /**
+     * 沿模式路径移除订阅者，并回收不再有订阅和子节点的节点，返回当前节点是否可回收
+     */
+    private boolean remove(Node<S> node, String[] segments, int index, S subscriber) {
+        if (index == segments.length) {
+            node.subscribers.remove(subscriber);
+        } else {
+            Node<S> child = node.children.get(segments[index]);
+            if (child != null && remove(child, segments, index + 1, subscriber)) {
+                node.children.remove(segments[index]);
+            }
+        }
+        return node.isEmpty();
+    }
+
+    private static final class Node<S> {
+        private final Map<String, Node<S>> children = new HashMap<>();
+        private final Set<S> subscribers = new HashSet<>();
+
+        private boolean isEmpty() {
+            return children.isEmpty() && subscribers.isEmpty();
+        }
+    }
+}
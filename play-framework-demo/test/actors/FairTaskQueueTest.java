@@ -0,0 +1,128 @@
+package actors;
+
+import models.Task;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * FairTaskQueue单元测试
+ * 测试租户间的差额轮询、权重、租户内的优先级和老化
+ */
+public class FairTaskQueueTest {
+
+    private static Task task(String id, String tenant, Task.TaskPriority priority) {
+        Task task = new Task(id, id, "DEFAULT", "data", priority);
+        task.setTenant(tenant);
+        return task;
+    }
+
+    private static List<String> drain(FairTaskQueue queue) {
+        List<String> order = new ArrayList<>();
+        Task task;
+        while ((task = queue.poll()) != null) {
+            order.add(task.getTaskId());
+        }
+        return order;
+    }
+
+    @Test
+    public void testFloodingTenantDoesNotStarveOthers() {
+        // Given: 租户a先提交了大量URGENT任务，随后b提交一个LOW任务
+        FairTaskQueue queue = new FairTaskQueue(0, Collections.emptyMap());
+        for (int i = 0; i < 100; i++) {
+            queue.offer(task("a-" + i, "a", Task.TaskPriority.URGENT), 0);
+        }
+        queue.offer(task("b-0", "b", Task.TaskPriority.LOW), 0);
+
+        // When
+        List<String> order = drain(queue);
+
+        // Then: b的任务在第二个出队，而不是排在a的100个任务之后
+        assertEquals(101, order.size());
+        assertEquals("a-0", order.get(0));
+        assertEquals("b-0", order.get(1));
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.tenantCount());
+    }
+
+    @Test
+    public void testWeightsAndPriorityWithinTenant() {
+        // Given: a的权重为2
+        FairTaskQueue queue = new FairTaskQueue(0, Collections.singletonMap("a", 2));
+        queue.offer(task("a-low", "a", Task.TaskPriority.LOW), 0);
+        queue.offer(task("a-high", "a", Task.TaskPriority.HIGH), 1);
+        queue.offer(task("a-normal", "a", Task.TaskPriority.NORMAL), 2);
+        queue.offer(task("b-1", "b", Task.TaskPriority.NORMAL), 3);
+        queue.offer(task("b-2", "b", Task.TaskPriority.NORMAL), 4);
+
+        // When
+        List<String> order = drain(queue);
+
+        // Then: 每轮a出队两个、b出队一个；租户内按优先级，同优先级先进先出
+        assertEquals(java.util.Arrays.asList("a-high", "a-normal", "b-1", "a-low", "b-2"), order);
+    }
+
+    @Test
+    public void testAgingLetsOldLowPriorityTaskOvertakeNewerUrgentTasks() {
+        // Given: 老化间隔1秒，LOW任务在t=0入队，URGENT任务在t=5s入队
+        FairTaskQueue queue = new FairTaskQueue(1000, Collections.emptyMap());
+        queue.offer(task("old-low", null, Task.TaskPriority.LOW), 0);
+        queue.offer(task("fresh-urgent", null, Task.TaskPriority.URGENT), 5000);
+        queue.offer(task("recent-urgent", null, Task.TaskPriority.URGENT), 1000);
+
+        // Then: LOW已等待超过3个老化间隔，排在新到的URGENT之前，但不超过更早的URGENT
+        assertEquals(java.util.Arrays.asList("recent-urgent", "old-low", "fresh-urgent"), drain(queue));
+    }
+
+    @Test
+    public void testCancelledTasksAreSkipped() {
+        // Given
+        FairTaskQueue queue = new FairTaskQueue(0, Collections.emptyMap());
+        Task cancelled = task("a-0", "a", Task.TaskPriority.HIGH);
+        queue.offer(cancelled, 0);
+        queue.offer(task("a-1", "a", Task.TaskPriority.NORMAL), 0);
+        queue.offer(task("b-0", "b", Task.TaskPriority.NORMAL), 0);
+
+        // When
+        cancelled.setStatus(Task.TaskStatus.CANCELLED);
+        queue.markCancelled();
+
+        // Then
+        assertEquals(2, queue.size());
+        assertEquals(java.util.Arrays.asList("a-1", "b-0"), drain(queue));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testPausedTypeKeepsItsPlaceAndCapacity() {
+        // Given: 同一租户的两种类型，API_CALL暂停派发
+        FairTaskQueue queue = new FairTaskQueue(0, Collections.emptyMap());
+        Task api = new Task("api-0", "api", "API_CALL", "data", Task.TaskPriority.URGENT);
+        Task cancelled = new Task("api-1", "api", "API_CALL", "data", Task.TaskPriority.NORMAL);
+        queue.offer(api, 0);
+        queue.offer(cancelled, 1);
+        queue.offer(task("default-0", "a", Task.TaskPriority.LOW), 2);
+
+        // When
+        Task first = queue.poll(t -> "API_CALL".equals(t.getTaskType()));
+
+        // Then: 只派发未暂停的类型，搁置的任务仍计入队列大小
+        assertEquals("default-0", first.getTaskId());
+        assertNull(queue.poll(t -> "API_CALL".equals(t.getTaskType())));
+        assertEquals(2, queue.size());
+
+        // When: 搁置期间取消一个任务后恢复派发
+        cancelled.setStatus(Task.TaskStatus.CANCELLED);
+        queue.markCancelled();
+        assertEquals(1, queue.resume("API_CALL"));
+
+        // Then
+        assertEquals(Collections.singletonList("api-0"), drain(queue));
+        assertEquals(0, queue.size());
+    }
+}
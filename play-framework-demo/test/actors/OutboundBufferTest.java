@@ -0,0 +1,94 @@
+package actors;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * OutboundBuffer单元测试
+ * 测试三种溢出策略：丢弃最早、按主题合并和断开
+ */
+public class OutboundBufferTest {
+
+    private static final TaskSystemSettings.WebSocketSettings.OverflowStrategy DROP_OLDEST =
+            TaskSystemSettings.WebSocketSettings.OverflowStrategy.DROP_OLDEST;
+    private static final TaskSystemSettings.WebSocketSettings.OverflowStrategy CONFLATE =
+            TaskSystemSettings.WebSocketSettings.OverflowStrategy.CONFLATE;
+    private static final TaskSystemSettings.WebSocketSettings.OverflowStrategy DISCONNECT =
+            TaskSystemSettings.WebSocketSettings.OverflowStrategy.DISCONNECT;
+
+    private static List<Object> drain(OutboundBuffer buffer) {
+        List<Object> messages = new ArrayList<>();
+        Object message;
+        while ((message = buffer.poll()) != null) {
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    @Test
+    public void testDropOldestKeepsNewestFrames() {
+        // Given
+        OutboundBuffer buffer = new OutboundBuffer(2, DROP_OLDEST);
+
+        // When
+        assertEquals(OutboundBuffer.Offer.QUEUED, buffer.offer("a", null));
+        assertEquals(OutboundBuffer.Offer.QUEUED, buffer.offer("b", null));
+        assertEquals(OutboundBuffer.Offer.DROPPED_OLDEST, buffer.offer("c", null));
+
+        // Then
+        assertEquals(2, buffer.size());
+        assertEquals(List.of("b", "c"), drain(buffer));
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testConflateKeepsLatestFramePerTopicInPlace() {
+        // Given
+        OutboundBuffer buffer = new OutboundBuffer(3, CONFLATE);
+        buffer.offer("task-1 v1", "tasks.API_CALL.task-1");
+        buffer.offer("chat", null);
+        buffer.offer("task-2 v1", "tasks.API_CALL.task-2");
+
+        // When - newer frames for buffered topics replace the old ones
+        assertEquals(OutboundBuffer.Offer.CONFLATED, buffer.offer("task-1 v2", "tasks.API_CALL.task-1"));
+        assertEquals(OutboundBuffer.Offer.CONFLATED, buffer.offer("task-2 v2", "tasks.API_CALL.task-2"));
+        // A new topic on a full buffer still drops the oldest frame
+        assertEquals(OutboundBuffer.Offer.DROPPED_OLDEST, buffer.offer("task-3 v1", "tasks.API_CALL.task-3"));
+        // The dropped topic is no longer conflated
+        assertEquals(OutboundBuffer.Offer.DROPPED_OLDEST, buffer.offer("task-1 v3", "tasks.API_CALL.task-1"));
+
+        // Then
+        assertEquals(List.of("task-2 v2", "task-3 v1", "task-1 v3"), drain(buffer));
+    }
+
+    @Test
+    public void testDisconnectReportsOverflowWithoutQueueing() {
+        // Given
+        OutboundBuffer buffer = new OutboundBuffer(1, DISCONNECT);
+        assertEquals(OutboundBuffer.Offer.QUEUED, buffer.offer("a", "topic"));
+
+        // When / Then - disconnect strategy never conflates or drops
+        assertEquals(OutboundBuffer.Offer.OVERFLOW, buffer.offer("b", "topic"));
+        assertEquals(1, buffer.size());
+        assertEquals("a", buffer.poll());
+    }
+
+    @Test
+    public void testOverflowStrategyFromConfigValue() {
+        assertEquals(DROP_OLDEST,
+                TaskSystemSettings.WebSocketSettings.OverflowStrategy.fromConfigValue("drop-oldest"));
+        assertEquals(CONFLATE,
+                TaskSystemSettings.WebSocketSettings.OverflowStrategy.fromConfigValue("CONFLATE"));
+        assertEquals(DISCONNECT,
+                TaskSystemSettings.WebSocketSettings.OverflowStrategy.fromConfigValue("disconnect"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownOverflowStrategyIsRejected() {
+        TaskSystemSettings.WebSocketSettings.OverflowStrategy.fromConfigValue("drop-newest");
+    }
+}
@@ -0,0 +1,89 @@
+package actors;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+/**
+ * PoolAutoscaler单元测试
+ * 测试基于队列深度和执行时间的扩缩容决策及迟滞
+ */
+public class PoolAutoscalerTest {
+
+    private static final long INTERVAL_MILLIS = 1000;
+
+    private PoolAutoscaler newAutoscaler(int min, int max) {
+        TaskSystemSettings.PoolSettings pool = new TaskSystemSettings.PoolSettings(
+                "DATA_PROCESSING", min, min, max, 1, 1000, TaskSystemSettings.SHARED_BLOCKING_DISPATCHER);
+        TaskSystemSettings.AutoscalingSettings settings = new TaskSystemSettings.AutoscalingSettings(
+                true, Duration.ofMillis(INTERVAL_MILLIS), 2, 3, Duration.ofSeconds(5), 1.0);
+        return new PoolAutoscaler(pool, settings);
+    }
+
+    @Test
+    public void testScaleUpRequiresConsecutiveTicks() {
+        // Given - one 1s task completes per tick, with a backlog of 20 tasks
+        PoolAutoscaler autoscaler = newAutoscaler(1, 10);
+
+        // When / Then - first tick is absorbed by hysteresis
+        autoscaler.recordCompletion(1000);
+        assertEquals(1, autoscaler.evaluate(1, 20, INTERVAL_MILLIS));
+
+        // Second consecutive tick scales up: 1 task/s load + 20 tasks * 1s / 5s = 5 workers
+        autoscaler.recordCompletion(1000);
+        assertEquals(5, autoscaler.evaluate(1, 20, INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void testScaleUpIsClampedToMaxWorkers() {
+        // Given
+        PoolAutoscaler autoscaler = newAutoscaler(1, 4);
+        autoscaler.recordCompletion(2000);
+
+        // When
+        autoscaler.evaluate(1, 1000, INTERVAL_MILLIS);
+        int target = autoscaler.evaluate(1, 1000, INTERVAL_MILLIS);
+
+        // Then
+        assertEquals(4, target);
+    }
+
+    @Test
+    public void testScaleDownOneWorkerAtATimeWhenIdle() {
+        // Given - a pool with 4 workers and no load
+        PoolAutoscaler autoscaler = newAutoscaler(1, 8);
+        autoscaler.recordCompletion(100);
+        autoscaler.evaluate(4, 0, INTERVAL_MILLIS);
+
+        // When - idle for scale-down-after ticks
+        assertEquals(4, autoscaler.evaluate(4, 0, INTERVAL_MILLIS));
+        int target = autoscaler.evaluate(4, 0, INTERVAL_MILLIS);
+
+        // Then - shrink by a single worker
+        assertEquals(3, target);
+    }
+
+    @Test
+    public void testNoScaleDownWhileBacklogExists() {
+        // Given
+        PoolAutoscaler autoscaler = newAutoscaler(1, 8);
+        autoscaler.recordCompletion(10);
+
+        // When - tiny backlog that would not justify 4 workers
+        for (int i = 0; i < 5; i++) {
+            assertEquals(4, autoscaler.evaluate(4, 1, INTERVAL_MILLIS));
+        }
+    }
+
+    @Test
+    public void testNoSamplesStaysAtMinimumWithoutBacklog() {
+        // Given
+        PoolAutoscaler autoscaler = newAutoscaler(2, 8);
+
+        // When / Then
+        assertEquals(2, autoscaler.evaluate(2, 0, INTERVAL_MILLIS));
+        assertEquals(2, autoscaler.evaluate(2, 0, INTERVAL_MILLIS));
+    }
+}
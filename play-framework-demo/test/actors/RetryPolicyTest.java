@@ -0,0 +1,74 @@
+package actors;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+/**
+ * RetryPolicy单元测试
+ * 测试指数退避的上下界、抖动范围和重试预算
+ */
+public class RetryPolicyTest {
+
+    private static RetryPolicy newPolicy(double jitter, double ratio, double minPerSecond, int maxTokens) {
+        TaskSystemSettings.RetrySettings settings = new TaskSystemSettings.RetrySettings(
+                Duration.ofMillis(100), Duration.ofSeconds(2), 2.0, jitter,
+                ratio, minPerSecond, maxTokens, 5, Duration.ofSeconds(30));
+        return new RetryPolicy(settings, 0);
+    }
+
+    @Test
+    public void testBackoffGrowsExponentiallyUpToMax() {
+        // Given - no jitter
+        RetryPolicy policy = newPolicy(0.0, 0.2, 1.0, 100);
+
+        // Then
+        assertEquals(100, policy.backoffMillis(1, 0.7));
+        assertEquals(200, policy.backoffMillis(2, 0.7));
+        assertEquals(800, policy.backoffMillis(4, 0.7));
+        assertEquals(2000, policy.backoffMillis(6, 0.7));
+        assertEquals(2000, policy.backoffMillis(50, 0.7));
+    }
+
+    @Test
+    public void testJitterStaysWithinBounds() {
+        // Given - jitter 0.5 spreads the third retry (400ms) over [200, 400]
+        RetryPolicy policy = newPolicy(0.5, 0.2, 1.0, 100);
+
+        // Then
+        assertEquals(400, policy.backoffMillis(3, 0.0));
+        assertEquals(300, policy.backoffMillis(3, 0.5));
+        long lowest = policy.backoffMillis(3, 0.999999);
+        assertTrue(lowest >= 200 && lowest < 400);
+    }
+
+    @Test
+    public void testBudgetLimitsRetriesToRatioOfFirstAttempts() {
+        // Given - no time-based refill, 0.5 token per first attempt
+        RetryPolicy policy = newPolicy(0.0, 0.5, 0.0, 100);
+
+        // When - 4 first attempts deposit 2 tokens
+        for (int i = 0; i < 4; i++) {
+            policy.recordFirstAttempt();
+        }
+
+        // Then
+        assertTrue(policy.tryAcquireRetry(0));
+        assertTrue(policy.tryAcquireRetry(0));
+        assertFalse(policy.tryAcquireRetry(0));
+    }
+
+    @Test
+    public void testBudgetRefillsOverTimeAndIsCapped() {
+        // Given - starts with min-per-second tokens, capped at 3
+        RetryPolicy policy = newPolicy(0.0, 0.0, 1.0, 3);
+        assertTrue(policy.tryAcquireRetry(0));
+        assertFalse(policy.tryAcquireRetry(0));
+
+        // When / Then - one token per second, never more than max-tokens
+        assertTrue(policy.tryAcquireRetry(1000));
+        assertEquals(3.0, policy.availableTokens(60_000), 0.0001);
+    }
+}
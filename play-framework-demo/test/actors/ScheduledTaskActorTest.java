@@ -2,6 +2,7 @@ package actors;
 
 import akka.actor.ActorSystem;
 import akka.testkit.javadsl.TestKit;
+import models.Task;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -172,4 +173,120 @@ public class ScheduledTaskActorTest {
             system.stop(scheduledRef);
         }};
     }
+
+    @Test
+    public void testDelayedTaskReleasedToTaskManager() {
+        new TestKit(system) {{
+            // Given - 用探针充当任务管理器
+            TestKit taskManager = new TestKit(system);
+            final akka.actor.ActorRef scheduledRef = system.actorOf(ScheduledTaskActor.props(
+                    taskManager.getRef(),
+                    new TaskSystemSettings.SchedulerSettings(Duration.ofMillis(10), 64)));
+            Task task = new Task("delayed-1", "Delayed", "DEFAULT", "data", Task.TaskPriority.NORMAL);
+
+            // When
+            scheduledRef.tell(new TaskMessage.ScheduleTask(task, System.currentTimeMillis() + 300, null), getRef());
+
+            // Then - 登记后立即回复，到期前不提交
+            TaskMessage.TaskScheduled scheduled = expectMsgClass(TaskMessage.TaskScheduled.class);
+            assertEquals("delayed-1", scheduled.getTaskId());
+            taskManager.expectNoMessage(Duration.ofMillis(150));
+            Task released = taskManager.expectMsgClass(Duration.ofSeconds(2), Task.class);
+            assertEquals("delayed-1", released.getTaskId());
+
+            system.stop(scheduledRef);
+        }};
+    }
+
+    @Test
+    public void testRelativeTimeoutStartsWhenDelayedTaskIsReleased() {
+        new TestKit(system) {{
+            // Given - a 500ms delay with a 200ms timeout
+            TestKit taskManager = new TestKit(system);
+            final akka.actor.ActorRef scheduledRef = system.actorOf(ScheduledTaskActor.props(
+                    taskManager.getRef(),
+                    new TaskSystemSettings.SchedulerSettings(Duration.ofMillis(10), 64)));
+            Task task = new Task("delayed-timeout", "Delayed", "DEFAULT", "data", Task.TaskPriority.NORMAL);
+            task.setTimeoutMillis(200);
+
+            // When
+            scheduledRef.tell(new TaskMessage.ScheduleTask(task, System.currentTimeMillis() + 500, null), getRef());
+            expectMsgClass(TaskMessage.TaskScheduled.class);
+            Task released = taskManager.expectMsgClass(Duration.ofSeconds(2), Task.class);
+
+            // Then - the deadline lies after the release, not 200ms after submission
+            java.time.LocalDateTime now = java.time.LocalDateTime.now();
+            assertNotNull(released.getDeadline());
+            assertFalse(released.isDeadlineExceeded(now));
+            assertTrue(released.getDeadline().isBefore(now.plusNanos(250_000_000L)));
+
+            system.stop(scheduledRef);
+        }};
+    }
+
+    @Test
+    public void testCancelSchedule() {
+        new TestKit(system) {{
+            // Given
+            TestKit taskManager = new TestKit(system);
+            final akka.actor.ActorRef scheduledRef = system.actorOf(ScheduledTaskActor.props(
+                    taskManager.getRef(),
+                    new TaskSystemSettings.SchedulerSettings(Duration.ofMillis(10), 64)));
+            Task task = new Task("delayed-2", "Delayed", "DEFAULT", "data", Task.TaskPriority.NORMAL);
+            scheduledRef.tell(new TaskMessage.ScheduleTask(task, System.currentTimeMillis() + 300, null), getRef());
+            TaskMessage.TaskScheduled scheduled = expectMsgClass(TaskMessage.TaskScheduled.class);
+
+            // When
+            scheduledRef.tell(new TaskMessage.CancelSchedule(scheduled.getScheduleId()), getRef());
+
+            // Then
+            assertEquals("CANCELLED", expectMsgClass(TaskMessage.TaskStatusResponse.class).getStatus());
+            taskManager.expectNoMessage(Duration.ofMillis(600));
+            scheduledRef.tell(new TaskMessage.CancelSchedule(scheduled.getScheduleId()), getRef());
+            assertEquals("NOT_FOUND", expectMsgClass(TaskMessage.TaskStatusResponse.class).getStatus());
+
+            system.stop(scheduledRef);
+        }};
+    }
+
+    @Test
+    public void testInvalidCronReplyFailure() {
+        new TestKit(system) {{
+            // Given
+            final akka.actor.ActorRef scheduledRef = system.actorOf(ScheduledTaskActor.props());
+            Task task = new Task("cron-1", "Cron", "DEFAULT", "data", Task.TaskPriority.NORMAL);
+
+            // When
+            scheduledRef.tell(new TaskMessage.ScheduleTask(task, null, "not a cron"), getRef());
+
+            // Then
+            expectMsgClass(akka.actor.Status.Failure.class);
+        }};
+    }
+
+    @Test
+    public void testCronRunCopiesEveryTaskOption() {
+        // Given
+        Task template = new Task("cron-template", "Cron", "NOTIFICATION", "data", Task.TaskPriority.HIGH);
+        template.setMaxRetries(5);
+        template.setTenant("tenant-a");
+        template.setCoalesce(true);
+        template.setIdempotencyKey("nightly");
+        template.setTimeoutMillis(30_000);
+        java.time.LocalDateTime runAt = java.time.LocalDateTime.of(2024, 1, 1, 8, 0);
+
+        // When
+        Task run = ScheduledTaskActor.copyForRun(template, 3, runAt);
+
+        // Then - options carried over, key and deadline are per run
+        assertEquals("cron-template-3", run.getTaskId());
+        assertEquals(Task.TaskPriority.HIGH, run.getPriority());
+        assertEquals(5, run.getMaxRetries());
+        assertEquals("tenant-a", run.getTenant());
+        assertTrue(run.isCoalesce());
+        assertEquals("nightly-3", run.getIdempotencyKey());
+        assertEquals(30_000, run.getTimeoutMillis());
+        assertEquals(runAt.plusSeconds(30), run.getDeadline());
+        assertNull(template.getDeadline());
+    }
 }
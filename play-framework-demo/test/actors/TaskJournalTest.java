@@ -0,0 +1,183 @@
+package actors;
+
+import models.Task;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * TaskJournal单元测试
+ * 测试事件重放、快照截断和尾部损坏记录的处理
+ */
+public class TaskJournalTest {
+
+    private Task newTask(String id) {
+        return new Task(id, "Task " + id, "DATA_PROCESSING", "payload-" + id, Task.TaskPriority.HIGH);
+    }
+
+    @Test
+    public void testReplayRebuildsLiveAndTerminalTasks() throws Exception {
+        // Given
+        File dir = Files.createTempDirectory("journal").toFile();
+        TaskJournal journal = new TaskJournal(dir, false);
+        journal.recover();
+
+        Task done = newTask("a");
+        journal.append(done);
+        journal.append(newTask("b"));
+        done.setStatus(Task.TaskStatus.COMPLETED);
+        done.setResult("ok");
+        journal.appendTerminated(done);
+        journal.close();
+
+        // When
+        TaskJournal.Recovery recovery = new TaskJournal(dir, false).recover();
+
+        // Then
+        assertEquals(2, recovery.getReceived());
+        assertEquals(1, recovery.getCompleted());
+        assertEquals(1, recovery.getLiveTasks().size());
+        Task live = recovery.getLiveTasks().get("b");
+        assertEquals("payload-b", live.getTaskData());
+        assertEquals(Task.TaskPriority.HIGH, live.getPriority());
+        assertEquals("ok", recovery.getTerminalTasks().get("a").getResult());
+    }
+
+    @Test
+    public void testSnapshotTruncatesJournal() throws Exception {
+        // Given
+        File dir = Files.createTempDirectory("journal").toFile();
+        TaskJournal journal = new TaskJournal(dir, false);
+        journal.recover();
+        for (int i = 0; i < 100; i++) {
+            journal.append(newTask("old-" + i));
+        }
+        journal.flush();
+
+        // When - snapshot keeps a single live task, then one more event arrives
+        journal.snapshot(Collections.singletonList(newTask("kept")), Collections.<Task>emptyList(), 100, 0, 0);
+        journal.append(newTask("after"));
+        journal.close();
+
+        TaskJournal.Recovery recovery = new TaskJournal(dir, false).recover();
+
+        // Then - only the events after the snapshot are replayed
+        assertEquals(1, recovery.getReplayedEvents());
+        assertEquals(101, recovery.getReceived());
+        assertEquals(2, recovery.getLiveTasks().size());
+        assertTrue(recovery.getLiveTasks().containsKey("kept"));
+        assertTrue(recovery.getLiveTasks().containsKey("after"));
+    }
+
+    @Test
+    public void testEventsAppendedWhileSnapshotIsWrittenAreReplayed() throws Exception {
+        // Given - the segment is rotated, and events keep arriving before the snapshot is written
+        File dir = Files.createTempDirectory("journal").toFile();
+        TaskJournal journal = new TaskJournal(dir, false);
+        journal.recover();
+        journal.append(newTask("before"));
+        long index = journal.rotate();
+        journal.append(newTask("during"));
+        journal.flush();
+
+        // Then - a crash before the snapshot lands still recovers every event
+        TaskJournal.Recovery beforeSnapshot = new TaskJournal(dir, false).recover();
+        assertEquals(2, beforeSnapshot.getLiveTasks().size());
+
+        // When - the snapshot covering the rotated segment is written
+        journal.writeSnapshot(index, Collections.singletonList(newTask("before")), Collections.<Task>emptyList(),
+                Collections.<Task>emptyList(), 1, 0, 0);
+        journal.close();
+        TaskJournal.Recovery recovery = new TaskJournal(dir, false).recover();
+
+        // Then - only the events after the rotation are replayed on top of the snapshot
+        assertEquals(1, recovery.getReplayedEvents());
+        assertEquals(2, recovery.getReceived());
+        assertTrue(recovery.getLiveTasks().containsKey("before"));
+        assertTrue(recovery.getLiveTasks().containsKey("during"));
+    }
+
+    @Test
+    public void testDeadLettersSurviveReplayAndSnapshot() throws Exception {
+        // Given - one task dead-lettered before the snapshot, one after
+        File dir = Files.createTempDirectory("journal").toFile();
+        TaskJournal journal = new TaskJournal(dir, false);
+        journal.recover();
+        Task before = newTask("before");
+        before.setStatus(Task.TaskStatus.FAILED);
+        before.setErrorMessage("boom");
+        journal.snapshot(Collections.<Task>emptyList(), Collections.singletonList(before),
+                Collections.singletonList(before), 1, 0, 1);
+        Task after = newTask("after");
+        journal.append(after);
+        after.setStatus(Task.TaskStatus.FAILED);
+        journal.appendDeadLettered(after);
+        journal.close();
+
+        // When
+        TaskJournal.Recovery recovery = new TaskJournal(dir, false).recover();
+
+        // Then
+        assertEquals(2, recovery.getDeadLetters().size());
+        assertEquals("boom", recovery.getDeadLetters().get("before").getErrorMessage());
+        assertEquals("payload-after", recovery.getDeadLetters().get("after").getTaskData());
+        assertEquals(2, recovery.getFailed());
+        assertTrue(recovery.getLiveTasks().isEmpty());
+    }
+
+    @Test
+    public void testAdoptedAndHandedOffTasksAreReplayedWithoutCounting() throws Exception {
+        // Given - state adopted from another node, and a terminal task handed off again
+        File dir = Files.createTempDirectory("journal").toFile();
+        TaskJournal journal = new TaskJournal(dir, false);
+        journal.recover();
+        Task adopted = newTask("adopted");
+        adopted.setStatus(Task.TaskStatus.COMPLETED);
+        journal.appendAdopted(adopted, false);
+        Task dead = newTask("dead");
+        dead.setStatus(Task.TaskStatus.FAILED);
+        journal.appendAdopted(dead, true);
+        Task moved = newTask("moved");
+        moved.setStatus(Task.TaskStatus.COMPLETED);
+        journal.appendAdopted(moved, false);
+        journal.appendHandedOff(moved);
+        journal.close();
+
+        // When
+        TaskJournal.Recovery recovery = new TaskJournal(dir, false).recover();
+
+        // Then
+        assertTrue(recovery.getTerminalTasks().containsKey("adopted"));
+        assertFalse(recovery.getTerminalTasks().containsKey("moved"));
+        assertEquals("payload-dead", recovery.getDeadLetters().get("dead").getTaskData());
+        assertEquals(0, recovery.getCompleted());
+        assertEquals(0, recovery.getFailed());
+    }
+
+    @Test
+    public void testTornTailRecordIsIgnored() throws Exception {
+        // Given
+        File dir = Files.createTempDirectory("journal").toFile();
+        TaskJournal journal = new TaskJournal(dir, false);
+        journal.recover();
+        journal.append(newTask("a"));
+        journal.append(newTask("b"));
+        journal.close();
+
+        // When - the last record is cut short as if the process crashed mid-write
+        File segment = dir.listFiles((d, name) -> name.endsWith(".journal"))[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 5);
+        }
+        TaskJournal.Recovery recovery = new TaskJournal(dir, false).recover();
+
+        // Then
+        assertEquals(1, recovery.getLiveTasks().size());
+        assertTrue(recovery.getLiveTasks().containsKey("a"));
+    }
+}
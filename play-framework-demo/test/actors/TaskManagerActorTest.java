@@ -7,7 +7,13 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.*;
@@ -397,4 +403,1037 @@ public class TaskManagerActorTest {
             assertEquals(0, stats.get("totalFailed"));
         }};
     }
+
+    @Test
+    public void testPullBasedDispatchHoldsTasksUntilWorkerHasCredit() {
+        new TestKit(system) {{
+            // Given - 1 worker with a single credit
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(1, 1));
+
+            // When - submit more tasks than the worker can hold
+            for (int i = 0; i < 3; i++) {
+                Task task = new Task("pull-task-" + i, "Task " + i,
+                                    "REPORT_GENERATION", "data", Task.TaskPriority.NORMAL);
+                managerRef.tell(task, getRef());
+                expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+            }
+
+            // Then - only one task is handed out, the rest stay in the priority queue
+            awaitAssert(Duration.ofSeconds(3), () -> {
+                managerRef.tell("GET_STATS", getRef());
+                @SuppressWarnings("unchecked")
+                Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+                assertEquals(1, stats.get("inFlightTasks"));
+                assertEquals(2, stats.get("pendingQueueSize"));
+                assertEquals(0, stats.get("availableCredits"));
+                return null;
+            });
+        }};
+    }
+
+    @Test
+    public void testPerTypePoolsIsolateAndBoundQueues() {
+        new TestKit(system) {{
+            // Given - a report pool with 1 worker and a queue bound of 1
+            Map<String, TaskSystemSettings.PoolSettings> pools = new LinkedHashMap<>();
+            pools.put("REPORT_GENERATION", new TaskSystemSettings.PoolSettings(
+                    "REPORT_GENERATION", 1, 1, 1, TaskSystemSettings.SHARED_BLOCKING_DISPATCHER));
+            pools.put(TaskSystemSettings.DEFAULT_POOL, new TaskSystemSettings.PoolSettings(
+                    TaskSystemSettings.DEFAULT_POOL, 1, 1, 100, TaskSystemSettings.SHARED_BLOCKING_DISPATCHER));
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(new TaskSystemSettings(pools)));
+
+            managerRef.tell(new Task("bulkhead-report-0", "Report", "REPORT_GENERATION",
+                    "data", Task.TaskPriority.NORMAL), getRef());
+            assertEquals("ACCEPTED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+
+            // Wait until the first report occupies the only report worker
+            awaitAssert(Duration.ofSeconds(3), () -> {
+                managerRef.tell("GET_STATS", getRef());
+                @SuppressWarnings("unchecked")
+                Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+                assertEquals(1, stats.get("inFlightTasks"));
+                return null;
+            });
+
+            // When - the report queue fills up
+            managerRef.tell(new Task("bulkhead-report-1", "Report", "REPORT_GENERATION",
+                    "data", Task.TaskPriority.NORMAL), getRef());
+            assertEquals("ACCEPTED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+            managerRef.tell(new Task("bulkhead-report-2", "Report", "REPORT_GENERATION",
+                    "data", Task.TaskPriority.NORMAL), getRef());
+
+            // Then - further reports are rejected, other types are unaffected
+            assertEquals("REJECTED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+
+            managerRef.tell(new Task("bulkhead-notification", "Notify", "NOTIFICATION",
+                    "data", Task.TaskPriority.NORMAL), getRef());
+            assertEquals("ACCEPTED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+
+            awaitAssert(Duration.ofSeconds(3), () -> {
+                managerRef.tell(new TaskMessage.QueryTaskStatus("bulkhead-notification"), getRef());
+                assertEquals("COMPLETED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+                return null;
+            });
+        }};
+    }
+
+    @Test
+    public void testEvictedTasksAreArchivedAndStillQueryable() throws Exception {
+        new TestKit(system) {{
+            // Given - only one terminal task is kept in memory, evicted ones go to disk
+            File archiveDir = Files.createTempDirectory("task-archive").toFile();
+            Map<String, TaskSystemSettings.PoolSettings> pools = new LinkedHashMap<>();
+            pools.put(TaskSystemSettings.DEFAULT_POOL, new TaskSystemSettings.PoolSettings(
+                    TaskSystemSettings.DEFAULT_POOL, 1, 1, 100, TaskSystemSettings.SHARED_BLOCKING_DISPATCHER));
+            TaskSystemSettings.RetentionSettings retention = new TaskSystemSettings.RetentionSettings(
+                    1, Duration.ofHours(1), Duration.ofSeconds(10),
+                    new TaskSystemSettings.ArchiveSettings(true, archiveDir.getPath(), 4, 1024 * 1024, 64,
+                            TaskSystemSettings.SHARED_BLOCKING_DISPATCHER));
+            final akka.actor.ActorRef managerRef = system.actorOf(TaskManagerActor.props(
+                    new TaskSystemSettings(pools, TaskSystemSettings.AutoscalingSettings.disabled(), retention)));
+
+            // When - two tasks complete
+            for (int i = 0; i < 2; i++) {
+                managerRef.tell(new Task("retention-" + i, "Notify", "NOTIFICATION",
+                        "data", Task.TaskPriority.NORMAL), getRef());
+                assertEquals("ACCEPTED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+            }
+
+            awaitAssert(Duration.ofSeconds(5), () -> {
+                managerRef.tell("GET_STATS", getRef());
+                @SuppressWarnings("unchecked")
+                Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+                assertEquals(2, stats.get("totalCompleted"));
+                return null;
+            });
+
+            // Then - memory holds a single terminal task
+            managerRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+            assertEquals(1, stats.get("retainedTasks"));
+            assertEquals(1L, stats.get("evictedTasks"));
+
+            // and the evicted one is answered from the archive
+            managerRef.tell(new TaskMessage.QueryTaskStatus("retention-0"), getRef());
+            TaskMessage.TaskStatusResponse archived =
+                    expectMsgClass(Duration.ofSeconds(3), TaskMessage.TaskStatusResponse.class);
+            assertEquals("retention-0", archived.getTaskId());
+            assertEquals("COMPLETED", archived.getStatus());
+        }};
+    }
+
+    @Test
+    public void testAcceptedTasksAreRecoveredFromJournalAfterRestart() throws Exception {
+        new TestKit(system) {{
+            // Given - a journaled manager with a single slow report worker
+            File journalDir = Files.createTempDirectory("task-journal").toFile();
+            Map<String, TaskSystemSettings.PoolSettings> pools = new LinkedHashMap<>();
+            pools.put(TaskSystemSettings.DEFAULT_POOL, new TaskSystemSettings.PoolSettings(
+                    TaskSystemSettings.DEFAULT_POOL, 1, 1, 100, TaskSystemSettings.SHARED_BLOCKING_DISPATCHER));
+            TaskSystemSettings settings = new TaskSystemSettings(pools,
+                    TaskSystemSettings.AutoscalingSettings.disabled(),
+                    TaskSystemSettings.RetentionSettings.defaults(),
+                    new TaskSystemSettings.JournalSettings(true, journalDir.getPath(), true, 16, 2));
+            akka.actor.ActorRef first = system.actorOf(TaskManagerActor.props(settings));
+
+            for (int i = 0; i < 3; i++) {
+                first.tell(new Task("journal-" + i, "Report", "REPORT_GENERATION",
+                        "data", Task.TaskPriority.NORMAL), getRef());
+                assertEquals("ACCEPTED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+            }
+
+            // When - the manager goes away before the reports finish and a new one starts
+            watch(first);
+            system.stop(first);
+            expectTerminated(Duration.ofSeconds(10), first);
+            final akka.actor.ActorRef second = system.actorOf(TaskManagerActor.props(settings));
+
+            // Then - every accepted task is back in the queue or running
+            second.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(3), Map.class);
+            assertEquals(3, stats.get("totalReceived"));
+            assertEquals(3, (int) stats.get("pendingQueueSize") + (int) stats.get("inFlightTasks"));
+
+            second.tell(new TaskMessage.QueryTaskStatus("journal-2"), getRef());
+            assertNotEquals("NOT_FOUND",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+        }};
+    }
+
+    @Test
+    public void testSubmitBatchAcceptsUpToQueueCapacity() {
+        new TestKit(system) {{
+            // Given - a single pool whose queue holds two tasks
+            Map<String, TaskSystemSettings.PoolSettings> pools = new LinkedHashMap<>();
+            pools.put(TaskSystemSettings.DEFAULT_POOL, new TaskSystemSettings.PoolSettings(
+                    TaskSystemSettings.DEFAULT_POOL, 1, 1, 2, TaskSystemSettings.SHARED_BLOCKING_DISPATCHER));
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(new TaskSystemSettings(pools)));
+
+            List<Task> batch = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                batch.add(new Task("batch-" + i, "Batch", "NOTIFICATION", "data", Task.TaskPriority.NORMAL));
+            }
+
+            // When
+            managerRef.tell(new TaskMessage.SubmitBatch(batch), getRef());
+
+            // Then - one aggregated acknowledgement for the whole batch
+            TaskMessage.BatchAccepted ack = expectMsgClass(Duration.ofSeconds(3), TaskMessage.BatchAccepted.class);
+            assertEquals(2, ack.getAccepted());
+            assertEquals(Arrays.asList("batch-2", "batch-3"), ack.getRejectedTaskIds());
+
+            managerRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+            assertEquals(4, stats.get("totalReceived"));
+            assertEquals(2, stats.get("totalRejected"));
+
+            awaitAssert(Duration.ofSeconds(5), () -> {
+                managerRef.tell(new TaskMessage.QueryTaskStatus("batch-1"), getRef());
+                assertEquals("COMPLETED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+                return null;
+            });
+        }};
+    }
+
+    @Test
+    public void testWaitingBatchIsHeldUntilQueueHasRoom() {
+        new TestKit(system) {{
+            // Given - one worker and room for a single pending task
+            Map<String, TaskSystemSettings.PoolSettings> pools = new LinkedHashMap<>();
+            pools.put(TaskSystemSettings.DEFAULT_POOL, new TaskSystemSettings.PoolSettings(
+                    TaskSystemSettings.DEFAULT_POOL, 1, 1, 1, TaskSystemSettings.SHARED_BLOCKING_DISPATCHER));
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(new TaskSystemSettings(pools)));
+
+            List<Task> batch = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                batch.add(new Task("parked-" + i, "Parked", "NOTIFICATION", "data", Task.TaskPriority.NORMAL));
+            }
+
+            // When - the batch does not fit and asks to wait instead of being rejected
+            managerRef.tell(new TaskMessage.SubmitBatch(batch, true), getRef());
+
+            // Then - no acknowledgement until the queue drains, then everything is accepted
+            expectNoMessage(Duration.ofMillis(200));
+            TaskMessage.BatchAccepted ack = expectMsgClass(Duration.ofSeconds(5), TaskMessage.BatchAccepted.class);
+            assertEquals(3, ack.getAccepted());
+            assertTrue(ack.getRejectedTaskIds().isEmpty());
+        }};
+    }
+
+    @Test
+    public void testCancelQueuedAndRunningTasks() {
+        new TestKit(system) {{
+            // Given - 1 worker with a single credit, so the second task stays queued
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(1, 1));
+            Task running = new Task("cancel-running", "Running", "REPORT_GENERATION", "data", Task.TaskPriority.NORMAL);
+            Task queued = new Task("cancel-queued", "Queued", "REPORT_GENERATION", "data", Task.TaskPriority.NORMAL);
+            managerRef.tell(running, getRef());
+            expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+            managerRef.tell(queued, getRef());
+            expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+
+            // When / Then - the queued task is cancelled immediately
+            managerRef.tell(new TaskMessage.CancelTask("cancel-queued"), getRef());
+            assertEquals("CANCELLED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+
+            // When / Then - the running task is interrupted well before its 2-5s runtime
+            awaitAssert(Duration.ofSeconds(2), () -> {
+                managerRef.tell("GET_STATS", getRef());
+                @SuppressWarnings("unchecked")
+                Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+                assertEquals(1, stats.get("inFlightTasks"));
+                return null;
+            });
+            managerRef.tell(new TaskMessage.CancelTask("cancel-running"), getRef());
+            assertEquals("CANCELLED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+
+            managerRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+            assertEquals(2, stats.get("totalCancelled"));
+            assertEquals(0, stats.get("inFlightTasks"));
+            assertEquals(0, stats.get("pendingQueueSize"));
+            assertEquals(1, stats.get("availableCredits"));
+
+            // A finished or unknown task cannot be cancelled
+            managerRef.tell(new TaskMessage.CancelTask("cancel-running"), getRef());
+            assertEquals("CANCELLED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+            managerRef.tell(new TaskMessage.CancelTask("no-such-task"), getRef());
+            assertEquals("NOT_FOUND",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+        }};
+    }
+
+    @Test
+    public void testExpiredTasksNeverStartAndRunningTasksAreInterrupted() {
+        new TestKit(system) {{
+            // Given
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(1, 1));
+            Task expired = new Task("deadline-expired", "Expired", "DEFAULT", "data", Task.TaskPriority.NORMAL);
+            expired.setDeadline(java.time.LocalDateTime.now().minusSeconds(1));
+            Task slow = new Task("deadline-slow", "Slow", "REPORT_GENERATION", "data", Task.TaskPriority.NORMAL);
+            slow.setDeadline(java.time.LocalDateTime.now().plusNanos(300_000_000L));
+
+            // When
+            managerRef.tell(expired, getRef());
+            expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+            managerRef.tell(slow, getRef());
+            expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+
+            // Then - both fail without retries, long before the report task would finish
+            awaitAssert(Duration.ofSeconds(2), () -> {
+                managerRef.tell(new TaskMessage.QueryTaskStatus("deadline-slow"), getRef());
+                assertEquals("FAILED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+                return null;
+            });
+            managerRef.tell(new TaskMessage.QueryTaskStatus("deadline-expired"), getRef());
+            assertEquals("FAILED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+
+            managerRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+            assertEquals(1, stats.get("totalExpired"));
+            assertEquals(2, stats.get("totalFailed"));
+            assertEquals(0, stats.get("pendingQueueSize"));
+        }};
+    }
+
+    @Test
+    public void testExhaustedTasksAreDeadLetteredAndCanBeReplayed() {
+        new TestKit(system) {{
+            // Given - a task that already used all of its retries
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(1, 1));
+            Task exhausted = new Task("dlq-exhausted", "Exhausted", "NOTIFICATION", "data", Task.TaskPriority.NORMAL);
+            exhausted.setStatus(Task.TaskStatus.FAILED);
+            exhausted.setRetryCount(exhausted.getMaxRetries());
+            exhausted.setErrorMessage("Downstream unavailable");
+
+            // When
+            managerRef.tell(exhausted, getRef());
+
+            // Then - it is parked in the dead-letter queue instead of being retried
+            managerRef.tell(new TaskMessage.QueryDeadLetters("NOTIFICATION", 0, 10), getRef());
+            TaskMessage.DeadLetters deadLetters = expectMsgClass(Duration.ofSeconds(1), TaskMessage.DeadLetters.class);
+            assertEquals(1, deadLetters.getTotal());
+            assertEquals("dlq-exhausted", deadLetters.getTasks().get(0).getTaskId());
+            managerRef.tell(new TaskMessage.QueryDeadLetters("API_CALL", 0, 10), getRef());
+            assertEquals(0, expectMsgClass(Duration.ofSeconds(1), TaskMessage.DeadLetters.class).getTotal());
+
+            // When - replayed with a fresh retry count
+            managerRef.tell(new TaskMessage.ReplayDeadLetters(
+                    java.util.Arrays.asList("dlq-exhausted", "no-such-task"), null), getRef());
+            TaskMessage.BatchAccepted replayed = expectMsgClass(Duration.ofSeconds(1), TaskMessage.BatchAccepted.class);
+            assertEquals(1, replayed.getAccepted());
+            assertEquals(java.util.Collections.singletonList("no-such-task"), replayed.getRejectedTaskIds());
+
+            // Then - it runs to completion and leaves the dead-letter queue
+            awaitAssert(Duration.ofSeconds(3), () -> {
+                managerRef.tell(new TaskMessage.QueryTaskStatus("dlq-exhausted"), getRef());
+                assertEquals("COMPLETED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+                return null;
+            });
+            managerRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+            assertEquals(0, stats.get("deadLetters"));
+        }};
+    }
+
+    @Test
+    public void testFailedTasksAreRetriedAfterBackoff() {
+        new TestKit(system) {{
+            // Given
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(1, 1));
+            Task failed = new Task("retry-backoff", "Backoff", "NOTIFICATION", "data", Task.TaskPriority.NORMAL);
+            failed.setStatus(Task.TaskStatus.FAILED);
+            failed.setRetryCount(1);
+
+            // When
+            managerRef.tell(failed, getRef());
+
+            // Then - the retry waits out its backoff instead of being requeued immediately
+            managerRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+            assertEquals(1, stats.get("scheduledRetries"));
+            assertEquals(0, stats.get("pendingQueueSize"));
+            managerRef.tell(new TaskMessage.QueryTaskStatus("retry-backoff"), getRef());
+            assertEquals("PENDING",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+
+            awaitAssert(Duration.ofSeconds(3), () -> {
+                managerRef.tell(new TaskMessage.QueryTaskStatus("retry-backoff"), getRef());
+                assertEquals("COMPLETED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+                return null;
+            });
+        }};
+    }
+
+    @Test
+    public void testQueueStaysBoundedWhileCircuitBreakerIsOpen() {
+        new TestKit(system) {{
+            // Given - a breaker that opens after one failure, and a queue bound of 2
+            TaskSystemSettings.RetrySettings retry = new TaskSystemSettings.RetrySettings(
+                    Duration.ofMillis(100), Duration.ofSeconds(1), 2.0, 0.5, 0.2, 1.0, 100, 1, Duration.ofSeconds(1));
+            Map<String, TaskSystemSettings.PoolSettings> pools = new LinkedHashMap<>();
+            pools.put(TaskSystemSettings.DEFAULT_POOL, new TaskSystemSettings.PoolSettings(
+                    TaskSystemSettings.DEFAULT_POOL, 1, 1, 1, 1, 2, TaskSystemSettings.SHARED_BLOCKING_DISPATCHER, retry));
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(new TaskSystemSettings(pools)));
+            Task exhausted = new Task("breaker-trip", "Trip", "NOTIFICATION", "data", Task.TaskPriority.NORMAL);
+            exhausted.setStatus(Task.TaskStatus.FAILED);
+            exhausted.setRetryCount(exhausted.getMaxRetries());
+            managerRef.tell(exhausted, getRef());
+
+            // When - more tasks of the broken type arrive than the queue holds
+            for (int i = 0; i < 2; i++) {
+                managerRef.tell(new Task("breaker-queued-" + i, "Queued", "NOTIFICATION",
+                        "data", Task.TaskPriority.NORMAL), getRef());
+                assertEquals("ACCEPTED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+            }
+            managerRef.tell(new Task("breaker-overflow", "Overflow", "NOTIFICATION",
+                    "data", Task.TaskPriority.NORMAL), getRef());
+
+            // Then - the paused tasks still count against capacity instead of moving to the retry wheel
+            assertEquals("REJECTED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+            managerRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+            assertEquals(2, stats.get("pendingQueueSize"));
+            assertEquals(0, stats.get("scheduledRetries"));
+
+            // Then - once the breaker lets a trial through, the queued tasks run
+            awaitAssert(Duration.ofSeconds(4), () -> {
+                managerRef.tell(new TaskMessage.QueryTaskStatus("breaker-queued-1"), getRef());
+                assertEquals("COMPLETED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+                return null;
+            });
+        }};
+    }
+
+    @Test
+    public void testDuplicateIdempotencyKeyReturnsOriginalTask() {
+        new TestKit(system) {{
+            // Given
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(1, 1));
+            Task original = new Task("idem-original", "Original", "NOTIFICATION", "data", Task.TaskPriority.NORMAL);
+            original.setIdempotencyKey("order-42");
+            managerRef.tell(original, getRef());
+            assertEquals("ACCEPTED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+
+            // When - the client retries with the same key (same or fresh taskId)
+            Task retry = new Task("idem-original", "Original", "NOTIFICATION", "data", Task.TaskPriority.NORMAL);
+            retry.setIdempotencyKey("order-42");
+            managerRef.tell(retry, getRef());
+            TaskMessage.TaskStatusResponse first = expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+            Task other = new Task("idem-other", "Other", "NOTIFICATION", "data", Task.TaskPriority.NORMAL);
+            other.setIdempotencyKey("order-42");
+            managerRef.tell(other, getRef());
+            TaskMessage.TaskStatusResponse second = expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+
+            // Then
+            assertEquals("DUPLICATE", first.getStatus());
+            assertEquals("idem-original", first.getTaskId());
+            assertEquals("DUPLICATE", second.getStatus());
+            assertEquals("idem-original", second.getTaskId());
+
+            managerRef.tell(new TaskMessage.QueryTaskStatus("idem-other"), getRef());
+            assertEquals("NOT_FOUND",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+            managerRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+            assertEquals(1, stats.get("totalReceived"));
+            assertEquals(2, stats.get("totalDeduplicated"));
+        }};
+    }
+
+    @Test
+    public void testIdempotencyKeysAreScopedByTenantAndPayload() {
+        new TestKit(system) {{
+            // Given - tenant-a submits with key "1"
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(1, 1));
+            Task tenantA = new Task("idem-tenant-a", "A", "NOTIFICATION", "data-a", Task.TaskPriority.NORMAL);
+            tenantA.setIdempotencyKey("1");
+            tenantA.setTenant("tenant-a");
+            managerRef.tell(tenantA, getRef());
+            assertEquals("ACCEPTED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+
+            // When - another tenant uses the same key, and tenant-a reuses it for different data
+            Task tenantB = new Task("idem-tenant-b", "B", "NOTIFICATION", "data-b", Task.TaskPriority.NORMAL);
+            tenantB.setIdempotencyKey("1");
+            tenantB.setTenant("tenant-b");
+            managerRef.tell(tenantB, getRef());
+            TaskMessage.TaskStatusResponse otherTenant =
+                expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+            Task changed = new Task("idem-tenant-a-2", "A", "NOTIFICATION", "other-data", Task.TaskPriority.NORMAL);
+            changed.setIdempotencyKey("1");
+            changed.setTenant("tenant-a");
+            managerRef.tell(changed, getRef());
+            TaskMessage.TaskStatusResponse conflict =
+                expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+
+            // Then - tenant-b gets its own task, the changed request is refused without the original id
+            assertEquals("ACCEPTED", otherTenant.getStatus());
+            assertEquals("idem-tenant-b", otherTenant.getTaskId());
+            assertEquals("CONFLICT", conflict.getStatus());
+            assertEquals("idem-tenant-a-2", conflict.getTaskId());
+        }};
+    }
+
+    @Test
+    public void testIdenticalTasksAreCoalescedIntoOneExecution() {
+        new TestKit(system) {{
+            // Given - a single worker credit, occupied by an unrelated task
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(1, 1));
+            managerRef.tell(new Task("coalesce-blocker", "Blocker", "REPORT_GENERATION", "data",
+                    Task.TaskPriority.NORMAL), getRef());
+            expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+
+            // When - three identical coalescing tasks and one with different data arrive
+            for (String id : java.util.Arrays.asList("coalesce-a", "coalesce-b", "coalesce-c")) {
+                Task task = new Task(id, "Notify", "NOTIFICATION", "same", Task.TaskPriority.NORMAL);
+                task.setCoalesce(true);
+                managerRef.tell(task, getRef());
+                expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+            }
+            Task different = new Task("coalesce-d", "Notify", "NOTIFICATION", "other", Task.TaskPriority.NORMAL);
+            different.setCoalesce(true);
+            managerRef.tell(different, getRef());
+            expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+
+            managerRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+            assertEquals(2, stats.get("totalCoalesced"));
+            assertEquals(2, stats.get("pendingQueueSize"));
+
+            // Cancelling the leader hands its place to the first follower instead of cancelling everyone
+            managerRef.tell(new TaskMessage.CancelTask("coalesce-a"), getRef());
+            assertEquals("CANCELLED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+            managerRef.tell(new TaskMessage.CancelTask("coalesce-blocker"), getRef());
+            expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+
+            // Then - the remaining identical tasks complete with the same result from one execution
+            awaitAssert(Duration.ofSeconds(3), () -> {
+                managerRef.tell(new TaskMessage.QueryTaskStatus("coalesce-c"), getRef());
+                assertEquals("COMPLETED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+                return null;
+            });
+            managerRef.tell(new TaskMessage.QueryTaskStatus("coalesce-b"), getRef());
+            TaskMessage.TaskStatusResponse leader = expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+            managerRef.tell(new TaskMessage.QueryTaskStatus("coalesce-c"), getRef());
+            TaskMessage.TaskStatusResponse follower = expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+            assertEquals("COMPLETED", leader.getStatus());
+            assertEquals(leader.getMessage(), follower.getMessage());
+
+            managerRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> after = expectMsgClass(Duration.ofSeconds(1), Map.class);
+            assertEquals(0, after.get("coalescedWaiting"));
+        }};
+    }
+
+    @Test
+    public void testWorkflowRunsReadyTasksInParallelAndReportsStatus() {
+        new TestKit(system) {{
+            // Given - two independent roots feeding one final task
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(2, 1));
+            java.util.List<Task> tasks = new java.util.ArrayList<>();
+            for (String nodeId : java.util.Arrays.asList("fetch-a", "fetch-b", "notify")) {
+                tasks.add(new Task(TaskMessage.SubmitWorkflow.taskIdOf("wf-1", nodeId), nodeId, "NOTIFICATION",
+                        "data", Task.TaskPriority.NORMAL));
+            }
+            Map<String, java.util.List<String>> dependencies = java.util.Collections.singletonMap(
+                    "notify", java.util.Arrays.asList("fetch-a", "fetch-b"));
+
+            // When
+            managerRef.tell(new TaskMessage.SubmitWorkflow("wf-1", tasks, dependencies), getRef());
+            assertEquals("ACCEPTED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+
+            // Then - both roots start at once while the final task waits
+            managerRef.tell(new TaskMessage.QueryWorkflow("wf-1"), getRef());
+            TaskMessage.WorkflowStatus running = expectMsgClass(Duration.ofSeconds(1), TaskMessage.WorkflowStatus.class);
+            assertEquals("RUNNING", running.getStatus());
+            assertEquals("WAITING", running.getNodes().get("notify"));
+            managerRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+            assertEquals(2, stats.get("inFlightTasks"));
+
+            awaitAssert(Duration.ofSeconds(4), () -> {
+                managerRef.tell(new TaskMessage.QueryWorkflow("wf-1"), getRef());
+                assertEquals("COMPLETED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.WorkflowStatus.class).getStatus());
+                return null;
+            });
+            managerRef.tell(new TaskMessage.QueryTaskStatus("wf-1.notify"), getRef());
+            assertEquals("COMPLETED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+
+            // A cyclic workflow is refused as a whole
+            java.util.List<Task> cyclic = java.util.Arrays.asList(
+                    new Task("wf-2.a", "a", "DEFAULT", "data", Task.TaskPriority.NORMAL),
+                    new Task("wf-2.b", "b", "DEFAULT", "data", Task.TaskPriority.NORMAL));
+            Map<String, java.util.List<String>> cycle = new java.util.HashMap<>();
+            cycle.put("a", java.util.Collections.singletonList("b"));
+            cycle.put("b", java.util.Collections.singletonList("a"));
+            managerRef.tell(new TaskMessage.SubmitWorkflow("wf-2", cyclic, cycle), getRef());
+            assertEquals("INVALID",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+            managerRef.tell(new TaskMessage.QueryWorkflow("wf-2"), getRef());
+            assertEquals("NOT_FOUND",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.WorkflowStatus.class).getStatus());
+        }};
+    }
+
+    @Test
+    public void testWaitingWorkflowTasksCanBeQueriedAndCancelled() {
+        new TestKit(system) {{
+            // Given - root -> child -> grandchild, with root still running
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(1, 1));
+            java.util.List<Task> tasks = new java.util.ArrayList<>();
+            for (String nodeId : java.util.Arrays.asList("root", "child", "grandchild")) {
+                tasks.add(new Task(TaskMessage.SubmitWorkflow.taskIdOf("wf-cancel", nodeId), nodeId, "NOTIFICATION",
+                        "data", Task.TaskPriority.NORMAL));
+            }
+            Map<String, java.util.List<String>> dependencies = new java.util.HashMap<>();
+            dependencies.put("child", java.util.Collections.singletonList("root"));
+            dependencies.put("grandchild", java.util.Collections.singletonList("child"));
+            managerRef.tell(new TaskMessage.SubmitWorkflow("wf-cancel", tasks, dependencies), getRef());
+            assertEquals("ACCEPTED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+
+            // When - the waiting child is queried, then cancelled
+            managerRef.tell(new TaskMessage.QueryTaskStatus("wf-cancel.child"), getRef());
+            TaskMessage.TaskStatusResponse waiting =
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+            managerRef.tell(new TaskMessage.CancelTask("wf-cancel.child"), getRef());
+            TaskMessage.TaskStatusResponse cancelled =
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+
+            // Then - the child and its descendants never run, and the workflow fails once root finishes
+            assertEquals("WAITING", waiting.getStatus());
+            assertEquals("CANCELLED", cancelled.getStatus());
+            managerRef.tell(new TaskMessage.QueryTaskStatus("wf-cancel.grandchild"), getRef());
+            assertEquals("CANCELLED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+            awaitAssert(Duration.ofSeconds(4), () -> {
+                managerRef.tell(new TaskMessage.QueryWorkflow("wf-cancel"), getRef());
+                TaskMessage.WorkflowStatus status =
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.WorkflowStatus.class);
+                assertEquals("FAILED", status.getStatus());
+                assertEquals("COMPLETED", status.getNodes().get("root"));
+                assertEquals("CANCELLED", status.getNodes().get("child"));
+                return null;
+            });
+        }};
+    }
+
+    @Test
+    public void testLargeResultIsStoredOutOfBandAndReadInChunks() throws Exception {
+        new TestKit(system) {{
+            // Given - results larger than 8 bytes go to the result store
+            File resultDir = Files.createTempDirectory("task-results").toFile();
+            Map<String, TaskSystemSettings.PoolSettings> pools = new LinkedHashMap<>();
+            pools.put(TaskSystemSettings.DEFAULT_POOL, new TaskSystemSettings.PoolSettings(
+                    TaskSystemSettings.DEFAULT_POOL, 1, 1, 100, TaskSystemSettings.SHARED_BLOCKING_DISPATCHER));
+            TaskSystemSettings settings = new TaskSystemSettings(pools,
+                    TaskSystemSettings.AutoscalingSettings.disabled(),
+                    TaskSystemSettings.RetentionSettings.defaults(),
+                    TaskSystemSettings.JournalSettings.disabled(),
+                    TaskSystemSettings.ShardingSettings.disabled(),
+                    TaskSystemSettings.SchedulerSettings.defaults(),
+                    TaskSystemSettings.DeadLetterSettings.defaults(),
+                    TaskSystemSettings.IdempotencySettings.defaults(),
+                    new TaskSystemSettings.ResultStoreSettings(true, resultDir.getPath(), 8, 1024 * 1024));
+            final akka.actor.ActorRef managerRef = system.actorOf(TaskManagerActor.props(settings));
+
+            // When
+            managerRef.tell(new Task("result-large", "Notify", "NOTIFICATION", "payload",
+                    Task.TaskPriority.NORMAL), getRef());
+            expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+            managerRef.tell(new TaskMessage.ReadResult("result-large", 0, 16), getRef());
+            assertEquals(TaskMessage.ResultChunk.NOT_READY,
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.ResultChunk.class).getStatus());
+
+            // Then - the status only points at the stored result, which is read back in chunks
+            awaitAssert(Duration.ofSeconds(3), () -> {
+                managerRef.tell(new TaskMessage.QueryTaskStatus("result-large"), getRef());
+                TaskMessage.TaskStatusResponse status = expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+                assertEquals("COMPLETED", status.getStatus());
+                assertTrue(status.getMessage().contains("/api/tasks/result-large/result"));
+                return null;
+            });
+            managerRef.tell(new TaskMessage.ReadResult("result-large", 0, 12), getRef());
+            TaskMessage.ResultChunk first = expectMsgClass(Duration.ofSeconds(1), TaskMessage.ResultChunk.class);
+            managerRef.tell(new TaskMessage.ReadResult("result-large", 12, 1024), getRef());
+            TaskMessage.ResultChunk rest = expectMsgClass(Duration.ofSeconds(1), TaskMessage.ResultChunk.class);
+            assertEquals(TaskMessage.ResultChunk.OK, first.getStatus());
+            assertEquals("Notification sent: payload".length(), first.getTotalSize());
+            assertEquals("Notification", new String(first.getData(), java.nio.charset.StandardCharsets.UTF_8));
+            assertEquals(" sent: payload", new String(rest.getData(), java.nio.charset.StandardCharsets.UTF_8));
+
+            managerRef.tell(new TaskMessage.ReadResult("result-missing", 0, 12), getRef());
+            assertEquals(TaskMessage.ResultChunk.NOT_FOUND,
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.ResultChunk.class).getStatus());
+            managerRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+            assertEquals(1, stats.get("resultStoreSegments"));
+        }};
+    }
+
+    @Test
+    public void testWorkflowPassesStoredResultsToDownstreamTasks() throws Exception {
+        new TestKit(system) {{
+            // Given - results over 8 bytes go to the result store: one parent returns a large String,
+            // the other streams its output, and the final task records what it received
+            File resultDir = Files.createTempDirectory("task-results").toFile();
+            Map<String, TaskSystemSettings.PoolSettings> pools = new LinkedHashMap<>();
+            pools.put(TaskSystemSettings.DEFAULT_POOL, new TaskSystemSettings.PoolSettings(
+                    TaskSystemSettings.DEFAULT_POOL, 2, 1, 100, TaskSystemSettings.SHARED_BLOCKING_DISPATCHER));
+            TaskSystemSettings settings = new TaskSystemSettings(pools,
+                    TaskSystemSettings.AutoscalingSettings.disabled(),
+                    TaskSystemSettings.RetentionSettings.defaults(),
+                    TaskSystemSettings.JournalSettings.disabled(),
+                    TaskSystemSettings.ShardingSettings.disabled(),
+                    TaskSystemSettings.SchedulerSettings.defaults(),
+                    TaskSystemSettings.DeadLetterSettings.defaults(),
+                    TaskSystemSettings.IdempotencySettings.defaults(),
+                    new TaskSystemSettings.ResultStoreSettings(true, resultDir.getPath(), 8, 1024 * 1024));
+            Map<String, String> received = new java.util.concurrent.ConcurrentHashMap<>();
+            TaskExecutor report = new TaskExecutor() {
+                @Override
+                public String taskType() {
+                    return "REPORT";
+                }
+
+                @Override
+                public String execute(Task task) {
+                    return repeat('r', 50_000);
+                }
+            };
+            TaskExecutor export = new TaskExecutor() {
+                @Override
+                public String taskType() {
+                    return "EXPORT";
+                }
+
+                @Override
+                public boolean streamsResult() {
+                    return true;
+                }
+
+                @Override
+                public void executeTo(Task task, java.io.OutputStream out) throws java.io.IOException {
+                    byte[] line = "exported row\n".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+                    for (int i = 0; i < 5_000; i++) {
+                        out.write(line);
+                    }
+                }
+            };
+            TaskExecutor merge = new TaskExecutor() {
+                @Override
+                public String taskType() {
+                    return "MERGE";
+                }
+
+                @Override
+                public String execute(Task task) {
+                    task.getInputs().forEach((parent, input) -> received.put(parent, input));
+                    return "ok";
+                }
+            };
+            final akka.actor.ActorRef managerRef = system.actorOf(TaskManagerActor.props(settings,
+                    new utils.MetricsRegistry(),
+                    TaskExecutors.withBuiltIns(java.util.Arrays.asList(report, export, merge))));
+            java.util.List<Task> tasks = java.util.Arrays.asList(
+                    new Task(TaskMessage.SubmitWorkflow.taskIdOf("wf-large", "report"), "report", "REPORT",
+                            "data", Task.TaskPriority.NORMAL),
+                    new Task(TaskMessage.SubmitWorkflow.taskIdOf("wf-large", "export"), "export", "EXPORT",
+                            "data", Task.TaskPriority.NORMAL),
+                    new Task(TaskMessage.SubmitWorkflow.taskIdOf("wf-large", "merge"), "merge", "MERGE",
+                            "data", Task.TaskPriority.NORMAL));
+            Map<String, java.util.List<String>> dependencies = java.util.Collections.singletonMap(
+                    "merge", java.util.Arrays.asList("report", "export"));
+
+            // When
+            managerRef.tell(new TaskMessage.SubmitWorkflow("wf-large", tasks, dependencies), getRef());
+            assertEquals("ACCEPTED",
+                    expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+
+            // Then - the final task sees both full results, not the null left behind in the parents
+            awaitAssert(Duration.ofSeconds(4), () -> {
+                managerRef.tell(new TaskMessage.QueryWorkflow("wf-large"), getRef());
+                assertEquals("COMPLETED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.WorkflowStatus.class).getStatus());
+                return null;
+            });
+            assertEquals(repeat('r', 50_000), received.get("report"));
+            assertEquals(5_000 * "exported row\n".length(), received.get("export").length());
+            assertTrue(received.get("export").startsWith("exported row\nexported row\n"));
+
+            // The streamed result is stored as well and can be read in chunks
+            managerRef.tell(new TaskMessage.ReadResult("wf-large.export", 0, 13), getRef());
+            TaskMessage.ResultChunk chunk = expectMsgClass(Duration.ofSeconds(1), TaskMessage.ResultChunk.class);
+            assertEquals(TaskMessage.ResultChunk.OK, chunk.getStatus());
+            assertEquals(5_000 * 13, chunk.getTotalSize());
+            assertEquals("exported row\n", new String(chunk.getData(), java.nio.charset.StandardCharsets.UTF_8));
+        }};
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        java.util.Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void testManagerBatchesSameTypeTasksWithinWorkerCredits() {
+        new TestKit(system) {{
+            // Given - one worker with a single credit; batches of up to 3 BULK tasks, each call takes 150ms
+            java.util.List<String> calls = new java.util.concurrent.CopyOnWriteArrayList<>();
+            java.util.concurrent.Executor later = java.util.concurrent.CompletableFuture.delayedExecutor(
+                    150, java.util.concurrent.TimeUnit.MILLISECONDS);
+            TaskExecutor bulk = new TaskExecutor() {
+                @Override
+                public String taskType() {
+                    return "BULK";
+                }
+
+                @Override
+                public Mode mode() {
+                    return Mode.ASYNC;
+                }
+
+                @Override
+                public boolean supportsBatching() {
+                    return true;
+                }
+
+                @Override
+                public java.util.concurrent.CompletionStage<String> executeAsync(Task task) {
+                    calls.add("single " + task.getTaskId());
+                    return java.util.concurrent.CompletableFuture.supplyAsync(() -> "sent", later);
+                }
+
+                @Override
+                public java.util.concurrent.CompletionStage<Map<String, String>> executeBatchAsync(
+                        java.util.List<Task> tasks) {
+                    StringBuilder ids = new StringBuilder("batch");
+                    Map<String, String> results = new java.util.HashMap<>();
+                    for (Task task : tasks) {
+                        ids.append(' ').append(task.getTaskId());
+                        results.put(task.getTaskId(), "sent");
+                    }
+                    calls.add(ids.toString());
+                    return java.util.concurrent.CompletableFuture.supplyAsync(() -> results, later);
+                }
+            };
+            Map<String, TaskSystemSettings.PoolSettings> pools = new LinkedHashMap<>();
+            pools.put("BULK", new TaskSystemSettings.PoolSettings("BULK", 1, 1, 1, 1, 100,
+                    TaskSystemSettings.SHARED_BLOCKING_DISPATCHER, TaskSystemSettings.RetrySettings.defaults(),
+                    new TaskSystemSettings.BatchingSettings(3, Duration.ofMillis(300))));
+            pools.put(TaskSystemSettings.DEFAULT_POOL, new TaskSystemSettings.PoolSettings(
+                    TaskSystemSettings.DEFAULT_POOL, 1, 1, 100, TaskSystemSettings.SHARED_BLOCKING_DISPATCHER));
+            TaskSystemSettings settings = new TaskSystemSettings(pools,
+                    TaskSystemSettings.AutoscalingSettings.disabled(),
+                    TaskSystemSettings.RetentionSettings.defaults(),
+                    TaskSystemSettings.JournalSettings.disabled());
+            final akka.actor.ActorRef managerRef = system.actorOf(TaskManagerActor.props(settings,
+                    new utils.MetricsRegistry(), TaskExecutors.withBuiltIns(java.util.Collections.singleton(bulk))));
+
+            // When - seven batchable tasks, then a high-priority task with a deadline
+            for (int i = 0; i < 7; i++) {
+                managerRef.tell(new Task("bulk-" + i, "Bulk", "BULK", "data", Task.TaskPriority.NORMAL), getRef());
+                expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+            }
+            Task urgent = new Task("urgent", "Bulk", "BULK", "data", Task.TaskPriority.HIGH);
+            urgent.setDeadline(java.time.LocalDateTime.now().plusSeconds(10));
+            managerRef.tell(urgent, getRef());
+            expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+
+            // Then - a batch takes one credit, the urgent task keeps its priority and runs alone,
+            // and the last task is sent on its own after the linger time instead of waiting for a full batch
+            managerRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = expectMsgClass(Duration.ofSeconds(1), Map.class);
+            assertEquals(3, stats.get("inFlightTasks"));
+            awaitAssert(Duration.ofSeconds(3), () -> {
+                assertEquals(java.util.Arrays.asList(
+                        "batch bulk-0 bulk-1 bulk-2",
+                        "single urgent",
+                        "batch bulk-3 bulk-4 bulk-5",
+                        "single bulk-6"), calls);
+                return null;
+            });
+            awaitAssert(Duration.ofSeconds(1), () -> {
+                managerRef.tell(new TaskMessage.QueryTaskStatus("bulk-6"), getRef());
+                assertEquals("COMPLETED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+                return null;
+            });
+        }};
+    }
+
+    @Test
+    public void testMetricsRegistryRecordsOutcomesAndLatencies() {
+        new TestKit(system) {{
+            // Given
+            utils.MetricsRegistry registry = new utils.MetricsRegistry();
+            final akka.actor.ActorRef managerRef = system.actorOf(
+                    TaskManagerActor.props(TaskSystemSettings.singlePool(1, 1), registry));
+
+            // When
+            managerRef.tell(new Task("metrics-1", "Notify", "NOTIFICATION", "payload",
+                    Task.TaskPriority.NORMAL), getRef());
+            expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+
+            // Then - the registry is read directly, without asking the actor
+            awaitAssert(Duration.ofSeconds(3), () -> {
+                String text = registry.scrape();
+                assertTrue(text.contains("task_accepted_total{task_type=\"DEFAULT\"} 1\n"));
+                assertTrue(text.contains("task_completed_total{task_type=\"DEFAULT\"} 1\n"));
+                assertTrue(text.contains("task_execution_seconds_count{task_type=\"DEFAULT\"} 1\n"));
+                assertTrue(text.contains("task_queue_wait_seconds_count{task_type=\"DEFAULT\"} 1\n"));
+                assertTrue(text.contains("task_pool_in_flight{pool=\"DEFAULT\"} 0\n"));
+                return null;
+            });
+        }};
+    }
+
+    @Test
+    public void testExecutorConcurrencyLimitCapsDispatch() {
+        new TestKit(system) {{
+            // Given - two workers, but the DEFAULT executor allows one task at a time
+            java.util.concurrent.atomic.AtomicInteger running = new java.util.concurrent.atomic.AtomicInteger();
+            java.util.concurrent.atomic.AtomicInteger peak = new java.util.concurrent.atomic.AtomicInteger();
+            TaskExecutor limited = new TaskExecutor() {
+                @Override
+                public String taskType() {
+                    return TaskSystemSettings.DEFAULT_POOL;
+                }
+
+                @Override
+                public int maxConcurrency() {
+                    return 1;
+                }
+
+                @Override
+                public String execute(Task task) throws InterruptedException {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(50);
+                    running.decrementAndGet();
+                    return "done " + task.getTaskId();
+                }
+            };
+            final akka.actor.ActorRef managerRef = system.actorOf(TaskManagerActor.props(
+                    TaskSystemSettings.singlePool(2, 1), new utils.MetricsRegistry(),
+                    TaskExecutors.withBuiltIns(java.util.Collections.singleton(limited))));
+
+            // When
+            for (int i = 0; i < 4; i++) {
+                managerRef.tell(new Task("limited-" + i, "Limited", "CUSTOM", "data", Task.TaskPriority.NORMAL), getRef());
+                expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+            }
+
+            // Then
+            awaitAssert(Duration.ofSeconds(3), () -> {
+                managerRef.tell(new TaskMessage.QueryTaskStatus("limited-3"), getRef());
+                assertEquals("COMPLETED",
+                        expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+                return null;
+            });
+            assertEquals(1, peak.get());
+        }};
+    }
+
+    @Test
+    public void testAdoptsShardStateHandedOffByPreviousOwner() {
+        new TestKit(system) {{
+            // Given - state exported by the previous owner of the shard
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(TaskManagerActor.props(1, 1));
+            Task finished = new Task("adopt-done", "Done", "NOTIFICATION", "data", Task.TaskPriority.NORMAL);
+            finished.setStatus(Task.TaskStatus.COMPLETED);
+            finished.setResult("result");
+            Task dead = new Task("adopt-dead", "Dead", "NOTIFICATION", "data", Task.TaskPriority.NORMAL);
+            dead.setStatus(Task.TaskStatus.FAILED);
+            Task keyed = new Task("adopt-keyed", "Keyed", "NOTIFICATION", "data", Task.TaskPriority.NORMAL);
+            keyed.setIdempotencyKey("order-7");
+            Task root = new Task(TaskMessage.SubmitWorkflow.taskIdOf("wf-adopt", "root"), "root", "NOTIFICATION",
+                "data", Task.TaskPriority.NORMAL);
+            root.setStatus(Task.TaskStatus.RUNNING);
+            Task child = new Task(TaskMessage.SubmitWorkflow.taskIdOf("wf-adopt", "child"), "child", "NOTIFICATION",
+                "data", Task.TaskPriority.NORMAL);
+            TaskMessage.WorkflowState workflow = new TaskMessage.WorkflowState("wf-adopt",
+                java.util.Arrays.asList(root, child),
+                java.util.Collections.singletonMap("child", java.util.Collections.singletonList("root")),
+                java.util.Collections.singletonList("root"), java.util.Collections.emptyList(), false);
+
+            // When
+            managerRef.tell(new TaskMessage.ShardState("0",
+                java.util.Arrays.asList(finished, dead),
+                java.util.Collections.singletonList(dead),
+                java.util.Collections.singletonList(new TaskMessage.IdempotencyEntry(
+                    keyed.getIdempotencyScope(), "adopt-keyed", keyed.payloadFingerprint())),
+                java.util.Collections.singletonList(workflow)), getRef());
+
+            // Then - finished tasks, dead letters, idempotency keys and waiting workflow nodes are all known
+            managerRef.tell(new TaskMessage.QueryTaskStatus("adopt-done"), getRef());
+            assertEquals("COMPLETED",
+                expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class).getStatus());
+            managerRef.tell(new TaskMessage.QueryDeadLetters(null, 0, 10), getRef());
+            assertEquals(1, expectMsgClass(Duration.ofSeconds(1), TaskMessage.DeadLetters.class).getTotal());
+            managerRef.tell(keyed, getRef());
+            TaskMessage.TaskStatusResponse duplicate =
+                expectMsgClass(Duration.ofSeconds(1), TaskMessage.TaskStatusResponse.class);
+            assertEquals("DUPLICATE", duplicate.getStatus());
+            assertEquals("adopt-keyed", duplicate.getTaskId());
+            managerRef.tell(new TaskMessage.QueryWorkflow("wf-adopt"), getRef());
+            TaskMessage.WorkflowStatus status = expectMsgClass(Duration.ofSeconds(1), TaskMessage.WorkflowStatus.class);
+            assertEquals("RUNNING", status.getStatus());
+            assertEquals("WAITING", status.getNodes().get("child"));
+        }};
+    }
 }
@@ -374,4 +374,74 @@ public class TaskProcessorActorTest {
             assertEquals("PROCESSING", response.getStatus());
         }};
     }
+
+    @Test
+    public void testAdmissionControlRejectsTasksBeyondMaxInFlight() {
+        new TestKit(system) {{
+            // Given - at most two tasks in flight
+            final akka.actor.ActorRef processorRef = system.actorOf(TaskProcessorActor.props(
+                    new TaskSystemSettings.ProcessorSettings(2, 100, Duration.ofMinutes(1),
+                            Duration.ofMillis(300), "task-system.dispatchers.processor")));
+
+            // When
+            for (int i = 0; i < 3; i++) {
+                processorRef.tell(new TaskMessage.ProcessTask("admission-" + i, "Task " + i, "data"), getRef());
+            }
+
+            // Then - the third task is rejected and never tracked
+            assertEquals("ACCEPTED", expectMsgClass(TaskMessage.TaskStatusResponse.class).getStatus());
+            assertEquals("ACCEPTED", expectMsgClass(TaskMessage.TaskStatusResponse.class).getStatus());
+            assertEquals("REJECTED", expectMsgClass(TaskMessage.TaskStatusResponse.class).getStatus());
+            processorRef.tell(new TaskMessage.QueryTaskStatus("admission-2"), getRef());
+            assertEquals("NOT_FOUND", expectMsgClass(TaskMessage.TaskStatusResponse.class).getStatus());
+
+            // Capacity is released once the running tasks complete
+            awaitAssert(Duration.ofSeconds(2), () -> {
+                processorRef.tell(new TaskMessage.QueryTaskStatus("admission-0"), getRef());
+                assertEquals("COMPLETED", expectMsgClass(TaskMessage.TaskStatusResponse.class).getStatus());
+                return null;
+            });
+            processorRef.tell(new TaskMessage.ProcessTask("admission-3", "Task 3", "data"), getRef());
+            assertEquals("ACCEPTED", expectMsgClass(TaskMessage.TaskStatusResponse.class).getStatus());
+
+            processorRef.tell("GET_STATS", getRef());
+            @SuppressWarnings("unchecked")
+            java.util.Map<String, Object> stats = expectMsgClass(java.util.Map.class);
+            assertEquals(3L, stats.get("totalAccepted"));
+            assertEquals(1L, stats.get("totalRejected"));
+        }};
+    }
+
+    @Test
+    public void testStatusesAreBoundedBySizeAndTtl() {
+        new TestKit(system) {{
+            // Given - two status entries kept for 1s, tasks that take 400ms
+            final akka.actor.ActorRef processorRef = system.actorOf(TaskProcessorActor.props(
+                    new TaskSystemSettings.ProcessorSettings(10, 2, Duration.ofSeconds(1),
+                            Duration.ofMillis(400), "task-system.dispatchers.processor")));
+
+            // When
+            for (int i = 0; i < 3; i++) {
+                processorRef.tell(new TaskMessage.ProcessTask("bounded-" + i, "Task " + i, "data"), getRef());
+                expectMsgClass(TaskMessage.TaskStatusResponse.class);
+            }
+
+            // Then - the oldest entry is evicted by size before any task can finish
+            processorRef.tell(new TaskMessage.QueryTaskStatus("bounded-0"), getRef());
+            assertEquals("NOT_FOUND", expectMsgClass(TaskMessage.TaskStatusResponse.class).getStatus());
+            awaitAssert(Duration.ofSeconds(2), () -> {
+                processorRef.tell(new TaskMessage.QueryTaskStatus("bounded-2"), getRef());
+                assertEquals("COMPLETED", expectMsgClass(TaskMessage.TaskStatusResponse.class).getStatus());
+                return null;
+            });
+            // Completion does not bring the evicted entry back; the rest expire after the TTL
+            processorRef.tell(new TaskMessage.QueryTaskStatus("bounded-0"), getRef());
+            assertEquals("NOT_FOUND", expectMsgClass(TaskMessage.TaskStatusResponse.class).getStatus());
+            awaitAssert(Duration.ofSeconds(3), () -> {
+                processorRef.tell(new TaskMessage.QueryTaskStatus("bounded-2"), getRef());
+                assertEquals("NOT_FOUND", expectMsgClass(TaskMessage.TaskStatusResponse.class).getStatus());
+                return null;
+            });
+        }};
+    }
 }
@@ -0,0 +1,117 @@
+package actors;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * TaskResultStore单元测试
+ * 测试分块读取、段的滚动与删除，以及重新打开后的引用恢复
+ */
+public class TaskResultStoreTest {
+
+    private static byte[] bytes(int size, char fill) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) fill);
+        return data;
+    }
+
+    @Test
+    public void testReadsResultInChunks() throws Exception {
+        // Given
+        TaskResultStore store = new TaskResultStore(Files.createTempDirectory("results").toFile(), 1024);
+        String handle = store.write("hello, chunked world".getBytes(StandardCharsets.UTF_8));
+
+        // When
+        byte[] first = store.read(handle, 0, 5);
+        byte[] rest = store.read(handle, 7, 100);
+
+        // Then
+        assertEquals(20, TaskResultStore.sizeOf(handle));
+        assertEquals("hello", new String(first, StandardCharsets.UTF_8));
+        assertEquals("chunked world", new String(rest, StandardCharsets.UTF_8));
+        assertEquals(0, store.read(handle, 20, 10).length);
+    }
+
+    @Test
+    public void testSealedSegmentIsDeletedWhenAllResultsReleased() throws Exception {
+        // Given: 段大小1KB，第二个结果放不下时滚动到新段，超过段大小的结果单独占用一个段
+        File dir = Files.createTempDirectory("results").toFile();
+        TaskResultStore store = new TaskResultStore(dir, 1024);
+        String a = store.write(bytes(600, 'a'));
+        String b = store.write(bytes(600, 'b'));
+        String large = store.write(bytes(5000, 'c'));
+        assertEquals(3, store.segmentCount());
+        assertEquals(5000, store.read(large, 0, 10000).length);
+
+        // When
+        store.release(a);
+
+        // Then: 封存的第一个段被删除，结果不再可读
+        assertEquals(2, store.segmentCount());
+        assertNull(store.read(a, 0, 10));
+        assertEquals('b', store.read(b, 599, 1)[0]);
+    }
+
+    @Test
+    public void testReopenKeepsOnlyRetainedSegments() throws Exception {
+        // Given
+        File dir = Files.createTempDirectory("results").toFile();
+        TaskResultStore store = new TaskResultStore(dir, 1024);
+        String kept = store.write(bytes(800, 'k'));
+        String dropped = store.write(bytes(800, 'd'));
+        store.close();
+
+        // When: 重新打开后只有kept仍被引用
+        TaskResultStore reopened = new TaskResultStore(dir, 1024);
+        assertTrue(reopened.retain(kept));
+        int deleted = reopened.sweep();
+
+        // Then
+        assertEquals(1, deleted);
+        assertEquals('k', reopened.read(kept, 0, 1)[0]);
+        assertNull(reopened.read(dropped, 0, 1));
+        assertFalse(reopened.retain(dropped));
+
+        // 新写入的结果使用新的段
+        String fresh = reopened.write(bytes(10, 'f'));
+        assertEquals('f', reopened.read(fresh, 9, 1)[0]);
+    }
+
+    @Test
+    public void testWritesTextAndStreamedResults() throws Exception {
+        // Given
+        TaskResultStore store = new TaskResultStore(Files.createTempDirectory("results").toFile(), 1024);
+        String text = "größe \uD83D\uDE00 ok";
+
+        // When: 文本直接编码到段中，流式结果写入单独的段
+        String textHandle = store.write(text);
+        TaskResultStore.ResultWriter writer = store.openWriter();
+        for (int i = 0; i < 300; i++) {
+            writer.write("row\n".getBytes(StandardCharsets.UTF_8));
+        }
+        writer.close();
+        String streamed = writer.handle();
+
+        // Then
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, TaskResultStore.utf8Length(text));
+        assertEquals(text, new String(store.read(textHandle, 0, 100), StandardCharsets.UTF_8));
+        assertEquals(1200, TaskResultStore.sizeOf(streamed));
+        assertEquals("row\nrow\n", new String(store.read(streamed, 1192, 100), StandardCharsets.UTF_8));
+        assertEquals(2, store.segmentCount());
+
+        // 释放后流式结果的段被删除，放弃的写入不留下文件
+        store.release(streamed);
+        assertEquals(1, store.segmentCount());
+        TaskResultStore.ResultWriter abandoned = store.openWriter();
+        abandoned.write(bytes(10, 'x'));
+        abandoned.discard();
+        assertNull(abandoned.handle());
+        assertEquals(1, store.segmentCount());
+    }
+}
@@ -0,0 +1,94 @@
+package actors;
+
+import models.Task;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * TaskShardExtractor和分片统计汇总单元测试
+ */
+public class TaskShardExtractorTest {
+
+    private final TaskShardExtractor extractor = new TaskShardExtractor(10);
+
+    @Test
+    public void testSubmissionAndQueryRouteToSameShard() {
+        // Given
+        Task task = new Task("task-42", "Task", "DATA_PROCESSING", "data", Task.TaskPriority.NORMAL);
+
+        // When
+        String submitShard = extractor.shardId(task);
+        String queryShard = extractor.shardId(new TaskMessage.QueryTaskStatus("task-42"));
+
+        // Then
+        assertEquals(submitShard, queryShard);
+        assertEquals(submitShard, extractor.entityId(task));
+        assertSame(task, extractor.entityMessage(task));
+    }
+
+    @Test
+    public void testTasksSpreadAcrossShards() {
+        // Given
+        Set<String> shards = new HashSet<>();
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            shards.add(TaskShardExtractor.shardOf("task-" + i, 10));
+        }
+
+        // Then
+        assertEquals(10, shards.size());
+        for (String shard : shards) {
+            int id = Integer.parseInt(shard);
+            assertTrue(id >= 0 && id < 10);
+        }
+    }
+
+    @Test
+    public void testWorkflowTasksRouteWithTheirWorkflow() {
+        // Given
+        String shard = extractor.shardId(new TaskMessage.QueryWorkflow("wf-7"));
+
+        // Then
+        assertEquals(shard, extractor.shardId(new TaskMessage.QueryTaskStatus(
+                TaskMessage.SubmitWorkflow.taskIdOf("wf-7", "extract"))));
+        assertEquals(shard, extractor.shardId(new TaskMessage.CancelTask(
+                TaskMessage.SubmitWorkflow.taskIdOf("wf-7", "report"))));
+    }
+
+    @Test
+    public void testUnroutableMessagesHaveNoEntity() {
+        assertNull(extractor.entityId("GET_STATS"));
+        assertEquals("3", extractor.entityId(new TaskMessage.GetShardStats("3")));
+    }
+
+    @Test
+    public void testMergeSumsNumericStats() {
+        // Given
+        Map<String, Object> first = new HashMap<>();
+        first.put("totalReceived", 3);
+        first.put("workerCount", 2);
+        Map<String, Object> second = new HashMap<>();
+        second.put("totalReceived", 4L);
+        second.put("workerCount", 2);
+        second.put("pools", new HashMap<>());
+
+        // When
+        Map<String, Object> merged = TaskManagerRouter.merge(Arrays.asList(
+                new TaskMessage.ShardStats("0", first),
+                new TaskMessage.ShardStats("1", second)));
+
+        // Then
+        assertEquals(7L, merged.get("totalReceived"));
+        assertEquals(4L, merged.get("workerCount"));
+        assertEquals(2, merged.get("shardsReporting"));
+        assertEquals(2, ((Map<?, ?>) merged.get("shards")).size());
+    }
+}
@@ -0,0 +1,67 @@
+package actors;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * TaskTypeCircuitBreaker单元测试
+ * 测试连续失败打开熔断、超时后半开试探以及试探结果
+ */
+public class TaskTypeCircuitBreakerTest {
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        // Given
+        TaskTypeCircuitBreaker breaker = new TaskTypeCircuitBreaker(3, 1000);
+
+        // When - a success resets the failure count
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        breaker.onSuccess();
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertEquals(TaskTypeCircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure(100);
+
+        // Then
+        assertEquals(TaskTypeCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(500));
+        assertEquals(600, breaker.remainingOpenMillis(500));
+    }
+
+    @Test
+    public void testHalfOpenAllowsSingleTrial() {
+        // Given
+        TaskTypeCircuitBreaker breaker = new TaskTypeCircuitBreaker(1, 1000);
+        breaker.onFailure(0);
+
+        // When - the open timeout elapses
+        assertTrue(breaker.tryAcquire(1000));
+
+        // Then - only one trial task is let through
+        assertEquals(TaskTypeCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(1001));
+
+        // A successful trial closes the breaker
+        breaker.onSuccess();
+        assertEquals(TaskTypeCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire(1002));
+    }
+
+    @Test
+    public void testFailedTrialReopens() {
+        // Given
+        TaskTypeCircuitBreaker breaker = new TaskTypeCircuitBreaker(1, 1000);
+        breaker.onFailure(0);
+        assertTrue(breaker.tryAcquire(1000));
+
+        // When
+        breaker.onFailure(1200);
+
+        // Then
+        assertEquals(TaskTypeCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(2100));
+        assertTrue(breaker.tryAcquire(2200));
+    }
+}
@@ -342,4 +342,255 @@ public class TaskWorkerActorTest {
             assertTrue(response.getResult().contains(taskData));
         }};
     }
+
+    @Test
+    public void testCancelRunningTask() {
+        new TestKit(system) {{
+            // Given - a report task takes at least 2 seconds
+            final akka.actor.ActorRef workerRef =
+                system.actorOf(TaskWorkerActor.props());
+            Task task = new Task("cancel-task-001", "Cancel Test",
+                                "REPORT_GENERATION", "data", Task.TaskPriority.NORMAL);
+            workerRef.tell(task, getRef());
+
+            // When
+            workerRef.tell(new TaskMessage.CancelTask("cancel-task-001"), getRef());
+
+            // Then - the worker answers right away instead of after the task body
+            Task response = expectMsgClass(Duration.ofMillis(500), Task.class);
+            assertEquals(Task.TaskStatus.CANCELLED, response.getStatus());
+            expectNoMessage(Duration.ofMillis(300));
+
+            // The worker keeps serving new tasks
+            workerRef.tell(new Task("after-cancel-001", "After", "NOTIFICATION", "data",
+                                    Task.TaskPriority.NORMAL), getRef());
+            assertEquals(Task.TaskStatus.COMPLETED, expectMsgClass(Duration.ofSeconds(3), Task.class).getStatus());
+        }};
+    }
+
+    @Test
+    public void testDeadlineInterruptsAndSkipsTasks() {
+        new TestKit(system) {{
+            // Given
+            final akka.actor.ActorRef workerRef =
+                system.actorOf(TaskWorkerActor.props());
+            Task slow = new Task("deadline-task-001", "Deadline Test",
+                                "REPORT_GENERATION", "data", Task.TaskPriority.NORMAL);
+            slow.setDeadline(java.time.LocalDateTime.now().plusNanos(200_000_000L));
+            Task expired = new Task("deadline-task-002", "Expired Test",
+                                "NOTIFICATION", "data", Task.TaskPriority.NORMAL);
+            expired.setDeadline(java.time.LocalDateTime.now().minusSeconds(1));
+
+            // When
+            workerRef.tell(slow, getRef());
+            workerRef.tell(expired, getRef());
+
+            // Then - both fail without counting as a retry
+            Task first = expectMsgClass(Duration.ofSeconds(1), Task.class);
+            assertEquals("deadline-task-001", first.getTaskId());
+            assertEquals(Task.TaskStatus.FAILED, first.getStatus());
+            assertEquals("Deadline exceeded", first.getErrorMessage());
+            assertEquals(0, first.getRetryCount());
+
+            Task second = expectMsgClass(Duration.ofSeconds(1), Task.class);
+            assertEquals(Task.TaskStatus.FAILED, second.getStatus());
+            assertNull(second.getStartedAt());
+        }};
+    }
+
+    @Test
+    public void testAsyncExecutorRunsWithoutBlockingAndCanBeCancelled() {
+        new TestKit(system) {{
+            // Given - an async executor whose results are completed by the test
+            java.util.Map<String, java.util.concurrent.CompletableFuture<String>> calls =
+                    new java.util.concurrent.ConcurrentHashMap<>();
+            TaskExecutor remote = new TaskExecutor() {
+                @Override
+                public String taskType() {
+                    return "REMOTE";
+                }
+
+                @Override
+                public Mode mode() {
+                    return Mode.ASYNC;
+                }
+
+                @Override
+                public java.util.concurrent.CompletionStage<String> executeAsync(Task task) {
+                    java.util.concurrent.CompletableFuture<String> result = new java.util.concurrent.CompletableFuture<>();
+                    calls.put(task.getTaskId(), result);
+                    return result;
+                }
+            };
+            final akka.actor.ActorRef workerRef = system.actorOf(TaskWorkerActor.props(0, null,
+                    TaskExecutors.withBuiltIns(java.util.Collections.singleton(remote)), null, 0));
+
+            // When
+            workerRef.tell(new Task("remote-001", "Remote", "REMOTE", "data", Task.TaskPriority.NORMAL), getRef());
+            workerRef.tell(new Task("remote-002", "Remote", "REMOTE", "data", Task.TaskPriority.NORMAL), getRef());
+            awaitAssert(Duration.ofSeconds(1), () -> {
+                assertTrue(calls.containsKey("remote-001"));
+                return null;
+            });
+            workerRef.tell(new TaskMessage.CancelTask("remote-001"), getRef());
+
+            // Then - the pending call is cancelled and the next task starts
+            Task cancelled = expectMsgClass(Duration.ofSeconds(1), Task.class);
+            assertEquals(Task.TaskStatus.CANCELLED, cancelled.getStatus());
+            assertTrue(calls.get("remote-001").isCancelled());
+            awaitAssert(Duration.ofSeconds(1), () -> {
+                assertTrue(calls.containsKey("remote-002"));
+                return null;
+            });
+            calls.get("remote-002").complete("remote result");
+            Task completed = expectMsgClass(Duration.ofSeconds(1), Task.class);
+            assertEquals(Task.TaskStatus.COMPLETED, completed.getStatus());
+            assertEquals("remote result", completed.getResult());
+        }};
+    }
+
+    @Test
+    public void testExecutorFailureFailsTheTask() {
+        new TestKit(system) {{
+            // Given - a custom executor replaces the built-in DATA_PROCESSING executor
+            TaskExecutor broken = new TaskExecutor() {
+                @Override
+                public String taskType() {
+                    return "DATA_PROCESSING";
+                }
+
+                @Override
+                public String execute(Task task) {
+                    throw new IllegalStateException("disk full");
+                }
+            };
+            final akka.actor.ActorRef workerRef = system.actorOf(TaskWorkerActor.props(0, null,
+                    TaskExecutors.withBuiltIns(java.util.Collections.singleton(broken)), null, 0));
+
+            // When
+            workerRef.tell(new Task("broken-001", "Broken", "DATA_PROCESSING", "data", Task.TaskPriority.NORMAL), getRef());
+
+            // Then
+            Task response = expectMsgClass(Duration.ofSeconds(1), Task.class);
+            assertEquals(Task.TaskStatus.FAILED, response.getStatus());
+            assertEquals("disk full", response.getErrorMessage());
+            assertEquals(1, response.getRetryCount());
+        }};
+    }
+
+    @Test
+    public void testAssignedBatchRunsAsOneExecutorCall() {
+        new TestKit(system) {{
+            // Given - a batching executor that records each invocation and drops tasks with data "drop"
+            java.util.List<Integer> batchSizes = new java.util.concurrent.CopyOnWriteArrayList<>();
+            TaskExecutor bulk = new TaskExecutor() {
+                @Override
+                public String taskType() {
+                    return "BULK";
+                }
+
+                @Override
+                public Mode mode() {
+                    return Mode.ASYNC;
+                }
+
+                @Override
+                public boolean supportsBatching() {
+                    return true;
+                }
+
+                @Override
+                public java.util.concurrent.CompletionStage<java.util.Map<String, String>> executeBatchAsync(
+                        java.util.List<Task> tasks) {
+                    batchSizes.add(tasks.size());
+                    java.util.Map<String, String> results = new java.util.HashMap<>();
+                    for (Task task : tasks) {
+                        if (!"drop".equals(task.getTaskData())) {
+                            results.put(task.getTaskId(), "sent " + task.getTaskId());
+                        }
+                    }
+                    return java.util.concurrent.CompletableFuture.completedFuture(results);
+                }
+            };
+            final akka.actor.ActorRef workerRef = system.actorOf(TaskWorkerActor.props(0, null,
+                    TaskExecutors.withBuiltIns(java.util.Collections.singleton(bulk)), null, 0));
+            java.util.List<Task> first = new java.util.ArrayList<>();
+            java.util.List<Task> second = new java.util.ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                (i < 3 ? first : second).add(new Task("bulk-" + i, "Bulk", "BULK", i == 1 ? "drop" : "data",
+                        Task.TaskPriority.NORMAL));
+            }
+
+            // When
+            workerRef.tell(new TaskMessage.AssignBatch(first), getRef());
+            workerRef.tell(new TaskMessage.AssignBatch(second), getRef());
+
+            // Then - one executor call per batch, with a reply per task
+            java.util.Map<String, Task> responses = new java.util.HashMap<>();
+            for (int i = 0; i < 5; i++) {
+                Task response = expectMsgClass(Duration.ofSeconds(1), Task.class);
+                responses.put(response.getTaskId(), response);
+            }
+            assertEquals(java.util.Arrays.asList(3, 2), batchSizes);
+            assertEquals(Task.TaskStatus.COMPLETED, responses.get("bulk-0").getStatus());
+            assertEquals("sent bulk-0", responses.get("bulk-0").getResult());
+            assertEquals(Task.TaskStatus.FAILED, responses.get("bulk-1").getStatus());
+            assertEquals(1, responses.get("bulk-1").getRetryCount());
+            assertEquals(Task.TaskStatus.COMPLETED, responses.get("bulk-4").getStatus());
+        }};
+    }
+
+    @Test
+    public void testAsyncExecutionsRunConcurrentlyUpToCredits() {
+        new TestKit(system) {{
+            // Given - an async executor whose calls complete only when the test says so
+            java.util.List<java.util.concurrent.CompletableFuture<String>> calls =
+                    new java.util.concurrent.CopyOnWriteArrayList<>();
+            TaskExecutor remote = new TaskExecutor() {
+                @Override
+                public String taskType() {
+                    return "REMOTE";
+                }
+
+                @Override
+                public Mode mode() {
+                    return Mode.ASYNC;
+                }
+
+                @Override
+                public java.util.concurrent.CompletionStage<String> executeAsync(Task task) {
+                    java.util.concurrent.CompletableFuture<String> call = new java.util.concurrent.CompletableFuture<>();
+                    calls.add(call);
+                    return call;
+                }
+            };
+            final akka.actor.ActorRef workerRef = system.actorOf(TaskWorkerActor.props(3, null,
+                    TaskExecutors.withBuiltIns(java.util.Collections.singleton(remote)), null, 0));
+
+            // When
+            for (int i = 0; i < 4; i++) {
+                workerRef.tell(new Task("remote-" + i, "Remote", "REMOTE", "data", Task.TaskPriority.NORMAL), getRef());
+            }
+
+            // Then - three calls are in flight at once, the fourth starts when one of them finishes
+            awaitAssert(Duration.ofSeconds(1), () -> {
+                assertEquals(3, calls.size());
+                return null;
+            });
+            expectNoMessage(Duration.ofMillis(100));
+            assertEquals(3, calls.size());
+            calls.get(1).complete("done");
+            assertEquals("remote-1", expectMsgClass(Duration.ofSeconds(1), Task.class).getTaskId());
+            awaitAssert(Duration.ofSeconds(1), () -> {
+                assertEquals(4, calls.size());
+                return null;
+            });
+            for (java.util.concurrent.CompletableFuture<String> call : calls) {
+                call.complete("done");
+            }
+            for (int i = 0; i < 3; i++) {
+                assertEquals(Task.TaskStatus.COMPLETED, expectMsgClass(Duration.ofSeconds(1), Task.class).getStatus());
+            }
+        }};
+    }
 }
@@ -0,0 +1,166 @@
+package actors;
+
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.ConfigFactory;
+import models.Task;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * VirtualThreadExecutorConfigurator单元测试
+ * 测试虚拟线程调度器（或其回退线程池）上的阻塞任务并发执行和中断
+ */
+public class VirtualThreadExecutorConfiguratorTest {
+
+    private static final String DISPATCHER = "test-virtual";
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setup() {
+        system = ActorSystem.create("VirtualThreadExecutorTestSystem", ConfigFactory.parseString(
+                DISPATCHER + " {\n"
+                        + "  type = Dispatcher\n"
+                        + "  executor = \"actors.VirtualThreadExecutorConfigurator\"\n"
+                        + "  virtual-thread-executor.fallback-pool-size = 32\n"
+                        + "  throughput = 1\n"
+                        + "}\n"));
+    }
+
+    @AfterClass
+    public static void teardown() {
+        TestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
+    @Test
+    public void testVirtualThreadsAreUsedWhenAvailable() throws Exception {
+        ExecutorService executor = VirtualThreadExecutorConfigurator.newVirtualThreadPerTaskExecutor("probe-");
+        boolean supported = Runtime.version().feature() >= 21;
+        if (!supported) {
+            assertNull(executor);
+            return;
+        }
+        try {
+            Boolean virtual = executor.submit(() ->
+                    (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())).get();
+            assertTrue(virtual);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBlockingTasksRunConcurrentlyAndReportBack() {
+        new TestKit(system) {{
+            // Given - 20 workers on the virtual dispatcher with a blocking executor
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+            TaskExecutor io = new TaskExecutor() {
+                @Override
+                public String taskType() {
+                    return "IO";
+                }
+
+                @Override
+                public String execute(Task task) throws InterruptedException {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(300);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                    return "read " + task.getTaskId();
+                }
+            };
+            TaskExecutors executors = TaskExecutors.withBuiltIns(Collections.singleton(io));
+
+            // When
+            for (int i = 0; i < 20; i++) {
+                akka.actor.ActorRef worker = system.actorOf(TaskWorkerActor.props(0, DISPATCHER, executors, null, 0));
+                worker.tell(new Task("io-" + i, "IO", "IO", "data", Task.TaskPriority.NORMAL), getRef());
+            }
+
+            // Then - all complete in about one sleep, not twenty
+            for (int i = 0; i < 20; i++) {
+                Task response = expectMsgClass(Duration.ofSeconds(2), Task.class);
+                assertEquals(Task.TaskStatus.COMPLETED, response.getStatus());
+            }
+            assertEquals(20, peak.get());
+        }};
+    }
+
+    @Test
+    public void testCancelInterruptsTheBlockingTask() {
+        new TestKit(system) {{
+            // Given
+            final akka.actor.ActorRef worker = system.actorOf(TaskWorkerActor.props(0, DISPATCHER,
+                    TaskExecutors.builtIn(), null, 0));
+            worker.tell(new Task("virtual-report", "Report", "REPORT_GENERATION", "data",
+                    Task.TaskPriority.NORMAL), getRef());
+
+            // When
+            worker.tell(new TaskMessage.CancelTask("virtual-report"), getRef());
+
+            // Then
+            assertEquals(Task.TaskStatus.CANCELLED, expectMsgClass(Duration.ofMillis(500), Task.class).getStatus());
+        }};
+    }
+
+    @Test
+    public void testWorkerRunsUpToCreditsBlockingTasksAtOnce() {
+        new TestKit(system) {{
+            // Given - a single worker with 10 credits on the virtual dispatcher
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+            TaskExecutor io = new TaskExecutor() {
+                @Override
+                public String taskType() {
+                    return "IO";
+                }
+
+                @Override
+                public String execute(Task task) throws InterruptedException {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(300);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                    return "read " + task.getTaskId();
+                }
+            };
+            akka.actor.ActorRef worker = system.actorOf(TaskWorkerActor.props(10, DISPATCHER,
+                    TaskExecutors.withBuiltIns(Collections.singleton(io)), null, 0));
+
+            // When
+            for (int i = 0; i < 15; i++) {
+                worker.tell(new Task("io-batch-" + i, "IO", "IO", "data", Task.TaskPriority.NORMAL), getRef());
+            }
+
+            // Then - ten bodies block at once, the rest start as they finish
+            for (int i = 0; i < 15; i++) {
+                assertEquals(Task.TaskStatus.COMPLETED, expectMsgClass(Duration.ofSeconds(2), Task.class).getStatus());
+            }
+            assertEquals(10, peak.get());
+        }};
+    }
+
+    @Test
+    public void testOnlyVirtualDispatchersAreDetected() {
+        com.typesafe.config.Config config = system.settings().config();
+
+        assertTrue(VirtualThreadExecutorConfigurator.isUsedBy(config, DISPATCHER));
+        assertFalse(VirtualThreadExecutorConfigurator.isUsedBy(config, "akka.actor.default-dispatcher"));
+        assertFalse(VirtualThreadExecutorConfigurator.isUsedBy(config, "missing-dispatcher"));
+    }
+}
@@ -1,14 +1,26 @@
 package actors;
 
+import akka.NotUsed;
 import akka.actor.ActorSystem;
+import akka.actor.Status;
+import akka.stream.CompletionStrategy;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
 import akka.testkit.javadsl.TestKit;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import play.libs.Json;
+import utils.MetricsRegistry;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -214,4 +226,205 @@ public class WebSocketActorTest {
             assertEquals("Task completed successfully", response.get("result").asText());
         }};
     }
+
+    @Test
+    public void testSubscriptionsAreForwardedToManager() {
+        new TestKit(system) {{
+            // Given
+            TestKit manager = new TestKit(system);
+            final akka.actor.ActorRef wsActor =
+                system.actorOf(WebSocketActor.props(getRef(), "test-client-9", manager.getRef()));
+            expectMsgClass(Duration.ofSeconds(2), ObjectNode.class);
+            assertEquals("test-client-9",
+                manager.expectMsgClass(Duration.ofSeconds(2), WebSocketManagerActor.Register.class).getClientId());
+
+            // When - subscribe and unsubscribe
+            ObjectNode subscribe = Json.newObject();
+            subscribe.put("type", "SUBSCRIBE");
+            subscribe.put("topic", "tasks.*.task-1");
+            wsActor.tell(subscribe, getRef());
+            ObjectNode unsubscribe = Json.newObject();
+            unsubscribe.put("type", "UNSUBSCRIBE");
+            unsubscribe.put("topic", "tasks.*.task-1");
+            wsActor.tell(unsubscribe, getRef());
+
+            // Then
+            WebSocketManagerActor.Subscribe forwarded =
+                manager.expectMsgClass(Duration.ofSeconds(2), WebSocketManagerActor.Subscribe.class);
+            assertEquals("test-client-9", forwarded.getClientId());
+            assertEquals("tasks.*.task-1", forwarded.getTopic());
+            assertEquals("tasks.*.task-1",
+                manager.expectMsgClass(Duration.ofSeconds(2), WebSocketManagerActor.Unsubscribe.class).getTopic());
+            assertEquals("SUBSCRIBED", expectMsgClass(Duration.ofSeconds(2), ObjectNode.class).get("action").asText());
+            assertEquals("UNSUBSCRIBED", expectMsgClass(Duration.ofSeconds(2), ObjectNode.class).get("action").asText());
+        }};
+    }
+
+    @Test
+    public void testInvalidTopicIsRejected() {
+        new TestKit(system) {{
+            // Given
+            TestKit manager = new TestKit(system);
+            final akka.actor.ActorRef wsActor =
+                system.actorOf(WebSocketActor.props(getRef(), "test-client-10", manager.getRef()));
+            expectMsgClass(Duration.ofSeconds(2), ObjectNode.class);
+            manager.expectMsgClass(Duration.ofSeconds(2), WebSocketManagerActor.Register.class);
+
+            // When
+            ObjectNode subscribe = Json.newObject();
+            subscribe.put("type", "SUBSCRIBE");
+            subscribe.put("topic", "tasks.API*");
+            wsActor.tell(subscribe, getRef());
+
+            // Then - error reply, nothing forwarded
+            ObjectNode response = expectMsgClass(Duration.ofSeconds(2), ObjectNode.class);
+            assertEquals("ERROR", response.get("type").asText());
+            assertEquals("tasks.API*", response.get("topic").asText());
+            manager.expectNoMessage(Duration.ofMillis(300));
+        }};
+    }
+
+    @Test
+    public void testPreSerializedFrameIsForwardedAsIs() {
+        new TestKit(system) {{
+            // Given
+            final akka.actor.ActorRef wsActor =
+                system.actorOf(WebSocketActor.props(getRef(), "test-client-11"));
+            expectMsgClass(Duration.ofSeconds(2), ObjectNode.class);
+
+            // When
+            WebSocketFrame frame = WebSocketFrame.of(Json.newObject().put("type", "BROADCAST"));
+            wsActor.tell(frame, getRef());
+
+            // Then - the same instance reaches the outbound stream
+            assertSame(frame, expectMsgClass(Duration.ofSeconds(2), WebSocketFrame.class));
+            assertEquals("{\"type\":\"BROADCAST\"}", frame.getText());
+        }};
+    }
+
+    @Test
+    public void testOutboundBufferWaitsForAckAndDropsOldest() {
+        new TestKit(system) {{
+            // Given - one frame in flight, at most two buffered
+            MetricsRegistry registry = new MetricsRegistry();
+            final akka.actor.ActorRef wsActor = system.actorOf(WebSocketActor.props(getRef(), "test-client-12",
+                null, new TaskSystemSettings.WebSocketSettings(1, 2,
+                    TaskSystemSettings.WebSocketSettings.OverflowStrategy.DROP_OLDEST), registry));
+            expectMsgClass(Duration.ofSeconds(2), ObjectNode.class);
+
+            // When - four broadcasts arrive before the welcome frame is acknowledged
+            for (int i = 1; i <= 4; i++) {
+                wsActor.tell("burst-" + i, getRef());
+            }
+
+            // Then - nothing is sent until the ack, and the oldest buffered frames were dropped
+            expectNoMessage(Duration.ofMillis(200));
+            assertEquals(2, registry.gauge("websocket_outbound_buffered_frames", "").get());
+            wsActor.tell(WebSocketActor.Ack.INSTANCE, getRef());
+            assertEquals("burst-3", expectMsgClass(ObjectNode.class).get("message").asText());
+            wsActor.tell(WebSocketActor.Ack.INSTANCE, getRef());
+            assertEquals("burst-4", expectMsgClass(ObjectNode.class).get("message").asText());
+            wsActor.tell(WebSocketActor.Ack.INSTANCE, getRef());
+            expectNoMessage(Duration.ofMillis(100));
+            assertEquals(0, registry.gauge("websocket_outbound_buffered_frames", "").get());
+            assertEquals(2, registry.counter("websocket_outbound_dropped_frames_total", "",
+                "reason", "drop_oldest").get());
+        }};
+    }
+
+    @Test
+    public void testSlowConsumerIsDisconnected() {
+        new TestKit(system) {{
+            // Given
+            MetricsRegistry registry = new MetricsRegistry();
+            final akka.actor.ActorRef wsActor = system.actorOf(WebSocketActor.props(getRef(), "test-client-13",
+                null, new TaskSystemSettings.WebSocketSettings(1, 1,
+                    TaskSystemSettings.WebSocketSettings.OverflowStrategy.DISCONNECT), registry));
+            expectMsgClass(Duration.ofSeconds(2), ObjectNode.class);
+            watch(wsActor);
+
+            // When - the buffer overflows
+            wsActor.tell("first", getRef());
+            wsActor.tell("second", getRef());
+
+            // Then - the outbound stream is completed and the connection stops
+            Status.Success completion = expectMsgClass(Duration.ofSeconds(2), Status.Success.class);
+            assertEquals(CompletionStrategy.immediately(), completion.status());
+            expectTerminated(wsActor);
+            assertEquals(1, registry.counter("websocket_slow_consumer_disconnects_total", "").get());
+            assertEquals(2, registry.counter("websocket_outbound_dropped_frames_total", "",
+                "reason", "disconnect").get());
+        }};
+    }
+
+    @Test
+    public void testFlowDeliversEveryFrameToSlowDownstream() throws Exception {
+        // Given - a stream that reads frames slower than they are produced
+        Materializer materializer = Materializer.matFromSystem(system);
+        TestKit manager = new TestKit(system);
+        Flow<JsonNode, Object, NotUsed> flow = WebSocketFlow.actorFlow(
+            out -> WebSocketActor.props(out, "flow-client", manager.getRef(),
+                new TaskSystemSettings.WebSocketSettings(1, 100,
+                    TaskSystemSettings.WebSocketSettings.OverflowStrategy.DROP_OLDEST), new MetricsRegistry()),
+            system, materializer);
+        CompletionStage<List<Object>> received = Source.<JsonNode>maybe()
+            .via(flow)
+            .throttle(20, Duration.ofMillis(100))
+            .take(11)
+            .runWith(Sink.seq(), materializer);
+        manager.expectMsgClass(Duration.ofSeconds(2), WebSocketManagerActor.Register.class);
+        akka.actor.ActorRef connection = manager.getLastSender();
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            connection.tell(WebSocketFrame.of(Json.newObject().put("seq", i)), akka.actor.ActorRef.noSender());
+        }
+
+        // Then - welcome plus all ten frames, in order
+        List<Object> frames = received.toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals("CONNECTED", ((ObjectNode) frames.get(0)).get("action").asText());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, Json.parse(((WebSocketFrame) frames.get(i + 1)).getText()).get("seq").asInt());
+        }
+    }
+
+    @Test
+    public void testConnectionStopsWhenInboundStreamFails() {
+        // Given - a flow whose inbound side fails (e.g. the peer resets the connection)
+        Materializer materializer = Materializer.matFromSystem(system);
+        TestKit manager = new TestKit(system);
+        TestKit watcher = new TestKit(system);
+        Flow<JsonNode, Object, NotUsed> flow = WebSocketFlow.actorFlow(
+            out -> WebSocketActor.props(out, "failing-client", manager.getRef(),
+                TaskSystemSettings.WebSocketSettings.defaults(), new MetricsRegistry()),
+            system, materializer);
+        manager.expectMsgClass(Duration.ofSeconds(2), WebSocketManagerActor.Register.class);
+        akka.actor.ActorRef connection = manager.getLastSender();
+        watcher.watch(connection);
+
+        // When
+        Source.<JsonNode>failed(new RuntimeException("connection reset"))
+            .via(flow)
+            .runWith(Sink.ignore(), materializer);
+
+        // Then - the connection actor stops, so the manager drops its registration and subscriptions
+        watcher.expectTerminated(Duration.ofSeconds(2), connection);
+    }
+
+    @Test
+    public void testConnectionStopsWhenOutboundActorTerminates() {
+        new TestKit(system) {{
+            // Given
+            TestKit out = new TestKit(system);
+            akka.actor.ActorRef connection = system.actorOf(WebSocketActor.props(out.getRef(), "orphan-client"));
+            out.expectMsgClass(Duration.ofSeconds(1), ObjectNode.class);
+            watch(connection);
+
+            // When - the outbound stream goes away
+            system.stop(out.getRef());
+
+            // Then
+            expectTerminated(Duration.ofSeconds(2), connection);
+        }};
+    }
 }
@@ -1,12 +1,21 @@
 package actors;
 
 import akka.actor.ActorSystem;
+import akka.cluster.Cluster;
+import akka.cluster.MemberStatus;
 import akka.testkit.javadsl.TestKit;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import play.libs.Json;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -90,9 +99,11 @@ public class WebSocketManagerActorTest {
                 new WebSocketManagerActor.Broadcast("Hello everyone!");
             managerRef.tell(broadcast, getRef());
 
-            // Then - should receive the broadcast
-            String message = expectMsgClass(Duration.ofSeconds(2), String.class);
-            assertEquals("Hello everyone!", message);
+            // Then - should receive the pre-serialized broadcast frame
+            WebSocketFrame frame = expectMsgClass(Duration.ofSeconds(2), WebSocketFrame.class);
+            JsonNode json = Json.parse(frame.getText());
+            assertEquals("BROADCAST", json.get("type").asText());
+            assertEquals("Hello everyone!", json.get("message").asText());
         }};
     }
 
@@ -207,10 +218,11 @@ public class WebSocketManagerActorTest {
                 new WebSocketManagerActor.Broadcast("Broadcast to all");
             managerRef.tell(broadcast, getRef());
 
-            // Then - all clients should receive
-            client1.expectMsgEquals(Duration.ofSeconds(2), "Broadcast to all");
-            client2.expectMsgEquals(Duration.ofSeconds(2), "Broadcast to all");
-            client3.expectMsgEquals(Duration.ofSeconds(2), "Broadcast to all");
+            // Then - all clients should receive the same frame instance
+            WebSocketFrame frame = client1.expectMsgClass(Duration.ofSeconds(2), WebSocketFrame.class);
+            assertEquals("Broadcast to all", Json.parse(frame.getText()).get("message").asText());
+            assertSame(frame, client2.expectMsgClass(Duration.ofSeconds(2), WebSocketFrame.class));
+            assertSame(frame, client3.expectMsgClass(Duration.ofSeconds(2), WebSocketFrame.class));
         }};
     }
 
@@ -274,4 +286,250 @@ public class WebSocketManagerActorTest {
             assertEquals(Integer.valueOf(0), count);
         }};
     }
+
+    @Test
+    public void testTaskEventsAreDeliveredOnlyToMatchingSubscribers() {
+        new TestKit(system) {{
+            // Given
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(WebSocketManagerActor.props());
+            TestKit allTasks = new TestKit(system);
+            TestKit oneTask = new TestKit(system);
+            TestKit otherType = new TestKit(system);
+            TestKit noSubscription = new TestKit(system);
+
+            managerRef.tell(new WebSocketManagerActor.Register("all"), allTasks.getRef());
+            managerRef.tell(new WebSocketManagerActor.Register("one"), oneTask.getRef());
+            managerRef.tell(new WebSocketManagerActor.Register("other"), otherType.getRef());
+            managerRef.tell(new WebSocketManagerActor.Register("none"), noSubscription.getRef());
+            managerRef.tell(new WebSocketManagerActor.Subscribe("all", "tasks.#"), allTasks.getRef());
+            managerRef.tell(new WebSocketManagerActor.Subscribe("one", "tasks.*.task-42"), oneTask.getRef());
+            managerRef.tell(new WebSocketManagerActor.Subscribe("other", "tasks.NOTIFICATION.*"), otherType.getRef());
+            managerRef.tell(new WebSocketManagerActor.GetSubscriptionCount(), getRef());
+            assertEquals(Integer.valueOf(3), expectMsgClass(Duration.ofSeconds(2), Integer.class));
+
+            // When - a task finishes
+            TaskMessage.TaskCompleted event =
+                new TaskMessage.TaskCompleted("task-42", "API_CALL", true, "done");
+            system.eventStream().publish(event);
+
+            // Then - only matching subscribers receive it, as one shared frame
+            WebSocketFrame frame = allTasks.expectMsgClass(Duration.ofSeconds(2), WebSocketFrame.class);
+            assertEquals("tasks.API_CALL.task-42", frame.getTopic());
+            assertEquals("task-42", Json.parse(frame.getText()).get("taskId").asText());
+            assertSame(frame, oneTask.expectMsgClass(Duration.ofSeconds(2), WebSocketFrame.class));
+            otherType.expectNoMessage(Duration.ofMillis(300));
+            noSubscription.expectNoMessage(Duration.ofMillis(100));
+
+            system.stop(managerRef);
+        }};
+    }
+
+    @Test
+    public void testSubscriptionsAreRemovedWithTheConnection() {
+        new TestKit(system) {{
+            // Given
+            final akka.actor.ActorRef managerRef =
+                system.actorOf(WebSocketManagerActor.props());
+            TestKit client1 = new TestKit(system);
+            TestKit client2 = new TestKit(system);
+            managerRef.tell(new WebSocketManagerActor.Register("sub-client-1"), client1.getRef());
+            managerRef.tell(new WebSocketManagerActor.Register("sub-client-2"), client2.getRef());
+            managerRef.tell(new WebSocketManagerActor.Subscribe("sub-client-1", "tasks.#"), client1.getRef());
+            managerRef.tell(new WebSocketManagerActor.Subscribe("sub-client-1", "tasks.API_CALL.*"), client1.getRef());
+            managerRef.tell(new WebSocketManagerActor.Subscribe("sub-client-2", "tasks.#"), client2.getRef());
+            // Invalid patterns and unregistered clients are ignored
+            managerRef.tell(new WebSocketManagerActor.Subscribe("sub-client-2", "tasks..x"), client2.getRef());
+            managerRef.tell(new WebSocketManagerActor.Subscribe("unknown", "tasks.#"), getRef());
+
+            // When - one subscription is cancelled and a connection terminates
+            managerRef.tell(new WebSocketManagerActor.Unsubscribe("sub-client-1", "tasks.API_CALL.*"), client1.getRef());
+            system.stop(client2.getRef());
+
+            // Then
+            awaitAssert(Duration.ofSeconds(2), () -> {
+                managerRef.tell(new WebSocketManagerActor.GetSubscriptionCount(), getRef());
+                assertEquals(Integer.valueOf(1), expectMsgClass(Integer.class));
+                return null;
+            });
+
+            // When - the remaining client unregisters
+            managerRef.tell(new WebSocketManagerActor.Unregister("sub-client-1"), client1.getRef());
+
+            // Then
+            managerRef.tell(new WebSocketManagerActor.GetSubscriptionCount(), getRef());
+            assertEquals(Integer.valueOf(0), expectMsgClass(Duration.ofSeconds(2), Integer.class));
+
+            system.stop(managerRef);
+        }};
+    }
+
+    @Test
+    public void testTaskTopicEscapesSeparators() {
+        assertEquals("tasks.API_CALL.task-1", WebSocketManagerActor.taskTopic("API_CALL", "task-1"));
+        assertEquals("tasks.DEFAULT.a_b", WebSocketManagerActor.taskTopic(null, "a.b"));
+        assertEquals("tasks.DEFAULT._", WebSocketManagerActor.taskTopic(null, "#"));
+    }
+
+    @Test
+    public void testBroadcastIsDeliveredByEveryShard() {
+        new TestKit(system) {{
+            // Given - clients spread over three shards
+            final akka.actor.ActorRef managerRef = system.actorOf(
+                WebSocketManagerActor.props(new TaskSystemSettings.WebSocketSettings(3)));
+            List<TestKit> clients = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                TestKit client = new TestKit(system);
+                clients.add(client);
+                managerRef.tell(new WebSocketManagerActor.Register("sliced-" + i), client.getRef());
+            }
+
+            // When
+            managerRef.tell(new WebSocketManagerActor.Broadcast("Sharded broadcast"), getRef());
+
+            // Then - every connection receives the same frame, sent on behalf of the manager
+            WebSocketFrame first = clients.get(0).expectMsgClass(Duration.ofSeconds(2), WebSocketFrame.class);
+            assertEquals(managerRef, clients.get(0).getLastSender());
+            for (TestKit client : clients.subList(1, clients.size())) {
+                assertSame(first, client.expectMsgClass(Duration.ofSeconds(2), WebSocketFrame.class));
+                assertEquals(managerRef, client.getLastSender());
+            }
+            for (TestKit client : clients) {
+                client.expectNoMessage(Duration.ofMillis(50));
+            }
+
+            system.stop(managerRef);
+        }};
+    }
+
+    @Test
+    public void testDisconnectStormAcrossShards() {
+        new TestKit(system) {{
+            // Given - 40 connections over four shards, each subscribed to all task events
+            final akka.actor.ActorRef managerRef = system.actorOf(
+                WebSocketManagerActor.props(new TaskSystemSettings.WebSocketSettings(4)));
+            List<TestKit> clients = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                TestKit client = new TestKit(system);
+                clients.add(client);
+                managerRef.tell(new WebSocketManagerActor.Register("storm-" + i), client.getRef());
+                managerRef.tell(new WebSocketManagerActor.Subscribe("storm-" + i, "tasks.#"), client.getRef());
+            }
+            managerRef.tell(new WebSocketManagerActor.GetConnectionCount(), getRef());
+            assertEquals(Integer.valueOf(40), expectMsgClass(Duration.ofSeconds(2), Integer.class));
+
+            // When - every other connection goes away
+            for (int i = 0; i < clients.size(); i += 2) {
+                system.stop(clients.get(i).getRef());
+            }
+
+            // Then - connections and their subscriptions are removed
+            awaitAssert(Duration.ofSeconds(3), () -> {
+                managerRef.tell(new WebSocketManagerActor.GetConnectionCount(), getRef());
+                assertEquals(Integer.valueOf(20), expectMsgClass(Integer.class));
+                managerRef.tell(new WebSocketManagerActor.GetSubscriptionCount(), getRef());
+                assertEquals(Integer.valueOf(20), expectMsgClass(Integer.class));
+                return null;
+            });
+
+            // And task events still reach the remaining subscribers
+            system.eventStream().publish(new TaskMessage.TaskCompleted("storm-task", "API_CALL", true, "done"));
+            for (int i = 1; i < clients.size(); i += 2) {
+                clients.get(i).expectMsgClass(Duration.ofSeconds(2), WebSocketFrame.class);
+            }
+
+            system.stop(managerRef);
+        }};
+    }
+
+    @Test
+    public void testShardOfIsStableAndInRange() {
+        for (int i = 0; i < 100; i++) {
+            String clientId = "client-" + i;
+            int shard = WebSocketManagerActor.shardOf(clientId, 8);
+            assertTrue(shard >= 0 && shard < 8);
+            assertEquals(shard, WebSocketManagerActor.shardOf(clientId, 8));
+        }
+    }
+
+    @Test
+    public void testClusterTopicsCoverEveryPatternPrefix() {
+        // 模式映射为第一个通配符之前的前缀
+        assertEquals("websocket:", WebSocketManagerActor.clusterTopicOf("#"));
+        assertEquals("websocket:tasks", WebSocketManagerActor.clusterTopicOf("tasks.#"));
+        assertEquals("websocket:tasks", WebSocketManagerActor.clusterTopicOf("tasks.*.task-1"));
+        assertEquals("websocket:tasks.API_CALL", WebSocketManagerActor.clusterTopicOf("tasks.API_CALL.*"));
+        assertEquals("websocket:tasks.API_CALL.task-1", WebSocketManagerActor.clusterTopicOf("tasks.API_CALL.task-1"));
+
+        // 事件发布到主题的各级前缀，任何匹配它的模式的前缀都在其中
+        List<String> topics = WebSocketManagerActor.clusterTopicsFor("tasks.API_CALL.task-1");
+        assertEquals(Arrays.asList("websocket:", "websocket:tasks", "websocket:tasks.API_CALL",
+                "websocket:tasks.API_CALL.task-1"), topics);
+        for (String pattern : Arrays.asList("#", "tasks.#", "tasks.*.task-1", "tasks.API_CALL.*", "tasks.API_CALL.#")) {
+            assertTrue(pattern, topics.contains(WebSocketManagerActor.clusterTopicOf(pattern)));
+        }
+    }
+
+    @Test
+    public void testTaskEventsReachSubscribersOnOtherNodesOnce() {
+        ActorSystem nodeA = ActorSystem.create("WebSocketClusterTestSystem", clusterNodeConfig());
+        ActorSystem nodeB = ActorSystem.create("WebSocketClusterTestSystem", clusterNodeConfig());
+        try {
+            // Given - a two-node cluster with a manager on each node
+            Cluster.get(nodeA).join(Cluster.get(nodeA).selfAddress());
+            Cluster.get(nodeB).join(Cluster.get(nodeA).selfAddress());
+            TestKit probe = new TestKit(nodeB);
+            probe.awaitAssert(Duration.ofSeconds(10), () -> {
+                assertEquals(2, Cluster.get(nodeB).state().members().count(m -> m.status() == MemberStatus.up()));
+                return null;
+            });
+
+            TaskSystemSettings.WebSocketSettings settings = new TaskSystemSettings.WebSocketSettings(
+                    2, 256, TaskSystemSettings.WebSocketSettings.OverflowStrategy.DROP_OLDEST, true);
+            akka.actor.ActorRef managerA = nodeA.actorOf(WebSocketManagerActor.props(settings));
+            akka.actor.ActorRef managerB = nodeB.actorOf(WebSocketManagerActor.props(settings));
+
+            // A client on node B subscribes with overlapping patterns (several cluster topics)
+            TestKit remoteClient = new TestKit(nodeB);
+            TestKit otherType = new TestKit(nodeB);
+            managerB.tell(new WebSocketManagerActor.Register("remote"), remoteClient.getRef());
+            managerB.tell(new WebSocketManagerActor.Register("other"), otherType.getRef());
+            managerB.tell(new WebSocketManagerActor.Subscribe("remote", "tasks.#"), remoteClient.getRef());
+            managerB.tell(new WebSocketManagerActor.Subscribe("remote", "tasks.API_CALL.*"), remoteClient.getRef());
+            managerB.tell(new WebSocketManagerActor.Subscribe("other", "tasks.NOTIFICATION.*"), otherType.getRef());
+
+            // When - tasks finish on node A until the subscription has reached it through gossip
+            TaskMessage.TaskCompleted event = new TaskMessage.TaskCompleted("task-1", "API_CALL", true, "done");
+            WebSocketFrame frame = probe.awaitAssert(Duration.ofSeconds(15), Duration.ofMillis(500), () -> {
+                nodeA.eventStream().publish(event);
+                return remoteClient.expectMsgClass(Duration.ofMillis(400), WebSocketFrame.class);
+            });
+
+            // Then - the event crossed nodes, and each publication is delivered exactly once
+            assertEquals("tasks.API_CALL.task-1", frame.getTopic());
+            assertEquals("task-1", Json.parse(frame.getText()).get("taskId").asText());
+            remoteClient.receiveWhile(Duration.ofSeconds(1), msg -> msg);
+            nodeA.eventStream().publish(new TaskMessage.TaskCompleted("task-2", "API_CALL", false, "failed"));
+            WebSocketFrame second = remoteClient.expectMsgClass(Duration.ofSeconds(3), WebSocketFrame.class);
+            assertEquals("task-2", Json.parse(second.getText()).get("taskId").asText());
+            remoteClient.expectNoMessage(Duration.ofMillis(500));
+            otherType.expectNoMessage(Duration.ofMillis(100));
+
+            nodeA.stop(managerA);
+            nodeB.stop(managerB);
+        } finally {
+            TestKit.shutdownActorSystem(nodeB);
+            TestKit.shutdownActorSystem(nodeA);
+        }
+    }
+
+    private static Config clusterNodeConfig() {
+        return ConfigFactory.parseString(
+                "akka.actor.provider = cluster\n"
+                        + "akka.remote.artery.canonical.hostname = \"127.0.0.1\"\n"
+                        + "akka.remote.artery.canonical.port = 0\n"
+                        + "akka.cluster.seed-nodes = []\n"
+                        + "akka.cluster.min-nr-of-members = 1\n")
+                .withFallback(ConfigFactory.load());
+    }
 }
@@ -0,0 +1,164 @@
+package actors;
+
+import models.Task;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * WorkflowTracker单元测试
+ * 测试依赖满足后的释放顺序、上游结果传递、失败传播和环检测
+ */
+public class WorkflowTrackerTest {
+
+    private static Task node(String workflowId, String nodeId) {
+        return new Task(TaskMessage.SubmitWorkflow.taskIdOf(workflowId, nodeId), nodeId, "DEFAULT", "data",
+                Task.TaskPriority.NORMAL);
+    }
+
+    private static Task finish(Task task, Task.TaskStatus status, String result) {
+        task.setStatus(status);
+        task.setResult(result);
+        return task;
+    }
+
+    /**
+     * a, b -> c -> d
+     */
+    private static Map<String, List<String>> diamond() {
+        Map<String, List<String>> dependencies = new HashMap<>();
+        dependencies.put("c", Arrays.asList("a", "b"));
+        dependencies.put("d", Collections.singletonList("c"));
+        return dependencies;
+    }
+
+    @Test
+    public void testNodesAreReleasedWhenAllParentsComplete() {
+        // Given
+        WorkflowTracker tracker = new WorkflowTracker(10, 0);
+        Task a = node("wf", "a");
+        Task b = node("wf", "b");
+        Task c = node("wf", "c");
+        Task d = node("wf", "d");
+
+        // When - roots are ready immediately
+        List<Task> ready = tracker.add("wf", Arrays.asList(a, b, c, d), diamond());
+        assertEquals(Arrays.asList(a, b), ready);
+
+        // Then - c waits for both parents and receives their results
+        assertTrue(tracker.onTaskFinished(finish(a, Task.TaskStatus.COMPLETED, "ra"), 0).isEmpty());
+        assertEquals(Collections.singletonList(c), tracker.onTaskFinished(finish(b, Task.TaskStatus.COMPLETED, "rb"), 0));
+        assertEquals("ra", c.getInputs().get("a"));
+        assertEquals("rb", c.getInputs().get("b"));
+        assertEquals("WAITING", tracker.status("wf").getNodes().get("d"));
+
+        assertEquals(Collections.singletonList(d), tracker.onTaskFinished(finish(c, Task.TaskStatus.COMPLETED, "rc"), 0));
+        assertEquals("RUNNING", tracker.status("wf").getStatus());
+        tracker.onTaskFinished(finish(d, Task.TaskStatus.COMPLETED, "rd"), 0);
+        assertEquals("COMPLETED", tracker.status("wf").getStatus());
+        assertEquals(0, tracker.activeCount());
+    }
+
+    @Test
+    public void testFailureCancelsDescendants() {
+        // Given
+        WorkflowTracker tracker = new WorkflowTracker(10, 0);
+        Task a = node("wf", "a");
+        Task b = node("wf", "b");
+        tracker.add("wf", Arrays.asList(a, b, node("wf", "c"), node("wf", "d")), diamond());
+
+        // When
+        tracker.onTaskFinished(finish(a, Task.TaskStatus.FAILED, null), 0);
+
+        // Then - the workflow still waits for the running sibling, but c and d never run
+        TaskMessage.WorkflowStatus status = tracker.status("wf");
+        assertEquals("RUNNING", status.getStatus());
+        assertEquals("CANCELLED", status.getNodes().get("c"));
+        assertEquals("CANCELLED", status.getNodes().get("d"));
+
+        assertTrue(tracker.onTaskFinished(finish(b, Task.TaskStatus.COMPLETED, "rb"), 0).isEmpty());
+        assertEquals("FAILED", tracker.status("wf").getStatus());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCycleIsRejected() {
+        Map<String, List<String>> dependencies = new HashMap<>();
+        dependencies.put("a", Collections.singletonList("b"));
+        dependencies.put("b", Collections.singletonList("a"));
+        new WorkflowTracker(10, 0).add("wf", Arrays.asList(node("wf", "a"), node("wf", "b")), dependencies);
+    }
+
+    @Test
+    public void testUnknownDependencyIsRejected() {
+        // Given
+        WorkflowTracker tracker = new WorkflowTracker(10, 0);
+
+        // When
+        try {
+            tracker.add("wf", Collections.singletonList(node("wf", "a")),
+                    Collections.singletonMap("a", Collections.singletonList("missing")));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Then - nothing was registered
+            assertFalse(tracker.contains("wf"));
+        }
+    }
+
+    @Test
+    public void testExportedWorkflowContinuesAfterAdoption() {
+        // Given - a finished and b still running on the old owner
+        WorkflowTracker source = new WorkflowTracker(10, 0);
+        Task a = node("wf", "a");
+        Task b = node("wf", "b");
+        source.add("wf", Arrays.asList(a, b, node("wf", "c"), node("wf", "d")), diamond());
+        source.onTaskFinished(finish(a, Task.TaskStatus.COMPLETED, "ra"), 0);
+        b.setStatus(Task.TaskStatus.RUNNING);
+
+        // When - another tracker adopts the exported state and the handed-off b completes there
+        WorkflowTracker target = new WorkflowTracker(10, 0);
+        for (TaskMessage.WorkflowState state : source.export()) {
+            target.adopt(state, 0);
+        }
+        assertEquals("WAITING", target.status("wf").getNodes().get("c"));
+        Task handedOffB = node("wf", "b");
+        List<Task> ready = target.onTaskFinished(finish(handedOffB, Task.TaskStatus.COMPLETED, "rb"), 0);
+
+        // Then - c is released with both parents' results and the workflow keeps running
+        assertEquals(1, ready.size());
+        assertEquals("wf.c", ready.get(0).getTaskId());
+        assertEquals("ra", ready.get(0).getInputs().get("a"));
+        assertEquals("rb", ready.get(0).getInputs().get("b"));
+        assertEquals("RUNNING", target.status("wf").getStatus());
+        assertEquals(1, target.activeCount());
+    }
+
+    @Test
+    public void testCancellingWaitingNodeCancelsDescendants() {
+        // Given
+        WorkflowTracker tracker = new WorkflowTracker(10, 0);
+        Task a = node("wf", "a");
+        Task b = node("wf", "b");
+        tracker.add("wf", Arrays.asList(a, b, node("wf", "c"), node("wf", "d")), diamond());
+        assertEquals("WAITING", tracker.pendingNodeStatus("wf.c"));
+        assertNull(tracker.pendingNodeStatus("wf.a"));
+
+        // When
+        Task cancelled = tracker.cancelWaiting("wf.c", 0);
+
+        // Then - c and d will not run; released nodes cannot be cancelled here
+        assertEquals(Task.TaskStatus.CANCELLED, cancelled.getStatus());
+        assertEquals("CANCELLED", tracker.pendingNodeStatus("wf.d"));
+        assertNull(tracker.cancelWaiting("wf.a", 0));
+        assertNull(tracker.cancelWaiting("wf.d", 0));
+        assertTrue(tracker.onTaskFinished(finish(a, Task.TaskStatus.COMPLETED, "ra"), 0).isEmpty());
+        assertTrue(tracker.onTaskFinished(finish(b, Task.TaskStatus.COMPLETED, "rb"), 0).isEmpty());
+        assertEquals("FAILED", tracker.status("wf").getStatus());
+        assertEquals("CANCELLED", tracker.pendingNodeStatus("wf.c"));
+    }
+}
@@ -0,0 +1,87 @@
+package utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * BoundedTtlCache单元测试
+ * 测试容量淘汰、过期淘汰和淘汰回调
+ */
+public class BoundedTtlCacheTest {
+
+    @Test
+    public void testEvictsEldestWhenFull() {
+        // Given
+        List<String> evicted = new ArrayList<>();
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(2, 0, (k, v) -> evicted.add(k));
+
+        // When
+        cache.put("a", "1", 0);
+        cache.put("b", "2", 0);
+        cache.put("c", "3", 0);
+
+        // Then
+        assertEquals(2, cache.size());
+        assertNull(cache.get("a"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(1, evicted.size());
+        assertEquals("a", evicted.get(0));
+        assertEquals(1, cache.getEvictedCount());
+    }
+
+    @Test
+    public void testEvictExpiredStopsAtFirstLiveEntry() {
+        // Given
+        List<String> evicted = new ArrayList<>();
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(10, 1000, (k, v) -> evicted.add(k));
+        cache.put("a", "1", 0);
+        cache.put("b", "2", 500);
+        cache.put("c", "3", 1500);
+
+        // When
+        int count = cache.evictExpired(1600);
+
+        // Then
+        assertEquals(2, count);
+        assertEquals(1, cache.size());
+        assertEquals("3", cache.get("c"));
+        assertEquals(2, evicted.size());
+    }
+
+    @Test
+    public void testPutRefreshesExistingKey() {
+        // Given
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(2, 1000, null);
+        cache.put("a", "1", 0);
+        cache.put("b", "2", 100);
+
+        // When - "a" is rewritten later and moves to the tail
+        cache.put("a", "1b", 900);
+        cache.evictExpired(1200);
+
+        // Then
+        assertEquals("1b", cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void testRemoveDoesNotCountAsEviction() {
+        // Given
+        List<String> evicted = new ArrayList<>();
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(2, 0, (k, v) -> evicted.add(k));
+        cache.put("a", "1", 0);
+
+        // When
+        String removed = cache.remove("a");
+
+        // Then
+        assertEquals("1", removed);
+        assertEquals(0, cache.size());
+        assertTrue(evicted.isEmpty());
+        assertEquals(0, cache.getEvictedCount());
+    }
+}
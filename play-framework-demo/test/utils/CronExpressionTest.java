@@ -0,0 +1,85 @@
+package utils;
+
+import org.junit.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.*;
+
+/**
+ * CronExpression单元测试
+ * 测试字段解析和下一次触发时间计算
+ */
+public class CronExpressionTest {
+
+    private static ZonedDateTime at(int year, int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(year, month, day, hour, minute, 0, 0, ZoneOffset.UTC);
+    }
+
+    @Test
+    public void testEveryFiveMinutes() {
+        CronExpression cron = CronExpression.parse("*/5 * * * *");
+
+        assertEquals(at(2024, 1, 1, 10, 5), cron.next(at(2024, 1, 1, 10, 0)));
+        assertEquals(at(2024, 1, 1, 10, 5), cron.next(at(2024, 1, 1, 10, 3).plusSeconds(30)));
+        assertEquals(at(2024, 1, 1, 11, 0), cron.next(at(2024, 1, 1, 10, 55)));
+    }
+
+    @Test
+    public void testDailyAtFixedTimeRollsOverMonthAndYear() {
+        CronExpression cron = CronExpression.parse("30 8 * * *");
+
+        assertEquals(at(2024, 1, 1, 8, 30), cron.next(at(2023, 12, 31, 23, 0)));
+        assertEquals(at(2024, 3, 1, 8, 30), cron.next(at(2024, 2, 29, 8, 30)));
+    }
+
+    @Test
+    public void testDayOfWeekAndRanges() {
+        // 工作日 9-17 点整点；2024-01-06 是周六
+        CronExpression cron = CronExpression.parse("0 9-17 * * 1-5");
+
+        assertEquals(at(2024, 1, 8, 9, 0), cron.next(at(2024, 1, 5, 17, 0)));
+
+        // 7 与 0 都表示周日
+        assertEquals(at(2024, 1, 7, 0, 0), CronExpression.parse("0 0 * * 7").next(at(2024, 1, 6, 12, 0)));
+    }
+
+    @Test
+    public void testDayOfMonthOrDayOfWeek() {
+        // 每月1号或每周一
+        CronExpression cron = CronExpression.parse("0 0 1 * 1");
+
+        assertEquals(at(2024, 1, 8, 0, 0), cron.next(at(2024, 1, 2, 0, 0)));
+        assertEquals(at(2024, 2, 1, 0, 0), cron.next(at(2024, 1, 29, 0, 0)));
+    }
+
+    @Test
+    public void testSteppedStarDayFieldIsUnrestricted() {
+        // 单数日且为周一：*/2 以 * 开头，日和周字段按“且”组合；2024-01-08 是偶数日
+        CronExpression cron = CronExpression.parse("0 0 */2 * 1");
+
+        assertEquals(at(2024, 1, 15, 0, 0), cron.next(at(2024, 1, 2, 0, 0)));
+    }
+
+    @Test
+    public void testStepLargerThanFieldRange() {
+        CronExpression cron = CronExpression.parse("5/2147483647 * * * *");
+
+        assertEquals(at(2024, 1, 1, 10, 5), cron.next(at(2024, 1, 1, 10, 0)));
+        assertEquals(at(2024, 1, 1, 11, 5), cron.next(at(2024, 1, 1, 10, 5)));
+    }
+
+    @Test
+    public void testInvalidExpressions() {
+        String[] invalid = {"* * * *", "60 * * * *", "* 24 * * *", "5-1 * * * *", "*/0 * * * *", "a * * * *", "0 0 30 2 *"};
+        for (String expression : invalid) {
+            try {
+                CronExpression.parse(expression).next(at(2024, 1, 1, 0, 0));
+                fail("Expected failure for " + expression);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * HashedTimingWheel单元测试
+ * 测试到期触发、取消、多圈条目和长时间间隔的推进
+ */
+public class HashedTimingWheelTest {
+
+    @Test
+    public void testExpiresOnlyDueEntries() {
+        // Given
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 8, 0);
+        wheel.schedule("a", 25);
+        wheel.schedule("b", 50);
+
+        // When / Then
+        assertEquals(Collections.emptyList(), wheel.advance(20));
+        assertEquals(Collections.singletonList("a"), wheel.advance(30));
+        assertEquals(Collections.singletonList("b"), wheel.advance(50));
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void testCancelRemovesEntry() {
+        // Given
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 8, 0);
+        HashedTimingWheel.Timeout<String> a = wheel.schedule("a", 30);
+        wheel.schedule("b", 30);
+
+        // When
+        assertTrue(wheel.cancel(a));
+
+        // Then
+        assertFalse(a.isPending());
+        assertFalse(wheel.cancel(a));
+        assertEquals(Collections.singletonList("b"), wheel.advance(30));
+    }
+
+    @Test
+    public void testEntriesBeyondOneRoundWaitForTheirRound() {
+        // Given - 8个槽 × 10ms，一圈80ms
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 8, 0);
+        wheel.schedule("near", 10);
+        wheel.schedule("far", 90);
+
+        // When / Then - 两者落在同一个槽，但far要到第二圈才触发
+        assertEquals(Collections.singletonList("near"), wheel.advance(15));
+        for (long now = 20; now < 90; now += 10) {
+            assertTrue(wheel.advance(now).isEmpty());
+        }
+        assertEquals(Collections.singletonList("far"), wheel.advance(90));
+    }
+
+    @Test
+    public void testLongGapExpiresEverythingDue() {
+        // Given
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 8, 0);
+        wheel.schedule("a", 15);
+        wheel.schedule("b", 200);
+        wheel.schedule("c", 5000);
+
+        // When - 一次推进超过多圈
+        List<String> expired = wheel.advance(1000);
+
+        // Then
+        expired.sort(null);
+        assertEquals(Arrays.asList("a", "b"), expired);
+        assertEquals(1, wheel.size());
+        assertEquals(Collections.singletonList("c"), wheel.advance(5000));
+    }
+
+    @Test
+    public void testPastDeadlineFiresOnNextAdvance() {
+        // Given
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 8, 0);
+        wheel.advance(100);
+
+        // When
+        wheel.schedule("late", 50);
+
+        // Then
+        assertEquals(Collections.singletonList("late"), wheel.advance(110));
+    }
+}
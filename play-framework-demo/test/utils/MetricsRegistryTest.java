@@ -0,0 +1,97 @@
+package utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * MetricsRegistry和LatencyHistogram单元测试
+ * 测试直方图精度、并发计数和Prometheus文本格式
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void testHistogramQuantilesAreWithinBucketPrecision() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // When: 1..10000 各记录一次
+        for (long value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-1);
+
+        // Then: 相对误差不超过约3%
+        assertEquals(10000, histogram.getCount());
+        assertEquals(50005000L, histogram.getSum());
+        assertEquals(5000, histogram.valueAt(0.5), 5000 * 0.035);
+        assertEquals(9900, histogram.valueAt(0.99), 9900 * 0.035);
+        assertEquals(1, histogram.valueAt(0.0));
+        assertEquals(0, new LatencyHistogram().valueAt(0.5));
+    }
+
+    @Test
+    public void testHistogramBucketsCoverTheWholeRange() {
+        for (long value : new long[]{0, 31, 32, 63, 64, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value + " below its bucket", LatencyHistogram.lowerBoundOf(index) <= value);
+            assertTrue(value + " above its bucket", LatencyHistogram.upperBoundOf(index) >= value);
+        }
+    }
+
+    @Test
+    public void testConcurrentIncrementsAreNotLost() throws Exception {
+        // Given
+        MetricsRegistry registry = new MetricsRegistry();
+        List<Thread> threads = new ArrayList<>();
+
+        // When: 4个线程各自查找同一个计数器并累加
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    registry.counter("jobs_total", "Jobs", "kind", "a").increment();
+                    registry.timer("job_seconds", "Job time", "kind", "a").recordMillis(i % 100);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Then
+        assertEquals(40000, registry.counter("jobs_total", "Jobs", "kind", "a").get());
+        assertEquals(40000, registry.timer("job_seconds", "Job time", "kind", "a").getHistogram().getCount());
+    }
+
+    @Test
+    public void testScrapeUsesPrometheusTextFormat() {
+        // Given
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("tasks_total", "Tasks", "task_type", "REPORT").add(3);
+        registry.gauge("pending", "Pending \"tasks\"", "pool", "a\"b").set(7);
+        registry.timer("exec_seconds", "Execution").recordMillis(1500);
+
+        // When
+        String text = registry.scrape();
+
+        // Then
+        assertTrue(text.contains("# TYPE tasks_total counter\ntasks_total{task_type=\"REPORT\"} 3\n"));
+        assertTrue(text.contains("pending{pool=\"a\\\"b\"} 7\n"));
+        assertTrue(text.contains("# TYPE exec_seconds summary\n"));
+        assertTrue(text.contains("exec_seconds{quantile=\"0.5\"} 1.5"));
+        assertTrue(text.contains("exec_seconds_sum 1.5\n"));
+        assertTrue(text.contains("exec_seconds_count 1\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSameNameCannotBeRegisteredWithAnotherType() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("requests", "Requests");
+        registry.gauge("requests", "Requests");
+    }
+}
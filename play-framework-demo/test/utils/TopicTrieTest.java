@@ -0,0 +1,94 @@
+package utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * TopicTrie单元测试
+ * 测试精确匹配、* 和 # 通配符、取消订阅和模式校验
+ */
+public class TopicTrieTest {
+
+    @Test
+    public void testExactAndWildcardMatching() {
+        // Given
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.subscribe("tasks.API_CALL.task-1", "exact");
+        trie.subscribe("tasks.API_CALL.*", "type");
+        trie.subscribe("tasks.*.task-1", "task");
+        trie.subscribe("tasks.#", "all");
+        trie.subscribe("#", "everything");
+        trie.subscribe("tasks.NOTIFICATION.*", "other");
+
+        // When / Then
+        assertEquals(new HashSet<>(Arrays.asList("exact", "type", "task", "all", "everything")),
+                trie.match("tasks.API_CALL.task-1"));
+        assertEquals(new HashSet<>(Arrays.asList("type", "all", "everything")),
+                trie.match("tasks.API_CALL.task-2"));
+        // # 匹配零段，* 必须匹配恰好一段
+        assertEquals(new HashSet<>(Arrays.asList("all", "everything")), trie.match("tasks"));
+        assertEquals(Collections.singleton("everything"), trie.match("workflows.wf-1"));
+    }
+
+    @Test
+    public void testMultiWildcardInTheMiddle() {
+        // Given
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.subscribe("tasks.#.task-1", "client");
+
+        // When / Then
+        assertEquals(Collections.singleton("client"), trie.match("tasks.task-1"));
+        assertEquals(Collections.singleton("client"), trie.match("tasks.API_CALL.task-1"));
+        assertTrue(trie.match("tasks.API_CALL.task-2").isEmpty());
+    }
+
+    @Test
+    public void testUnsubscribeAndUnsubscribeAll() {
+        // Given
+        TopicTrie<String> trie = new TopicTrie<>();
+        assertTrue(trie.subscribe("tasks.#", "a"));
+        assertFalse(trie.subscribe("tasks.#", "a"));
+        trie.subscribe("tasks.API_CALL.*", "a");
+        trie.subscribe("tasks.API_CALL.*", "b");
+
+        // When
+        assertTrue(trie.unsubscribe("tasks.#", "a"));
+        assertFalse(trie.unsubscribe("tasks.#", "a"));
+
+        // Then
+        assertEquals(2, trie.size());
+        assertEquals(Collections.singleton("tasks.API_CALL.*"), trie.patternsOf("a"));
+        assertTrue(trie.match("tasks.NOTIFICATION.task-1").isEmpty());
+
+        // When - remove every subscription of a
+        assertEquals(Collections.singleton("tasks.API_CALL.*"), trie.unsubscribeAll("a"));
+
+        // Then
+        assertEquals(1, trie.size());
+        assertEquals(1, trie.subscriberCount());
+        assertEquals(Collections.singleton("b"), trie.match("tasks.API_CALL.task-1"));
+    }
+
+    @Test
+    public void testPatternValidation() {
+        assertTrue(TopicTrie.isValidPattern("tasks"));
+        assertTrue(TopicTrie.isValidPattern("tasks.*.task-1"));
+        assertTrue(TopicTrie.isValidPattern("#"));
+        assertFalse(TopicTrie.isValidPattern(""));
+        assertFalse(TopicTrie.isValidPattern("tasks..task-1"));
+        assertFalse(TopicTrie.isValidPattern("tasks.API*"));
+        assertFalse(TopicTrie.isValidPattern("tasks.#x"));
+        assertTrue(TopicTrie.isValidTopic("tasks.API_CALL.task-1"));
+        assertFalse(TopicTrie.isValidTopic("tasks.*"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubscribeRejectsInvalidPattern() {
+        new TopicTrie<String>().subscribe("tasks.", "client");
+    }
+}